@@ -0,0 +1,74 @@
+package org.sdase.commons.server.kafka.confluent.testing;
+
+import static org.sdase.commons.server.kafka.confluent.testing.KafkaBrokerEnvironmentRule.CONNECTION_STRING_ENV;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.rules.ExternalResource;
+import org.sdase.commons.server.kafka.KafkaClientFactories;
+import org.sdase.commons.server.kafka.confluent.testing.inmemory.InMemoryKafka;
+import org.sdase.commons.server.testing.Environment;
+
+/**
+ * Rule that provides an {@link InMemoryKafka} instead of a broker. The cluster is registered for a
+ * broker address like {@code in-memory://kafka-1}, so that a {@code KafkaBundle} configured with
+ * this address uses the in-memory cluster for its message listeners and message producers. The
+ * address is also set as JSON array into the environment variable {@code BROKER_CONNECTION_STRING}
+ * like the {@link KafkaBrokerEnvironmentRule} does.
+ *
+ * <p>The in-memory cluster starts within milliseconds but does not validate topics and does not
+ * provide the admin API. Tests of the broker integration should use a real broker.
+ */
+public class InMemoryKafkaRule extends ExternalResource implements KafkaBrokerRule {
+
+  /** The prefix of the broker addresses of in-memory clusters. */
+  public static final String ADDRESS_PREFIX = "in-memory://";
+
+  private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+  private final String address = ADDRESS_PREFIX + "kafka-" + SEQUENCE.incrementAndGet();
+
+  private int defaultPartitions = InMemoryKafka.DEFAULT_PARTITIONS;
+
+  private InMemoryKafka kafka;
+
+  /**
+   * @param defaultPartitions the number of partitions of topics that are created when they are used
+   *     first
+   * @return this rule
+   */
+  public InMemoryKafkaRule withDefaultPartitions(int defaultPartitions) {
+    this.defaultPartitions = defaultPartitions;
+    return this;
+  }
+
+  @Override
+  protected void before() {
+    kafka = new InMemoryKafka(defaultPartitions);
+    KafkaClientFactories.register(address, kafka);
+    Environment.setEnv(CONNECTION_STRING_ENV, "[ \"" + address + "\" ]");
+  }
+
+  @Override
+  protected void after() {
+    Environment.unsetEnv(CONNECTION_STRING_ENV);
+    KafkaClientFactories.unregister(address);
+    kafka = null;
+  }
+
+  /** @return the in-memory cluster, e.g. to create topics or to inspect records and offsets */
+  public InMemoryKafka getKafka() {
+    return kafka;
+  }
+
+  @Override
+  public String getConnectString() {
+    return address;
+  }
+
+  @Override
+  public List<String> getBrokerConnectStrings() {
+    return Collections.singletonList(address);
+  }
+}
@@ -0,0 +1,122 @@
+package org.sdase.commons.server.kafka.confluent.testing.inmemory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+/**
+ * The members and the committed offsets of a consumer group. Each change of the members starts a
+ * new generation. The partitions are assigned when all members joined the current generation. All
+ * methods must be called with the lock of the cluster held.
+ */
+class ConsumerGroup {
+
+  final String groupId;
+
+  final Map<TopicPartition, OffsetAndMetadata> committed = new HashMap<>();
+
+  private final List<InMemoryConsumer<?, ?>> members = new ArrayList<>();
+
+  private int generation;
+
+  private int assignedGeneration = -1;
+
+  private Map<InMemoryConsumer<?, ?>, List<TopicPartition>> assignments = Collections.emptyMap();
+
+  ConsumerGroup(String groupId) {
+    this.groupId = groupId;
+  }
+
+  int generation() {
+    return generation;
+  }
+
+  boolean isMember(InMemoryConsumer<?, ?> consumer) {
+    return members.contains(consumer);
+  }
+
+  void join(InMemoryConsumer<?, ?> consumer) {
+    if (!members.contains(consumer)) {
+      members.add(consumer);
+    }
+    generation++;
+  }
+
+  void leave(InMemoryConsumer<?, ?> consumer) {
+    if (members.remove(consumer)) {
+      generation++;
+    }
+  }
+
+  void topicCreated(String topic) {
+    if (members.stream().anyMatch(m -> m.isSubscribedWithPatternTo(topic))) {
+      generation++;
+    }
+  }
+
+  /**
+   * Removes members that have not polled within their {@code max.poll.interval.ms}, like the group
+   * coordinator does.
+   */
+  void evictStaleMembers(long nowNanos) {
+    List<InMemoryConsumer<?, ?>> stale = new ArrayList<>();
+    for (InMemoryConsumer<?, ?> member : members) {
+      if (member.isStale(nowNanos)) {
+        stale.add(member);
+      }
+    }
+    stale.forEach(this::leave);
+  }
+
+  /** @return {@code true} if all members joined the current generation */
+  boolean isStable() {
+    return members.stream().allMatch(m -> m.joinedGeneration() == generation);
+  }
+
+  /**
+   * @param consumer a member that joined the current generation of a stable group
+   * @return the partitions assigned to the member in the current generation
+   */
+  List<TopicPartition> assignment(InMemoryConsumer<?, ?> consumer, InMemoryKafka kafka) {
+    if (assignedGeneration != generation) {
+      assignments = assign(kafka);
+      assignedGeneration = generation;
+    }
+    return assignments.getOrDefault(consumer, Collections.emptyList());
+  }
+
+  /** Assigns the partitions of each topic round robin to the members subscribed to the topic. */
+  private Map<InMemoryConsumer<?, ?>, List<TopicPartition>> assign(InMemoryKafka kafka) {
+    Map<InMemoryConsumer<?, ?>, Set<String>> subscriptions = new HashMap<>();
+    Set<String> topics = new TreeSet<>();
+    for (InMemoryConsumer<?, ?> member : members) {
+      Set<String> subscribed = member.subscribedTopics(kafka);
+      subscriptions.put(member, subscribed);
+      topics.addAll(subscribed);
+    }
+    List<InMemoryConsumer<?, ?>> sortedMembers = new ArrayList<>(members);
+    sortedMembers.sort(Comparator.comparing(InMemoryConsumer::memberId));
+
+    Map<InMemoryConsumer<?, ?>, List<TopicPartition>> result = new HashMap<>();
+    for (String topic : topics) {
+      List<InMemoryConsumer<?, ?>> consumers = new ArrayList<>();
+      sortedMembers.stream()
+          .filter(m -> subscriptions.get(m).contains(topic))
+          .forEach(consumers::add);
+      int partitions = kafka.partitionLogs(topic).size();
+      for (int partition = 0; partition < partitions; partition++) {
+        result
+            .computeIfAbsent(consumers.get(partition % consumers.size()), m -> new ArrayList<>())
+            .add(new TopicPartition(topic, partition));
+      }
+    }
+    return result;
+  }
+}
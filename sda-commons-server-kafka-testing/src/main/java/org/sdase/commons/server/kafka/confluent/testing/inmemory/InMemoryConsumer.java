@@ -0,0 +1,831 @@
+package org.sdase.commons.server.kafka.confluent.testing.inmemory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.apache.kafka.clients.CommonClientConfigs;
+import org.apache.kafka.clients.consumer.CommitFailedException;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.NoOffsetForPartitionException;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.clients.consumer.OffsetCommitCallback;
+import org.apache.kafka.clients.consumer.internals.NoOpConsumerRebalanceListener;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.InterruptException;
+import org.apache.kafka.common.errors.InvalidGroupIdException;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link KafkaConsumer} that consumes from an {@link InMemoryKafka}. It extends the {@code
+ * KafkaConsumer}, because message listeners and their strategies depend on it, but does not use the
+ * network client of the super class. Like the {@code KafkaConsumer}, it must only be used by one
+ * thread, except for {@link #wakeup()}.
+ *
+ * <p>The super class is still constructed as a real client, with its metrics, fetcher, network
+ * client and JMX MBean, which is only acceptable in tests. It never connects to the unused
+ * bootstrap server and is closed by {@link #close(Duration)}.
+ *
+ * <p>The rebalance listener is called within {@link #poll(Duration)}: after a member joined or left
+ * the group, each member revokes all its partitions and waits until all members have rejoined to
+ * get the partitions of the new assignment. If auto commit is enabled, the positions are committed
+ * with each poll, before partitions are revoked and when the consumer is closed.
+ *
+ * @param <K> key object type
+ * @param <V> value object type
+ */
+public class InMemoryConsumer<K, V> extends KafkaConsumer<K, V> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(InMemoryConsumer.class);
+
+  /** The super class requires a valid address but never connects because it is never polled. */
+  private static final String UNUSED_BOOTSTRAP_SERVER = "127.0.0.1:9";
+
+  private static final AtomicInteger MEMBER_SEQUENCE = new AtomicInteger();
+
+  private final InMemoryKafka kafka;
+  private final Deserializer<K> keyDeserializer;
+  private final Deserializer<V> valueDeserializer;
+  private final String groupId;
+  private final String memberId;
+  private final String autoOffsetReset;
+  private final int maxPollRecords;
+  private final boolean autoCommit;
+  private final long maxPollIntervalNanos;
+
+  private final AtomicBoolean wakeup = new AtomicBoolean();
+
+  // the subscription and the membership are read by other members with the lock of the cluster
+  private Set<String> subscribedTopics = Collections.emptySet();
+  private Pattern subscribedPattern;
+  private ConsumerRebalanceListener rebalanceListener = new NoOpConsumerRebalanceListener();
+  private int joinedGeneration = -1;
+  private long lastPollNanos = System.nanoTime();
+
+  private boolean awaitingAssignment;
+  private final Set<TopicPartition> assignment = new LinkedHashSet<>();
+  private final Map<TopicPartition, Long> positions = new HashMap<>();
+  private final Set<TopicPartition> paused = new HashSet<>();
+  private int fetchRotation;
+  private boolean closed;
+
+  /**
+   * @param kafka the cluster to consume from
+   * @param properties the properties of the consumer
+   * @param keyDeserializer the configured deserializer for keys
+   * @param valueDeserializer the configured deserializer for values
+   */
+  InMemoryConsumer(
+      InMemoryKafka kafka,
+      Properties properties,
+      Deserializer<K> keyDeserializer,
+      Deserializer<V> valueDeserializer) {
+    super(unusedBootstrapServer(properties), keyDeserializer, valueDeserializer);
+    this.kafka = kafka;
+    this.keyDeserializer = keyDeserializer;
+    this.valueDeserializer = valueDeserializer;
+    this.groupId = properties.getProperty(ConsumerConfig.GROUP_ID_CONFIG);
+    this.memberId =
+        properties.getProperty(ConsumerConfig.CLIENT_ID_CONFIG, "consumer")
+            + "-"
+            + MEMBER_SEQUENCE.incrementAndGet();
+    this.autoOffsetReset =
+        properties.getProperty(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+    this.maxPollRecords =
+        Integer.parseInt(properties.getProperty(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, "500"));
+    this.autoCommit =
+        Boolean.parseBoolean(
+            properties.getProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "true"));
+    this.maxPollIntervalNanos =
+        TimeUnit.MILLISECONDS.toNanos(
+            Long.parseLong(
+                properties.getProperty(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, "300000")));
+  }
+
+  //
+  // subscription and assignment
+  //
+
+  @Override
+  public void subscribe(Collection<String> topics, ConsumerRebalanceListener listener) {
+    if (topics.isEmpty()) {
+      unsubscribe();
+      return;
+    }
+    subscribe(new HashSet<>(topics), null, listener);
+  }
+
+  @Override
+  public void subscribe(Collection<String> topics) {
+    subscribe(topics, new NoOpConsumerRebalanceListener());
+  }
+
+  @Override
+  public void subscribe(Pattern pattern, ConsumerRebalanceListener listener) {
+    subscribe(Collections.emptySet(), pattern, listener);
+  }
+
+  @Override
+  public void subscribe(Pattern pattern) {
+    subscribe(pattern, new NoOpConsumerRebalanceListener());
+  }
+
+  private void subscribe(Set<String> topics, Pattern pattern, ConsumerRebalanceListener listener) {
+    checkNotClosed();
+    if (groupId == null) {
+      throw new InvalidGroupIdException(
+          "To use the group management or offset commit APIs, you must provide a valid "
+              + ConsumerConfig.GROUP_ID_CONFIG
+              + " in the consumer configuration.");
+    }
+    kafka.lock.lock();
+    try {
+      if (!isSubscribed() && !assignment.isEmpty()) {
+        throw new IllegalStateException(
+            "Subscription to topics, partitions and pattern are mutually exclusive");
+      }
+      subscribedTopics = topics;
+      subscribedPattern = pattern;
+      rebalanceListener = listener;
+      // like brokers with auto.create.topics.enable
+      topics.forEach(kafka::partitionLogs);
+      kafka.group(groupId).join(this);
+      kafka.changed.signalAll();
+    } finally {
+      kafka.lock.unlock();
+    }
+  }
+
+  @Override
+  public void unsubscribe() {
+    checkNotClosed();
+    kafka.lock.lock();
+    try {
+      if (isSubscribed()) {
+        kafka.group(groupId).leave(this);
+        kafka.changed.signalAll();
+      }
+      subscribedTopics = Collections.emptySet();
+      subscribedPattern = null;
+      rebalanceListener = new NoOpConsumerRebalanceListener();
+      joinedGeneration = -1;
+      awaitingAssignment = false;
+      clearAssignment();
+    } finally {
+      kafka.lock.unlock();
+    }
+  }
+
+  @Override
+  public void assign(Collection<TopicPartition> partitions) {
+    checkNotClosed();
+    if (isSubscribed()) {
+      throw new IllegalStateException(
+          "Subscription to topics, partitions and pattern are mutually exclusive");
+    }
+    kafka.lock.lock();
+    try {
+      partitions.forEach(kafka::log);
+    } finally {
+      kafka.lock.unlock();
+    }
+    assignment.clear();
+    assignment.addAll(partitions);
+    positions.keySet().retainAll(assignment);
+    paused.retainAll(assignment);
+  }
+
+  @Override
+  public Set<TopicPartition> assignment() {
+    return Collections.unmodifiableSet(new HashSet<>(assignment));
+  }
+
+  @Override
+  public Set<String> subscription() {
+    kafka.lock.lock();
+    try {
+      return Collections.unmodifiableSet(subscribedTopics(kafka));
+    } finally {
+      kafka.lock.unlock();
+    }
+  }
+
+  //
+  // poll
+  //
+
+  @Override
+  public ConsumerRecords<K, V> poll(long timeoutMs) {
+    return poll(Duration.ofMillis(timeoutMs));
+  }
+
+  @Override
+  public ConsumerRecords<K, V> poll(Duration timeout) {
+    checkNotClosed();
+    if (!isSubscribed() && assignment.isEmpty()) {
+      throw new IllegalStateException(
+          "Consumer is not subscribed to any topics or assigned any partitions");
+    }
+    long deadline = System.nanoTime() + timeout.toNanos();
+    if (autoCommit && isSubscribed() && !awaitingAssignment) {
+      commitPositions();
+    }
+    while (true) {
+      checkWakeup();
+      if (isSubscribed()) {
+        rebalanceIfNeeded();
+      }
+      Map<TopicPartition, List<StoredRecord>> fetched;
+      kafka.lock.lock();
+      try {
+        if (isSubscribed() && isRebalanceNeeded()) {
+          continue;
+        }
+        fetched = fetch();
+        if (fetched.isEmpty()) {
+          if (System.nanoTime() >= deadline) {
+            return ConsumerRecords.empty();
+          }
+          kafka.awaitChange(deadline);
+          continue;
+        }
+      } catch (InterruptedException e) {
+        throw new InterruptException(e);
+      } finally {
+        kafka.lock.unlock();
+      }
+      return deserialize(fetched);
+    }
+  }
+
+  private boolean isRebalanceNeeded() {
+    ConsumerGroup group = kafka.group(groupId);
+    return !group.isMember(this)
+        || joinedGeneration != group.generation()
+        || awaitingAssignment && group.isStable();
+  }
+
+  private void rebalanceIfNeeded() {
+    ConsumerGroup group;
+    boolean revoke;
+    kafka.lock.lock();
+    try {
+      group = kafka.group(groupId);
+      lastPollNanos = System.nanoTime();
+      group.evictStaleMembers(lastPollNanos);
+      if (!group.isMember(this)) {
+        group.join(this);
+      }
+      revoke = joinedGeneration != group.generation();
+    } finally {
+      kafka.lock.unlock();
+    }
+
+    if (revoke) {
+      Set<TopicPartition> revoked = assignment();
+      if (autoCommit && !awaitingAssignment) {
+        commitPositions();
+      }
+      callRebalanceListener(() -> rebalanceListener.onPartitionsRevoked(revoked));
+      kafka.lock.lock();
+      try {
+        clearAssignment();
+        joinedGeneration = group.generation();
+        awaitingAssignment = true;
+        kafka.changed.signalAll();
+      } finally {
+        kafka.lock.unlock();
+      }
+    }
+
+    if (awaitingAssignment) {
+      List<TopicPartition> assigned = null;
+      kafka.lock.lock();
+      try {
+        if (joinedGeneration == group.generation() && group.isStable()) {
+          assigned = group.assignment(this, kafka);
+          assignment.addAll(assigned);
+          awaitingAssignment = false;
+        }
+      } finally {
+        kafka.lock.unlock();
+      }
+      if (assigned != null) {
+        List<TopicPartition> partitions = Collections.unmodifiableList(assigned);
+        callRebalanceListener(() -> rebalanceListener.onPartitionsAssigned(partitions));
+      }
+    }
+  }
+
+  /** Exceptions of the rebalance listener are logged like the {@code KafkaConsumer} does. */
+  private void callRebalanceListener(Runnable callback) {
+    try {
+      callback.run();
+    } catch (WakeupException | InterruptException e) {
+      throw e;
+    } catch (RuntimeException e) {
+      LOGGER.error("User provided listener failed on rebalance of {}", memberId, e);
+    }
+  }
+
+  /** Reads the records at the positions of the fetchable partitions, with the lock held. */
+  private Map<TopicPartition, List<StoredRecord>> fetch() {
+    List<TopicPartition> fetchable = new ArrayList<>(assignment);
+    fetchable.removeAll(paused);
+    if (fetchable.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    // start with another partition on each poll, so that all partitions are served
+    Collections.rotate(fetchable, -(fetchRotation++ % fetchable.size()));
+
+    Map<TopicPartition, List<StoredRecord>> fetched = new HashMap<>();
+    int remaining = maxPollRecords;
+    for (TopicPartition partition : fetchable) {
+      List<StoredRecord> log = kafka.log(partition);
+      long position = resolvePosition(partition);
+      if (position > log.size()) {
+        // out of range, e.g. after seeking beyond the end
+        positions.remove(partition);
+        position = reset(partition);
+        positions.put(partition, position);
+      }
+      int end = (int) Math.min(log.size(), position + remaining);
+      if (end > position) {
+        fetched.put(partition, new ArrayList<>(log.subList((int) position, end)));
+        remaining -= end - (int) position;
+      }
+      if (remaining == 0) {
+        break;
+      }
+    }
+    return fetched;
+  }
+
+  /** Deserializes the records and advances the positions if all records are deserialized. */
+  private ConsumerRecords<K, V> deserialize(Map<TopicPartition, List<StoredRecord>> fetched) {
+    Map<TopicPartition, List<ConsumerRecord<K, V>>> records = new HashMap<>();
+    fetched.forEach(
+        (partition, storedRecords) -> {
+          List<ConsumerRecord<K, V>> partitionRecords = new ArrayList<>(storedRecords.size());
+          for (StoredRecord stored : storedRecords) {
+            partitionRecords.add(deserialize(partition, stored));
+          }
+          records.put(partition, partitionRecords);
+        });
+    fetched.forEach(
+        (partition, storedRecords) ->
+            positions.put(partition, storedRecords.get(storedRecords.size() - 1).offset + 1));
+    return new ConsumerRecords<>(records);
+  }
+
+  private ConsumerRecord<K, V> deserialize(TopicPartition partition, StoredRecord stored) {
+    RecordHeaders headers = new RecordHeaders(stored.headers);
+    K key;
+    V value;
+    try {
+      key =
+          stored.key != null
+              ? keyDeserializer.deserialize(partition.topic(), headers, stored.key)
+              : null;
+      value = valueDeserializer.deserialize(partition.topic(), headers, stored.value);
+    } catch (RuntimeException e) {
+      throw new SerializationException(
+          String.format(
+              "Error deserializing key/value for partition %s at offset %d. "
+                  + "If needed, please seek past the record to continue consumption.",
+              partition, stored.offset),
+          e);
+    }
+    return InMemoryKafka.toConsumerRecord(
+        partition.topic(), partition.partition(), stored, key, value);
+  }
+
+  //
+  // positions
+  //
+
+  @Override
+  public void seek(TopicPartition partition, long offset) {
+    if (offset < 0) {
+      throw new IllegalArgumentException("seek offset must not be a negative number");
+    }
+    requireAssigned(partition);
+    positions.put(partition, offset);
+  }
+
+  @Override
+  public void seek(TopicPartition partition, OffsetAndMetadata offsetAndMetadata) {
+    seek(partition, offsetAndMetadata.offset());
+  }
+
+  @Override
+  public void seekToBeginning(Collection<TopicPartition> partitions) {
+    Collection<TopicPartition> toSeek = partitions.isEmpty() ? assignment() : partitions;
+    toSeek.forEach(this::requireAssigned);
+    toSeek.forEach(partition -> positions.put(partition, 0L));
+  }
+
+  @Override
+  public void seekToEnd(Collection<TopicPartition> partitions) {
+    Collection<TopicPartition> toSeek = partitions.isEmpty() ? assignment() : partitions;
+    toSeek.forEach(this::requireAssigned);
+    endOffsets(toSeek).forEach(positions::put);
+  }
+
+  @Override
+  public long position(TopicPartition partition) {
+    requireAssigned(partition);
+    kafka.lock.lock();
+    try {
+      return resolvePosition(partition);
+    } finally {
+      kafka.lock.unlock();
+    }
+  }
+
+  @Override
+  public long position(TopicPartition partition, Duration timeout) {
+    return position(partition);
+  }
+
+  /** @return the position, initialized from the committed offset or the reset policy */
+  private long resolvePosition(TopicPartition partition) {
+    Long position = positions.get(partition);
+    if (position == null) {
+      OffsetAndMetadata committed =
+          groupId != null ? kafka.group(groupId).committed.get(partition) : null;
+      position = committed != null ? committed.offset() : reset(partition);
+      positions.put(partition, position);
+    }
+    return position;
+  }
+
+  private long reset(TopicPartition partition) {
+    switch (autoOffsetReset) {
+      case "earliest":
+        return 0L;
+      case "latest":
+        return kafka.endOffset(partition);
+      default:
+        throw new NoOffsetForPartitionException(partition);
+    }
+  }
+
+  @Override
+  public void pause(Collection<TopicPartition> partitions) {
+    partitions.forEach(this::requireAssigned);
+    paused.addAll(partitions);
+  }
+
+  @Override
+  public void resume(Collection<TopicPartition> partitions) {
+    partitions.forEach(this::requireAssigned);
+    paused.removeAll(partitions);
+  }
+
+  @Override
+  public Set<TopicPartition> paused() {
+    return Collections.unmodifiableSet(new HashSet<>(paused));
+  }
+
+  //
+  // commits
+  //
+
+  @Override
+  public void commitSync() {
+    commitPositions();
+  }
+
+  @Override
+  public void commitSync(Duration timeout) {
+    commitSync();
+  }
+
+  @Override
+  public void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets) {
+    commit(offsets);
+  }
+
+  @Override
+  public void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets, Duration timeout) {
+    commit(offsets);
+  }
+
+  @Override
+  public void commitAsync() {
+    commitAsync(null);
+  }
+
+  @Override
+  public void commitAsync(OffsetCommitCallback callback) {
+    commitAsync(currentPositions(), callback);
+  }
+
+  @Override
+  public void commitAsync(
+      Map<TopicPartition, OffsetAndMetadata> offsets, OffsetCommitCallback callback) {
+    try {
+      commit(offsets);
+      if (callback != null) {
+        callback.onComplete(offsets, null);
+      }
+    } catch (CommitFailedException e) {
+      if (callback == null) {
+        LOGGER.error("Offset commit of {} failed", memberId, e);
+      } else {
+        callback.onComplete(offsets, e);
+      }
+    }
+  }
+
+  private void commitPositions() {
+    Map<TopicPartition, OffsetAndMetadata> offsets = currentPositions();
+    if (!offsets.isEmpty()) {
+      commit(offsets);
+    }
+  }
+
+  private Map<TopicPartition, OffsetAndMetadata> currentPositions() {
+    Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+    positions.forEach(
+        (partition, position) -> {
+          if (assignment.contains(partition)) {
+            offsets.put(partition, new OffsetAndMetadata(position));
+          }
+        });
+    return offsets;
+  }
+
+  private void commit(Map<TopicPartition, OffsetAndMetadata> offsets) {
+    checkNotClosed();
+    if (groupId == null) {
+      throw new InvalidGroupIdException(
+          "To use the group management or offset commit APIs, you must provide a valid "
+              + ConsumerConfig.GROUP_ID_CONFIG
+              + " in the consumer configuration.");
+    }
+    kafka.lock.lock();
+    try {
+      ConsumerGroup group = kafka.group(groupId);
+      if (isSubscribed() && !group.isMember(this)) {
+        throw new CommitFailedException();
+      }
+      group.committed.putAll(offsets);
+    } finally {
+      kafka.lock.unlock();
+    }
+  }
+
+  @Override
+  public OffsetAndMetadata committed(TopicPartition partition) {
+    if (groupId == null) {
+      return null;
+    }
+    return kafka.getCommittedOffset(groupId, partition);
+  }
+
+  @Override
+  public OffsetAndMetadata committed(TopicPartition partition, Duration timeout) {
+    return committed(partition);
+  }
+
+  //
+  // metadata
+  //
+
+  @Override
+  public List<PartitionInfo> partitionsFor(String topic) {
+    kafka.lock.lock();
+    try {
+      return kafka.partitionsFor(topic);
+    } finally {
+      kafka.lock.unlock();
+    }
+  }
+
+  @Override
+  public List<PartitionInfo> partitionsFor(String topic, Duration timeout) {
+    return partitionsFor(topic);
+  }
+
+  @Override
+  public Map<String, List<PartitionInfo>> listTopics() {
+    kafka.lock.lock();
+    try {
+      return kafka.topicNames().stream()
+          .collect(Collectors.toMap(topic -> topic, kafka::partitionsFor));
+    } finally {
+      kafka.lock.unlock();
+    }
+  }
+
+  @Override
+  public Map<String, List<PartitionInfo>> listTopics(Duration timeout) {
+    return listTopics();
+  }
+
+  @Override
+  public Map<TopicPartition, OffsetAndTimestamp> offsetsForTimes(
+      Map<TopicPartition, Long> timestampsToSearch) {
+    kafka.lock.lock();
+    try {
+      Map<TopicPartition, OffsetAndTimestamp> result = new HashMap<>();
+      timestampsToSearch.forEach(
+          (partition, timestamp) ->
+              result.put(
+                  partition,
+                  kafka.log(partition).stream()
+                      .filter(r -> r.timestamp >= timestamp)
+                      .findFirst()
+                      .map(r -> new OffsetAndTimestamp(r.offset, r.timestamp))
+                      .orElse(null)));
+      return result;
+    } finally {
+      kafka.lock.unlock();
+    }
+  }
+
+  @Override
+  public Map<TopicPartition, OffsetAndTimestamp> offsetsForTimes(
+      Map<TopicPartition, Long> timestampsToSearch, Duration timeout) {
+    return offsetsForTimes(timestampsToSearch);
+  }
+
+  @Override
+  public Map<TopicPartition, Long> beginningOffsets(Collection<TopicPartition> partitions) {
+    Map<TopicPartition, Long> offsets = new HashMap<>();
+    partitions.forEach(partition -> offsets.put(partition, 0L));
+    return offsets;
+  }
+
+  @Override
+  public Map<TopicPartition, Long> beginningOffsets(
+      Collection<TopicPartition> partitions, Duration timeout) {
+    return beginningOffsets(partitions);
+  }
+
+  @Override
+  public Map<TopicPartition, Long> endOffsets(Collection<TopicPartition> partitions) {
+    kafka.lock.lock();
+    try {
+      Map<TopicPartition, Long> offsets = new HashMap<>();
+      partitions.forEach(partition -> offsets.put(partition, kafka.endOffset(partition)));
+      return offsets;
+    } finally {
+      kafka.lock.unlock();
+    }
+  }
+
+  @Override
+  public Map<TopicPartition, Long> endOffsets(
+      Collection<TopicPartition> partitions, Duration timeout) {
+    return endOffsets(partitions);
+  }
+
+  //
+  // lifecycle
+  //
+
+  @Override
+  public void close() {
+    close(Duration.ofSeconds(30));
+  }
+
+  @Override
+  @SuppressWarnings("deprecation")
+  public void close(long timeout, TimeUnit timeUnit) {
+    close(Duration.ofMillis(timeUnit.toMillis(timeout)));
+  }
+
+  @Override
+  public void close(Duration timeout) {
+    if (closed) {
+      return;
+    }
+    try {
+      if (autoCommit && isSubscribed() && !awaitingAssignment) {
+        try {
+          commitPositions();
+        } catch (CommitFailedException e) {
+          LOGGER.warn("Offset commit of {} failed on close", memberId, e);
+        }
+      }
+      kafka.lock.lock();
+      try {
+        if (isSubscribed()) {
+          kafka.group(groupId).leave(this);
+          kafka.changed.signalAll();
+        }
+      } finally {
+        kafka.lock.unlock();
+      }
+    } finally {
+      closed = true;
+      // releases the metrics and the MBean of the unused client of the super class
+      super.close(Duration.ZERO);
+    }
+  }
+
+  @Override
+  public void wakeup() {
+    wakeup.set(true);
+    kafka.lock.lock();
+    try {
+      kafka.changed.signalAll();
+    } finally {
+      kafka.lock.unlock();
+    }
+  }
+
+  //
+  // state read by the consumer group, with the lock of the cluster held
+  //
+
+  String memberId() {
+    return memberId;
+  }
+
+  int joinedGeneration() {
+    return joinedGeneration;
+  }
+
+  boolean isStale(long nowNanos) {
+    return nowNanos - lastPollNanos > maxPollIntervalNanos;
+  }
+
+  boolean isSubscribedWithPatternTo(String topic) {
+    return subscribedPattern != null && subscribedPattern.matcher(topic).matches();
+  }
+
+  Set<String> subscribedTopics(InMemoryKafka cluster) {
+    if (subscribedPattern == null) {
+      return new HashSet<>(subscribedTopics);
+    }
+    return cluster.topicNames().stream()
+        .filter(this::isSubscribedWithPatternTo)
+        .collect(Collectors.toSet());
+  }
+
+  //
+  // helpers
+  //
+
+  private boolean isSubscribed() {
+    return !subscribedTopics.isEmpty() || subscribedPattern != null;
+  }
+
+  private void clearAssignment() {
+    assignment.clear();
+    positions.clear();
+    paused.clear();
+  }
+
+  private void requireAssigned(TopicPartition partition) {
+    if (!assignment.contains(partition)) {
+      throw new IllegalStateException("No current assignment for partition " + partition);
+    }
+  }
+
+  private void checkNotClosed() {
+    if (closed) {
+      throw new IllegalStateException("This consumer has already been closed.");
+    }
+  }
+
+  private void checkWakeup() {
+    if (wakeup.getAndSet(false)) {
+      throw new WakeupException();
+    }
+  }
+
+  private static Properties unusedBootstrapServer(Properties properties) {
+    Properties copy = new Properties();
+    copy.putAll(properties);
+    copy.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, UNUSED_BOOTSTRAP_SERVER);
+    return copy;
+  }
+}
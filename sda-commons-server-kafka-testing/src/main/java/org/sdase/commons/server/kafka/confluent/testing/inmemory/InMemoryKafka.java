@@ -0,0 +1,323 @@
+package org.sdase.commons.server.kafka.confluent.testing.inmemory;
+
+import static org.apache.kafka.clients.consumer.ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG;
+import static org.apache.kafka.clients.consumer.ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG;
+import static org.apache.kafka.clients.producer.ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG;
+import static org.apache.kafka.clients.producer.ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.ProducerFencedException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.utils.Utils;
+import org.sdase.commons.server.kafka.KafkaClientFactory;
+
+/**
+ * A Kafka cluster that keeps topics, consumer groups and transactions in memory. It creates
+ * consumers and producers that behave like the Kafka clients without network communication:
+ *
+ * <ul>
+ *   <li>Records are stored serialized in the partitions of a topic. Records with a key are
+ *       partitioned by the hash of the key like the default partitioner does.
+ *   <li>Topics are created with the default number of partitions when they are used first.
+ *   <li>Consumers that subscribe with the same {@code group.id} share the partitions of the topics.
+ *       If a consumer joins or leaves the group, all members revoke their partitions with their
+ *       next poll and get the new assignment when all members have rejoined, like the eager
+ *       rebalance protocol of Kafka.
+ *   <li>Committed offsets are stored per consumer group. Without committed offset, consumers start
+ *       according to {@code auto.offset.reset}.
+ *   <li>Records sent in a transaction and the offsets sent to the transaction become visible when
+ *       the transaction is committed. Consumers never see records of aborted transactions.
+ * </ul>
+ *
+ * <p>Registered for a broker address with {@code KafkaClientFactories}, a {@code KafkaBundle} uses
+ * the cluster for its message listeners and message producers. The {@code InMemoryKafkaRule} does
+ * this for tests.
+ */
+public class InMemoryKafka implements KafkaClientFactory {
+
+  /** The default number of partitions of topics that are created when they are used first. */
+  public static final int DEFAULT_PARTITIONS = 1;
+
+  static final Node NODE = new Node(0, "in-memory", 0);
+
+  /** Guards all state of the cluster, consumers wait for changes with {@link #changed}. */
+  final ReentrantLock lock = new ReentrantLock();
+
+  final Condition changed = lock.newCondition();
+
+  private final int defaultPartitions;
+
+  private final Map<String, List<List<StoredRecord>>> topics = new HashMap<>();
+
+  private final Map<String, ConsumerGroup> groups = new HashMap<>();
+
+  private final Map<String, Integer> producerEpochs = new HashMap<>();
+
+  /** Creates a cluster that creates topics with {@value #DEFAULT_PARTITIONS} partition. */
+  public InMemoryKafka() {
+    this(DEFAULT_PARTITIONS);
+  }
+
+  /** @param defaultPartitions the number of partitions of topics that are created when used */
+  public InMemoryKafka(int defaultPartitions) {
+    this.defaultPartitions = defaultPartitions;
+  }
+
+  @Override
+  public <K, V> KafkaConsumer<K, V> createConsumer(
+      Properties properties, Deserializer<K> keyDeserializer, Deserializer<V> valueDeserializer) {
+    return new InMemoryConsumer<>(
+        this,
+        properties,
+        keyDeserializer != null
+            ? keyDeserializer
+            : configured(properties, KEY_DESERIALIZER_CLASS_CONFIG, Deserializer.class, true),
+        valueDeserializer != null
+            ? valueDeserializer
+            : configured(properties, VALUE_DESERIALIZER_CLASS_CONFIG, Deserializer.class, false));
+  }
+
+  @Override
+  public <K, V> Producer<K, V> createProducer(
+      Properties properties, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+    return new InMemoryProducer<>(
+        this,
+        properties,
+        keySerializer != null
+            ? keySerializer
+            : configured(properties, KEY_SERIALIZER_CLASS_CONFIG, Serializer.class, true),
+        valueSerializer != null
+            ? valueSerializer
+            : configured(properties, VALUE_SERIALIZER_CLASS_CONFIG, Serializer.class, false));
+  }
+
+  @Override
+  public void createTopicIfMissing(String topic, Integer partitions) {
+    lock.lock();
+    try {
+      partitionLogs(topic, partitions != null ? partitions : defaultPartitions);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @param topic the name of the topic
+   * @param partitions the number of partitions
+   * @throws IllegalStateException if the topic exists with another number of partitions
+   */
+  public void createTopic(String topic, int partitions) {
+    lock.lock();
+    try {
+      int existing = partitionLogs(topic, partitions).size();
+      if (existing != partitions) {
+        throw new IllegalStateException(
+            String.format("Topic %s exists with %d partitions.", topic, existing));
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @param topic the name of the topic
+   * @return all records of the topic with serialized key and value, ordered by partition and offset
+   */
+  public List<ConsumerRecord<byte[], byte[]>> getRecords(String topic) {
+    lock.lock();
+    try {
+      List<ConsumerRecord<byte[], byte[]>> records = new ArrayList<>();
+      List<List<StoredRecord>> logs = topics.getOrDefault(topic, Collections.emptyList());
+      for (int partition = 0; partition < logs.size(); partition++) {
+        for (StoredRecord record : logs.get(partition)) {
+          records.add(toConsumerRecord(topic, partition, record, record.key, record.value));
+        }
+      }
+      return records;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @param groupId the consumer group
+   * @param partition the partition
+   * @return the offset committed by the group or {@code null} if no offset has been committed
+   */
+  public OffsetAndMetadata getCommittedOffset(String groupId, TopicPartition partition) {
+    lock.lock();
+    try {
+      ConsumerGroup group = groups.get(groupId);
+      return group != null ? group.committed.get(partition) : null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @param partition the partition
+   * @return the offset of the next record that is appended to the partition
+   */
+  public long getEndOffset(TopicPartition partition) {
+    lock.lock();
+    try {
+      return endOffset(partition);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  //
+  // package-private operations, must be called with the lock held
+  //
+
+  /** @return the logs of the partitions, the topic is created if it does not exist */
+  List<List<StoredRecord>> partitionLogs(String topic) {
+    return partitionLogs(topic, defaultPartitions);
+  }
+
+  private List<List<StoredRecord>> partitionLogs(String topic, int partitionsIfCreated) {
+    List<List<StoredRecord>> logs = topics.get(topic);
+    if (logs == null) {
+      logs = new ArrayList<>(partitionsIfCreated);
+      for (int i = 0; i < partitionsIfCreated; i++) {
+        logs.add(new ArrayList<>());
+      }
+      topics.put(topic, logs);
+      // consumers subscribed with a pattern may have to rebalance
+      groups.values().forEach(group -> group.topicCreated(topic));
+      changed.signalAll();
+    }
+    return logs;
+  }
+
+  Set<String> topicNames() {
+    return new TreeSet<>(topics.keySet());
+  }
+
+  List<PartitionInfo> partitionsFor(String topic) {
+    int count = partitionLogs(topic).size();
+    Node[] nodes = {NODE};
+    List<PartitionInfo> partitions = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      partitions.add(new PartitionInfo(topic, i, NODE, nodes, nodes));
+    }
+    return partitions;
+  }
+
+  List<StoredRecord> log(TopicPartition partition) {
+    List<List<StoredRecord>> logs = partitionLogs(partition.topic());
+    if (partition.partition() < 0 || partition.partition() >= logs.size()) {
+      throw new IllegalArgumentException("Unknown partition " + partition);
+    }
+    return logs.get(partition.partition());
+  }
+
+  long endOffset(TopicPartition partition) {
+    return log(partition).size();
+  }
+
+  /** Appends the record and wakes up waiting consumers. */
+  long append(TopicPartition partition, StoredRecord record) {
+    List<StoredRecord> log = log(partition);
+    long offset = log.size();
+    log.add(record.withOffset(offset));
+    changed.signalAll();
+    return offset;
+  }
+
+  ConsumerGroup group(String groupId) {
+    return groups.computeIfAbsent(groupId, ConsumerGroup::new);
+  }
+
+  /**
+   * Initializes the transactions of a producer and fences all earlier producers with the same
+   * transactional id.
+   *
+   * @return the epoch of the producer
+   */
+  int initTransactions(String transactionalId) {
+    return producerEpochs.merge(transactionalId, 1, Integer::sum);
+  }
+
+  void checkNotFenced(String transactionalId, int epoch) {
+    if (producerEpochs.getOrDefault(transactionalId, 0) != epoch) {
+      throw new ProducerFencedException(
+          "Producer with transactional id " + transactionalId + " has been fenced.");
+    }
+  }
+
+  /** Waits for changes of the cluster until the deadline. */
+  void awaitChange(long deadlineNanos) throws InterruptedException {
+    long remaining = deadlineNanos - System.nanoTime();
+    if (remaining > 0) {
+      changed.await(remaining, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  static <K, V> ConsumerRecord<K, V> toConsumerRecord(
+      String topic, int partition, StoredRecord record, K key, V value) {
+    return new ConsumerRecord<>(
+        topic,
+        partition,
+        record.offset,
+        record.timestamp,
+        TimestampType.CREATE_TIME,
+        null,
+        record.key != null ? record.key.length : -1,
+        record.value != null ? record.value.length : -1,
+        key,
+        value,
+        new RecordHeaders(Arrays.asList(record.headers)));
+  }
+
+  /**
+   * Creates and configures the serializer or deserializer of the class configured in the
+   * properties, like the clients do if no instance is given.
+   */
+  @SuppressWarnings("unchecked")
+  private static <T> T configured(
+      Properties properties, String classConfig, Class<?> type, boolean isKey) {
+    Object configuredClass = properties.get(classConfig);
+    if (configuredClass == null) {
+      throw new IllegalArgumentException("Missing client property " + classConfig);
+    }
+    Map<String, Object> config = new HashMap<>();
+    properties.forEach((k, v) -> config.put(k.toString(), v));
+    try {
+      Object instance =
+          configuredClass instanceof Class
+              ? Utils.newInstance((Class<?>) configuredClass)
+              : Utils.newInstance(configuredClass.toString(), type);
+      if (instance instanceof Serializer) {
+        ((Serializer<?>) instance).configure(config, isKey);
+      } else {
+        ((Deserializer<?>) instance).configure(config, isKey);
+      }
+      return (T) instance;
+    } catch (ClassNotFoundException e) {
+      throw new IllegalArgumentException("Unknown class " + configuredClass, e);
+    }
+  }
+}
@@ -0,0 +1,303 @@
+package org.sdase.commons.server.kafka.confluent.testing.inmemory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.utils.Utils;
+
+/**
+ * A {@link Producer} that appends records to the partitions of an {@link InMemoryKafka}. Records
+ * are serialized and partitioned like the {@code KafkaProducer} does: by the partition of the
+ * record, by the hash of the key or round robin. Sending completes immediately.
+ *
+ * <p>Records sent in a transaction are appended when the transaction is committed. Their callbacks
+ * are completed when they are sent, with offset {@code -1} as the final offset is not known yet.
+ *
+ * @param <K> key object type
+ * @param <V> value object type
+ */
+public class InMemoryProducer<K, V> implements Producer<K, V> {
+
+  private static final AtomicInteger CLIENT_SEQUENCE = new AtomicInteger();
+
+  private final InMemoryKafka kafka;
+  private final Serializer<K> keySerializer;
+  private final Serializer<V> valueSerializer;
+  private final String clientId;
+  private final String transactionalId;
+
+  private final AtomicInteger roundRobin = new AtomicInteger();
+  private final AtomicLong sentRecords = new AtomicLong();
+
+  // transaction state, guarded by the lock of the cluster
+  private int epoch;
+  private boolean inTransaction;
+  private final List<Pending> pendingRecords = new ArrayList<>();
+  private final Map<String, Map<TopicPartition, OffsetAndMetadata>> pendingOffsets =
+      new HashMap<>();
+
+  private volatile boolean closed;
+
+  /**
+   * @param kafka the cluster to send to
+   * @param properties the properties of the producer
+   * @param keySerializer the configured serializer for keys
+   * @param valueSerializer the configured serializer for values
+   */
+  InMemoryProducer(
+      InMemoryKafka kafka,
+      Properties properties,
+      Serializer<K> keySerializer,
+      Serializer<V> valueSerializer) {
+    this.kafka = kafka;
+    this.keySerializer = keySerializer;
+    this.valueSerializer = valueSerializer;
+    this.clientId =
+        properties.getProperty(
+            ProducerConfig.CLIENT_ID_CONFIG, "producer-" + CLIENT_SEQUENCE.incrementAndGet());
+    this.transactionalId = properties.getProperty(ProducerConfig.TRANSACTIONAL_ID_CONFIG);
+  }
+
+  @Override
+  public Future<RecordMetadata> send(ProducerRecord<K, V> record) {
+    return send(record, null);
+  }
+
+  @Override
+  public Future<RecordMetadata> send(ProducerRecord<K, V> record, Callback callback) {
+    checkNotClosed();
+    Headers headers = record.headers() != null ? record.headers() : new RecordHeaders();
+    byte[] key = keySerializer.serialize(record.topic(), headers, record.key());
+    byte[] value = valueSerializer.serialize(record.topic(), headers, record.value());
+    long timestamp = record.timestamp() != null ? record.timestamp() : System.currentTimeMillis();
+    StoredRecord stored = new StoredRecord(-1, timestamp, key, value, headers.toArray());
+
+    RecordMetadata metadata;
+    kafka.lock.lock();
+    try {
+      TopicPartition partition = new TopicPartition(record.topic(), partition(record, key));
+      long offset;
+      if (inTransaction) {
+        pendingRecords.add(new Pending(partition, stored));
+        offset = -1;
+      } else {
+        offset = kafka.append(partition, stored);
+      }
+      metadata =
+          new RecordMetadata(
+              partition,
+              offset,
+              0,
+              timestamp,
+              null,
+              key != null ? key.length : -1,
+              value != null ? value.length : -1);
+    } finally {
+      kafka.lock.unlock();
+    }
+    sentRecords.incrementAndGet();
+    if (callback != null) {
+      callback.onCompletion(metadata, null);
+    }
+    return CompletableFuture.completedFuture(metadata);
+  }
+
+  /** Selects the partition like the default partitioner, with the lock held. */
+  private int partition(ProducerRecord<K, V> record, byte[] key) {
+    int partitions = kafka.partitionLogs(record.topic()).size();
+    if (record.partition() != null) {
+      if (record.partition() < 0 || record.partition() >= partitions) {
+        throw new IllegalArgumentException(
+            String.format(
+                "Invalid partition given with record: %d is not in the range [0...%d).",
+                record.partition(), partitions));
+      }
+      return record.partition();
+    }
+    if (key == null) {
+      return Utils.toPositive(roundRobin.getAndIncrement()) % partitions;
+    }
+    return Utils.toPositive(Utils.murmur2(key)) % partitions;
+  }
+
+  @Override
+  public void initTransactions() {
+    checkNotClosed();
+    if (transactionalId == null) {
+      throw new IllegalStateException(
+          "Transactional method invoked on a non-transactional producer.");
+    }
+    kafka.lock.lock();
+    try {
+      epoch = kafka.initTransactions(transactionalId);
+    } finally {
+      kafka.lock.unlock();
+    }
+  }
+
+  @Override
+  public void beginTransaction() {
+    kafka.lock.lock();
+    try {
+      checkTransactional();
+      if (inTransaction) {
+        throw new IllegalStateException("A transaction is already in progress.");
+      }
+      inTransaction = true;
+    } finally {
+      kafka.lock.unlock();
+    }
+  }
+
+  @Override
+  public void sendOffsetsToTransaction(
+      Map<TopicPartition, OffsetAndMetadata> offsets, String consumerGroupId) {
+    kafka.lock.lock();
+    try {
+      checkInTransaction();
+      pendingOffsets.computeIfAbsent(consumerGroupId, g -> new HashMap<>()).putAll(offsets);
+    } finally {
+      kafka.lock.unlock();
+    }
+  }
+
+  @Override
+  public void commitTransaction() {
+    kafka.lock.lock();
+    try {
+      checkInTransaction();
+      pendingRecords.forEach(pending -> kafka.append(pending.partition, pending.record));
+      pendingOffsets.forEach((group, offsets) -> kafka.group(group).committed.putAll(offsets));
+      endTransaction();
+    } finally {
+      kafka.lock.unlock();
+    }
+  }
+
+  @Override
+  public void abortTransaction() {
+    kafka.lock.lock();
+    try {
+      checkInTransaction();
+      endTransaction();
+    } finally {
+      kafka.lock.unlock();
+    }
+  }
+
+  private void endTransaction() {
+    pendingRecords.clear();
+    pendingOffsets.clear();
+    inTransaction = false;
+  }
+
+  private void checkTransactional() {
+    checkNotClosed();
+    if (transactionalId == null || epoch == 0) {
+      throw new IllegalStateException(
+          "Transactional method invoked on a producer without initialized transactions.");
+    }
+    kafka.checkNotFenced(transactionalId, epoch);
+  }
+
+  private void checkInTransaction() {
+    checkTransactional();
+    if (!inTransaction) {
+      throw new IllegalStateException("No transaction in progress.");
+    }
+  }
+
+  @Override
+  public void flush() {
+    // records are appended when they are sent
+  }
+
+  @Override
+  public List<PartitionInfo> partitionsFor(String topic) {
+    kafka.lock.lock();
+    try {
+      return kafka.partitionsFor(topic);
+    } finally {
+      kafka.lock.unlock();
+    }
+  }
+
+  @Override
+  public Map<MetricName, ? extends Metric> metrics() {
+    // the client id is read from the tags of the metrics
+    MetricName name =
+        new MetricName(
+            "record-send-total",
+            "producer-metrics",
+            "The total number of records sent.",
+            Collections.singletonMap("client-id", clientId));
+    return Collections.singletonMap(
+        name,
+        new Metric() {
+          @Override
+          public MetricName metricName() {
+            return name;
+          }
+
+          @Override
+          @Deprecated
+          public double value() {
+            return sentRecords.get();
+          }
+
+          @Override
+          public Object metricValue() {
+            return (double) sentRecords.get();
+          }
+        });
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+  }
+
+  @Override
+  public void close(Duration timeout) {
+    close();
+  }
+
+  private void checkNotClosed() {
+    if (closed) {
+      throw new IllegalStateException("Cannot perform operation after producer has been closed");
+    }
+  }
+
+  /** A record sent within the current transaction. */
+  private static class Pending {
+
+    private final TopicPartition partition;
+    private final StoredRecord record;
+
+    private Pending(TopicPartition partition, StoredRecord record) {
+      this.partition = partition;
+      this.record = record;
+    }
+  }
+}
@@ -0,0 +1,25 @@
+package org.sdase.commons.server.kafka.confluent.testing.inmemory;
+
+import org.apache.kafka.common.header.Header;
+
+/** A record in the log of a partition, stored with serialized key and value like on a broker. */
+class StoredRecord {
+
+  final long offset;
+  final long timestamp;
+  final byte[] key;
+  final byte[] value;
+  final Header[] headers;
+
+  StoredRecord(long offset, long timestamp, byte[] key, byte[] value, Header[] headers) {
+    this.offset = offset;
+    this.timestamp = timestamp;
+    this.key = key;
+    this.value = value;
+    this.headers = headers;
+  }
+
+  StoredRecord withOffset(long newOffset) {
+    return new StoredRecord(newOffset, timestamp, key, value, headers);
+  }
+}
@@ -0,0 +1,181 @@
+package org.sdase.commons.server.kafka.confluent.testing.inmemory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.ProducerFencedException;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InMemoryKafkaTest {
+
+  private static final String TOPIC = "topic";
+
+  private InMemoryKafka kafka;
+
+  private final List<KafkaConsumer<String, String>> consumers = new ArrayList<>();
+
+  @Before
+  public void setup() {
+    kafka = new InMemoryKafka(2);
+  }
+
+  @After
+  public void tearDown() {
+    consumers.forEach(KafkaConsumer::close);
+  }
+
+  @Test
+  public void shouldConsumeProducedRecords() throws Exception {
+    Producer<String, String> producer = producer(new Properties());
+    RecordMetadata metadata = producer.send(new ProducerRecord<>(TOPIC, "key", "value")).get();
+    KafkaConsumer<String, String> consumer = consumer("group");
+
+    List<ConsumerRecord<String, String>> records = pollUntil(consumer, 1);
+
+    assertThat(records).extracting(ConsumerRecord::value).containsExactly("value");
+    assertThat(records.get(0).partition()).isEqualTo(metadata.partition());
+    assertThat(records.get(0).offset()).isEqualTo(metadata.offset()).isZero();
+  }
+
+  @Test
+  public void shouldPartitionByKey() throws Exception {
+    Producer<String, String> producer = producer(new Properties());
+    int first = producer.send(new ProducerRecord<>(TOPIC, "key", "1")).get().partition();
+    int second = producer.send(new ProducerRecord<>(TOPIC, "key", "2")).get().partition();
+
+    assertThat(second).isEqualTo(first);
+    assertThat(kafka.getEndOffset(new TopicPartition(TOPIC, first))).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldShareAndRebalancePartitionsInGroup() {
+    KafkaConsumer<String, String> first = consumer("group");
+    first.poll(Duration.ofMillis(10));
+    assertThat(first.assignment()).hasSize(2);
+
+    KafkaConsumer<String, String> second = consumer("group");
+    // the first consumer rejoins with its next poll, then both get their assignment
+    for (int i = 0;
+        i < 10 && (first.assignment().isEmpty() || second.assignment().isEmpty());
+        i++) {
+      first.poll(Duration.ofMillis(10));
+      second.poll(Duration.ofMillis(10));
+    }
+
+    assertThat(first.assignment()).hasSize(1);
+    assertThat(second.assignment()).hasSize(1).doesNotContainAnyElementsOf(first.assignment());
+
+    second.close();
+    consumers.remove(second);
+    first.poll(Duration.ofMillis(10));
+    assertThat(first.assignment()).hasSize(2);
+  }
+
+  @Test
+  public void shouldResumeFromCommittedOffset() throws Exception {
+    Producer<String, String> producer = producer(new Properties());
+    producer.send(new ProducerRecord<>(TOPIC, 0, "key", "1")).get();
+    producer.send(new ProducerRecord<>(TOPIC, 0, "key", "2")).get();
+
+    KafkaConsumer<String, String> consumer = consumer("group");
+    pollUntil(consumer, 2);
+    consumer.commitSync();
+    consumer.close();
+    consumers.remove(consumer);
+    producer.send(new ProducerRecord<>(TOPIC, 0, "key", "3")).get();
+
+    assertThat(kafka.getCommittedOffset("group", new TopicPartition(TOPIC, 0)))
+        .isEqualTo(new OffsetAndMetadata(2));
+    assertThat(pollUntil(consumer("group"), 1))
+        .extracting(ConsumerRecord::value)
+        .containsExactly("3");
+  }
+
+  @Test
+  public void shouldOnlyExposeCommittedTransactions() {
+    Producer<String, String> producer = transactionalProducer("tx");
+    producer.beginTransaction();
+    producer.send(new ProducerRecord<>(TOPIC, 0, "key", "aborted"));
+    producer.abortTransaction();
+    producer.beginTransaction();
+    producer.send(new ProducerRecord<>(TOPIC, 0, "key", "committed"));
+    producer.sendOffsetsToTransaction(
+        Collections.singletonMap(new TopicPartition("input", 0), new OffsetAndMetadata(5)),
+        "group");
+
+    assertThat(kafka.getRecords(TOPIC)).isEmpty();
+    producer.commitTransaction();
+
+    assertThat(pollUntil(consumer("other"), 1))
+        .extracting(ConsumerRecord::value)
+        .containsExactly("committed");
+    assertThat(kafka.getCommittedOffset("group", new TopicPartition("input", 0)))
+        .isEqualTo(new OffsetAndMetadata(5));
+  }
+
+  @Test
+  public void shouldFenceProducerWithSameTransactionalId() {
+    Producer<String, String> zombie = transactionalProducer("tx");
+    transactionalProducer("tx");
+
+    assertThatThrownBy(
+            () -> {
+              zombie.beginTransaction();
+              zombie.send(new ProducerRecord<>(TOPIC, 0, "key", "value"));
+              zombie.commitTransaction();
+            })
+        .isInstanceOf(ProducerFencedException.class);
+    assertThat(kafka.getRecords(TOPIC)).isEmpty();
+  }
+
+  private Producer<String, String> transactionalProducer(String transactionalId) {
+    Properties properties = new Properties();
+    properties.put(ProducerConfig.TRANSACTIONAL_ID_CONFIG, transactionalId);
+    Producer<String, String> producer = producer(properties);
+    producer.initTransactions();
+    return producer;
+  }
+
+  private Producer<String, String> producer(Properties properties) {
+    return kafka.createProducer(properties, new StringSerializer(), new StringSerializer());
+  }
+
+  private KafkaConsumer<String, String> consumer(String groupId) {
+    Properties properties = new Properties();
+    properties.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+    properties.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+    properties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+    KafkaConsumer<String, String> consumer =
+        kafka.createConsumer(properties, new StringDeserializer(), new StringDeserializer());
+    consumer.subscribe(Collections.singletonList(TOPIC));
+    consumers.add(consumer);
+    return consumer;
+  }
+
+  private static List<ConsumerRecord<String, String>> pollUntil(
+      KafkaConsumer<String, String> consumer, int count) {
+    List<ConsumerRecord<String, String>> records = new ArrayList<>();
+    for (int i = 0; i < 10 && records.size() < count; i++) {
+      consumer.poll(Duration.ofMillis(10)).forEach(records::add);
+    }
+    return records;
+  }
+}
@@ -0,0 +1,90 @@
+package org.sdase.commons.server.kafka.prometheus;
+
+import io.prometheus.client.Histogram;
+import io.prometheus.client.SimpleTimer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the metrics recorded for each consumed or produced record. The {@code gc} profiler
+ * reports the allocation per record as {@code gc.alloc.rate.norm}, which is expected to be 0 B/op
+ * for all benchmarks except the {@code labels(...)} baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TopicMetricsBenchmark {
+
+  private static final String CLIENT = "consumer-1";
+
+  private static final String TOPIC = "benchmark";
+
+  private Histogram plainHistogram;
+
+  private ConsumerTopicMessageHistogram consumerHistogram;
+
+  private ProducerTopicMessageCounter producerCounter;
+
+  private ProducerTopicMessageHistogram producerHistogram;
+
+  private ConsumerCommitMetrics commitMetrics;
+
+  @Setup
+  public void setUp() {
+    plainHistogram =
+        Histogram.build()
+            .name("benchmark_duration")
+            .labelNames("consumer_name", "topic_name")
+            .help("Baseline")
+            .create();
+    consumerHistogram = new ConsumerTopicMessageHistogram();
+    producerCounter = new ProducerTopicMessageCounter();
+    producerHistogram = new ProducerTopicMessageHistogram();
+    commitMetrics = new ConsumerCommitMetrics();
+  }
+
+  @TearDown
+  public void tearDown() {
+    consumerHistogram.unregister();
+    producerCounter.unregister();
+    producerHistogram.unregister();
+    commitMetrics.unregister();
+  }
+
+  /** The lookup with a label array and a new timer for each record, as done before. */
+  @Benchmark
+  public void observeWithLabelsBaseline() {
+    SimpleTimer timer = new SimpleTimer();
+    plainHistogram.labels(CLIENT, TOPIC).observe(timer.elapsedSeconds());
+  }
+
+  @Benchmark
+  public void observeConsumedRecord() {
+    long start = System.nanoTime();
+    consumerHistogram.observe(
+        SimpleTimer.elapsedSecondsFromNanos(start, System.nanoTime()), CLIENT, TOPIC);
+  }
+
+  @Benchmark
+  public void observeConsumedBatch() {
+    consumerHistogram.observeBatch(100, 0.01, CLIENT, TOPIC);
+  }
+
+  @Benchmark
+  public void observeProducedRecord() {
+    producerCounter.increase(CLIENT, TOPIC);
+    producerHistogram.observe(0.001, CLIENT, TOPIC);
+  }
+
+  @Benchmark
+  public void observeCommit() {
+    commitMetrics.observeCommit(0.001, CLIENT, ConsumerCommitMetrics.COMMIT_TYPE_SYNC);
+  }
+}
@@ -0,0 +1,148 @@
+package org.sdase.commons.server.kafka.serializers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the JSON serializers and deserializers with the plain {@link ObjectMapper} calls they
+ * used before for typical event sizes of 1 KB and 100 KB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JsonSerdeBenchmark {
+
+  private static final String TOPIC = "benchmark";
+
+  @Param({"1024", "102400"})
+  private int eventSize;
+
+  private ObjectMapper objectMapper;
+
+  private KafkaJsonSerializer<Event> serializer;
+
+  private KafkaJsonDeserializer<Event> deserializer;
+
+  private Event event;
+
+  private byte[] json;
+
+  @Setup
+  public void setUp() throws IOException {
+    objectMapper = new ObjectMapper();
+    serializer = new KafkaJsonSerializer<>(objectMapper);
+    deserializer = new KafkaJsonDeserializer<>(objectMapper, Event.class);
+    event = createEvent(eventSize);
+    json = objectMapper.writeValueAsBytes(event);
+  }
+
+  @Benchmark
+  public byte[] serializeWithObjectMapper() throws IOException {
+    return objectMapper.writeValueAsBytes(event);
+  }
+
+  @Benchmark
+  public byte[] serializeWithObjectWriter() {
+    return serializer.serialize(TOPIC, event);
+  }
+
+  @Benchmark
+  public Event deserializeWithObjectMapper() throws IOException {
+    return objectMapper.readValue(json, Event.class);
+  }
+
+  @Benchmark
+  public Event deserializeWithObjectReader() {
+    return deserializer.deserialize(TOPIC, json);
+  }
+
+  private static Event createEvent(int size) {
+    Event event = new Event();
+    event.setId("7f8c2a5e-3b1d-4c6e-9a2f-0d4b6e8c1a3f");
+    event.setType("ORDER_CREATED");
+    List<Item> items = new ArrayList<>();
+    // each item is about 100 bytes of JSON
+    for (int i = 0; i < size / 100; i++) {
+      Item item = new Item();
+      item.setSku("SKU-" + i);
+      item.setQuantity(i % 10 + 1);
+      item.setDescription("A product description with some text in item number " + i);
+      items.add(item);
+    }
+    event.setItems(items);
+    return event;
+  }
+
+  public static class Event {
+
+    private String id;
+    private String type;
+    private List<Item> items;
+
+    public String getId() {
+      return id;
+    }
+
+    public void setId(String id) {
+      this.id = id;
+    }
+
+    public String getType() {
+      return type;
+    }
+
+    public void setType(String type) {
+      this.type = type;
+    }
+
+    public List<Item> getItems() {
+      return items;
+    }
+
+    public void setItems(List<Item> items) {
+      this.items = items;
+    }
+  }
+
+  public static class Item {
+
+    private String sku;
+    private int quantity;
+    private String description;
+
+    public String getSku() {
+      return sku;
+    }
+
+    public void setSku(String sku) {
+      this.sku = sku;
+    }
+
+    public int getQuantity() {
+      return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+      this.quantity = quantity;
+    }
+
+    public String getDescription() {
+      return description;
+    }
+
+    public void setDescription(String description) {
+      this.description = description;
+    }
+  }
+}
@@ -1,56 +1,94 @@
 package org.sdase.commons.server.kafka;
 
-import static org.sdase.commons.server.dropwizard.lifecycle.ManagedShutdownListener.onShutdown;
+import static org.apache.kafka.clients.consumer.ConsumerConfig.GROUP_ID_CONFIG;
+import static org.apache.kafka.clients.producer.ProducerConfig.CLIENT_ID_CONFIG;
+import static org.apache.kafka.clients.producer.ProducerConfig.RETRIES_CONFIG;
+import static org.apache.kafka.clients.producer.ProducerConfig.TRANSACTIONAL_ID_CONFIG;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.dropwizard.Configuration;
 import io.dropwizard.ConfiguredBundle;
+import io.dropwizard.lifecycle.Managed;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
+import io.prometheus.client.CollectorRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import javax.validation.constraints.NotNull;
-import org.apache.kafka.clients.admin.AdminClient;
 import org.apache.kafka.clients.admin.CreateTopicsResult;
 import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.RecordMetadata;
-import org.apache.kafka.common.Metric;
-import org.apache.kafka.common.MetricName;
 import org.apache.kafka.common.errors.InterruptException;
 import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.utils.Utils;
+import org.sdase.commons.server.kafka.builder.MaterializedViewRegistration;
 import org.sdase.commons.server.kafka.builder.MessageListenerRegistration;
 import org.sdase.commons.server.kafka.builder.ProducerRegistration;
 import org.sdase.commons.server.kafka.config.ConsumerConfig;
 import org.sdase.commons.server.kafka.config.ListenerConfig;
 import org.sdase.commons.server.kafka.config.ProducerConfig;
+import org.sdase.commons.server.kafka.config.SchemaRegistry;
 import org.sdase.commons.server.kafka.config.TopicConfig;
+import org.sdase.commons.server.kafka.consumer.DeduplicatingMessageHandler;
+import org.sdase.commons.server.kafka.consumer.DeduplicationCache;
+import org.sdase.commons.server.kafka.consumer.KafkaHelper;
 import org.sdase.commons.server.kafka.consumer.MessageListener;
+import org.sdase.commons.server.kafka.consumer.strategies.MessageListenerStrategy;
+import org.sdase.commons.server.kafka.consumer.strategies.multiplexing.MultiplexingMLS;
 import org.sdase.commons.server.kafka.exception.ConfigurationException;
+import org.sdase.commons.server.kafka.exception.SchemaStoreException;
 import org.sdase.commons.server.kafka.exception.TopicCreationException;
 import org.sdase.commons.server.kafka.health.KafkaHealthCheck;
 import org.sdase.commons.server.kafka.producer.KafkaMessageProducer;
 import org.sdase.commons.server.kafka.producer.MessageProducer;
+import org.sdase.commons.server.kafka.producer.TransactionalMessageProducer;
+import org.sdase.commons.server.kafka.prometheus.ConsumerCommitMetrics;
+import org.sdase.commons.server.kafka.prometheus.ConsumerRebalanceMetrics;
 import org.sdase.commons.server.kafka.prometheus.ConsumerTopicMessageHistogram;
+import org.sdase.commons.server.kafka.prometheus.DeduplicationCacheMetrics;
+import org.sdase.commons.server.kafka.prometheus.KafkaClientMetrics;
 import org.sdase.commons.server.kafka.prometheus.KafkaConsumerMetrics;
+import org.sdase.commons.server.kafka.prometheus.ListenerThreadMetrics;
 import org.sdase.commons.server.kafka.prometheus.ProducerTopicMessageCounter;
+import org.sdase.commons.server.kafka.prometheus.ProducerTopicMessageHistogram;
+import org.sdase.commons.server.kafka.serializers.avro.CachingSchemaStore;
+import org.sdase.commons.server.kafka.serializers.avro.FileSchemaStore;
+import org.sdase.commons.server.kafka.serializers.avro.SchemaRegistryClient;
+import org.sdase.commons.server.kafka.serializers.avro.SchemaStore;
+import org.sdase.commons.server.kafka.topicana.CachingTopicComparer;
 import org.sdase.commons.server.kafka.topicana.ComparisonResult;
 import org.sdase.commons.server.kafka.topicana.EvaluationException;
 import org.sdase.commons.server.kafka.topicana.ExpectedTopicConfiguration;
 import org.sdase.commons.server.kafka.topicana.MismatchedTopicConfigException;
-import org.sdase.commons.server.kafka.topicana.TopicComparer;
 import org.sdase.commons.server.kafka.topicana.TopicConfigurationBuilder;
+import org.sdase.commons.server.kafka.view.MaterializedView;
+import org.sdase.commons.server.kafka.view.MaterializedViewMLS;
+import org.sdase.commons.server.kafka.view.OffHeapStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -66,14 +104,26 @@ public class KafkaBundle<C extends Configuration> implements ConfiguredBundle<C>
   private boolean healthCheckDisabled;
 
   private ProducerTopicMessageCounter topicProducerCounterSpec;
+  private ProducerTopicMessageHistogram topicProducerHistogram;
   private ConsumerTopicMessageHistogram topicConsumerHistogram;
+  private ConsumerCommitMetrics consumerCommitMetrics;
+  private ListenerThreadMetrics listenerThreadMetrics;
+  private ConsumerRebalanceMetrics consumerRebalanceMetrics;
+  private KafkaClientMetrics kafkaClientMetrics;
+  private DeduplicationCacheMetrics deduplicationCacheMetrics;
 
   private List<MessageListener<?, ?>> messageListeners = new ArrayList<>();
   private List<ThreadedMessageListener<?, ?>> threadedMessageListeners = new ArrayList<>();
-  private List<KafkaMessageProducer<?, ?>> messageProducers = new ArrayList<>();
+  private List<ExecutorService> listenerExecutors = new ArrayList<>();
+  private List<KafkaMessageProducer<?, ?>> messageProducers = new CopyOnWriteArrayList<>();
 
   private Map<String, ExpectedTopicConfiguration> topics = new HashMap<>();
 
+  private SharedAdminClient sharedAdminClient;
+  private KafkaClientFactory clientFactory;
+  private CachingTopicComparer topicComparer;
+  private SchemaStore schemaStore;
+
   private KafkaBundle(
       KafkaConfigurationProvider<C> configurationProvider, boolean healthCheckDisabled) {
     this.configurationProvider = configurationProvider;
@@ -94,14 +144,28 @@ public class KafkaBundle<C extends Configuration> implements ConfiguredBundle<C>
   public void run(C configuration, Environment environment) {
     kafkaConfiguration = configurationProvider.apply(configuration);
     kafkaConfiguration.getTopics().forEach((k, v) -> topics.put(k, createTopicDescription(v)));
-    if (!kafkaConfiguration.isDisabled() && !healthCheckDisabled) {
+    sharedAdminClient = new SharedAdminClient(kafkaConfiguration);
+    clientFactory = KafkaClientFactories.lookup(kafkaConfiguration.getBrokers());
+    topicComparer =
+        new CachingTopicComparer(
+            sharedAdminClient,
+            topics.values().stream()
+                .map(ExpectedTopicConfiguration::getTopicName)
+                .collect(Collectors.toList()));
+    if (!kafkaConfiguration.isDisabled() && !healthCheckDisabled && clientFactory == null) {
       environment
           .healthChecks()
-          .register(HEALTHCHECK_NAME, new KafkaHealthCheck(kafkaConfiguration));
+          .register(HEALTHCHECK_NAME, new KafkaHealthCheck(kafkaConfiguration, sharedAdminClient));
     }
     topicProducerCounterSpec = new ProducerTopicMessageCounter();
+    topicProducerHistogram = new ProducerTopicMessageHistogram();
     topicConsumerHistogram = new ConsumerTopicMessageHistogram();
+    consumerCommitMetrics = new ConsumerCommitMetrics();
     new KafkaConsumerMetrics(messageListeners);
+    listenerThreadMetrics = new ListenerThreadMetrics(messageListeners, consumerCommitMetrics);
+    consumerRebalanceMetrics = new ConsumerRebalanceMetrics(messageListeners);
+    kafkaClientMetrics = new KafkaClientMetrics(kafkaConfiguration.getMetrics());
+    deduplicationCacheMetrics = new DeduplicationCacheMetrics();
     setupManagedThreadManager(environment);
   }
 
@@ -124,6 +188,44 @@ public class KafkaBundle<C extends Configuration> implements ConfiguredBundle<C>
     return topics.get(name);
   }
 
+  /**
+   * Provides the {@link SchemaStore} for the {@link
+   * org.sdase.commons.server.kafka.serializers.avro.KafkaAvroSerializer} and {@link
+   * org.sdase.commons.server.kafka.serializers.avro.KafkaAvroDeserializer}, created with the first
+   * call. If a schema registry server is configured, the store uses its REST API. Otherwise the
+   * schemas are stored in the configured directory or in a temporary directory that is only known
+   * to this application. The schemas are cached, so each schema is only requested once.
+   *
+   * @return the schema store of the bundle
+   */
+  public synchronized SchemaStore getSchemaStore() {
+    checkInit();
+    if (schemaStore == null) {
+      SchemaRegistry schemaRegistry = kafkaConfiguration.getSchemaRegistry();
+      if (schemaRegistry.getServer() != null) {
+        schemaStore = new CachingSchemaStore(new SchemaRegistryClient(schemaRegistry.getUrl()));
+      } else {
+        schemaStore = new CachingSchemaStore(new FileSchemaStore(schemaDirectory(schemaRegistry)));
+      }
+    }
+    return schemaStore;
+  }
+
+  private static Path schemaDirectory(SchemaRegistry schemaRegistry) {
+    if (schemaRegistry.getDirectory() != null) {
+      return Paths.get(schemaRegistry.getDirectory());
+    }
+    try {
+      Path directory = Files.createTempDirectory("kafka-schemas");
+      LOGGER.warn(
+          "No schema registry configured, schemas are stored in {} and can only be read by this application.",
+          directory);
+      return directory;
+    } catch (IOException e) {
+      throw new SchemaStoreException("Failed to create temporary schema directory", e);
+    }
+  }
+
   /**
    * Creates a number of message listeners with the parameters given in the {@link
    * MessageListenerRegistration}.
@@ -143,14 +245,276 @@ public class KafkaBundle<C extends Configuration> implements ConfiguredBundle<C>
     }
 
     checkInit();
+    checkTopics(registration);
+    ListenerConfig listenerConfig = resolveListenerConfig(registration);
+
+    if (registration.getStrategy() == null) {
+      throw new IllegalStateException("A strategy is mandatory for message listeners.");
+    }
+
+    List<MessageListener<K, V>> listener = new ArrayList<>(listenerConfig.getInstances());
+    for (int i = 0; i < listenerConfig.getInstances(); i++) {
+      registration.getStrategy().init(topicConsumerHistogram, consumerCommitMetrics);
+      MessageListener<K, V> instance =
+          new MessageListener<>(
+              registration.getTopicsNames(),
+              createConsumer(registration, i),
+              listenerConfig,
+              registration.getStrategy(),
+              registration.getRebalanceListener());
+
+      listener.add(instance);
+    }
+
+    startListeners(listener, getListenerName(registration));
+    return listener;
+  }
+
+  /**
+   * Creates message listeners that share one consumer for multiple registrations. Registrations
+   * with the same consumer config and listener config are grouped, each group gets the configured
+   * number of listener instances. The records of each poll are dispatched to the strategies of the
+   * registrations by topic, each registration keeps the semantic of its strategy. This saves
+   * connections, fetch sessions, heartbeats and buffers for many listeners of topics with low
+   * traffic.
+   *
+   * <p>The strategies of the registrations of a group must not require conflicting consumer
+   * properties, e.g. {@code AutocommitMLS} can't share a consumer with {@code SyncCommitMLS}. A
+   * topic must be part of one registration of a group only.
+   *
+   * @param registrations the registration configurations
+   * @return the newly registered message listeners, which receive the raw bytes of the records
+   * @throws ConfigurationException if the registrations of a group can't share a consumer
+   * @see MultiplexingMLS
+   */
+  public List<MessageListener<byte[], byte[]>> createMultiplexedMessageListener(
+      List<MessageListenerRegistration<?, ?>> registrations) {
+    if (kafkaConfiguration.isDisabled()) {
+      return Collections.emptyList();
+    }
+
+    checkInit();
+
+    // keeps the order of the registrations for the order of the routes
+    Map<String, List<MessageListenerRegistration<?, ?>>> groups = new LinkedHashMap<>();
+    for (MessageListenerRegistration<?, ?> registration : registrations) {
+      checkTopics(registration);
+      if (registration.getStrategy() == null) {
+        throw new IllegalStateException("A strategy is mandatory for message listeners.");
+      }
+      groups
+          .computeIfAbsent(getMultiplexingGroup(registration), k -> new ArrayList<>())
+          .add(registration);
+    }
+
+    List<MessageListener<byte[], byte[]>> listeners = new ArrayList<>();
+    for (List<MessageListenerRegistration<?, ?>> group : groups.values()) {
+      MessageListenerRegistration<?, ?> first = group.get(0);
+      ConsumerConfig consumerConfig = resolveConsumerConfig(first);
+      ListenerConfig listenerConfig = resolveListenerConfig(first);
+      MultiplexingMLS strategy =
+          new MultiplexingMLS(
+              group.stream()
+                  .map(registration -> createRoute(registration, consumerConfig))
+                  .collect(Collectors.toList()));
+      LOGGER.info(
+          "Sharing one consumer for {} listeners of topics {}", group.size(), strategy.getTopics());
+
+      List<MessageListener<byte[], byte[]>> listenersOfGroup = new ArrayList<>();
+      for (int i = 0; i < listenerConfig.getInstances(); i++) {
+        strategy.init(topicConsumerHistogram, consumerCommitMetrics);
+        listenersOfGroup.add(
+            new MessageListener<>(
+                strategy.getTopics(),
+                createConsumer(
+                    new ByteArrayDeserializer(),
+                    new ByteArrayDeserializer(),
+                    strategy,
+                    consumerConfig,
+                    first.getConsumerConfigName(),
+                    i),
+                listenerConfig,
+                strategy));
+      }
+      startListeners(listenersOfGroup, getListenerName(first));
+      listeners.addAll(listenersOfGroup);
+    }
+    return listeners;
+  }
+
+  /**
+   * Exports the hits and misses of a {@link DeduplicationCache} as Prometheus counters with the
+   * name of the cache as label.
+   *
+   * @param name the name of the cache in the metrics, must be unique in the application
+   * @param cache the cache used by one or more {@link DeduplicatingMessageHandler}s
+   * @return the registered cache
+   */
+  public DeduplicationCache registerDeduplicationCache(String name, DeduplicationCache cache) {
+    checkInit();
+    deduplicationCacheMetrics.add(name, cache);
+    return cache;
+  }
+
+  /**
+   * Materializes a compacted topic into a local {@link MaterializedView} with the latest value of
+   * each key. The values are kept outside of the heap and updated by a message listener that
+   * consumes all partitions of the topic with a consumer group of its own. The view is ready as
+   * soon as it caught up with the end offsets of the topic.
+   *
+   * <p>If a snapshot directory is defined, the view is written to a snapshot regularly and when the
+   * application stops, and restored from the snapshot at startup to avoid a full replay.
+   *
+   * <p>if the kafka bundle is disabled, an empty view that is always ready is returned
+   *
+   * @param registration the registration configuration
+   * @param <K> the key object type
+   * @param <V> the value object type
+   * @return the view that is updated in the background
+   */
+  public <K, V> MaterializedView<K, V> createMaterializedView(
+      MaterializedViewRegistration<K, V> registration) {
+    if (kafkaConfiguration.isDisabled()) {
+      return MaterializedView.empty(
+          registration.getTopic(),
+          registration.getKeySerializer(),
+          registration.getKeyDeserializer(),
+          registration.getValueDeserializer());
+    }
+
+    checkInit();
+
+    Path snapshotFile = null;
+    if (registration.getSnapshotDirectory() != null) {
+      try {
+        Files.createDirectories(registration.getSnapshotDirectory());
+      } catch (IOException e) {
+        throw new ConfigurationException(
+            String.format(
+                "Snapshot directory '%s' cannot be created.", registration.getSnapshotDirectory()),
+            e);
+      }
+      snapshotFile =
+          registration.getSnapshotDirectory().resolve(registration.getTopic() + ".snapshot");
+    }
+
+    OffHeapStore store = new OffHeapStore();
+    MaterializedViewMLS strategy =
+        new MaterializedViewMLS(store, snapshotFile, registration.getSnapshotIntervalMs());
+    strategy.init(topicConsumerHistogram, consumerCommitMetrics);
+
+    // each view consumes all partitions, so it must not share the group with other consumers
+    ConsumerConfig consumerConfig = new ConsumerConfig();
+    ConsumerConfig configured =
+        registration.getConsumerConfig() != null || registration.getConsumerConfigName() == null
+            ? registration.getConsumerConfig()
+            : getConsumerConfiguration(registration.getConsumerConfigName());
+    if (configured != null) {
+      consumerConfig.setConfig(new HashMap<>(configured.getConfig()));
+    }
+    String group = "view-" + registration.getTopic() + "-" + UUID.randomUUID();
+    consumerConfig.setGroup(group);
+    consumerConfig.getConfig().put(GROUP_ID_CONFIG, group);
+    consumerConfig.setClientId("view-" + registration.getTopic());
+
+    MessageListener<byte[], byte[]> listener =
+        new MessageListener<>(
+            Collections.singletonList(registration.getTopic()),
+            createConsumer(
+                new ByteArrayDeserializer(),
+                new ByteArrayDeserializer(),
+                strategy,
+                consumerConfig,
+                null,
+                0),
+            ListenerConfig.getDefault(),
+            strategy);
+    startListeners(Collections.singletonList(listener), consumerConfig.getClientId());
+
+    return new MaterializedView<>(
+        registration.getTopic(),
+        store,
+        strategy,
+        registration.getKeySerializer(),
+        registration.getKeyDeserializer(),
+        registration.getValueDeserializer());
+  }
+
+  /**
+   * Registrations share a consumer if they use the same consumer config and the same listener
+   * settings.
+   */
+  private String getMultiplexingGroup(MessageListenerRegistration<?, ?> registration) {
+    ConsumerConfig consumerConfig = resolveConsumerConfig(registration);
+    ListenerConfig listenerConfig = resolveListenerConfig(registration);
+    String consumer =
+        consumerConfig == null
+            ? "default"
+            : String.join(
+                "|",
+                consumerConfig.getGroup(),
+                String.valueOf(consumerConfig.getClientId()),
+                new TreeMap<>(consumerConfig.getConfig()).toString());
+    return String.join(
+        "|",
+        consumer,
+        String.valueOf(listenerConfig.getInstances()),
+        String.valueOf(listenerConfig.getPollInterval()),
+        String.valueOf(listenerConfig.getTopicMissingRetryMs()));
+  }
+
+  private <K, V> MultiplexingMLS.Route<K, V> createRoute(
+      MessageListenerRegistration<K, V> registration, ConsumerConfig consumerConfig) {
+    return new MultiplexingMLS.Route<>(
+        registration.getTopicsNames(),
+        resolveDeserializer(registration.getKeyDeserializer(), consumerConfig, true),
+        resolveDeserializer(registration.getValueDeserializer(), consumerConfig, false),
+        registration.getStrategy(),
+        registration.getRebalanceListener());
+  }
+
+  /**
+   * Resolves the deserializer of a registration like the consumer does, from the consumer config if
+   * the registration does not define one.
+   */
+  @SuppressWarnings("unchecked")
+  private <T> Deserializer<T> resolveDeserializer(
+      Deserializer<T> deserializer, ConsumerConfig consumerConfig, boolean isKey) {
+    if (deserializer != null) {
+      return deserializer;
+    }
+    KafkaProperties consumerProperties = KafkaProperties.forConsumer(kafkaConfiguration);
+    if (consumerConfig != null) {
+      consumerProperties.putAll(consumerConfig.getConfig());
+    }
+    String className =
+        consumerProperties.getProperty(
+            isKey
+                ? org.apache.kafka.clients.consumer.ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG
+                : org.apache.kafka.clients.consumer.ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG);
+    try {
+      Deserializer<T> configured = Utils.newInstance(className, Deserializer.class);
+      configured.configure(
+          consumerProperties.entrySet().stream()
+              .collect(Collectors.toMap(e -> e.getKey().toString(), Entry::getValue)),
+          isKey);
+      return configured;
+    } catch (ClassNotFoundException e) {
+      throw new ConfigurationException(
+          String.format("Deserializer class '%s' cannot be found.", className), e);
+    }
+  }
 
+  private void checkTopics(MessageListenerRegistration<?, ?> registration) {
     if (registration.isCheckTopicConfiguration()) {
       ComparisonResult comparisonResult = checkTopics(registration.getTopics());
       if (!comparisonResult.ok()) {
         throw new MismatchedTopicConfigException(comparisonResult);
       }
     }
+  }
 
+  private ListenerConfig resolveListenerConfig(MessageListenerRegistration<?, ?> registration) {
     ListenerConfig listenerConfig = registration.getListenerConfig();
     if (listenerConfig == null && registration.getListenerConfigName() != null) {
       listenerConfig =
@@ -167,29 +531,33 @@ public class KafkaBundle<C extends Configuration> implements ConfiguredBundle<C>
       throw new ConfigurationException(
           "No valid listener config given within the MessageHandlerRegistration");
     }
+    return listenerConfig;
+  }
 
-    if (registration.getStrategy() == null) {
-      throw new IllegalStateException("A strategy is mandatory for message listeners.");
-    }
+  private <K, V> void startListeners(List<MessageListener<K, V>> listener, String listenerName) {
+    // the threads are created in the order of the instances, so the thread names end with the
+    // same index as the client ids of the consumers
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            listener.size(),
+            new ThreadFactoryBuilder()
+                .setNameFormat("kafka-listener-" + listenerName + "-%d")
+                .build());
+    listenerExecutors.add(executor);
+    listener.forEach(
+        instance ->
+            threadedMessageListeners.add(
+                new ThreadedMessageListener<>(instance, executor.submit(instance))));
 
-    List<MessageListener<K, V>> listener = new ArrayList<>(listenerConfig.getInstances());
-    for (int i = 0; i < listenerConfig.getInstances(); i++) {
-      registration.getStrategy().init(topicConsumerHistogram);
-      MessageListener<K, V> instance =
-          new MessageListener<>(
-              registration.getTopicsNames(),
-              createConsumer(registration, i),
-              listenerConfig,
-              registration.getStrategy());
-
-      listener.add(instance);
-      Thread t = new Thread(instance);
-      t.start();
+    messageListeners.addAll(listener);
+  }
 
-      threadedMessageListeners.add(new ThreadedMessageListener<>(instance, t));
+  private String getListenerName(MessageListenerRegistration<?, ?> registration) {
+    ConsumerConfig consumerConfig = resolveConsumerConfig(registration);
+    if (consumerConfig == null || consumerConfig.getClientId() == null) {
+      return "default";
     }
-    messageListeners.addAll(listener);
-    return listener;
+    return consumerConfig.getClientId();
   }
 
   /**
@@ -226,7 +594,114 @@ public class KafkaBundle<C extends Configuration> implements ConfiguredBundle<C>
     }
 
     checkInit();
+    prepareTopic(registration);
+
+    Producer<K, V> producer =
+        createMessageProducerClient(
+            registration.getKeySerializer(),
+            registration.getValueSerializer(),
+            resolveProducerConfig(registration));
+    String clientId = KafkaHelper.getClientId(producer);
+
+    KafkaMessageProducer<K, V> messageProducer =
+        new KafkaMessageProducer<>(
+            registration.getTopicName(),
+            producer,
+            topicProducerCounterSpec,
+            topicProducerHistogram,
+            clientId,
+            registration.getMaxInFlightRecords());
+
+    messageProducers.add(messageProducer);
+    return messageProducer;
+  }
+
+  /**
+   * creates a factory of transactional producers based on the data in the {@link
+   * ProducerRegistration}, usually for a {@link
+   * org.sdase.commons.server.kafka.consumer.strategies.transactional.TransactionalMLS}
+   *
+   * <p>The factory creates one producer for each suffix. The {@code transactional.id} and the
+   * {@code client.id} of the producer config are suffixed with it. The {@code TransactionalMLS}
+   * uses {@code <group>-<topic>-<partition>} of an input partition as suffix, so that the producer
+   * of the new owner of a partition fences the producer of the previous owner. The transactions of
+   * the producers are initialized. The producers are closed by the strategy or when the application
+   * stops.
+   *
+   * @param registration the configuration object, the producer config must define the {@code
+   *     transactional.id}
+   * @param <K> key clazz type
+   * @param <V> value clazz type
+   * @return a factory that creates a transactional message producer for a suffix of the
+   *     transactional id
+   * @throws ConfigurationException if the producer config does not exist or does not define the
+   *     {@code transactional.id}
+   */
+  public <K, V> Function<String, TransactionalMessageProducer<K, V>> createTransactionalProducers(
+      ProducerRegistration<K, V> registration) throws ConfigurationException { // NOSONAR
+    if (kafkaConfiguration.isDisabled()) {
+      return suffix -> {
+        throw new IllegalStateException("Kafka is disabled, no producers can be created.");
+      };
+    }
+
+    checkInit();
+    prepareTopic(registration);
+
+    ProducerConfig producerConfig = resolveProducerConfig(registration);
+    String transactionalId =
+        producerConfig != null
+            ? producerConfig.getConfig().get(TRANSACTIONAL_ID_CONFIG)
+            : kafkaConfiguration.getConfig().get(TRANSACTIONAL_ID_CONFIG);
+    if (transactionalId == null) {
+      throw new ConfigurationException(
+          "The producer config for transactional producers must define the 'transactional.id'.");
+    }
+    Map<String, String> baseConfig =
+        producerConfig != null ? producerConfig.getConfig() : Collections.emptyMap();
+
+    return suffix -> {
+      Map<String, String> config = new HashMap<>(baseConfig);
+      config.put(TRANSACTIONAL_ID_CONFIG, transactionalId + "-" + suffix);
+      // the idempotence of transactional producers requires retries, which are disabled by default
+      config.putIfAbsent(RETRIES_CONFIG, String.valueOf(Integer.MAX_VALUE));
+      String baseClientId = config.get(CLIENT_ID_CONFIG);
+      config.put(
+          CLIENT_ID_CONFIG, (baseClientId != null ? baseClientId : transactionalId) + "-" + suffix);
+
+      Producer<K, V> producer =
+          createMessageProducerClient(
+              registration.getKeySerializer(),
+              registration.getValueSerializer(),
+              new ProducerConfig().setConfig(config));
+      try {
+        producer.initTransactions();
+      } catch (RuntimeException e) {
+        producer.close();
+        throw e;
+      }
+
+      TransactionalMessageProducer<K, V> messageProducer =
+          new TransactionalMessageProducer<K, V>(
+              registration.getTopicName(),
+              producer,
+              topicProducerCounterSpec,
+              topicProducerHistogram,
+              KafkaHelper.getClientId(producer),
+              registration.getMaxInFlightRecords()) {
+            @Override
+            public void close() {
+              // producers of revoked partitions are closed while the application is running
+              messageProducers.remove(this);
+              super.close();
+            }
+          };
+      messageProducers.add(messageProducer);
+      return messageProducer;
+    };
+  }
 
+  private void prepareTopic(ProducerRegistration<?, ?> registration) {
     if (registration.isCreateTopicIfMissing()) {
       createNotExistingTopics(Collections.singletonList(registration.getTopic()));
     }
@@ -238,17 +713,6 @@ public class KafkaBundle<C extends Configuration> implements ConfiguredBundle<C>
         throw new MismatchedTopicConfigException(comparisonResult);
       }
     }
-    KafkaProducer<K, V> producer = createProducer(registration);
-    Entry<MetricName, ? extends Metric> entry =
-        producer.metrics().entrySet().stream().findFirst().orElse(null);
-    String clientId = entry != null ? entry.getKey().tags().get("client-id") : "";
-
-    KafkaMessageProducer<K, V> messageProducer =
-        new KafkaMessageProducer<>(
-            registration.getTopicName(), producer, topicProducerCounterSpec, clientId);
-
-    messageProducers.add(messageProducer);
-    return messageProducer;
   }
 
   /**
@@ -260,6 +724,14 @@ public class KafkaBundle<C extends Configuration> implements ConfiguredBundle<C>
     if (kafkaConfiguration.isDisabled()) {
       return;
     }
+    if (clientFactory != null) {
+      topics.forEach(
+          t ->
+              clientFactory.createTopicIfMissing(
+                  t.getTopicName(),
+                  t.getPartitions().isSpecified() ? t.getPartitions().count() : null));
+      return;
+    }
     // find out what topics are missing
     ComparisonResult comparisonResult = checkTopics(topics);
     if (!comparisonResult.getMissingTopics().isEmpty()) {
@@ -276,16 +748,14 @@ public class KafkaBundle<C extends Configuration> implements ConfiguredBundle<C>
    * @param topics list of topics to test
    */
   private ComparisonResult checkTopics(Collection<ExpectedTopicConfiguration> topics) {
-    if (kafkaConfiguration.isDisabled()) {
+    if (kafkaConfiguration.isDisabled() || clientFactory != null) {
       return new ComparisonResult.ComparisonResultBuilder().build();
     }
-    TopicComparer topicComparer = new TopicComparer();
-    return topicComparer.compare(topics, kafkaConfiguration);
+    return topicComparer.compare(topics);
   }
 
   private void createTopics(Collection<ExpectedTopicConfiguration> topics) {
-    try (final AdminClient adminClient =
-        AdminClient.create(KafkaProperties.forAdminClient(kafkaConfiguration))) {
+    try {
       List<NewTopic> topicList =
           topics.stream()
               .map(
@@ -312,8 +782,9 @@ public class KafkaBundle<C extends Configuration> implements ConfiguredBundle<C>
                         .configs(t.getProps());
                   })
               .collect(Collectors.toList());
-      CreateTopicsResult result = adminClient.createTopics(topicList);
+      CreateTopicsResult result = sharedAdminClient.get().createTopics(topicList);
       result.all().get();
+      topicComparer.invalidate(result.values().keySet());
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
       throw new EvaluationException("Exception during adminClient.createTopics", e);
@@ -384,7 +855,13 @@ public class KafkaBundle<C extends Configuration> implements ConfiguredBundle<C>
           org.apache.kafka.clients.consumer.ConsumerConfig.CLIENT_ID_CONFIG,
           consumerConfig.getClientId() + "-" + instanceId);
     }
+    if (kafkaClientMetrics != null) {
+      kafkaClientMetrics.configure(consumerProperties);
+    }
 
+    if (clientFactory != null) {
+      return clientFactory.createConsumer(consumerProperties, keyDeSerializer, valueDeSerializer);
+    }
     return new KafkaConsumer<>(consumerProperties, keyDeSerializer, valueDeSerializer);
   }
 
@@ -410,6 +887,9 @@ public class KafkaBundle<C extends Configuration> implements ConfiguredBundle<C>
     if (producerConfig != null) {
       producerConfig.getConfig().forEach(producerProperties::put);
     }
+    if (kafkaClientMetrics != null) {
+      kafkaClientMetrics.configure(producerProperties);
+    }
 
     return new KafkaProducer<>(producerProperties, keySerializer, valueSerializer);
   }
@@ -440,8 +920,23 @@ public class KafkaBundle<C extends Configuration> implements ConfiguredBundle<C>
     return createProducer(keySerializer, valueSerializer, producerConfig);
   }
 
-  private <K, V> KafkaProducer<K, V> createProducer(ProducerRegistration<K, V> registration) {
+  /**
+   * Creates the producer of a {@link MessageProducer}, with the {@link KafkaClientFactory} if the
+   * configured brokers are served by one.
+   */
+  private <K, V> Producer<K, V> createMessageProducerClient(
+      Serializer<K> keySerializer, Serializer<V> valueSerializer, ProducerConfig producerConfig) {
+    if (clientFactory == null) {
+      return createProducer(keySerializer, valueSerializer, producerConfig);
+    }
+    KafkaProperties producerProperties = KafkaProperties.forProducer(kafkaConfiguration);
+    if (producerConfig != null) {
+      producerConfig.getConfig().forEach(producerProperties::put);
+    }
+    return clientFactory.createProducer(producerProperties, keySerializer, valueSerializer);
+  }
 
+  private ProducerConfig resolveProducerConfig(ProducerRegistration<?, ?> registration) {
     ProducerConfig producerConfig = registration.getProducerConfig();
     if (producerConfig == null && registration.getProducerConfigName() != null) {
       producerConfig = getProducerConfiguration(registration.getProducerConfigName());
@@ -449,9 +944,7 @@ public class KafkaBundle<C extends Configuration> implements ConfiguredBundle<C>
     if (producerConfig != null && producerConfig.getClientId() == null) {
       producerConfig.setClientId(registration.getProducerConfigName());
     }
-
-    return createProducer(
-        registration.getKeySerializer(), registration.getValueSerializer(), producerConfig);
+    return producerConfig;
   }
 
   /**
@@ -490,28 +983,44 @@ public class KafkaBundle<C extends Configuration> implements ConfiguredBundle<C>
 
   private <K, V> KafkaConsumer<K, V> createConsumer(
       MessageListenerRegistration<K, V> registration, int instanceId) {
-    ConsumerConfig consumerConfig = registration.getConsumerConfig();
-    if (consumerConfig == null && registration.getConsumerConfigName() != null) {
-      consumerConfig = getConsumerConfiguration(registration.getConsumerConfigName());
-    }
-    if (consumerConfig != null) {
-      applyForcedConfigFromStrategy(registration, consumerConfig);
-      registration.getStrategy().verifyConsumerConfig(consumerConfig.getConfig());
-    }
-    if (consumerConfig != null && consumerConfig.getClientId() == null) {
-      consumerConfig.setClientId(registration.getConsumerConfigName());
-    }
     return createConsumer(
         registration.getKeyDeserializer(),
         registration.getValueDeserializer(),
-        consumerConfig,
+        registration.getStrategy(),
+        resolveConsumerConfig(registration),
+        registration.getConsumerConfigName(),
         instanceId);
   }
 
+  private <K, V> KafkaConsumer<K, V> createConsumer(
+      Deserializer<K> keyDeserializer,
+      Deserializer<V> valueDeserializer,
+      MessageListenerStrategy<K, V> strategy,
+      ConsumerConfig consumerConfig,
+      String consumerConfigName,
+      int instanceId) {
+    if (consumerConfig != null) {
+      applyForcedConfigFromStrategy(strategy, consumerConfig);
+      strategy.verifyConsumerConfig(consumerConfig.getConfig());
+    }
+    if (consumerConfig != null && consumerConfig.getClientId() == null) {
+      consumerConfig.setClientId(consumerConfigName);
+    }
+    return createConsumer(keyDeserializer, valueDeserializer, consumerConfig, instanceId);
+  }
+
+  private ConsumerConfig resolveConsumerConfig(MessageListenerRegistration<?, ?> registration) {
+    ConsumerConfig consumerConfig = registration.getConsumerConfig();
+    if (consumerConfig == null && registration.getConsumerConfigName() != null) {
+      consumerConfig = getConsumerConfiguration(registration.getConsumerConfigName());
+    }
+    return consumerConfig;
+  }
+
   private void applyForcedConfigFromStrategy(
-      MessageListenerRegistration<?, ?> registration, ConsumerConfig consumerConfig) {
+      MessageListenerStrategy<?, ?> strategy, ConsumerConfig consumerConfig) {
     Map<String, String> newConfig = new HashMap<>(consumerConfig.getConfig());
-    Map<String, String> forcedConfig = registration.getStrategy().forcedConfigToApply();
+    Map<String, String> forcedConfig = strategy.forcedConfigToApply();
     for (Entry<String, String> configEntry : forcedConfig.entrySet()) {
       String key = configEntry.getKey();
       String newValue = configEntry.getValue();
@@ -522,14 +1031,14 @@ public class KafkaBundle<C extends Configuration> implements ConfiguredBundle<C>
             "Setting in consumer config: '{}'='{}' (forced from strategy {})",
             key,
             newValue,
-            registration.getStrategy().getClass().getSimpleName());
+            strategy.getClass().getSimpleName());
       } else if (!newValue.equals(oldValue)) {
         LOGGER.warn(
             "Overwriting in consumer config: '{}'='{}' with new value '{}' (forced from strategy {})",
             key,
             oldValue,
             newValue,
-            registration.getStrategy().getClass().getSimpleName());
+            strategy.getClass().getSimpleName());
       }
       newConfig.put(key, newValue);
     }
@@ -547,11 +1056,29 @@ public class KafkaBundle<C extends Configuration> implements ConfiguredBundle<C>
     environment
         .lifecycle()
         .manage(
-            onShutdown(
-                () -> {
-                  shutdownConsumerThreads();
-                  stopProducers();
-                }));
+            new Managed() {
+              @Override
+              public void start() {
+                logTopicValidation();
+              }
+
+              @Override
+              public void stop() {
+                shutdownConsumerThreads();
+                stopProducers();
+                sharedAdminClient.close();
+                kafkaClientMetrics.close();
+              }
+            });
+  }
+
+  private void logTopicValidation() {
+    if (topicComparer.getDescribeRequests() > 0) {
+      LOGGER.info(
+          "Spent {} ms to validate Kafka topics with {} requests to the cluster.",
+          topicComparer.getValidationMillis(),
+          topicComparer.getDescribeRequests());
+    }
   }
 
   private void stopProducers() {
@@ -565,6 +1092,7 @@ public class KafkaBundle<C extends Configuration> implements ConfiguredBundle<C>
           }
         });
     topicProducerCounterSpec.unregister();
+    topicProducerHistogram.unregister();
   }
 
   //
@@ -576,14 +1104,21 @@ public class KafkaBundle<C extends Configuration> implements ConfiguredBundle<C>
     threadedMessageListeners.forEach(
         l -> {
           try {
-            l.thread.join();
+            l.execution.get();
           } catch (InterruptedException e) {
             LOGGER.warn("Error while shutting down consumer threads", e);
             Thread.currentThread().interrupt();
+          } catch (ExecutionException e) {
+            LOGGER.warn("Consumer thread terminated with an error", e.getCause());
           }
         });
+    listenerExecutors.forEach(ExecutorService::shutdown);
 
     topicConsumerHistogram.unregister();
+    consumerCommitMetrics.unregister();
+    CollectorRegistry.defaultRegistry.unregister(listenerThreadMetrics);
+    CollectorRegistry.defaultRegistry.unregister(consumerRebalanceMetrics);
+    CollectorRegistry.defaultRegistry.unregister(deduplicationCacheMetrics);
   }
 
   public interface InitialBuilder {
@@ -642,11 +1177,11 @@ public class KafkaBundle<C extends Configuration> implements ConfiguredBundle<C>
 
   private static class ThreadedMessageListener<K, V> {
     private final MessageListener<K, V> messageListener;
-    private final Thread thread;
+    private final Future<?> execution;
 
-    private ThreadedMessageListener(MessageListener<K, V> messageListener, Thread thread) {
+    private ThreadedMessageListener(MessageListener<K, V> messageListener, Future<?> execution) {
       this.messageListener = messageListener;
-      this.thread = thread;
+      this.execution = execution;
     }
   }
 }
@@ -0,0 +1,45 @@
+package org.sdase.commons.server.kafka;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of {@link KafkaClientFactory factories} for broker addresses that are not served by real
+ * brokers. A {@link KafkaBundle} configured with a registered address uses the factory instead of
+ * connecting to brokers. Test rules register their factory before the application starts.
+ */
+public final class KafkaClientFactories {
+
+  private static final Map<String, KafkaClientFactory> FACTORIES = new ConcurrentHashMap<>();
+
+  private KafkaClientFactories() {
+    // do not instantiate
+  }
+
+  /**
+   * @param brokerAddress the address that is configured as broker, e.g. {@code in-memory://test}
+   * @param factory the factory that creates the clients for the address
+   */
+  public static void register(String brokerAddress, KafkaClientFactory factory) {
+    FACTORIES.put(brokerAddress, factory);
+  }
+
+  /** @param brokerAddress the address the factory has been registered for */
+  public static void unregister(String brokerAddress) {
+    FACTORIES.remove(brokerAddress);
+  }
+
+  /**
+   * @param brokers the configured brokers
+   * @return the factory registered for one of the brokers or {@code null} if the clients should
+   *     connect to the brokers
+   */
+  static KafkaClientFactory lookup(Collection<String> brokers) {
+    if (brokers == null) {
+      return null;
+    }
+    return brokers.stream().map(FACTORIES::get).filter(Objects::nonNull).findFirst().orElse(null);
+  }
+}
@@ -0,0 +1,51 @@
+package org.sdase.commons.server.kafka;
+
+import java.util.Properties;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Creates the clients of a {@link KafkaBundle} that does not connect to brokers, e.g. the in-memory
+ * Kafka of {@code sda-commons-server-kafka-testing}. The bundle uses a factory that is {@link
+ * KafkaClientFactories#register(String, KafkaClientFactory) registered} for one of its configured
+ * brokers for all consumers and for the producers of {@link
+ * KafkaBundle#registerProducer(org.sdase.commons.server.kafka.builder.ProducerRegistration)}. No
+ * health check is registered and topics are not validated.
+ */
+public interface KafkaClientFactory {
+
+  /**
+   * @param properties the properties of the consumer
+   * @param keyDeserializer the deserializer for keys, if {@code null} it is created from the
+   *     properties
+   * @param valueDeserializer the deserializer for values, if {@code null} it is created from the
+   *     properties
+   * @param <K> key object type
+   * @param <V> value object type
+   * @return a new consumer
+   */
+  <K, V> KafkaConsumer<K, V> createConsumer(
+      Properties properties, Deserializer<K> keyDeserializer, Deserializer<V> valueDeserializer);
+
+  /**
+   * @param properties the properties of the producer
+   * @param keySerializer the serializer for keys, if {@code null} it is created from the properties
+   * @param valueSerializer the serializer for values, if {@code null} it is created from the
+   *     properties
+   * @param <K> key object type
+   * @param <V> value object type
+   * @return a new producer
+   */
+  <K, V> Producer<K, V> createProducer(
+      Properties properties, Serializer<K> keySerializer, Serializer<V> valueSerializer);
+
+  /**
+   * Creates a topic if it does not exist yet.
+   *
+   * @param topic the name of the topic
+   * @param partitions the number of partitions, {@code null} if not specified
+   */
+  void createTopicIfMissing(String topic, Integer partitions);
+}
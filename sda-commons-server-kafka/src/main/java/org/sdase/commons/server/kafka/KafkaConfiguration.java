@@ -8,7 +8,9 @@ import org.sdase.commons.server.kafka.config.AdminConfig;
 import org.sdase.commons.server.kafka.config.ConsumerConfig;
 import org.sdase.commons.server.kafka.config.HealthCheckConfig;
 import org.sdase.commons.server.kafka.config.ListenerConfig;
+import org.sdase.commons.server.kafka.config.MetricsConfig;
 import org.sdase.commons.server.kafka.config.ProducerConfig;
+import org.sdase.commons.server.kafka.config.SchemaRegistry;
 import org.sdase.commons.server.kafka.config.Security;
 import org.sdase.commons.server.kafka.config.TopicConfig;
 
@@ -35,6 +37,10 @@ public class KafkaConfiguration {
 
   private HealthCheckConfig healthCheck = new HealthCheckConfig();
 
+  private MetricsConfig metrics = new MetricsConfig();
+
+  private SchemaRegistry schemaRegistry = new SchemaRegistry();
+
   public List<String> getBrokers() {
     return brokers;
   }
@@ -115,4 +121,22 @@ public class KafkaConfiguration {
     this.healthCheck = healthCheck;
     return this;
   }
+
+  public MetricsConfig getMetrics() {
+    return metrics;
+  }
+
+  public KafkaConfiguration setMetrics(MetricsConfig metrics) {
+    this.metrics = metrics;
+    return this;
+  }
+
+  public SchemaRegistry getSchemaRegistry() {
+    return schemaRegistry;
+  }
+
+  public KafkaConfiguration setSchemaRegistry(SchemaRegistry schemaRegistry) {
+    this.schemaRegistry = schemaRegistry;
+    return this;
+  }
 }
@@ -0,0 +1,54 @@
+package org.sdase.commons.server.kafka;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provides a single {@link AdminClient} for all administrative operations of a {@link KafkaBundle},
+ * like the health check, the topic comparison and the topic creation. The client is created when it
+ * is used the first time and keeps its connections to the brokers until it is closed on shutdown.
+ */
+class SharedAdminClient implements Supplier<AdminClient> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SharedAdminClient.class);
+
+  private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(5);
+
+  private final KafkaConfiguration configuration;
+
+  private AdminClient adminClient;
+
+  private boolean closed;
+
+  SharedAdminClient(KafkaConfiguration configuration) {
+    this.configuration = configuration;
+  }
+
+  /**
+   * @return the shared client, created on first access
+   * @throws IllegalStateException if the client is already closed
+   */
+  @Override
+  public synchronized AdminClient get() {
+    if (closed) {
+      throw new IllegalStateException("The admin client is closed.");
+    }
+    if (adminClient == null) {
+      LOGGER.debug("Creating shared admin client");
+      adminClient = AdminClient.create(KafkaProperties.forAdminClient(configuration));
+    }
+    return adminClient;
+  }
+
+  /** Closes the client if it has been created. Further calls of {@link #get()} fail. */
+  synchronized void close() {
+    closed = true;
+    if (adminClient != null) {
+      adminClient.close(CLOSE_TIMEOUT);
+      adminClient = null;
+    }
+  }
+}
@@ -0,0 +1,218 @@
+package org.sdase.commons.server.kafka.builder;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import javax.validation.constraints.NotNull;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.sdase.commons.server.kafka.config.ConsumerConfig;
+
+public class MaterializedViewRegistration<K, V> {
+
+  /** The default minimum time between two snapshots. */
+  public static final long DEFAULT_SNAPSHOT_INTERVAL_MS = TimeUnit.MINUTES.toMillis(5);
+
+  private String topic;
+  private ConsumerConfig consumerConfig;
+  private String consumerConfigName;
+  private Serializer<K> keySerializer;
+  private Deserializer<K> keyDeserializer;
+  private Deserializer<V> valueDeserializer;
+  private Path snapshotDirectory;
+  private long snapshotIntervalMs;
+
+  public String getTopic() {
+    return topic;
+  }
+
+  public ConsumerConfig getConsumerConfig() {
+    return consumerConfig;
+  }
+
+  public String getConsumerConfigName() {
+    return consumerConfigName;
+  }
+
+  public Serializer<K> getKeySerializer() {
+    return keySerializer;
+  }
+
+  public Deserializer<K> getKeyDeserializer() {
+    return keyDeserializer;
+  }
+
+  public Deserializer<V> getValueDeserializer() {
+    return valueDeserializer;
+  }
+
+  /** @return the directory for snapshots of the view, {@code null} if snapshots are disabled */
+  public Path getSnapshotDirectory() {
+    return snapshotDirectory;
+  }
+
+  public long getSnapshotIntervalMs() {
+    return snapshotIntervalMs;
+  }
+
+  public interface TopicBuilder {
+
+    /**
+     * @param topic the compacted topic to materialize
+     * @return builder
+     */
+    ConsumerBuilder forTopic(@NotNull String topic);
+  }
+
+  public interface ConsumerBuilder {
+
+    /**
+     * use the default consumer configuration
+     *
+     * @return builder
+     */
+    KeyBuilder withDefaultConsumer();
+
+    /**
+     * @param name name of the consumer config that is defined in the configuration yaml. The group
+     *     is replaced by a group of its own for each view, as each view consumes all partitions.
+     * @return builder
+     */
+    KeyBuilder withConsumerConfig(String name);
+
+    /**
+     * @param consumerConfig configuration for the consumer. The group is replaced by a group of its
+     *     own for each view, as each view consumes all partitions.
+     * @return builder
+     */
+    KeyBuilder withConsumerConfig(ConsumerConfig consumerConfig);
+  }
+
+  public interface KeyBuilder {
+
+    /**
+     * @param keySerializer serializes keys for lookups, must create the same bytes as the
+     *     serializer of the producers of the topic
+     * @param keyDeserializer deserializes the keys of the topic
+     * @param <K> the Java type of the keys
+     * @return builder
+     */
+    <K> ValueBuilder<K> withKeySerde(Serializer<K> keySerializer, Deserializer<K> keyDeserializer);
+  }
+
+  public interface ValueBuilder<K> {
+
+    /**
+     * @param valueDeserializer deserializes the values of the topic
+     * @param <V> the Java type of the values
+     * @return builder
+     */
+    <V> FinalBuilder<K, V> withValueDeserializer(Deserializer<V> valueDeserializer);
+  }
+
+  /**
+   * creates a new builder
+   *
+   * @return builder
+   */
+  public static TopicBuilder builder() {
+    return new InitialBuilder();
+  }
+
+  private static class InitialBuilder
+      implements TopicBuilder, ConsumerBuilder, KeyBuilder, ValueBuilder<Object> {
+
+    private String topic;
+    private ConsumerConfig consumerConfig;
+    private String consumerConfigName;
+    private Serializer<?> keySerializer;
+    private Deserializer<?> keyDeserializer;
+
+    @Override
+    public ConsumerBuilder forTopic(String topic) {
+      this.topic = topic;
+      return this;
+    }
+
+    @Override
+    public KeyBuilder withDefaultConsumer() {
+      this.consumerConfig = null;
+      this.consumerConfigName = null;
+      return this;
+    }
+
+    @Override
+    public KeyBuilder withConsumerConfig(String name) {
+      this.consumerConfigName = name;
+      return this;
+    }
+
+    @Override
+    public KeyBuilder withConsumerConfig(ConsumerConfig consumerConfig) {
+      this.consumerConfig = consumerConfig;
+      return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <K> ValueBuilder<K> withKeySerde(
+        Serializer<K> keySerializer, Deserializer<K> keyDeserializer) {
+      this.keySerializer = keySerializer;
+      this.keyDeserializer = keyDeserializer;
+      return (ValueBuilder<K>) this;
+    }
+
+    @Override
+    public <V> FinalBuilder<Object, V> withValueDeserializer(Deserializer<V> valueDeserializer) {
+      return new FinalBuilder<>(this, valueDeserializer);
+    }
+  }
+
+  public static class FinalBuilder<K, V> {
+
+    private final InitialBuilder initialBuilder;
+    private final Deserializer<V> valueDeserializer;
+    private Path snapshotDirectory;
+    private long snapshotIntervalMs = DEFAULT_SNAPSHOT_INTERVAL_MS;
+
+    private FinalBuilder(InitialBuilder initialBuilder, Deserializer<V> valueDeserializer) {
+      this.initialBuilder = initialBuilder;
+      this.valueDeserializer = valueDeserializer;
+    }
+
+    /**
+     * defines that the view is written to a snapshot in the given directory regularly and when the
+     * application stops. The view is restored from the snapshot at startup, so only the records
+     * produced afterwards are consumed.
+     *
+     * @param snapshotDirectory the directory for the snapshot file, created if it does not exist
+     * @return builder
+     */
+    public FinalBuilder<K, V> withSnapshotDirectory(Path snapshotDirectory) {
+      this.snapshotDirectory = snapshotDirectory;
+      return this;
+    }
+
+    /**
+     * @param snapshotIntervalMs the minimum time between two snapshots, default is 5 minutes
+     * @return builder
+     */
+    public FinalBuilder<K, V> withSnapshotIntervalMs(long snapshotIntervalMs) {
+      this.snapshotIntervalMs = snapshotIntervalMs;
+      return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    public MaterializedViewRegistration<K, V> build() {
+      MaterializedViewRegistration<K, V> build = new MaterializedViewRegistration<>();
+      build.topic = initialBuilder.topic;
+      build.consumerConfig = initialBuilder.consumerConfig;
+      build.consumerConfigName = initialBuilder.consumerConfigName;
+      build.keySerializer = (Serializer<K>) initialBuilder.keySerializer;
+      build.keyDeserializer = (Deserializer<K>) initialBuilder.keyDeserializer;
+      build.valueDeserializer = valueDeserializer;
+      build.snapshotDirectory = snapshotDirectory;
+      build.snapshotIntervalMs = snapshotIntervalMs;
+      return build;
+    }
+  }
+}
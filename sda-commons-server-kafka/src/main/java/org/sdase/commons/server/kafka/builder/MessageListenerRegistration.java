@@ -3,6 +3,7 @@ package org.sdase.commons.server.kafka.builder;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.stream.Collectors;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.sdase.commons.server.kafka.config.ConsumerConfig;
 import org.sdase.commons.server.kafka.config.ListenerConfig;
@@ -17,6 +18,7 @@ public class MessageListenerRegistration<K, V> {
   private Collection<ExpectedTopicConfiguration> topics;
   private boolean checkTopicConfiguration;
   private MessageListenerStrategy<K, V> strategy;
+  private ConsumerRebalanceListener rebalanceListener;
 
   private ConsumerConfig consumerConfig;
   private String consumerConfigName;
@@ -53,6 +55,10 @@ public class MessageListenerRegistration<K, V> {
     return strategy;
   }
 
+  public ConsumerRebalanceListener getRebalanceListener() {
+    return rebalanceListener;
+  }
+
   public ConsumerConfig getConsumerConfig() {
     return consumerConfig;
   }
@@ -360,6 +366,7 @@ public class MessageListenerRegistration<K, V> {
     private Deserializer<K> keyDeserializer;
     private Deserializer<V> valueDeserializer;
     private MessageListenerStrategy<K, V> messageListenerStrategy;
+    private ConsumerRebalanceListener rebalanceListener;
 
     private FinalBuilder(
         InitialBuilder initialBuilder,
@@ -372,6 +379,17 @@ public class MessageListenerRegistration<K, V> {
       this.messageListenerStrategy = messageListenerStrategy;
     }
 
+    /**
+     * @param rebalanceListener notified when partitions are revoked from or assigned to a consumer
+     *     of the listener. The callbacks are invoked in the poll loop after the strategy committed
+     *     the processed offsets of revoked partitions.
+     * @return builder
+     */
+    public FinalBuilder<K, V> withRebalanceListener(ConsumerRebalanceListener rebalanceListener) {
+      this.rebalanceListener = rebalanceListener;
+      return this;
+    }
+
     public MessageListenerRegistration<K, V> build() {
       MessageListenerRegistration<K, V> build = new MessageListenerRegistration<>();
 
@@ -384,6 +402,7 @@ public class MessageListenerRegistration<K, V> {
       build.listenerConfig = initialBuilder.listenerConfig;
       build.listenerConfigName = initialBuilder.listenerName;
       build.strategy = messageListenerStrategy;
+      build.rebalanceListener = rebalanceListener;
 
       return build;
     }
@@ -17,6 +17,7 @@ public class ProducerRegistration<K, V> {
   private ProducerConfig producerConfig;
   private String producerName;
   private boolean createTopicIfMissing;
+  private int maxInFlightRecords;
 
   public String getProducerConfigName() {
     return producerName;
@@ -50,6 +51,11 @@ public class ProducerRegistration<K, V> {
     return producerConfig;
   }
 
+  /** @return the maximum number of records not acknowledged yet, 0 if not limited */
+  public int getMaxInFlightRecords() {
+    return maxInFlightRecords;
+  }
+
   public interface TopicBuilder<K, V> {
 
     /**
@@ -86,6 +92,16 @@ public class ProducerRegistration<K, V> {
      */
     ProducerBuilder<K, V> createTopicIfMissing();
 
+    /**
+     * defines the maximum number of records that are sent but not acknowledged by the broker yet.
+     * Sending further records blocks until previous records are acknowledged. By default the number
+     * is only limited by the {@code buffer.memory} of the producer.
+     *
+     * @param maxInFlightRecords the maximum number of records not acknowledged yet
+     * @return builder
+     */
+    ProducerBuilder<K, V> withMaxInFlightRecords(int maxInFlightRecords);
+
     /**
      * defines that the default producer should be used
      *
@@ -188,6 +204,7 @@ public class ProducerRegistration<K, V> {
     private ExpectedTopicConfiguration topic;
     private boolean checkTopicConfiguration = false;
     private boolean createTopicIfMissing = false;
+    private int maxInFlightRecords = 0;
     private ProducerConfig producerConfig;
     private String producerName = null;
 
@@ -197,6 +214,7 @@ public class ProducerRegistration<K, V> {
       InitialBuilder<K2, V2> target = new InitialBuilder<>();
       target.checkTopicConfiguration = source.checkTopicConfiguration;
       target.createTopicIfMissing = source.createTopicIfMissing;
+      target.maxInFlightRecords = source.maxInFlightRecords;
       target.topic = source.topic;
       target.producerConfig = source.producerConfig;
       target.producerName = source.producerName;
@@ -231,6 +249,12 @@ public class ProducerRegistration<K, V> {
       return this;
     }
 
+    @Override
+    public ProducerBuilder<K, V> withMaxInFlightRecords(int maxInFlightRecords) {
+      this.maxInFlightRecords = maxInFlightRecords;
+      return this;
+    }
+
     @Override
     public KeySerializerBuilder<K, V> withDefaultProducer() {
       this.producerConfig = null;
@@ -266,6 +290,7 @@ public class ProducerRegistration<K, V> {
     build.topic = initialBuilder.topic;
     build.checkTopicConfiguration = initialBuilder.checkTopicConfiguration;
     build.createTopicIfMissing = initialBuilder.createTopicIfMissing;
+    build.maxInFlightRecords = initialBuilder.maxInFlightRecords;
     build.producerConfig = initialBuilder.producerConfig;
     build.producerName = initialBuilder.producerName;
 
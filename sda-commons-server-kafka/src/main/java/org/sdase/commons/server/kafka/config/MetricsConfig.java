@@ -0,0 +1,57 @@
+package org.sdase.commons.server.kafka.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Configuration of the Kafka client metrics that are exported to Prometheus. The names refer to the
+ * <a href="https://kafka.apache.org/documentation/#monitoring">metrics of the Kafka clients</a>. An
+ * empty list disables the export for the client type.
+ */
+public class MetricsConfig {
+
+  private List<String> consumerMetrics =
+      new ArrayList<>(
+          Arrays.asList(
+              "fetch-latency-avg",
+              "fetch-latency-max",
+              "bytes-consumed-rate",
+              "records-consumed-rate",
+              "records-lag",
+              "records-lag-max",
+              "commit-latency-avg",
+              "commit-latency-max",
+              "join-total",
+              "assigned-partitions"));
+
+  private List<String> producerMetrics =
+      new ArrayList<>(
+          Arrays.asList(
+              "batch-size-avg",
+              "batch-size-max",
+              "record-queue-time-avg",
+              "record-queue-time-max",
+              "request-latency-avg",
+              "request-latency-max",
+              "buffer-exhausted-total",
+              "record-error-total"));
+
+  public List<String> getConsumerMetrics() {
+    return consumerMetrics;
+  }
+
+  public MetricsConfig setConsumerMetrics(List<String> consumerMetrics) {
+    this.consumerMetrics = consumerMetrics;
+    return this;
+  }
+
+  public List<String> getProducerMetrics() {
+    return producerMetrics;
+  }
+
+  public MetricsConfig setProducerMetrics(List<String> producerMetrics) {
+    this.producerMetrics = producerMetrics;
+    return this;
+  }
+}
@@ -6,6 +6,12 @@ public class SchemaRegistry {
 
   private Integer port;
 
+  /**
+   * Directory of a file based schema store that is used if no {@link #server} is configured, e.g.
+   * in tests or offline runs.
+   */
+  private String directory;
+
   @Override
   public String toString() {
     return server.concat(":").concat(port.toString());
@@ -27,6 +33,14 @@ public class SchemaRegistry {
     this.port = port;
   }
 
+  public String getDirectory() {
+    return directory;
+  }
+
+  public void setDirectory(String directory) {
+    this.directory = directory;
+  }
+
   public String getUrl() {
     StringBuilder buf = new StringBuilder("http://").append(server);
     if (port != null) {
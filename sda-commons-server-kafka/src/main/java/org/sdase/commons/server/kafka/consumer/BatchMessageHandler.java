@@ -0,0 +1,24 @@
+package org.sdase.commons.server.kafka.consumer;
+
+import java.util.List;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+/**
+ * Handler for processing multiple consumer records at once. Other than the {@link MessageHandler},
+ * the handler receives all records of a poll or of a partition within a poll, e.g. to write them to
+ * a database in one bulk operation. Be aware that the key or value can be null if the
+ * WrappedNoSerializationErrorDeserializer is used.
+ *
+ * @param <K> key class
+ * @param <V> value class
+ */
+@FunctionalInterface
+public interface BatchMessageHandler<K, V> {
+
+  /**
+   * Processes the given records. The records of each partition are ordered by their offset.
+   *
+   * @param records the records of the batch, never empty
+   */
+  void handle(List<ConsumerRecord<K, V>> records);
+}
@@ -0,0 +1,136 @@
+package org.sdase.commons.server.kafka.consumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.function.Function;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link MessageHandler} that skips records whose message identity has been handled before.
+ * Rebalances and retries of at-least-once strategies consume records again that have already been
+ * handled. Instead of an idempotency check in the downstream system for each record, the handler
+ * looks up a fingerprint of the message identity in a {@link DeduplicationCache}.
+ *
+ * <p>The identity is extracted from the record, e.g. by {@link #byHeader(String)} or {@link
+ * #byKey()}, and hashed together with the topic to a 64 bit fingerprint. Records without identity
+ * are always handled. The fingerprint is only added to the cache when the delegate returns without
+ * exception, so records that failed are handled again when they are retried. Skipped records are
+ * considered as processed and their offsets are committed like any other record.
+ *
+ * <p>The cache is an optimization, not a guarantee: it only knows the records handled in this JVM
+ * within its expiry and capacity, and records with the same identity that are handled concurrently
+ * are both passed to the delegate. The handler can be used with any strategy that accepts a {@link
+ * MessageHandler}. Sharing the handler between all listener instances of a registration also skips
+ * records that are consumed again by another instance after a rebalance.
+ *
+ * @param <K> key class
+ * @param <V> value class
+ */
+public class DeduplicatingMessageHandler<K, V> implements MessageHandler<K, V> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DeduplicatingMessageHandler.class);
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private final Function<ConsumerRecord<K, V>, Object> identityExtractor;
+  private final DeduplicationCache cache;
+  private final MessageHandler<K, V> delegate;
+
+  /**
+   * @param identityExtractor extracts the identity of the message from a record, e.g. {@link
+   *     #byHeader(String)}; {@code byte[]} identities are hashed as they are, other identities by
+   *     the UTF-8 encoding of their {@code toString()}
+   * @param cache the cache of the fingerprints of handled messages, provides the hit rate
+   * @param delegate the handler that receives the records that have not been handled before
+   */
+  public DeduplicatingMessageHandler(
+      Function<ConsumerRecord<K, V>, Object> identityExtractor,
+      DeduplicationCache cache,
+      MessageHandler<K, V> delegate) {
+    this.identityExtractor = identityExtractor;
+    this.cache = cache;
+    this.delegate = delegate;
+  }
+
+  /**
+   * @param headerName the name of the header that contains the message identity, e.g. a message id
+   *     set by the producer
+   * @param <K> key class
+   * @param <V> value class
+   * @return an extractor of the value of the last header with the given name
+   */
+  public static <K, V> Function<ConsumerRecord<K, V>, Object> byHeader(String headerName) {
+    return record -> {
+      Header header = record.headers().lastHeader(headerName);
+      return header == null ? null : header.value();
+    };
+  }
+
+  /**
+   * @param <K> key class
+   * @param <V> value class
+   * @return an extractor of the key, suitable if each key is only sent once
+   */
+  public static <K, V> Function<ConsumerRecord<K, V>, Object> byKey() {
+    return ConsumerRecord::key;
+  }
+
+  @Override
+  public void handle(ConsumerRecord<K, V> record) {
+    Object identity = identityExtractor.apply(record);
+    if (identity == null) {
+      delegate.handle(record);
+      return;
+    }
+    long fingerprint = fingerprint(record.topic(), identity);
+    if (cache.contains(fingerprint)) {
+      LOGGER.debug(
+          "Skipping record at offset {} of {}-{} that has been handled before",
+          record.offset(),
+          record.topic(),
+          record.partition());
+      return;
+    }
+    delegate.handle(record);
+    cache.add(fingerprint);
+  }
+
+  /** @return the cache of the fingerprints of handled messages */
+  public DeduplicationCache getCache() {
+    return cache;
+  }
+
+  /**
+   * Hashes the topic and the identity with FNV-1a and mixes the result with the finalizer of
+   * MurmurHash3, so that the fingerprints are evenly distributed in the table of the cache.
+   */
+  static long fingerprint(String topic, Object identity) {
+    long hash = hash(FNV_OFFSET_BASIS, topic.getBytes(UTF_8));
+    // separates the topic from the identity
+    hash = (hash ^ 0xff) * FNV_PRIME;
+    byte[] bytes =
+        identity instanceof byte[] ? (byte[]) identity : identity.toString().getBytes(UTF_8);
+    return mix(hash(hash, bytes));
+  }
+
+  private static long hash(long hash, byte[] bytes) {
+    for (byte b : bytes) {
+      hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+    }
+    return hash;
+  }
+
+  private static long mix(long hash) {
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb33c6a1b8e5bL;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
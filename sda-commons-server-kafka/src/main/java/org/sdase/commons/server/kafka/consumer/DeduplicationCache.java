@@ -0,0 +1,191 @@
+package org.sdase.commons.server.kafka.consumer;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * A bounded set of 64 bit fingerprints of processed messages whose entries expire a fixed time
+ * after they have been added. The fingerprints are stored in an open addressing table of primitive
+ * {@code long}s, so each entry needs 32 to 48 bytes and no objects are allocated per entry.
+ *
+ * <p>All entries expire after the same time, therefore they expire in the order they have been
+ * added. A ring buffer keeps this order and the expiry time of each entry. If the cache is full,
+ * the oldest entry is removed before a new one is added.
+ *
+ * <p>The cache counts lookups that found a fingerprint as hits and the others as misses. It is safe
+ * to use the cache from multiple threads, e.g. from the workers of a {@link
+ * org.sdase.commons.server.kafka.consumer.strategies.parallelpartition.ParallelPartitionMLS}.
+ */
+public class DeduplicationCache {
+
+  /** The maximum number of entries, limited by the size of the table. */
+  public static final int MAX_ENTRIES = 1 << 28;
+
+  /** Marks an empty slot of the table, fingerprints with this value are stored as {@code 1}. */
+  private static final long EMPTY = 0L;
+
+  private final long expiryNanos;
+
+  private final LongSupplier nanoTime;
+
+  /** Fingerprints, at most half of the slots are used so that probe sequences stay short. */
+  private final long[] table;
+
+  private final int mask;
+
+  /** Fingerprints in the order they have been added. */
+  private final long[] ring;
+
+  /** The time each entry of the ring expires, compared with {@link System#nanoTime()}. */
+  private final long[] ringExpiresAt;
+
+  private int head;
+
+  private int size;
+
+  private long hitCount;
+
+  private long missCount;
+
+  /**
+   * @param maxEntries the maximum number of fingerprints, the oldest one is removed if the cache is
+   *     full
+   * @param expiry the time after which a fingerprint is removed, should exceed the time a message
+   *     may be consumed again, e.g. after a rebalance or a retry
+   */
+  public DeduplicationCache(int maxEntries, Duration expiry) {
+    this(maxEntries, expiry, System::nanoTime);
+  }
+
+  DeduplicationCache(int maxEntries, Duration expiry, LongSupplier nanoTime) {
+    if (maxEntries < 1 || maxEntries > MAX_ENTRIES) {
+      throw new IllegalArgumentException(
+          "maxEntries must be between 1 and " + MAX_ENTRIES + " but is " + maxEntries);
+    }
+    if (expiry.isNegative() || expiry.isZero()) {
+      throw new IllegalArgumentException("expiry must be positive but is " + expiry);
+    }
+    this.expiryNanos = expiry.toNanos();
+    this.nanoTime = nanoTime;
+    int tableSize = Integer.highestOneBit(maxEntries) << 2;
+    this.table = new long[tableSize];
+    this.mask = tableSize - 1;
+    this.ring = new long[maxEntries];
+    this.ringExpiresAt = new long[maxEntries];
+  }
+
+  /**
+   * Looks up a fingerprint and counts the lookup as hit or miss.
+   *
+   * @param fingerprint the fingerprint of a message
+   * @return {@code true} if the fingerprint has been added and is not expired yet
+   */
+  public synchronized boolean contains(long fingerprint) {
+    expire();
+    boolean found = table[indexOf(normalize(fingerprint))] != EMPTY;
+    if (found) {
+      hitCount++;
+    } else {
+      missCount++;
+    }
+    return found;
+  }
+
+  /**
+   * Adds a fingerprint if it is not contained yet. The expiry of a contained fingerprint is not
+   * extended.
+   *
+   * @param fingerprint the fingerprint of a processed message
+   */
+  public synchronized void add(long fingerprint) {
+    expire();
+    long normalized = normalize(fingerprint);
+    int index = indexOf(normalized);
+    if (table[index] != EMPTY) {
+      return;
+    }
+    if (size == ring.length) {
+      removeOldest();
+      index = indexOf(normalized);
+    }
+    table[index] = normalized;
+    int tail = (head + size) % ring.length;
+    ring[tail] = normalized;
+    ringExpiresAt[tail] = nanoTime.getAsLong() + expiryNanos;
+    size++;
+  }
+
+  /** @return the number of fingerprints that are not expired yet */
+  public synchronized int size() {
+    expire();
+    return size;
+  }
+
+  /** @return the number of lookups that found the fingerprint */
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  /** @return the number of lookups that did not find the fingerprint */
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  /** @return the ratio of lookups that found the fingerprint, {@code 0} without lookups */
+  public synchronized double getHitRate() {
+    long lookups = hitCount + missCount;
+    return lookups == 0 ? 0.0 : (double) hitCount / lookups;
+  }
+
+  private void expire() {
+    long now = nanoTime.getAsLong();
+    while (size > 0 && ringExpiresAt[head] - now <= 0) {
+      removeOldest();
+    }
+  }
+
+  private void removeOldest() {
+    remove(ring[head]);
+    head = (head + 1) % ring.length;
+    size--;
+  }
+
+  /** Removes a contained fingerprint and moves the following entries of its probe sequence. */
+  private void remove(long fingerprint) {
+    int gap = indexOf(fingerprint);
+    int index = gap;
+    while (true) {
+      index = (index + 1) & mask;
+      long moved = table[index];
+      if (moved == EMPTY) {
+        break;
+      }
+      int home = home(moved);
+      // move the entry into the gap unless its home slot lies cyclically in (gap, index]
+      boolean homeBetween =
+          gap <= index ? gap < home && home <= index : gap < home || home <= index;
+      if (!homeBetween) {
+        table[gap] = moved;
+        gap = index;
+      }
+    }
+    table[gap] = EMPTY;
+  }
+
+  /** @return the slot of the fingerprint or the empty slot where it would be inserted */
+  private int indexOf(long fingerprint) {
+    int index = home(fingerprint);
+    while (table[index] != EMPTY && table[index] != fingerprint) {
+      index = (index + 1) & mask;
+    }
+    return index;
+  }
+
+  private int home(long fingerprint) {
+    return (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+  }
+
+  private static long normalize(long fingerprint) {
+    return fingerprint == EMPTY ? 1L : fingerprint;
+  }
+}
@@ -0,0 +1,79 @@
+package org.sdase.commons.server.kafka.consumer;
+
+import java.util.function.Predicate;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.Deserializer;
+
+/**
+ * A {@link MessageHandler} for records that are consumed with a {@link ByteArrayDeserializer} as
+ * value deserializer. The value is deserialized when the record is handled and not within {@code
+ * KafkaConsumer.poll()}. Strategies that handle records in worker threads, e.g. the {@link
+ * org.sdase.commons.server.kafka.consumer.strategies.parallelpartition.ParallelPartitionMLS}, thus
+ * move the deserialization off the poll thread.
+ *
+ * <p>Records that do not match the filter are skipped before the value is deserialized. The filter
+ * should only inspect the key and the headers of the record, see {@link RecordFilters}. Skipped
+ * records are considered as processed and their offsets are committed like any other record.
+ *
+ * <p>If the value can't be deserialized, the exception of the deserializer is thrown to the
+ * strategy which passes it to the {@link ErrorHandler} together with the raw record. Other than
+ * failing in {@code poll()}, this does not block the partition, see <a
+ * href="https://issues.apache.org/jira/browse/KAFKA-4740">KAFKA-4740</a>.
+ *
+ * @param <K> key class
+ * @param <V> class of the deserialized value
+ */
+public class DeserializingMessageHandler<K, V> implements MessageHandler<K, byte[]> {
+
+  private final Deserializer<V> valueDeserializer;
+  private final Predicate<ConsumerRecord<K, byte[]>> filter;
+  private final MessageHandler<K, V> delegate;
+
+  /**
+   * @param valueDeserializer the deserializer for the value, e.g. a {@link
+   *     org.sdase.commons.server.kafka.serializers.KafkaJsonDeserializer}
+   * @param delegate the handler that receives the records with deserialized value
+   */
+  public DeserializingMessageHandler(
+      Deserializer<V> valueDeserializer, MessageHandler<K, V> delegate) {
+    this(valueDeserializer, record -> true, delegate);
+  }
+
+  /**
+   * @param valueDeserializer the deserializer for the value, e.g. a {@link
+   *     org.sdase.commons.server.kafka.serializers.KafkaJsonDeserializer}
+   * @param filter records that do not match the filter are skipped without deserializing the value
+   * @param delegate the handler that receives the records with deserialized value
+   */
+  public DeserializingMessageHandler(
+      Deserializer<V> valueDeserializer,
+      Predicate<ConsumerRecord<K, byte[]>> filter,
+      MessageHandler<K, V> delegate) {
+    this.valueDeserializer = valueDeserializer;
+    this.filter = filter;
+    this.delegate = delegate;
+  }
+
+  @Override
+  public void handle(ConsumerRecord<K, byte[]> record) {
+    if (!filter.test(record)) {
+      return;
+    }
+    V value = valueDeserializer.deserialize(record.topic(), record.headers(), record.value());
+    delegate.handle(
+        new ConsumerRecord<>(
+            record.topic(),
+            record.partition(),
+            record.offset(),
+            record.timestamp(),
+            record.timestampType(),
+            null,
+            record.serializedKeySize(),
+            record.serializedValueSize(),
+            record.key(),
+            value,
+            record.headers(),
+            record.leaderEpoch()));
+  }
+}
@@ -1,14 +1,19 @@
 package org.sdase.commons.server.kafka.consumer;
 
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.errors.WakeupException;
 import org.sdase.commons.server.kafka.config.ListenerConfig;
 import org.sdase.commons.server.kafka.consumer.strategies.MessageListenerStrategy;
+import org.sdase.commons.server.kafka.prometheus.ConsumerCommitMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,6 +30,16 @@ import org.slf4j.LoggerFactory;
  * StopListenerException} what will result in stopping the poll loop and gracefully shutdown the
  * listener.
  *
+ * <p>If the strategy reports that it is {@link MessageListenerStrategy#isSaturated(KafkaConsumer)
+ * saturated}, the listener pauses all assigned partitions but keeps polling, so that the consumer
+ * stays in the group. The partitions are resumed as soon as the strategy is not saturated anymore.
+ *
+ * <p>When partitions are revoked in a rebalance, the strategy commits the offsets of the processed
+ * records before an optional {@link ConsumerRebalanceListener} of the registration is notified. The
+ * listener tracks the duration of rebalances and the number of records that have been consumed but
+ * not committed when partitions are revoked, because they will be consumed again. The records are
+ * only counted for strategies that report their commits to the {@link ConsumerCommitMetrics}.
+ *
  * <p>The MessageListener does not guarantee an exactly once or at most once semantic. E.g. in case
  * of rebalancing, some messages might be received several times (eventually from different
  * consumers)
@@ -43,29 +58,88 @@ public class MessageListener<K, V> implements Runnable {
   private final String joinedTopics;
   private final AtomicBoolean shouldStop = new AtomicBoolean(false);
   private final KafkaConsumer<K, V> consumer;
+  private final ConsumerRebalanceListener rebalanceListener;
+
+  /** The partitions paused by this listener because the strategy is saturated. */
+  private final Set<TopicPartition> backpressurePausedPartitions = new HashSet<>();
+
+  /** The number of paused partitions of the consumer, which must not be accessed concurrently. */
+  private volatile int pausedPartitionCount;
+
+  /** The thread that runs the poll loop, {@code null} until the listener is started. */
+  private volatile Thread listenerThread;
+
+  /** Time the poll loop spent outside of {@code poll()} in nanoseconds. */
+  private volatile long busyNanos;
+
+  /** Time spent in calls of {@code poll()} that returned records in nanoseconds. */
+  private volatile long pollNanos;
+
+  /** Time spent in calls of {@code poll()} that returned no records in nanoseconds. */
+  private volatile long idleNanos;
+
+  /** Start of the current rebalance, 0 if no rebalance is in progress. */
+  private long rebalanceStartNanos;
+
+  /** Number of completed rebalances. */
+  private volatile long rebalanceCount;
+
+  /** Time from revoking until assigning partitions in nanoseconds, summed over all rebalances. */
+  private volatile long rebalanceNanos;
+
+  /** Number of records consumed but not committed when their partitions were revoked. */
+  private volatile long uncommittedRevokedRecords;
 
   public MessageListener(
       Collection<String> topics,
       KafkaConsumer<K, V> consumer,
       ListenerConfig listenerConfig,
       MessageListenerStrategy<K, V> strategy) {
+    this(topics, consumer, listenerConfig, strategy, null);
+  }
+
+  /**
+   * @param topics the topics to subscribe to
+   * @param consumer the consumer used by this listener only
+   * @param listenerConfig the configuration of the poll loop
+   * @param strategy the strategy that processes the records
+   * @param rebalanceListener notified after the strategy when partitions are revoked or assigned,
+   *     may be {@code null}
+   */
+  public MessageListener(
+      Collection<String> topics,
+      KafkaConsumer<K, V> consumer,
+      ListenerConfig listenerConfig,
+      MessageListenerStrategy<K, V> strategy,
+      ConsumerRebalanceListener rebalanceListener) {
     this.topics = topics;
     this.joinedTopics = String.join(",", topics);
     this.consumer = consumer;
-    consumer.subscribe(topics);
     this.strategy = strategy;
+    this.rebalanceListener = rebalanceListener;
+    consumer.subscribe(topics, new StrategyRebalanceListener());
     this.pollInterval = listenerConfig.getPollInterval();
     this.topicMissingRetryMs = listenerConfig.getTopicMissingRetryMs();
   }
 
   @Override
   public void run() {
+    listenerThread = Thread.currentThread();
     waitForTopic(joinedTopics);
 
     while (!shouldStop.get()) {
       // return immediately and resubmit Runnable
+      long busyStart = 0;
       try {
+        long pollStart = System.nanoTime();
         ConsumerRecords<K, V> records = consumer.poll(pollInterval);
+        busyStart = System.nanoTime();
+        // only written by the listener thread
+        if (records.isEmpty()) {
+          idleNanos += busyStart - pollStart; // NOSONAR
+        } else {
+          pollNanos += busyStart - pollStart; // NOSONAR
+        }
 
         if (records.count() > 0) {
           LOGGER.debug("Received {} messages from topics [{}]", records.count(), joinedTopics);
@@ -74,6 +148,7 @@ public class MessageListener<K, V> implements Runnable {
         }
 
         strategy.processRecords(records, consumer);
+        applyBackpressure();
 
       } catch (WakeupException w) {
         if (shouldStop.get()) {
@@ -86,6 +161,11 @@ public class MessageListener<K, V> implements Runnable {
         break;
       } catch (RuntimeException re) {
         LOGGER.error("Unauthorized or other runtime exception.", re);
+      } finally {
+        if (busyStart > 0) {
+          // only written by the listener thread
+          busyNanos += System.nanoTime() - busyStart; // NOSONAR
+        }
       }
     }
     LOGGER.info("MessageListener closing Consumer for [{}]", joinedTopics);
@@ -97,6 +177,26 @@ public class MessageListener<K, V> implements Runnable {
     }
   }
 
+  private void applyBackpressure() {
+    if (strategy.isSaturated(consumer)) {
+      Set<TopicPartition> toPause = new HashSet<>(consumer.assignment());
+      toPause.removeAll(consumer.paused());
+      if (!toPause.isEmpty()) {
+        LOGGER.debug("Pausing partitions {} because the strategy is saturated", toPause);
+        consumer.pause(toPause);
+        backpressurePausedPartitions.addAll(toPause);
+      }
+    } else if (!backpressurePausedPartitions.isEmpty()) {
+      Set<TopicPartition> toResume = new HashSet<>(backpressurePausedPartitions);
+      // partitions revoked in the meantime must not be resumed
+      toResume.retainAll(consumer.assignment());
+      LOGGER.debug("Resuming partitions {}", toResume);
+      consumer.resume(toResume);
+      backpressurePausedPartitions.clear();
+    }
+    pausedPartitionCount = consumer.paused().size();
+  }
+
   private void waitForTopic(String joinedTopics) {
     // Consumer waits until the topic is up, since the KafkaConsumer.poll
     // call floods log file with warnings
@@ -143,6 +243,122 @@ public class MessageListener<K, V> implements Runnable {
     return consumer;
   }
 
+  public MessageListenerStrategy<K, V> getStrategy() {
+    return strategy;
+  }
+
+  /**
+   * @return the number of partitions that are currently paused, updated after each poll, may be
+   *     called from any thread
+   */
+  public int getPausedPartitionCount() {
+    return pausedPartitionCount;
+  }
+
+  /** @return the thread that runs the poll loop or {@code null} if the listener is not started */
+  public Thread getListenerThread() {
+    return listenerThread;
+  }
+
+  /**
+   * @return the time in nanoseconds the poll loop spent handling records and committing since the
+   *     listener started, i.e. all time outside of {@code poll()}
+   */
+  public long getBusyNanos() {
+    return busyNanos;
+  }
+
+  /**
+   * @return the time in nanoseconds the poll loop spent in calls of {@code poll()} that returned
+   *     records
+   */
+  public long getPollNanos() {
+    return pollNanos;
+  }
+
+  /**
+   * @return the time in nanoseconds the poll loop spent waiting in calls of {@code poll()} that
+   *     returned no records
+   */
+  public long getIdleNanos() {
+    return idleNanos;
+  }
+
+  /** @return the number of rebalances the consumer took part in, including the initial join */
+  public long getRebalanceCount() {
+    return rebalanceCount;
+  }
+
+  /**
+   * @return the time in nanoseconds from revoking until assigning partitions, summed over all
+   *     rebalances
+   */
+  public long getRebalanceNanos() {
+    return rebalanceNanos;
+  }
+
+  /**
+   * @return the number of records that have been consumed but not committed when their partitions
+   *     were revoked, so they are consumed again
+   */
+  public long getUncommittedRevokedRecords() {
+    return uncommittedRevokedRecords;
+  }
+
+  /**
+   * Counts the records between the committed offset reported by the strategy and the position of
+   * the revoked partitions, after the strategy had the chance to commit. Partitions without
+   * reported commit are ignored, the broker is not asked during the rebalance.
+   */
+  private long countUncommittedRecords(
+      Collection<TopicPartition> partitions, ConsumerCommitMetrics commitMetrics) {
+    String consumerName = KafkaHelper.getClientId(consumer);
+    long uncommitted = 0;
+    for (TopicPartition partition : partitions) {
+      Long committed = commitMetrics.getCommittedOffset(consumerName, partition);
+      if (committed != null) {
+        uncommitted += Math.max(0, consumer.position(partition) - committed);
+      }
+    }
+    commitMetrics.removeCommittedOffsets(consumerName, partitions);
+    return uncommitted;
+  }
+
+  /**
+   * Notifies the strategy and the rebalance listener of the registration about rebalances. Called
+   * by the consumer within the poll loop.
+   */
+  private class StrategyRebalanceListener implements ConsumerRebalanceListener {
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+      rebalanceStartNanos = System.nanoTime();
+      strategy.onPartitionsRevoked(partitions, consumer);
+      ConsumerCommitMetrics commitMetrics = strategy.getConsumerCommitMetrics();
+      if (commitMetrics != null && !partitions.isEmpty()) {
+        // only written by the listener thread
+        uncommittedRevokedRecords += countUncommittedRecords(partitions, commitMetrics); // NOSONAR
+      }
+      if (rebalanceListener != null) {
+        rebalanceListener.onPartitionsRevoked(partitions);
+      }
+    }
+
+    @Override
+    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+      strategy.onPartitionsAssigned(partitions, consumer);
+      if (rebalanceListener != null) {
+        rebalanceListener.onPartitionsAssigned(partitions);
+      }
+      if (rebalanceStartNanos > 0) {
+        // only written by the listener thread
+        rebalanceNanos += System.nanoTime() - rebalanceStartNanos; // NOSONAR
+        rebalanceCount++; // NOSONAR
+        rebalanceStartNanos = 0;
+      }
+    }
+  }
+
   @Override
   public String toString() {
     return "ML ".concat(String.join("", topics));
@@ -0,0 +1,57 @@
+package org.sdase.commons.server.kafka.consumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+
+/**
+ * Filters for a {@link DeserializingMessageHandler} that only inspect the headers of a record. The
+ * expected header values are encoded once, so that the filters do not allocate for each record.
+ * Filters can be combined with {@link Predicate#and(Predicate)} and {@link
+ * Predicate#or(Predicate)}.
+ */
+public class RecordFilters {
+
+  private RecordFilters() {
+    // utility class
+  }
+
+  /**
+   * @param headerName the name of the header
+   * @param <K> key class
+   * @param <V> value class
+   * @return a filter that matches records that have a header with the given name
+   */
+  public static <K, V> Predicate<ConsumerRecord<K, V>> hasHeader(String headerName) {
+    return record -> record.headers().lastHeader(headerName) != null;
+  }
+
+  /**
+   * @param headerName the name of the header
+   * @param expectedValues the accepted values of the header, compared with the UTF-8 encoded value
+   *     of the last header with the given name
+   * @param <K> key class
+   * @param <V> value class
+   * @return a filter that matches records that have a header with one of the given values
+   */
+  public static <K, V> Predicate<ConsumerRecord<K, V>> headerEquals(
+      String headerName, String... expectedValues) {
+    byte[][] expected =
+        Arrays.stream(expectedValues).map(v -> v.getBytes(UTF_8)).toArray(byte[][]::new);
+    return record -> {
+      Header header = record.headers().lastHeader(headerName);
+      if (header == null) {
+        return false;
+      }
+      for (byte[] value : expected) {
+        if (Arrays.equals(value, header.value())) {
+          return true;
+        }
+      }
+      return false;
+    };
+  }
+}
@@ -0,0 +1,27 @@
+package org.sdase.commons.server.kafka.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.sdase.commons.server.kafka.producer.MessageProducer;
+
+/**
+ * Handler for consumer record processing that publishes the results of the processing. Other than
+ * the {@link MessageHandler}, the handler sends its output with the given producer, e.g. within the
+ * transaction that also commits the offset of the consumed record. Be aware that the key or value
+ * can be null if the WrappedNoSerializationErrorDeserializer is used.
+ *
+ * @param <K> key class of the consumed records
+ * @param <V> value class of the consumed records
+ * @param <KO> key class of the produced records
+ * @param <VO> value class of the produced records
+ */
+@FunctionalInterface
+public interface TransformingMessageHandler<K, V, KO, VO> {
+
+  /**
+   * Processes the given record.
+   *
+   * @param record the consumed record
+   * @param producer the producer to send the results to, records should not be awaited
+   */
+  void handle(ConsumerRecord<K, V> record, MessageProducer<KO, VO> producer);
+}
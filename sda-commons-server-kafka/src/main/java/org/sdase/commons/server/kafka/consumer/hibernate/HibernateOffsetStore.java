@@ -0,0 +1,183 @@
+package org.sdase.commons.server.kafka.consumer.hibernate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.sdase.commons.server.kafka.consumer.ErrorHandler;
+import org.sdase.commons.server.kafka.consumer.strategies.storedoffset.OffsetStore;
+import org.sdase.commons.server.kafka.consumer.strategies.storedoffset.StoredOffsetMLS;
+
+/**
+ * {@link OffsetStore} that processes records and stores the offsets in one transaction of a
+ * relational database, e.g. PostgreSQL. The handler must use the given {@link Session} for all
+ * changes that should be part of the transaction. The session factory is available from the {@code
+ * HibernateBundle}.
+ *
+ * <p>The offsets are stored in a table that must be created by the database migration of the
+ * service:
+ *
+ * <pre>
+ * CREATE TABLE kafka_consumer_offsets (
+ *   consumer_group VARCHAR(255) NOT NULL,
+ *   topic VARCHAR(255) NOT NULL,
+ *   topic_partition INTEGER NOT NULL,
+ *   next_offset BIGINT NOT NULL,
+ *   PRIMARY KEY (consumer_group, topic, topic_partition)
+ * );
+ * </pre>
+ *
+ * @param <K> key object type
+ * @param <V> value object type
+ */
+public class HibernateOffsetStore<K, V> implements OffsetStore<K, V> {
+
+  /** The default name of the table that stores the offsets. */
+  public static final String DEFAULT_TABLE = "kafka_consumer_offsets";
+
+  /**
+   * Processes records within a database transaction.
+   *
+   * @param <K> key object type
+   * @param <V> value object type
+   */
+  @FunctionalInterface
+  public interface TransactionalHandler<K, V> {
+
+    /**
+     * @param session the session of the transaction that must be used for all changes
+     * @param records the records to process
+     */
+    void handle(Session session, List<ConsumerRecord<K, V>> records);
+  }
+
+  private final SessionFactory sessionFactory;
+
+  private final TransactionalHandler<K, V> handler;
+
+  private final String selectSql;
+
+  private final String updateSql;
+
+  private final String insertSql;
+
+  /**
+   * Creates a store that uses the table {@value #DEFAULT_TABLE}.
+   *
+   * @param sessionFactory the factory that opens the sessions of the transactions
+   * @param handler the handler that processes the records within the transaction
+   */
+  public HibernateOffsetStore(SessionFactory sessionFactory, TransactionalHandler<K, V> handler) {
+    this(sessionFactory, handler, DEFAULT_TABLE);
+  }
+
+  /**
+   * @param sessionFactory the factory that opens the sessions of the transactions
+   * @param handler the handler that processes the records within the transaction
+   * @param table the name of the table that stores the offsets
+   */
+  public HibernateOffsetStore(
+      SessionFactory sessionFactory, TransactionalHandler<K, V> handler, String table) {
+    this.sessionFactory = sessionFactory;
+    this.handler = handler;
+    this.selectSql =
+        "SELECT topic, topic_partition, next_offset FROM " + table + " WHERE consumer_group = ?";
+    this.updateSql =
+        "UPDATE "
+            + table
+            + " SET next_offset = ? WHERE consumer_group = ? AND topic = ? AND topic_partition = ?";
+    this.insertSql =
+        "INSERT INTO "
+            + table
+            + " (next_offset, consumer_group, topic, topic_partition) VALUES (?, ?, ?, ?)";
+  }
+
+  /**
+   * @param errorHandler the handler that decides how to proceed if a transaction fails
+   * @return a strategy that processes the records of each partition in one transaction of this
+   *     store
+   */
+  public StoredOffsetMLS<K, V> strategy(ErrorHandler<K, V> errorHandler) {
+    return new StoredOffsetMLS<>(this, errorHandler);
+  }
+
+  @Override
+  public Map<TopicPartition, Long> readOffsets(
+      String consumerGroup, Collection<TopicPartition> partitions) {
+    try (Session session = sessionFactory.openSession()) {
+      return session.doReturningWork(
+          connection -> {
+            Map<TopicPartition, Long> offsets = new HashMap<>();
+            try (PreparedStatement select = connection.prepareStatement(selectSql)) {
+              select.setString(1, consumerGroup);
+              try (ResultSet resultSet = select.executeQuery()) {
+                while (resultSet.next()) {
+                  TopicPartition partition =
+                      new TopicPartition(resultSet.getString(1), resultSet.getInt(2));
+                  if (partitions.contains(partition)) {
+                    offsets.put(partition, resultSet.getLong(3));
+                  }
+                }
+              }
+            }
+            return offsets;
+          });
+    }
+  }
+
+  @Override
+  public void processAndStore(
+      String consumerGroup,
+      List<ConsumerRecord<K, V>> records,
+      Map<TopicPartition, Long> nextOffsets) {
+    try (Session session = sessionFactory.openSession()) {
+      Transaction transaction = session.beginTransaction();
+      try {
+        handler.handle(session, records);
+        // execute the changes of the handler before the offsets in the same transaction
+        session.flush();
+        session.doWork(connection -> writeOffsets(connection, consumerGroup, nextOffsets));
+        transaction.commit();
+      } catch (RuntimeException e) {
+        if (transaction.getStatus().canRollback()) {
+          transaction.rollback();
+        }
+        throw e;
+      }
+    }
+  }
+
+  private void writeOffsets(
+      Connection connection, String consumerGroup, Map<TopicPartition, Long> nextOffsets)
+      throws SQLException {
+    try (PreparedStatement update = connection.prepareStatement(updateSql);
+        PreparedStatement insert = connection.prepareStatement(insertSql)) {
+      for (Map.Entry<TopicPartition, Long> entry : nextOffsets.entrySet()) {
+        setParameters(update, consumerGroup, entry.getKey(), entry.getValue());
+        if (update.executeUpdate() == 0) {
+          // first offset of the partition, concurrent inserts fail on the primary key
+          setParameters(insert, consumerGroup, entry.getKey(), entry.getValue());
+          insert.executeUpdate();
+        }
+      }
+    }
+  }
+
+  private static void setParameters(
+      PreparedStatement statement, String consumerGroup, TopicPartition partition, long offset)
+      throws SQLException {
+    statement.setLong(1, offset);
+    statement.setString(2, consumerGroup);
+    statement.setString(3, partition.topic());
+    statement.setInt(4, partition.partition());
+  }
+}
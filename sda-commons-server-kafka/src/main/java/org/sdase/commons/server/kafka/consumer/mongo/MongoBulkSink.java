@@ -0,0 +1,175 @@
+package org.sdase.commons.server.kafka.consumer.mongo;
+
+import static com.mongodb.client.model.Filters.eq;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.bson.Document;
+import org.sdase.commons.server.kafka.consumer.BatchMessageHandler;
+import org.sdase.commons.server.kafka.consumer.ErrorHandler;
+import org.sdase.commons.server.kafka.consumer.strategies.batch.BatchMLS;
+import org.sdase.commons.server.kafka.consumer.strategies.batch.BatchMLS.BatchErrorMode;
+import org.sdase.commons.server.kafka.consumer.strategies.batch.BatchMLS.BatchScope;
+import org.sdase.commons.server.kafka.exception.ConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link BatchMessageHandler} that writes a batch of records to a MongoDB collection with one
+ * unordered bulk write instead of one round trip per record. Records with the same document id are
+ * coalesced, only the write of the last record of each id in the batch is executed. Therefore each
+ * write must replace the complete state of the document, like the upserts of {@link
+ * #upserting(MongoCollection, Function, Function)} do.
+ *
+ * <p>Used with the {@link BatchMLS} created by {@link #strategy(ErrorHandler)}, the offsets are
+ * committed after the bulk write is acknowledged. If the bulk write fails, the records are written
+ * one by one and the {@link ErrorHandler} decides about the records that fail again. As replacing a
+ * document is idempotent, records of a failed batch can be written again.
+ *
+ * <p>The collection is available from the {@code Datastore} of the {@code MorphiaBundle}, e.g.
+ * {@code datastore.getDatabase().getCollection("projections")}.
+ *
+ * @param <K> key object type
+ * @param <V> value object type
+ * @param <T> document type of the collection
+ */
+public class MongoBulkSink<K, V, T> implements BatchMessageHandler<K, V> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(MongoBulkSink.class);
+
+  private final MongoCollection<T> collection;
+
+  private final Function<ConsumerRecord<K, V>, Object> idExtractor;
+
+  private final Function<ConsumerRecord<K, V>, WriteModel<T>> writeModelFactory;
+
+  /** Number of records handled by the sink, only written by the listener thread. */
+  private volatile long recordCount;
+
+  /** Number of records whose write was superseded by a later record of the same batch. */
+  private volatile long coalescedCount;
+
+  /** Number of bulk writes. */
+  private volatile long bulkWriteCount;
+
+  /**
+   * @param collection the collection to write to, must use an acknowledged write concern
+   * @param idExtractor extracts the id of the document that is written for a record, records
+   *     without id are not coalesced
+   * @param writeModelFactory creates the write for a record
+   */
+  public MongoBulkSink(
+      MongoCollection<T> collection,
+      Function<ConsumerRecord<K, V>, Object> idExtractor,
+      Function<ConsumerRecord<K, V>, WriteModel<T>> writeModelFactory) {
+    if (!collection.getWriteConcern().isAcknowledged()) {
+      throw new ConfigurationException(
+          "The sink commits offsets after the bulk write is acknowledged but the write concern of the collection is unacknowledged.");
+    }
+    this.collection = collection;
+    this.idExtractor = idExtractor;
+    this.writeModelFactory = writeModelFactory;
+  }
+
+  /**
+   * Creates a sink that replaces the document with the id of each record by the document created
+   * from the value of the record. If the document does not exist, it is inserted. Records without
+   * value (tombstones) delete the document.
+   *
+   * @param collection the collection to write to, must use an acknowledged write concern
+   * @param idExtractor extracts the id of the document from a record, e.g. {@code
+   *     ConsumerRecord::key}
+   * @param documentMapper creates the document from the value of a record, the id is set as {@code
+   *     _id} of the document
+   * @param <K> key object type
+   * @param <V> value object type
+   * @return the sink
+   */
+  public static <K, V> MongoBulkSink<K, V, Document> upserting(
+      MongoCollection<Document> collection,
+      Function<ConsumerRecord<K, V>, Object> idExtractor,
+      Function<V, Document> documentMapper) {
+    ReplaceOptions upsert = new ReplaceOptions().upsert(true);
+    return new MongoBulkSink<>(
+        collection,
+        idExtractor,
+        record -> {
+          Object id = idExtractor.apply(record);
+          if (record.value() == null) {
+            return new DeleteOneModel<>(eq("_id", id));
+          }
+          Document document = documentMapper.apply(record.value());
+          document.put("_id", id);
+          return new ReplaceOneModel<>(eq("_id", id), document, upsert);
+        });
+  }
+
+  /**
+   * @param errorHandler the handler that decides how to proceed with records that fail when they
+   *     are written one by one after the bulk write failed
+   * @return a strategy that passes all records of each poll to this sink and commits their offsets
+   *     after they are written
+   */
+  public BatchMLS<K, V> strategy(ErrorHandler<K, V> errorHandler) {
+    return new BatchMLS<>(this, errorHandler, BatchScope.POLL, BatchErrorMode.PER_RECORD);
+  }
+
+  @Override
+  public void handle(List<ConsumerRecord<K, V>> records) {
+    // the last record of each id wins, the insertion order of the first record is kept
+    Map<Object, ConsumerRecord<K, V>> latestById = new LinkedHashMap<>();
+    List<ConsumerRecord<K, V>> withoutId = new ArrayList<>();
+    for (ConsumerRecord<K, V> record : records) {
+      Object id = idExtractor.apply(record);
+      if (id == null) {
+        withoutId.add(record);
+      } else {
+        latestById.put(id, record);
+      }
+    }
+
+    List<WriteModel<T>> writes = new ArrayList<>(latestById.size() + withoutId.size());
+    latestById.values().forEach(record -> writes.add(writeModelFactory.apply(record)));
+    withoutId.forEach(record -> writes.add(writeModelFactory.apply(record)));
+
+    BulkWriteResult result = collection.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+    LOGGER.debug(
+        "Wrote {} records with {} writes: {} upserted, {} modified, {} deleted",
+        records.size(),
+        writes.size(),
+        result.getUpserts().size(),
+        result.getModifiedCount(),
+        result.getDeletedCount());
+
+    // only written by the listener thread
+    recordCount += records.size(); // NOSONAR
+    coalescedCount += records.size() - writes.size(); // NOSONAR
+    bulkWriteCount++; // NOSONAR
+  }
+
+  /** @return the number of records handled by the sink */
+  public long getRecordCount() {
+    return recordCount;
+  }
+
+  /** @return the number of records whose write was superseded by a later record of the batch */
+  public long getCoalescedCount() {
+    return coalescedCount;
+  }
+
+  /** @return the number of bulk writes, including writes of single records after a failure */
+  public long getBulkWriteCount() {
+    return bulkWriteCount;
+  }
+}
@@ -0,0 +1,133 @@
+package org.sdase.commons.server.kafka.consumer.mongo;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+
+import com.mongodb.MongoClient;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.ReplaceOptions;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.bson.Document;
+import org.sdase.commons.server.kafka.consumer.ErrorHandler;
+import org.sdase.commons.server.kafka.consumer.strategies.storedoffset.OffsetStore;
+import org.sdase.commons.server.kafka.consumer.strategies.storedoffset.StoredOffsetMLS;
+
+/**
+ * {@link OffsetStore} that processes records and stores the offsets in one MongoDB transaction. The
+ * offsets are stored in a collection with one document for each partition of a consumer group. The
+ * handler must use the given {@link ClientSession} for all writes that should be part of the
+ * transaction.
+ *
+ * <p>Transactions require a replica set. The client and the collection are available from the
+ * {@code MorphiaBundle}, e.g. {@code morphiaBundle.mongoClient()} and {@code
+ * morphiaBundle.datastore().getDatabase().getCollection(MongoOffsetStore.DEFAULT_COLLECTION)}.
+ *
+ * @param <K> key object type
+ * @param <V> value object type
+ */
+public class MongoOffsetStore<K, V> implements OffsetStore<K, V> {
+
+  /** The suggested name of the collection that stores the offsets. */
+  public static final String DEFAULT_COLLECTION = "kafkaConsumerOffsets";
+
+  static final String FIELD_GROUP = "group";
+  static final String FIELD_TOPIC = "topic";
+  static final String FIELD_PARTITION = "partition";
+  static final String FIELD_OFFSET = "offset";
+
+  /**
+   * Processes records within a MongoDB transaction.
+   *
+   * @param <K> key object type
+   * @param <V> value object type
+   */
+  @FunctionalInterface
+  public interface TransactionalHandler<K, V> {
+
+    /**
+     * @param session the session of the transaction that must be used for all writes
+     * @param records the records to process
+     */
+    void handle(ClientSession session, List<ConsumerRecord<K, V>> records);
+  }
+
+  private final MongoClient mongoClient;
+
+  private final MongoCollection<Document> offsets;
+
+  private final TransactionalHandler<K, V> handler;
+
+  /**
+   * @param mongoClient the client that starts the sessions of the transactions
+   * @param offsets the collection that stores the offsets
+   * @param handler the handler that processes the records within the transaction
+   */
+  public MongoOffsetStore(
+      MongoClient mongoClient,
+      MongoCollection<Document> offsets,
+      TransactionalHandler<K, V> handler) {
+    this.mongoClient = mongoClient;
+    this.offsets = offsets;
+    this.handler = handler;
+  }
+
+  /**
+   * @param errorHandler the handler that decides how to proceed if a transaction fails
+   * @return a strategy that processes the records of each partition in one transaction of this
+   *     store
+   */
+  public StoredOffsetMLS<K, V> strategy(ErrorHandler<K, V> errorHandler) {
+    return new StoredOffsetMLS<>(this, errorHandler);
+  }
+
+  @Override
+  public Map<TopicPartition, Long> readOffsets(
+      String consumerGroup, Collection<TopicPartition> partitions) {
+    List<String> ids = new ArrayList<>(partitions.size());
+    partitions.forEach(partition -> ids.add(id(consumerGroup, partition)));
+    Map<TopicPartition, Long> result = new HashMap<>();
+    for (Document document : offsets.find(in("_id", ids))) {
+      result.put(
+          new TopicPartition(document.getString(FIELD_TOPIC), document.getInteger(FIELD_PARTITION)),
+          document.getLong(FIELD_OFFSET));
+    }
+    return result;
+  }
+
+  @Override
+  public void processAndStore(
+      String consumerGroup,
+      List<ConsumerRecord<K, V>> records,
+      Map<TopicPartition, Long> nextOffsets) {
+    ReplaceOptions upsert = new ReplaceOptions().upsert(true);
+    try (ClientSession session = mongoClient.startSession()) {
+      session.withTransaction(
+          () -> {
+            handler.handle(session, records);
+            nextOffsets.forEach(
+                (partition, offset) -> {
+                  String id = id(consumerGroup, partition);
+                  Document document =
+                      new Document("_id", id)
+                          .append(FIELD_GROUP, consumerGroup)
+                          .append(FIELD_TOPIC, partition.topic())
+                          .append(FIELD_PARTITION, partition.partition())
+                          .append(FIELD_OFFSET, offset);
+                  offsets.replaceOne(session, eq("_id", id), document, upsert);
+                });
+            return null;
+          });
+    }
+  }
+
+  static String id(String consumerGroup, TopicPartition partition) {
+    return consumerGroup + "/" + partition.topic() + "/" + partition.partition();
+  }
+}
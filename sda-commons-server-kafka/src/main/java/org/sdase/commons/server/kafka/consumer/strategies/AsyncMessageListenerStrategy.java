@@ -0,0 +1,489 @@
+package org.sdase.commons.server.kafka.consumer.strategies;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import io.prometheus.client.SimpleTimer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.kafka.clients.consumer.CommitFailedException;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.sdase.commons.server.kafka.consumer.ErrorHandler;
+import org.sdase.commons.server.kafka.consumer.KafkaHelper;
+import org.sdase.commons.server.kafka.consumer.MessageHandler;
+import org.sdase.commons.server.kafka.consumer.MessageListener;
+import org.sdase.commons.server.kafka.consumer.StopListenerException;
+import org.sdase.commons.server.kafka.exception.ConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Base for {@link MessageListenerStrategy strategies} that hand over the records to worker threads
+ * instead of processing them in the poll loop of the {@link MessageListener}. The concrete strategy
+ * decides how records are distributed to the workers by providing a {@link RecordExecutor}.
+ *
+ * <p>The {@link KafkaConsumer} is only used in the thread of the {@link MessageListener}. Offsets
+ * are committed explicitly for each partition up to the lowest offset that is not yet processed, so
+ * an offset is never committed before all records in front of it are handled. Records that failed
+ * in a worker are handed to the {@link ErrorHandler} in the poll loop as soon as no other record of
+ * the same partition is in progress. If processing should continue, the failed record is considered
+ * as processed and the consumer seeks to the next record of the partition. All records of that
+ * partition that have been skipped in the meantime are consumed again.
+ *
+ * <p>The number of records that are handed over to workers but not completed yet is limited by
+ * {@code maxInFlightRecords}. When the limit is reached, the strategy reports that it is {@link
+ * #isSaturated(KafkaConsumer) saturated} and the {@link MessageListener} pauses the assigned
+ * partitions until half of the records are completed. The limit may be exceeded by the records of a
+ * single poll.
+ *
+ * @param <K> key object type
+ * @param <V> value object type
+ */
+public abstract class AsyncMessageListenerStrategy<K, V> extends MessageListenerStrategy<K, V> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AsyncMessageListenerStrategy.class);
+
+  /** Time to wait for records in progress when the listener shuts down. */
+  private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+  /** Time slice used when waiting for the workers on shutdown. */
+  private static final long COMPLETION_WAIT_MS = 10;
+
+  private final MessageHandler<K, V> handler;
+  private final ErrorHandler<K, V> errorHandler;
+  private final int maxInFlightRecords;
+
+  private final Map<KafkaConsumer<K, V>, ConsumerState<K, V>> consumerStates =
+      new ConcurrentHashMap<>();
+
+  protected AsyncMessageListenerStrategy(
+      MessageHandler<K, V> handler, ErrorHandler<K, V> errorHandler, int maxInFlightRecords) {
+    if (maxInFlightRecords < 1) {
+      throw new IllegalArgumentException("maxInFlightRecords must be at least 1");
+    }
+    this.handler = handler;
+    this.errorHandler = errorHandler;
+    this.maxInFlightRecords = maxInFlightRecords;
+  }
+
+  /**
+   * Creates the executor that processes the records of one consumer. The executor is closed when
+   * the listener of the consumer shuts down.
+   *
+   * @param consumerName the client id of the consumer, e.g. to name the threads
+   * @return a new executor for the records of one consumer
+   */
+  protected abstract RecordExecutor<K, V> createRecordExecutor(String consumerName);
+
+  @Override
+  public void processRecords(ConsumerRecords<K, V> records, KafkaConsumer<K, V> consumer) {
+    ConsumerState<K, V> state = consumerStates.computeIfAbsent(consumer, this::createState);
+    state.retainPartitions(consumer.assignment());
+
+    Set<TopicPartition> seekedPartitions = handleFailures(state, consumer);
+
+    for (TopicPartition partition : records.partitions()) {
+      PartitionState<K, V> partitionState = state.partition(partition);
+      if (partitionState.hasFailed() || seekedPartitions.contains(partition)) {
+        // the records will be consumed again after seeking behind the failed record
+        continue;
+      }
+      for (ConsumerRecord<K, V> record : records.records(partition)) {
+        submit(state, partitionState, record);
+      }
+    }
+
+    commit(state, consumer);
+  }
+
+  /**
+   * The strategy is saturated when {@code maxInFlightRecords} are not completed yet and stays
+   * saturated until half of them are completed.
+   */
+  @Override
+  public boolean isSaturated(KafkaConsumer<K, V> consumer) {
+    ConsumerState<K, V> state = consumerStates.get(consumer);
+    if (state == null) {
+      return false;
+    }
+    int inFlight = state.inFlight.get();
+    if (inFlight >= maxInFlightRecords) {
+      state.saturated = true;
+    } else if (inFlight <= maxInFlightRecords / 2) {
+      state.saturated = false;
+    }
+    return state.saturated;
+  }
+
+  /**
+   * Commits the offsets of the processed records before the partitions are revoked. Records of the
+   * revoked partitions that are still in progress are consumed again by the next owner.
+   */
+  @Override
+  public void onPartitionsRevoked(
+      Collection<TopicPartition> partitions, KafkaConsumer<K, V> consumer) {
+    ConsumerState<K, V> state = consumerStates.get(consumer);
+    if (state == null || partitions.isEmpty()) {
+      return;
+    }
+    commit(state, consumer);
+    state.partitions.keySet().removeAll(partitions);
+    state.executor.revoked(partitions);
+  }
+
+  @Override
+  public void commitOnClose(KafkaConsumer<K, V> consumer) {
+    ConsumerState<K, V> state = consumerStates.remove(consumer);
+    if (state == null) {
+      return;
+    }
+    boolean interrupted = false;
+    try {
+      if (!state.awaitCompletion(SHUTDOWN_TIMEOUT_MS)) {
+        LOGGER.warn(
+            "{} records of consumer {} still in progress after {} ms, their offsets are not committed",
+            state.inFlight.get(),
+            state.consumerName,
+            SHUTDOWN_TIMEOUT_MS);
+      }
+    } catch (InterruptedException e) {
+      interrupted = true;
+    } finally {
+      state.executor.close();
+    }
+    state.retainPartitions(consumer.assignment());
+    commit(state, consumer);
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Provides the current utilization of the lanes the records of the given consumer are distributed
+   * to. The statistics are a snapshot that is collected without blocking the workers.
+   *
+   * @param consumer the consumer of a {@link MessageListener} that uses this strategy
+   * @return the statistics of each lane or an empty list if the executor does not use lanes
+   */
+  public List<LaneStatistics> getLaneStatistics(KafkaConsumer<K, V> consumer) {
+    ConsumerState<K, V> state = consumerStates.get(consumer);
+    if (state == null) {
+      return Collections.emptyList();
+    }
+    return state.executor.getLaneStatistics();
+  }
+
+  @Override
+  public void verifyConsumerConfig(Map<String, String> config) {
+    if (Boolean.valueOf(config.getOrDefault(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "true"))) {
+      throw new ConfigurationException(
+          "The strategy commits processed offsets explicitly but property 'enable.auto.commit' in consumer config is set to 'true' (which is the default and must be disabled).");
+    }
+  }
+
+  @Override
+  public Map<String, String> forcedConfigToApply() {
+    return Collections.singletonMap(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+  }
+
+  private ConsumerState<K, V> createState(KafkaConsumer<K, V> consumer) {
+    String consumerName = KafkaHelper.getClientId(consumer);
+    return new ConsumerState<>(consumerName, createRecordExecutor(consumerName));
+  }
+
+  private void submit(
+      ConsumerState<K, V> state, PartitionState<K, V> partitionState, ConsumerRecord<K, V> record) {
+    partitionState.submitted(record.offset());
+    state.inFlight.incrementAndGet();
+    state.executor.execute(
+        record,
+        () -> {
+          try {
+            handle(state.consumerName, partitionState, record);
+          } finally {
+            partitionState.inFlight.decrementAndGet();
+            state.released();
+          }
+        });
+  }
+
+  private void handle(
+      String consumerName, PartitionState<K, V> partitionState, ConsumerRecord<K, V> record) {
+    if (partitionState.hasFailed()) {
+      // a previous record of this partition failed, the record will be consumed again
+      return;
+    }
+    LOGGER.debug("Handling message for {}", record.key());
+    try {
+      long start = System.nanoTime();
+      handler.handle(record);
+      partitionState.completed(record.offset());
+
+      // Prometheus
+      double elapsedSeconds = SimpleTimer.elapsedSecondsFromNanos(start, System.nanoTime());
+      consumerProcessedMsgHistogram.observe(elapsedSeconds, consumerName, record.topic());
+
+      if (LOGGER.isTraceEnabled()) {
+        LOGGER.trace(
+            "calculated duration {} for message consumed by {} from {}",
+            elapsedSeconds,
+            consumerName,
+            record.topic());
+      }
+    } catch (RuntimeException e) {
+      LOGGER.error(
+          "Error while handling record {} in message handler {}",
+          record.key(),
+          handler.getClass(),
+          e);
+      partitionState.failed(record, e);
+    }
+  }
+
+  /**
+   * Hands failed records to the {@link ErrorHandler} as soon as no other record of the partition is
+   * in progress.
+   *
+   * @return the partitions the consumer has been seeked for
+   */
+  private Set<TopicPartition> handleFailures(
+      ConsumerState<K, V> state, KafkaConsumer<K, V> consumer) {
+    Set<TopicPartition> seekedPartitions = new HashSet<>();
+    for (Entry<TopicPartition, PartitionState<K, V>> entry : state.partitions.entrySet()) {
+      PartitionState<K, V> partitionState = entry.getValue();
+      FailedRecord<K, V> failure = partitionState.failure;
+      if (failure == null || partitionState.inFlight.get() > 0) {
+        continue;
+      }
+      boolean shouldContinue =
+          errorHandler.handleError(failure.record, failure.exception, consumer);
+      if (!shouldContinue) {
+        throw new StopListenerException(failure.exception);
+      }
+      long nextOffset = failure.record.offset() + 1;
+      consumer.seek(entry.getKey(), nextOffset);
+      partitionState.reset(nextOffset);
+      seekedPartitions.add(entry.getKey());
+    }
+    return seekedPartitions;
+  }
+
+  private void commit(ConsumerState<K, V> state, KafkaConsumer<K, V> consumer) {
+    Map<TopicPartition, OffsetAndMetadata> offsets = state.committableOffsets();
+    if (offsets.isEmpty()) {
+      return;
+    }
+    try {
+      consumer.commitSync(offsets);
+      state.committed(offsets);
+    } catch (CommitFailedException e) {
+      LOGGER.error("Commit failed", e);
+    }
+  }
+
+  /**
+   * Executes the tasks that handle the consumed records. Tasks for records that must keep their
+   * order have to be executed one after another in the order they are submitted.
+   *
+   * @param <K> key object type
+   * @param <V> value object type
+   */
+  public interface RecordExecutor<K, V> {
+
+    /**
+     * @param record the record that is handled by the task
+     * @param task the task that handles the record
+     */
+    void execute(ConsumerRecord<K, V> record, Runnable task);
+
+    /**
+     * Invoked in the poll loop when partitions are revoked from the consumer, e.g. to release
+     * resources that are kept for each partition. Tasks of the partitions that are submitted
+     * already must still be executed.
+     *
+     * @param partitions the revoked partitions
+     */
+    default void revoked(Collection<TopicPartition> partitions) {
+      // nothing to release by default
+    }
+
+    /** Stops all threads of the executor. Invoked when all submitted tasks are completed. */
+    void close();
+
+    /** @return the current utilization of each lane, if the executor uses lanes */
+    default List<LaneStatistics> getLaneStatistics() {
+      return Collections.emptyList();
+    }
+  }
+
+  /** Snapshot of the utilization of a lane that executes records one after another. */
+  public static class LaneStatistics {
+
+    private final int lane;
+    private final int queueDepth;
+    private final int inFlightRecords;
+
+    public LaneStatistics(int lane, int queueDepth, int inFlightRecords) {
+      this.lane = lane;
+      this.queueDepth = queueDepth;
+      this.inFlightRecords = inFlightRecords;
+    }
+
+    /** @return the index of the lane */
+    public int getLane() {
+      return lane;
+    }
+
+    /** @return the number of records waiting in the lane */
+    public int getQueueDepth() {
+      return queueDepth;
+    }
+
+    /** @return the number of records submitted to the lane that are not completed yet */
+    public int getInFlightRecords() {
+      return inFlightRecords;
+    }
+  }
+
+  private static class ConsumerState<K, V> {
+
+    private final String consumerName;
+    private final RecordExecutor<K, V> executor;
+    private final Map<TopicPartition, PartitionState<K, V>> partitions = new HashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Object completionLock = new Object();
+    /** Only accessed in the poll loop. */
+    private boolean saturated;
+
+    private ConsumerState(String consumerName, RecordExecutor<K, V> executor) {
+      this.consumerName = consumerName;
+      this.executor = executor;
+    }
+
+    private PartitionState<K, V> partition(TopicPartition partition) {
+      return partitions.computeIfAbsent(partition, p -> new PartitionState<>());
+    }
+
+    /** Forgets partitions that are not assigned to the consumer anymore. */
+    private void retainPartitions(Set<TopicPartition> assignment) {
+      partitions.keySet().retainAll(assignment);
+    }
+
+    private Map<TopicPartition, OffsetAndMetadata> committableOffsets() {
+      Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+      partitions.forEach(
+          (partition, partitionState) -> {
+            long committable = partitionState.committableOffset();
+            if (committable > partitionState.committedOffset) {
+              offsets.put(partition, new OffsetAndMetadata(committable));
+            }
+          });
+      return offsets;
+    }
+
+    private void committed(Map<TopicPartition, OffsetAndMetadata> offsets) {
+      offsets.forEach(
+          (partition, offset) -> {
+            PartitionState<K, V> partitionState = partitions.get(partition);
+            if (partitionState != null) {
+              partitionState.committedOffset = offset.offset();
+            }
+          });
+    }
+
+    private void released() {
+      if (inFlight.decrementAndGet() == 0) {
+        synchronized (completionLock) {
+          completionLock.notifyAll();
+        }
+      }
+    }
+
+    private boolean awaitCompletion(long timeoutMs) throws InterruptedException {
+      long deadline = System.nanoTime() + MILLISECONDS.toNanos(timeoutMs);
+      synchronized (completionLock) {
+        while (inFlight.get() > 0) {
+          if (System.nanoTime() >= deadline) {
+            return false;
+          }
+          completionLock.wait(COMPLETION_WAIT_MS);
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * The progress of a single partition. Offsets are submitted by the poll loop in ascending order
+   * and completed by the workers in any order.
+   */
+  private static class PartitionState<K, V> {
+
+    private final ConcurrentSkipListSet<Long> pendingOffsets = new ConcurrentSkipListSet<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile long nextOffset = -1;
+    private volatile FailedRecord<K, V> failure;
+    private long committedOffset = -1;
+
+    private void submitted(long offset) {
+      if (committedOffset < 0) {
+        // the consumer already starts at this offset, there is nothing to commit before
+        committedOffset = offset;
+      }
+      pendingOffsets.add(offset);
+      inFlight.incrementAndGet();
+      nextOffset = offset + 1;
+    }
+
+    private void completed(long offset) {
+      pendingOffsets.remove(offset);
+    }
+
+    /** Keeps the failure with the lowest offset, all later records are consumed again. */
+    private synchronized void failed(ConsumerRecord<K, V> record, RuntimeException e) {
+      if (failure == null || record.offset() < failure.record.offset()) {
+        failure = new FailedRecord<>(record, e);
+      }
+    }
+
+    private boolean hasFailed() {
+      return failure != null;
+    }
+
+    /** @return the offset of the first record that is not processed yet */
+    private long committableOffset() {
+      Long lowestPending = pendingOffsets.ceiling(0L);
+      return lowestPending != null ? lowestPending : nextOffset;
+    }
+
+    private synchronized void reset(long offset) {
+      pendingOffsets.clear();
+      nextOffset = offset;
+      failure = null;
+    }
+  }
+
+  private static class FailedRecord<K, V> {
+
+    private final ConsumerRecord<K, V> record;
+    private final RuntimeException exception;
+
+    private FailedRecord(ConsumerRecord<K, V> record, RuntimeException exception) {
+      this.record = record;
+      this.exception = exception;
+    }
+  }
+}
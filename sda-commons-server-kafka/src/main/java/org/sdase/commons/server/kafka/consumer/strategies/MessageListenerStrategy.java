@@ -1,12 +1,20 @@
 package org.sdase.commons.server.kafka.consumer.strategies;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetCommitCallback;
+import org.apache.kafka.common.TopicPartition;
 import org.sdase.commons.server.kafka.config.ConsumerConfig;
 import org.sdase.commons.server.kafka.consumer.MessageHandler;
 import org.sdase.commons.server.kafka.consumer.MessageListener;
+import org.sdase.commons.server.kafka.prometheus.ConsumerCommitMetrics;
 import org.sdase.commons.server.kafka.prometheus.ConsumerTopicMessageHistogram;
 
 /**
@@ -23,22 +31,105 @@ public abstract class MessageListenerStrategy<K, V> {
 
   protected ConsumerTopicMessageHistogram consumerProcessedMsgHistogram;
 
+  /** Metrics about offset commits, may be {@code null} if the strategy is used standalone. */
+  protected ConsumerCommitMetrics consumerCommitMetrics;
+
+  /**
+   * The topics that commits without explicit offsets are limited to, {@code null} if they cover all
+   * assigned partitions.
+   */
+  private Set<String> commitScope;
+
   public void init(ConsumerTopicMessageHistogram consumerTopicMessageHistogram) {
     this.consumerProcessedMsgHistogram = consumerTopicMessageHistogram;
   }
 
+  public void init(
+      ConsumerTopicMessageHistogram consumerTopicMessageHistogram,
+      ConsumerCommitMetrics consumerCommitMetrics) {
+    init(consumerTopicMessageHistogram);
+    this.consumerCommitMetrics = consumerCommitMetrics;
+  }
+
+  /**
+   * @return the metrics the strategy reports its commits to, {@code null} if the strategy is used
+   *     standalone
+   */
+  public ConsumerCommitMetrics getConsumerCommitMetrics() {
+    return consumerCommitMetrics;
+  }
+
+  /**
+   * Limits the commits of {@link #commitSync(KafkaConsumer)} and {@link #commitAsync(KafkaConsumer,
+   * OffsetCommitCallback)} to the partitions of the given topics. Used if the strategy shares the
+   * consumer with other strategies, so that its commits never cover records the other strategies
+   * have not handled yet.
+   *
+   * @param topics the topics the strategy handles
+   */
+  public void limitCommitsToTopics(Collection<String> topics) {
+    this.commitScope = new HashSet<>(topics);
+  }
+
+  /**
+   * @param consumer the consumer to communicate with Kafka
+   * @return the positions of the assigned partitions that are committed by {@link
+   *     #commitSync(KafkaConsumer)} and {@link #commitAsync(KafkaConsumer, OffsetCommitCallback)}
+   */
+  protected Map<TopicPartition, OffsetAndMetadata> getPositionsToCommit(
+      KafkaConsumer<K, V> consumer) {
+    Map<TopicPartition, OffsetAndMetadata> positions = new HashMap<>();
+    for (TopicPartition partition : consumer.assignment()) {
+      if (commitScope == null || commitScope.contains(partition.topic())) {
+        positions.put(partition, new OffsetAndMetadata(consumer.position(partition)));
+      }
+    }
+    return positions;
+  }
+
+  /**
+   * Commits the positions of the assigned partitions synchronously, like {@link
+   * KafkaConsumer#commitSync()}, but only of the topics the commits are limited to.
+   *
+   * @param consumer the consumer to communicate with Kafka
+   */
+  protected void commitSync(KafkaConsumer<K, V> consumer) {
+    if (commitScope == null) {
+      consumer.commitSync();
+    } else {
+      consumer.commitSync(getPositionsToCommit(consumer));
+    }
+  }
+
+  /**
+   * Commits the positions of the assigned partitions asynchronously, like {@link
+   * KafkaConsumer#commitAsync(OffsetCommitCallback)}, but only of the topics the commits are
+   * limited to.
+   *
+   * @param consumer the consumer to communicate with Kafka
+   * @param callback invoked by the consumer when the commit completes, may be {@code null}
+   */
+  protected void commitAsync(KafkaConsumer<K, V> consumer, OffsetCommitCallback callback) {
+    if (commitScope == null) {
+      consumer.commitAsync(callback);
+    } else {
+      consumer.commitAsync(getPositionsToCommit(consumer), callback);
+    }
+  }
+
   /**
    * Implementation of processing and commit logic during poll loop of {@link MessageListener}.
    *
    * <p>The strategy should collect the processing duration metric for each entry of records within
-   * the consumerProcessedMsgHistogram.
+   * the consumerProcessedMsgHistogram. The duration should be measured without allocating objects
+   * for each record.
    *
    * <pre>
-   * SimpleTimer timer = new SimpleTimer();
+   * long start = System.nanoTime();
    * handler.handle(record);
    *
    * // Prometheus
-   * double elapsedSeconds = timer.elapsedSeconds();
+   * double elapsedSeconds = SimpleTimer.elapsedSecondsFromNanos(start, System.nanoTime());
    * consumerProcessedMsgHistogram.observe(elapsedSeconds, consumerName, record.topic());
    * </pre>
    *
@@ -54,6 +145,44 @@ public abstract class MessageListenerStrategy<K, V> {
    */
   public abstract void commitOnClose(KafkaConsumer<K, V> consumer);
 
+  /**
+   * Invoked in the poll loop of the {@link MessageListener} before a rebalance takes partitions
+   * away from the consumer. Strategies should commit the offsets of processed records here.
+   *
+   * @param partitions the partitions that are revoked
+   * @param consumer the consumer to communicate with Kafka
+   */
+  public void onPartitionsRevoked(
+      Collection<TopicPartition> partitions, KafkaConsumer<K, V> consumer) {
+    // nothing to do by default
+  }
+
+  /**
+   * Invoked in the poll loop of the {@link MessageListener} after a rebalance assigned partitions
+   * to the consumer.
+   *
+   * @param partitions the partitions that are assigned now
+   * @param consumer the consumer to communicate with Kafka
+   */
+  public void onPartitionsAssigned(
+      Collection<TopicPartition> partitions, KafkaConsumer<K, V> consumer) {
+    // nothing to do by default
+  }
+
+  /**
+   * Asynchronous strategies that process records outside of the poll loop may report that they
+   * can't accept more records. Invoked by the {@link MessageListener} after each poll. While the
+   * strategy is saturated, the listener pauses all assigned partitions and keeps polling without
+   * receiving records, so the consumer stays in the group. The partitions are resumed when the
+   * strategy is not saturated anymore.
+   *
+   * @param consumer the consumer to communicate with Kafka
+   * @return {@code true} if the listener should stop fetching records for the consumer
+   */
+  public boolean isSaturated(KafkaConsumer<K, V> consumer) {
+    return false;
+  }
+
   public abstract void verifyConsumerConfig(Map<String, String> config);
 
   /**
@@ -0,0 +1,53 @@
+package org.sdase.commons.server.kafka.consumer.strategies;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import org.sdase.commons.server.kafka.exception.ConfigurationException;
+
+/**
+ * Creates executors that run each task in a new virtual thread. Virtual threads are available since
+ * Java 21. As the bundle is compiled for older Java versions, the API is accessed by reflection.
+ */
+public final class VirtualThreads {
+
+  private VirtualThreads() {
+    // no instance
+  }
+
+  /** @return if the current Java runtime supports virtual threads */
+  public static boolean isAvailable() {
+    try {
+      Thread.class.getMethod("ofVirtual");
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  /**
+   * @param namePrefix the prefix of the thread names, followed by a counter
+   * @return an executor that starts a new virtual thread for each task
+   * @throws ConfigurationException if the Java runtime does not support virtual threads
+   */
+  public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      builder =
+          builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+      ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+      Method newExecutor =
+          Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+      return (ExecutorService) newExecutor.invoke(null, factory);
+    } catch (NoSuchMethodException | ClassNotFoundException e) {
+      throw new ConfigurationException(
+          "Virtual threads require Java 21 or newer but running on Java "
+              + System.getProperty("java.version"));
+    } catch (IllegalAccessException | InvocationTargetException e) {
+      throw new IllegalStateException("Failed to create executor for virtual threads", e);
+    }
+  }
+}
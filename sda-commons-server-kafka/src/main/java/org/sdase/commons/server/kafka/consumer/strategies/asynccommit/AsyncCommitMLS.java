@@ -0,0 +1,223 @@
+package org.sdase.commons.server.kafka.consumer.strategies.asynccommit;
+
+import static org.sdase.commons.server.kafka.prometheus.ConsumerCommitMetrics.COMMIT_TYPE_ASYNC;
+import static org.sdase.commons.server.kafka.prometheus.ConsumerCommitMetrics.COMMIT_TYPE_SYNC;
+
+import io.prometheus.client.SimpleTimer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.kafka.clients.consumer.CommitFailedException;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.sdase.commons.server.kafka.consumer.ErrorHandler;
+import org.sdase.commons.server.kafka.consumer.KafkaHelper;
+import org.sdase.commons.server.kafka.consumer.MessageHandler;
+import org.sdase.commons.server.kafka.consumer.StopListenerException;
+import org.sdase.commons.server.kafka.consumer.strategies.MessageListenerStrategy;
+import org.sdase.commons.server.kafka.exception.ConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link MessageListenerStrategy} that commits asynchronously after each chunk of records without
+ * waiting for the broker. A failed asynchronous commit is not retried, it is superseded by the next
+ * commit. To limit the number of records that are consumed again if commits fail, the strategy
+ * commits synchronously every {@code syncCommitPolls} polls or every {@code syncCommitIntervalMs}
+ * milliseconds, before partitions are revoked in a rebalance and when the listener is closed.
+ *
+ * <p>Only polls that returned records are counted and checked for the interval. The synchronous
+ * commit is skipped if no records have been processed since the last successful one, so idle
+ * consumers don't block the poll loop with commits of unchanged offsets.
+ */
+public class AsyncCommitMLS<K, V> extends MessageListenerStrategy<K, V> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AsyncCommitMLS.class);
+
+  private static final int DEFAULT_SYNC_COMMIT_POLLS = 100;
+  private static final long DEFAULT_SYNC_COMMIT_INTERVAL_MS = 5_000L;
+
+  private final MessageHandler<K, V> handler;
+  private final ErrorHandler<K, V> errorHandler;
+  private final int syncCommitPolls;
+  private final long syncCommitIntervalMs;
+
+  /** The state of each consumer, as one strategy instance is shared by all listener instances. */
+  private final Map<KafkaConsumer<K, V>, CommitState> commitStates = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a strategy that commits synchronously every 100 polls or every 5 seconds.
+   *
+   * @param handler the handler that processes the records
+   * @param errorHandler the handler that decides how to proceed with failed records
+   */
+  public AsyncCommitMLS(MessageHandler<K, V> handler, ErrorHandler<K, V> errorHandler) {
+    this(handler, errorHandler, DEFAULT_SYNC_COMMIT_POLLS, DEFAULT_SYNC_COMMIT_INTERVAL_MS);
+  }
+
+  /**
+   * @param handler the handler that processes the records
+   * @param errorHandler the handler that decides how to proceed with failed records
+   * @param syncCommitPolls the number of polls after which the offsets are committed synchronously
+   * @param syncCommitIntervalMs the time in milliseconds after which the offsets are committed
+   *     synchronously
+   */
+  public AsyncCommitMLS(
+      MessageHandler<K, V> handler,
+      ErrorHandler<K, V> errorHandler,
+      int syncCommitPolls,
+      long syncCommitIntervalMs) {
+    if (syncCommitPolls < 1) {
+      throw new IllegalArgumentException("syncCommitPolls must be at least 1");
+    }
+    this.handler = handler;
+    this.errorHandler = errorHandler;
+    this.syncCommitPolls = syncCommitPolls;
+    this.syncCommitIntervalMs = syncCommitIntervalMs;
+  }
+
+  @Override
+  public void processRecords(ConsumerRecords<K, V> records, KafkaConsumer<K, V> consumer) {
+    if (records.isEmpty()) {
+      return;
+    }
+    CommitState state = getState(consumer);
+    state.uncommittedSync = true;
+
+    for (ConsumerRecord<K, V> record : records) {
+      LOGGER.debug("Handling message for {}", record.key());
+      try {
+        long start = System.nanoTime();
+        handler.handle(record);
+
+        // Prometheus
+        double elapsedSeconds = SimpleTimer.elapsedSecondsFromNanos(start, System.nanoTime());
+        consumerProcessedMsgHistogram.observe(elapsedSeconds, state.consumerName, record.topic());
+
+        if (LOGGER.isTraceEnabled()) {
+          LOGGER.trace(
+              "calculated duration {} for message consumed by {} from {}",
+              elapsedSeconds,
+              state.consumerName,
+              record.topic());
+        }
+
+      } catch (RuntimeException e) {
+        LOGGER.error(
+            "Error while handling record {} in message handler {}",
+            record.key(),
+            handler.getClass(),
+            e);
+        boolean shouldContinue = errorHandler.handleError(record, e, consumer);
+        if (!shouldContinue) {
+          throw new StopListenerException(e);
+        }
+      }
+    }
+
+    state.pollsSinceSyncCommit++;
+    if (state.pollsSinceSyncCommit >= syncCommitPolls
+        || System.currentTimeMillis() - state.lastSyncCommit >= syncCommitIntervalMs) {
+      commitSync(state, consumer);
+    } else {
+      commitAsync(state, consumer);
+    }
+  }
+
+  @Override
+  public void onPartitionsRevoked(
+      Collection<TopicPartition> partitions, KafkaConsumer<K, V> consumer) {
+    commitSync(getState(consumer), consumer);
+  }
+
+  @Override
+  public void commitOnClose(KafkaConsumer<K, V> consumer) {
+    CommitState state = commitStates.remove(consumer);
+    commitSync(state != null ? state : new CommitState(consumer), consumer);
+  }
+
+  private CommitState getState(KafkaConsumer<K, V> consumer) {
+    return commitStates.computeIfAbsent(consumer, CommitState::new);
+  }
+
+  private void commitAsync(CommitState state, KafkaConsumer<K, V> consumer) {
+    long start = System.nanoTime();
+    commitAsync(
+        consumer,
+        (offsets, exception) -> {
+          // invoked by the consumer within the poll loop
+          if (exception == null) {
+            if (consumerCommitMetrics != null) {
+              consumerCommitMetrics.observeCommit(
+                  SimpleTimer.elapsedSecondsFromNanos(start, System.nanoTime()),
+                  state.consumerName,
+                  COMMIT_TYPE_ASYNC);
+              consumerCommitMetrics.observeCommittedOffsets(state.consumerName, offsets);
+            }
+          } else {
+            LOGGER.warn("Async commit of {} failed", offsets, exception);
+            if (consumerCommitMetrics != null) {
+              consumerCommitMetrics.increaseFailedCommits(state.consumerName, COMMIT_TYPE_ASYNC);
+            }
+          }
+        });
+  }
+
+  private void commitSync(CommitState state, KafkaConsumer<K, V> consumer) {
+    state.pollsSinceSyncCommit = 0;
+    state.lastSyncCommit = System.currentTimeMillis();
+    if (!state.uncommittedSync) {
+      return;
+    }
+    try {
+      long start = System.nanoTime();
+      commitSync(consumer);
+      state.uncommittedSync = false;
+      if (consumerCommitMetrics != null) {
+        consumerCommitMetrics.observeCommit(
+            SimpleTimer.elapsedSecondsFromNanos(start, System.nanoTime()),
+            state.consumerName,
+            COMMIT_TYPE_SYNC);
+        consumerCommitMetrics.observeCommittedOffsets(
+            state.consumerName, getPositionsToCommit(consumer));
+      }
+    } catch (CommitFailedException e) {
+      LOGGER.error("Commit failed", e);
+      if (consumerCommitMetrics != null) {
+        consumerCommitMetrics.increaseFailedCommits(state.consumerName, COMMIT_TYPE_SYNC);
+      }
+    }
+  }
+
+  @Override
+  public void verifyConsumerConfig(Map<String, String> config) {
+    if (Boolean.valueOf(config.getOrDefault(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "true"))) {
+      throw new ConfigurationException(
+          "The strategy should NOT use autocommit but property 'enable.auto.commit' in consumer config is set to 'true' (which is the default and must be disabled).");
+    }
+  }
+
+  @Override
+  public Map<String, String> forcedConfigToApply() {
+    return Collections.singletonMap(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+  }
+
+  /** Tracks when the offsets of a consumer have been committed synchronously. */
+  private static class CommitState {
+
+    private final String consumerName;
+    private int pollsSinceSyncCommit;
+    private long lastSyncCommit = System.currentTimeMillis();
+
+    /** If records have been processed since the last successful synchronous commit. */
+    private boolean uncommittedSync;
+
+    private CommitState(KafkaConsumer<?, ?> consumer) {
+      this.consumerName = KafkaHelper.getClientId(consumer);
+    }
+  }
+}
@@ -39,11 +39,11 @@ public class AutocommitMLS<K, V> extends MessageListenerStrategy<K, V> {
     for (ConsumerRecord<K, V> record : records) {
       LOGGER.debug("Handling message for {}", record.key());
       try {
-        SimpleTimer timer = new SimpleTimer();
+        long start = System.nanoTime();
         handler.handle(record);
 
         // Prometheus
-        double elapsedSeconds = timer.elapsedSeconds();
+        double elapsedSeconds = SimpleTimer.elapsedSecondsFromNanos(start, System.nanoTime());
         consumerProcessedMsgHistogram.observe(elapsedSeconds, consumerName, record.topic());
 
         if (LOGGER.isTraceEnabled()) {
@@ -71,7 +71,7 @@ public class AutocommitMLS<K, V> extends MessageListenerStrategy<K, V> {
   @Override
   public void commitOnClose(KafkaConsumer<K, V> consumer) {
     try {
-      consumer.commitSync();
+      commitSync(consumer);
     } catch (CommitFailedException e) {
       LOGGER.error("Commit failed", e);
     }
@@ -0,0 +1,206 @@
+package org.sdase.commons.server.kafka.consumer.strategies.batch;
+
+import io.prometheus.client.SimpleTimer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.kafka.clients.consumer.CommitFailedException;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.sdase.commons.server.kafka.consumer.BatchMessageHandler;
+import org.sdase.commons.server.kafka.consumer.ErrorHandler;
+import org.sdase.commons.server.kafka.consumer.KafkaHelper;
+import org.sdase.commons.server.kafka.consumer.StopListenerException;
+import org.sdase.commons.server.kafka.consumer.strategies.MessageListenerStrategy;
+import org.sdase.commons.server.kafka.exception.ConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link MessageListenerStrategy} that passes the records to a {@link BatchMessageHandler}, either
+ * all records of a poll at once or the records of each partition separately. The offsets of the
+ * poll are committed synchronously after all batches are processed.
+ *
+ * <p>Instead of the duration of each message, the size and the duration of each batch is observed.
+ */
+public class BatchMLS<K, V> extends MessageListenerStrategy<K, V> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BatchMLS.class);
+
+  /** Defines which records are passed to the handler at once. */
+  public enum BatchScope {
+    /** All records of a poll are passed to the handler at once. */
+    POLL,
+    /** The records of each partition within a poll are passed to the handler separately. */
+    PARTITION
+  }
+
+  /** Defines how the {@link ErrorHandler} is involved if a batch fails. */
+  public enum BatchErrorMode {
+    /**
+     * The records of the failed batch are passed to the handler one by one. The {@link
+     * ErrorHandler} is called for each record that fails again. The handler must be able to process
+     * records again that have been part of the failed batch.
+     */
+    PER_RECORD,
+    /** The {@link ErrorHandler} is called once with the first record of the failed batch. */
+    PER_BATCH
+  }
+
+  private final BatchMessageHandler<K, V> handler;
+  private final ErrorHandler<K, V> errorHandler;
+  private final BatchScope scope;
+  private final BatchErrorMode errorMode;
+  private String consumerName;
+
+  /**
+   * Creates a strategy that passes the records of each partition separately to the handler and
+   * falls back to the records one by one if a batch fails.
+   *
+   * @param handler the handler that processes the batches
+   * @param errorHandler the handler that decides how to proceed with failed records
+   */
+  public BatchMLS(BatchMessageHandler<K, V> handler, ErrorHandler<K, V> errorHandler) {
+    this(handler, errorHandler, BatchScope.PARTITION, BatchErrorMode.PER_RECORD);
+  }
+
+  /**
+   * @param handler the handler that processes the batches
+   * @param errorHandler the handler that decides how to proceed with failed records
+   * @param scope which records are passed to the handler at once
+   * @param errorMode how the error handler is involved if a batch fails
+   */
+  public BatchMLS(
+      BatchMessageHandler<K, V> handler,
+      ErrorHandler<K, V> errorHandler,
+      BatchScope scope,
+      BatchErrorMode errorMode) {
+    this.handler = handler;
+    this.errorHandler = errorHandler;
+    this.scope = scope;
+    this.errorMode = errorMode;
+  }
+
+  @Override
+  public void processRecords(ConsumerRecords<K, V> records, KafkaConsumer<K, V> consumer) {
+    if (consumerName == null) {
+      consumerName = KafkaHelper.getClientId(consumer);
+    }
+    if (records.isEmpty()) {
+      return;
+    }
+
+    if (scope == BatchScope.POLL) {
+      List<ConsumerRecord<K, V>> batch = new ArrayList<>(records.count());
+      records.forEach(batch::add);
+      processBatch(batch, consumer);
+    } else {
+      for (TopicPartition partition : records.partitions()) {
+        processBatch(records.records(partition), consumer);
+      }
+    }
+    commit(consumer);
+  }
+
+  private void processBatch(List<ConsumerRecord<K, V>> batch, KafkaConsumer<K, V> consumer) {
+    LOGGER.debug("Handling batch of {} messages", batch.size());
+    try {
+      long start = System.nanoTime();
+      handler.handle(Collections.unmodifiableList(batch));
+
+      // Prometheus
+      double elapsedSeconds = SimpleTimer.elapsedSecondsFromNanos(start, System.nanoTime());
+      observeBatch(batch, elapsedSeconds);
+
+    } catch (RuntimeException e) {
+      LOGGER.error(
+          "Error while handling batch of {} records in message handler {}",
+          batch.size(),
+          handler.getClass(),
+          e);
+      if (errorMode == BatchErrorMode.PER_BATCH || batch.size() == 1) {
+        handleError(batch.get(0), e, consumer);
+      } else {
+        batch.forEach(record -> processSingleRecord(record, consumer));
+      }
+    }
+  }
+
+  private void processSingleRecord(ConsumerRecord<K, V> record, KafkaConsumer<K, V> consumer) {
+    try {
+      handler.handle(Collections.singletonList(record));
+    } catch (RuntimeException e) {
+      LOGGER.error(
+          "Error while handling record {} in message handler {}",
+          record.key(),
+          handler.getClass(),
+          e);
+      handleError(record, e, consumer);
+    }
+  }
+
+  private void handleError(
+      ConsumerRecord<K, V> record, RuntimeException e, KafkaConsumer<K, V> consumer) {
+    boolean shouldContinue = errorHandler.handleError(record, e, consumer);
+    if (!shouldContinue) {
+      throw new StopListenerException(e);
+    }
+  }
+
+  private void observeBatch(List<ConsumerRecord<K, V>> batch, double elapsedSeconds) {
+    Map<String, Integer> sizePerTopic = new HashMap<>();
+    batch.forEach(record -> sizePerTopic.merge(record.topic(), 1, Integer::sum));
+    sizePerTopic.forEach(
+        (topic, size) ->
+            consumerProcessedMsgHistogram.observeBatch(size, elapsedSeconds, consumerName, topic));
+
+    if (LOGGER.isTraceEnabled()) {
+      LOGGER.trace(
+          "calculated duration {} for batch of {} messages consumed by {}",
+          elapsedSeconds,
+          batch.size(),
+          consumerName);
+    }
+  }
+
+  @Override
+  public void onPartitionsRevoked(
+      Collection<TopicPartition> partitions, KafkaConsumer<K, V> consumer) {
+    // the offsets of the last poll are committed already, unless that commit failed
+    if (!partitions.isEmpty()) {
+      commit(consumer);
+    }
+  }
+
+  @Override
+  public void commitOnClose(KafkaConsumer<K, V> consumer) {
+    commit(consumer);
+  }
+
+  private void commit(KafkaConsumer<K, V> consumer) {
+    try {
+      commitSync(consumer);
+    } catch (CommitFailedException e) {
+      LOGGER.error("Commit failed", e);
+    }
+  }
+
+  @Override
+  public void verifyConsumerConfig(Map<String, String> config) {
+    if (Boolean.valueOf(config.getOrDefault(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "true"))) {
+      throw new ConfigurationException(
+          "The strategy should NOT use autocommit but property 'enable.auto.commit' in consumer config is set to 'true' (which is the default and must be disabled).");
+    }
+  }
+
+  @Override
+  public Map<String, String> forcedConfigToApply() {
+    return Collections.singletonMap(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+  }
+}
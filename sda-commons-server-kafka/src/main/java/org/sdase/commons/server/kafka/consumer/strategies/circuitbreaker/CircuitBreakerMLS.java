@@ -0,0 +1,166 @@
+package org.sdase.commons.server.kafka.consumer.strategies.circuitbreaker;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker.State;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.sdase.commons.server.kafka.consumer.strategies.MessageListenerStrategy;
+import org.sdase.commons.server.kafka.prometheus.ConsumerCommitMetrics;
+import org.sdase.commons.server.kafka.prometheus.ConsumerTopicMessageHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link MessageListenerStrategy} that passes records to another strategy depending on the state of
+ * the {@link CircuitBreaker} that protects the downstream system of the handler:
+ *
+ * <ul>
+ *   <li>While the circuit breaker is closed, all records are passed.
+ *   <li>While the circuit breaker is open, no records are passed and the strategy reports that it
+ *       {@link #isSaturated(KafkaConsumer) is saturated}, so the {@code MessageListener} pauses all
+ *       partitions.
+ *   <li>While the circuit breaker is half open, only the first records of each poll are passed, so
+ *       that a few calls can test the downstream system.
+ * </ul>
+ *
+ * <p>Records that are not passed are consumed again later, because the consumer seeks back to the
+ * first record of each partition that has not been passed. The order of the records within a
+ * partition is retained.
+ *
+ * <p>The state is only read, the circuit breaker must transition from open to half open
+ * automatically. Circuit breakers of the {@code CircuitBreakerBundle} are configured accordingly.
+ *
+ * @param <K> key object type
+ * @param <V> value object type
+ */
+public class CircuitBreakerMLS<K, V> extends MessageListenerStrategy<K, V> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreakerMLS.class);
+
+  /** The default number of records passed for each poll while the circuit breaker is half open. */
+  public static final int DEFAULT_HALF_OPEN_RECORDS_PER_POLL = 1;
+
+  private final CircuitBreaker circuitBreaker;
+
+  private final MessageListenerStrategy<K, V> strategy;
+
+  private final int halfOpenRecordsPerPoll;
+
+  /**
+   * @param circuitBreaker the circuit breaker that protects the downstream system of the handler
+   * @param strategy the strategy to pass the records to
+   */
+  public CircuitBreakerMLS(CircuitBreaker circuitBreaker, MessageListenerStrategy<K, V> strategy) {
+    this(circuitBreaker, strategy, DEFAULT_HALF_OPEN_RECORDS_PER_POLL);
+  }
+
+  /**
+   * @param circuitBreaker the circuit breaker that protects the downstream system of the handler
+   * @param strategy the strategy to pass the records to
+   * @param halfOpenRecordsPerPoll the number of records passed for each poll while the circuit
+   *     breaker is half open
+   */
+  public CircuitBreakerMLS(
+      CircuitBreaker circuitBreaker,
+      MessageListenerStrategy<K, V> strategy,
+      int halfOpenRecordsPerPoll) {
+    this.circuitBreaker = circuitBreaker;
+    this.strategy = strategy;
+    this.halfOpenRecordsPerPoll = halfOpenRecordsPerPoll;
+  }
+
+  @Override
+  public void init(ConsumerTopicMessageHistogram consumerTopicMessageHistogram) {
+    super.init(consumerTopicMessageHistogram);
+    strategy.init(consumerTopicMessageHistogram);
+  }
+
+  @Override
+  public void init(
+      ConsumerTopicMessageHistogram consumerTopicMessageHistogram,
+      ConsumerCommitMetrics consumerCommitMetrics) {
+    super.init(consumerTopicMessageHistogram, consumerCommitMetrics);
+    strategy.init(consumerTopicMessageHistogram, consumerCommitMetrics);
+  }
+
+  @Override
+  public void processRecords(ConsumerRecords<K, V> records, KafkaConsumer<K, V> consumer) {
+    State state = circuitBreaker.getState();
+    if (records.isEmpty() || !isBlocking(state) && state != State.HALF_OPEN) {
+      strategy.processRecords(records, consumer);
+      return;
+    }
+
+    int limit = isBlocking(state) ? 0 : halfOpenRecordsPerPoll;
+    int passedCount = 0;
+    Map<TopicPartition, List<ConsumerRecord<K, V>>> passed = new HashMap<>();
+    for (TopicPartition partition : records.partitions()) {
+      List<ConsumerRecord<K, V>> recordsOfPartition = records.records(partition);
+      int count = Math.min(limit - passedCount, recordsOfPartition.size());
+      if (count > 0) {
+        passed.put(partition, new ArrayList<>(recordsOfPartition.subList(0, count)));
+        passedCount += count;
+      }
+      if (count < recordsOfPartition.size()) {
+        // seek before the strategy commits the position of the consumer
+        consumer.seek(partition, recordsOfPartition.get(count).offset());
+      }
+    }
+    LOGGER.debug(
+        "Circuit breaker {} is {}, passing {} of {} records",
+        circuitBreaker.getName(),
+        state,
+        passedCount,
+        records.count());
+    strategy.processRecords(
+        passed.isEmpty() ? ConsumerRecords.empty() : new ConsumerRecords<>(passed), consumer);
+  }
+
+  @Override
+  public boolean isSaturated(KafkaConsumer<K, V> consumer) {
+    return isBlocking(circuitBreaker.getState()) || strategy.isSaturated(consumer);
+  }
+
+  @Override
+  public void commitOnClose(KafkaConsumer<K, V> consumer) {
+    strategy.commitOnClose(consumer);
+  }
+
+  @Override
+  public void onPartitionsRevoked(
+      Collection<TopicPartition> partitions, KafkaConsumer<K, V> consumer) {
+    strategy.onPartitionsRevoked(partitions, consumer);
+  }
+
+  @Override
+  public void onPartitionsAssigned(
+      Collection<TopicPartition> partitions, KafkaConsumer<K, V> consumer) {
+    strategy.onPartitionsAssigned(partitions, consumer);
+  }
+
+  @Override
+  public void verifyConsumerConfig(Map<String, String> config) {
+    strategy.verifyConsumerConfig(config);
+  }
+
+  @Override
+  public Map<String, String> forcedConfigToApply() {
+    return strategy.forcedConfigToApply();
+  }
+
+  /** @return the strategy the records are passed to */
+  public MessageListenerStrategy<K, V> getStrategy() {
+    return strategy;
+  }
+
+  private static boolean isBlocking(State state) {
+    return state == State.OPEN || state == State.FORCED_OPEN;
+  }
+}
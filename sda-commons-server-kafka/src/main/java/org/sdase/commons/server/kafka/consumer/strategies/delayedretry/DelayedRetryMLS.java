@@ -0,0 +1,384 @@
+package org.sdase.commons.server.kafka.consumer.strategies.delayedretry;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.prometheus.client.SimpleTimer;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import org.apache.kafka.clients.consumer.CommitFailedException;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.sdase.commons.server.kafka.builder.ProducerRegistration;
+import org.sdase.commons.server.kafka.consumer.ErrorHandler;
+import org.sdase.commons.server.kafka.consumer.KafkaHelper;
+import org.sdase.commons.server.kafka.consumer.MessageHandler;
+import org.sdase.commons.server.kafka.consumer.StopListenerException;
+import org.sdase.commons.server.kafka.consumer.strategies.MessageListenerStrategy;
+import org.sdase.commons.server.kafka.exception.ConfigurationException;
+import org.sdase.commons.server.kafka.producer.MessageProducer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link MessageListenerStrategy} that retries failed records with an exponential backoff. Other
+ * than the {@link
+ * org.sdase.commons.server.kafka.consumer.strategies.retryprocessingerror.RetryProcessingErrorMLS},
+ * the strategy does not consume the failed record again immediately but pauses the partition of the
+ * failed record until the backoff expired. All other partitions of the consumer are processed as
+ * usual in the meantime.
+ *
+ * <p>If a record still fails after the maximum number of retries, it is forwarded to another topic
+ * if a {@link MessageProducer} is configured, e.g. a retry topic that is consumed by another
+ * listener with a longer backoff or a dead letter topic. The forwarded record contains the headers
+ * {@value #HEADER_SOURCE_TOPIC}, {@value #HEADER_SOURCE_PARTITION}, {@value #HEADER_SOURCE_OFFSET}
+ * and {@value #HEADER_EXCEPTION} in addition to the original headers. Without a producer, the
+ * {@link ErrorHandler} decides if the record is skipped or if the listener stops.
+ *
+ * <p>The offsets are committed for each partition after the records of a poll are processed. When
+ * partitions are revoked or the listener is closed, only the offsets of the handled records are
+ * committed, because the position of the consumer may be behind records that have not been handled
+ * when the listener stopped.
+ */
+public class DelayedRetryMLS<K, V> extends MessageListenerStrategy<K, V> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DelayedRetryMLS.class);
+
+  /** Header with the topic the forwarded record has been consumed from. */
+  public static final String HEADER_SOURCE_TOPIC = "retry-source-topic";
+
+  /** Header with the partition the forwarded record has been consumed from. */
+  public static final String HEADER_SOURCE_PARTITION = "retry-source-partition";
+
+  /** Header with the offset of the forwarded record in the source partition. */
+  public static final String HEADER_SOURCE_OFFSET = "retry-source-offset";
+
+  /** Header with the class name of the exception of the last attempt. */
+  public static final String HEADER_EXCEPTION = "retry-exception";
+
+  private final MessageHandler<K, V> handler;
+  private final ErrorHandler<K, V> errorHandler;
+  private final long initialBackoffMs;
+  private final long maxBackoffMs;
+  private final double multiplier;
+  private final int maxRetries;
+  private final MessageProducer<K, V> forwardProducer;
+
+  /** The records in backoff of each consumer, as the strategy is shared by all listeners. */
+  private final Map<KafkaConsumer<K, V>, Map<TopicPartition, Retry>> retries =
+      new ConcurrentHashMap<>();
+
+  /** The offset after the last handled record of each partition of each consumer. */
+  private final Map<KafkaConsumer<K, V>, Map<TopicPartition, OffsetAndMetadata>> handledOffsets =
+      new ConcurrentHashMap<>();
+
+  private String consumerName;
+
+  private DelayedRetryMLS(Builder<K, V> builder) {
+    this.handler = builder.handler;
+    this.errorHandler = builder.errorHandler;
+    this.initialBackoffMs = builder.initialBackoff.toMillis();
+    this.maxBackoffMs = builder.maxBackoff.toMillis();
+    this.multiplier = builder.multiplier;
+    this.maxRetries = builder.maxRetries;
+    this.forwardProducer = builder.forwardProducer;
+  }
+
+  /**
+   * @param handler the handler that processes the records
+   * @param errorHandler the handler that decides how to proceed with records that failed after all
+   *     retries if they are not forwarded
+   * @param <K> key object type
+   * @param <V> value object type
+   * @return a builder to configure the backoff
+   */
+  public static <K, V> Builder<K, V> builder(
+      MessageHandler<K, V> handler, ErrorHandler<K, V> errorHandler) {
+    return new Builder<>(handler, errorHandler);
+  }
+
+  @Override
+  public void processRecords(ConsumerRecords<K, V> records, KafkaConsumer<K, V> consumer) {
+    if (consumerName == null) {
+      consumerName = KafkaHelper.getClientId(consumer);
+    }
+    Map<TopicPartition, Retry> consumerRetries =
+        retries.computeIfAbsent(consumer, c -> new HashMap<>());
+    Map<TopicPartition, OffsetAndMetadata> consumerHandledOffsets =
+        handledOffsets.computeIfAbsent(consumer, c -> new HashMap<>());
+    resumeExpiredBackoffs(consumerRetries, consumer);
+
+    for (TopicPartition partition : records.partitions()) {
+      processRecordsByPartition(
+          records.records(partition), partition, consumerRetries, consumerHandledOffsets, consumer);
+    }
+  }
+
+  private void processRecordsByPartition(
+      List<ConsumerRecord<K, V>> partitionRecords,
+      TopicPartition partition,
+      Map<TopicPartition, Retry> consumerRetries,
+      Map<TopicPartition, OffsetAndMetadata> consumerHandledOffsets,
+      KafkaConsumer<K, V> consumer) {
+    OffsetAndMetadata lastCommitOffset = null;
+    for (ConsumerRecord<K, V> record : partitionRecords) {
+      LOGGER.debug("Handling message for {}", record.key());
+      try {
+        long start = System.nanoTime();
+        handler.handle(record);
+        consumerRetries.remove(partition);
+        // mark last successful processed record for commit
+        lastCommitOffset = new OffsetAndMetadata(record.offset() + 1);
+        consumerHandledOffsets.put(partition, lastCommitOffset);
+
+        // Prometheus
+        double elapsedSeconds = SimpleTimer.elapsedSecondsFromNanos(start, System.nanoTime());
+        consumerProcessedMsgHistogram.observe(elapsedSeconds, consumerName, record.topic());
+
+      } catch (RuntimeException e) {
+        Retry retry = consumerRetries.get(partition);
+        int retriesDone = retry != null && retry.offset == record.offset() ? retry.retries : 0;
+        if (retriesDone < maxRetries) {
+          LOGGER.warn(
+              "Error while handling record {} in message handler {}, will be retried",
+              record.key(),
+              handler.getClass(),
+              e);
+          backoff(partition, record.offset(), retriesDone + 1, consumerRetries, consumer);
+          break;
+        }
+        LOGGER.error(
+            "Error while handling record {} in message handler {}, no retries left",
+            record.key(),
+            handler.getClass(),
+            e);
+        if (!giveUp(record, e, consumer)) {
+          // forwarding failed, the record stays in the partition
+          backoff(partition, record.offset(), retriesDone, consumerRetries, consumer);
+          break;
+        }
+        consumerRetries.remove(partition);
+        lastCommitOffset = new OffsetAndMetadata(record.offset() + 1);
+        consumerHandledOffsets.put(partition, lastCommitOffset);
+      }
+    }
+    if (lastCommitOffset != null) {
+      commit(Collections.singletonMap(partition, lastCommitOffset), consumer);
+    }
+  }
+
+  /**
+   * Forwards the record or asks the error handler.
+   *
+   * @return {@code false} if the record could not be forwarded and should be retried
+   */
+  private boolean giveUp(
+      ConsumerRecord<K, V> record, RuntimeException e, KafkaConsumer<K, V> consumer) {
+    if (forwardProducer == null) {
+      boolean shouldContinue = errorHandler.handleError(record, e, consumer);
+      if (!shouldContinue) {
+        throw new StopListenerException(e);
+      }
+      return true;
+    }
+    try {
+      forwardProducer.send(record.key(), record.value(), createForwardHeaders(record, e)).get();
+      return true;
+    } catch (ExecutionException | RuntimeException forwardException) {
+      LOGGER.error("Failed to forward record {}", record.key(), forwardException);
+      return false;
+    } catch (InterruptedException interruptedException) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private Headers createForwardHeaders(ConsumerRecord<K, V> record, RuntimeException e) {
+    Headers headers = new RecordHeaders(record.headers().toArray());
+    headers.remove(HEADER_SOURCE_TOPIC);
+    headers.remove(HEADER_SOURCE_PARTITION);
+    headers.remove(HEADER_SOURCE_OFFSET);
+    headers.remove(HEADER_EXCEPTION);
+    headers.add(HEADER_SOURCE_TOPIC, record.topic().getBytes(UTF_8));
+    headers.add(HEADER_SOURCE_PARTITION, String.valueOf(record.partition()).getBytes(UTF_8));
+    headers.add(HEADER_SOURCE_OFFSET, String.valueOf(record.offset()).getBytes(UTF_8));
+    headers.add(HEADER_EXCEPTION, e.getClass().getName().getBytes(UTF_8));
+    return headers;
+  }
+
+  private void backoff(
+      TopicPartition partition,
+      long offset,
+      int retry,
+      Map<TopicPartition, Retry> consumerRetries,
+      KafkaConsumer<K, V> consumer) {
+    long backoffMs = backoffMs(retry);
+    consumerRetries.put(
+        partition, new Retry(offset, retry, System.currentTimeMillis() + backoffMs));
+    // the failed record is consumed again when the partition is resumed
+    consumer.seek(partition, offset);
+    consumer.pause(Collections.singleton(partition));
+    LOGGER.info("Pausing partition {} for {} ms before retry {}", partition, backoffMs, retry);
+  }
+
+  private long backoffMs(int retry) {
+    double backoff = initialBackoffMs * Math.pow(multiplier, Math.max(0, retry - 1));
+    return (long) Math.min(backoff, maxBackoffMs);
+  }
+
+  private void resumeExpiredBackoffs(
+      Map<TopicPartition, Retry> consumerRetries, KafkaConsumer<K, V> consumer) {
+    long now = System.currentTimeMillis();
+    for (Entry<TopicPartition, Retry> entry : consumerRetries.entrySet()) {
+      Retry retry = entry.getValue();
+      if (retry.paused && retry.resumeAt <= now) {
+        retry.paused = false;
+        if (consumer.assignment().contains(entry.getKey())) {
+          consumer.resume(Collections.singleton(entry.getKey()));
+        }
+      }
+    }
+  }
+
+  @Override
+  public void onPartitionsRevoked(
+      Collection<TopicPartition> partitions, KafkaConsumer<K, V> consumer) {
+    // the failed records are consumed again by the consumer the partitions are assigned to next
+    Map<TopicPartition, OffsetAndMetadata> consumerHandledOffsets = handledOffsets.get(consumer);
+    if (consumerHandledOffsets != null) {
+      Map<TopicPartition, OffsetAndMetadata> revokedOffsets = new HashMap<>();
+      for (TopicPartition partition : partitions) {
+        OffsetAndMetadata offset = consumerHandledOffsets.remove(partition);
+        if (offset != null) {
+          revokedOffsets.put(partition, offset);
+        }
+      }
+      commit(revokedOffsets, consumer);
+    }
+    Map<TopicPartition, Retry> consumerRetries = retries.get(consumer);
+    if (consumerRetries != null) {
+      consumerRetries.keySet().removeAll(partitions);
+    }
+  }
+
+  @Override
+  public void commitOnClose(KafkaConsumer<K, V> consumer) {
+    retries.remove(consumer);
+    Map<TopicPartition, OffsetAndMetadata> consumerHandledOffsets = handledOffsets.remove(consumer);
+    if (consumerHandledOffsets != null) {
+      commit(consumerHandledOffsets, consumer);
+    }
+  }
+
+  private void commit(
+      Map<TopicPartition, OffsetAndMetadata> offsets, KafkaConsumer<K, V> consumer) {
+    if (offsets.isEmpty()) {
+      return;
+    }
+    try {
+      consumer.commitSync(offsets);
+    } catch (CommitFailedException e) {
+      LOGGER.error("Commit failed", e);
+    }
+  }
+
+  @Override
+  public void verifyConsumerConfig(Map<String, String> config) {
+    if (Boolean.valueOf(config.getOrDefault(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "true"))) {
+      throw new ConfigurationException(
+          "The strategy should commit explicitly by partition but property 'enable.auto.commit' in consumer config is set to 'true'");
+    }
+  }
+
+  @Override
+  public Map<String, String> forcedConfigToApply() {
+    return Collections.singletonMap(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+  }
+
+  /** The state of a record that failed and is retried after the backoff. */
+  private static class Retry {
+
+    private final long offset;
+    private final int retries;
+    private final long resumeAt;
+    private boolean paused = true;
+
+    private Retry(long offset, int retries, long resumeAt) {
+      this.offset = offset;
+      this.retries = retries;
+      this.resumeAt = resumeAt;
+    }
+  }
+
+  public static class Builder<K, V> {
+
+    private final MessageHandler<K, V> handler;
+    private final ErrorHandler<K, V> errorHandler;
+    private Duration initialBackoff = Duration.ofSeconds(1);
+    private Duration maxBackoff = Duration.ofMinutes(5);
+    private double multiplier = 2.0;
+    private int maxRetries = Integer.MAX_VALUE;
+    private MessageProducer<K, V> forwardProducer;
+
+    private Builder(MessageHandler<K, V> handler, ErrorHandler<K, V> errorHandler) {
+      this.handler = handler;
+      this.errorHandler = errorHandler;
+    }
+
+    /**
+     * @param initialBackoff the time to wait before the first retry, defaults to 1 second
+     * @param maxBackoff the maximum time to wait before a retry, defaults to 5 minutes
+     * @param multiplier the factor the backoff is increased with for each retry, defaults to 2
+     * @return the same builder instance
+     */
+    public Builder<K, V> withBackoff(
+        Duration initialBackoff, Duration maxBackoff, double multiplier) {
+      if (multiplier < 1.0) {
+        throw new IllegalArgumentException("multiplier must be at least 1");
+      }
+      this.initialBackoff = initialBackoff;
+      this.maxBackoff = maxBackoff;
+      this.multiplier = multiplier;
+      return this;
+    }
+
+    /**
+     * @param maxRetries the number of retries before the record is forwarded or passed to the error
+     *     handler, retries infinitely by default
+     * @return the same builder instance
+     */
+    public Builder<K, V> withMaxRetries(int maxRetries) {
+      if (maxRetries < 0) {
+        throw new IllegalArgumentException("maxRetries must not be negative");
+      }
+      this.maxRetries = maxRetries;
+      return this;
+    }
+
+    /**
+     * @param producer the producer for the retry topic or dead letter topic records are forwarded
+     *     to if they failed after all retries, created with a {@link ProducerRegistration}
+     * @return the same builder instance
+     */
+    public Builder<K, V> forwardFailedRecordsTo(MessageProducer<K, V> producer) {
+      this.forwardProducer = producer;
+      return this;
+    }
+
+    public DelayedRetryMLS<K, V> build() {
+      return new DelayedRetryMLS<>(this);
+    }
+  }
+}
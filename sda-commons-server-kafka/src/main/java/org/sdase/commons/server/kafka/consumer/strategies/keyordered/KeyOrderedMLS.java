@@ -0,0 +1,143 @@
+package org.sdase.commons.server.kafka.consumer.strategies.keyordered;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.sdase.commons.server.kafka.consumer.ErrorHandler;
+import org.sdase.commons.server.kafka.consumer.MessageHandler;
+import org.sdase.commons.server.kafka.consumer.strategies.AsyncMessageListenerStrategy;
+import org.sdase.commons.server.kafka.consumer.strategies.MessageListenerStrategy;
+
+/**
+ * {@link MessageListenerStrategy} that distributes the records by the hash of their key to a fixed
+ * number of lanes for each consumer. Each lane processes its records one after another, so records
+ * with the same key are processed in the order of their offsets while records of the same partition
+ * with different keys are processed in parallel. Records without key are assigned to a lane by
+ * their partition.
+ *
+ * <p>Records of a partition complete in any order. For each partition, only the lowest offset that
+ * is not yet processed is committed.
+ */
+public class KeyOrderedMLS<K, V> extends AsyncMessageListenerStrategy<K, V> {
+
+  private static final int DEFAULT_MAX_IN_FLIGHT_RECORDS = 1000;
+
+  private final int lanes;
+
+  /**
+   * Creates a strategy that uses as many lanes as processors are available.
+   *
+   * @param handler the handler that processes the records
+   * @param errorHandler the handler that decides how to proceed with failed records
+   */
+  public KeyOrderedMLS(MessageHandler<K, V> handler, ErrorHandler<K, V> errorHandler) {
+    this(
+        handler,
+        errorHandler,
+        Runtime.getRuntime().availableProcessors(),
+        DEFAULT_MAX_IN_FLIGHT_RECORDS);
+  }
+
+  /**
+   * @param handler the handler that processes the records
+   * @param errorHandler the handler that decides how to proceed with failed records
+   * @param lanes the number of lanes for each consumer, each lane uses one thread
+   * @param maxInFlightRecords the number of consumed records that are not processed yet, before the
+   *     listener pauses the consumption
+   */
+  public KeyOrderedMLS(
+      MessageHandler<K, V> handler,
+      ErrorHandler<K, V> errorHandler,
+      int lanes,
+      int maxInFlightRecords) {
+    super(handler, errorHandler, maxInFlightRecords);
+    if (lanes < 1) {
+      throw new IllegalArgumentException("lanes must be at least 1");
+    }
+    this.lanes = lanes;
+  }
+
+  @Override
+  protected RecordExecutor<K, V> createRecordExecutor(String consumerName) {
+    List<Lane> executors = new ArrayList<>(lanes);
+    for (int i = 0; i < lanes; i++) {
+      executors.add(new Lane(consumerName, i));
+    }
+    return new LaneRecordExecutor<>(executors);
+  }
+
+  /** Assigns each record to a lane by the hash of its key. */
+  private static class LaneRecordExecutor<K, V> implements RecordExecutor<K, V> {
+
+    private final List<Lane> lanes;
+
+    private LaneRecordExecutor(List<Lane> lanes) {
+      this.lanes = lanes;
+    }
+
+    @Override
+    public void execute(ConsumerRecord<K, V> record, Runnable task) {
+      lanes.get(laneOf(record)).execute(task);
+    }
+
+    @Override
+    public void close() {
+      lanes.forEach(lane -> lane.executor.shutdownNow());
+    }
+
+    @Override
+    public List<LaneStatistics> getLaneStatistics() {
+      List<LaneStatistics> statistics = new ArrayList<>(lanes.size());
+      for (int i = 0; i < lanes.size(); i++) {
+        Lane lane = lanes.get(i);
+        statistics.add(
+            new LaneStatistics(i, lane.executor.getQueue().size(), lane.inFlightRecords.get()));
+      }
+      return statistics;
+    }
+
+    private int laneOf(ConsumerRecord<K, V> record) {
+      int hash = record.key() != null ? record.key().hashCode() : record.partition();
+      // spread the higher bits like HashMap does, hash codes often differ in higher bits only
+      return Math.floorMod(hash ^ (hash >>> 16), lanes.size());
+    }
+  }
+
+  /** A single thread that executes the records of the lane in order. */
+  private static class Lane {
+
+    private final ThreadPoolExecutor executor;
+    private final AtomicInteger inFlightRecords = new AtomicInteger();
+
+    private Lane(String consumerName, int index) {
+      this.executor =
+          new ThreadPoolExecutor(
+              1,
+              1,
+              0L,
+              TimeUnit.MILLISECONDS,
+              new LinkedBlockingQueue<>(),
+              new ThreadFactoryBuilder()
+                  .setNameFormat("kafka-lane-" + consumerName + "-" + index)
+                  .setDaemon(true)
+                  .build());
+    }
+
+    private void execute(Runnable task) {
+      inFlightRecords.incrementAndGet();
+      executor.execute(
+          () -> {
+            try {
+              task.run();
+            } finally {
+              inFlightRecords.decrementAndGet();
+            }
+          });
+    }
+  }
+}
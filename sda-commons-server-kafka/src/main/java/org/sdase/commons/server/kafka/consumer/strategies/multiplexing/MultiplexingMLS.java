@@ -0,0 +1,327 @@
+package org.sdase.commons.server.kafka.consumer.strategies.multiplexing;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.sdase.commons.server.kafka.consumer.StopListenerException;
+import org.sdase.commons.server.kafka.consumer.strategies.MessageListenerStrategy;
+import org.sdase.commons.server.kafka.exception.ConfigurationException;
+import org.sdase.commons.server.kafka.prometheus.ConsumerCommitMetrics;
+import org.sdase.commons.server.kafka.prometheus.ConsumerTopicMessageHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link MessageListenerStrategy} that shares one consumer between several {@link Route}s. The
+ * consumer reads the raw bytes of all topics of the routes. The records of each poll are
+ * deserialized with the deserializers of the route of their topic and dispatched to the strategy of
+ * the route, so each route keeps the handling and commit semantic of its own strategy.
+ *
+ * <p>The strategies of all routes are invoked in each poll, also if no records have been received
+ * for their topics, in the order of the routes. If the strategy of a route fails, the partitions of
+ * the route are sought back to the first record of the poll and the other routes still handle their
+ * records, before the failure is rethrown. Rebalances are dispatched with the partitions of the
+ * topics of the route only.
+ *
+ * <p>The commits of the strategy of each route are {@linkplain
+ * MessageListenerStrategy#limitCommitsToTopics(Collection) limited} to the topics of the route.
+ * Commits without explicit offsets, like the one of the {@code SyncCommitMLS}, only commit the
+ * positions of the partitions of the route. Therefore the commits of a strategy never cover records
+ * of other routes that have not been handled yet, e.g. records handled asynchronously by a {@code
+ * ParallelPartitionMLS} or records of routes that are handled later in the same poll.
+ */
+public class MultiplexingMLS extends MessageListenerStrategy<byte[], byte[]> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(MultiplexingMLS.class);
+
+  private final List<Route<?, ?>> routes;
+
+  private final Map<String, Route<?, ?>> routesByTopic = new HashMap<>();
+
+  /**
+   * @param routes the routes that share the consumer, each topic must be part of one route only
+   * @throws ConfigurationException if a topic is part of multiple routes
+   */
+  public MultiplexingMLS(List<Route<?, ?>> routes) {
+    this.routes = new ArrayList<>(routes);
+    for (Route<?, ?> route : routes) {
+      for (String topic : route.topics) {
+        if (routesByTopic.put(topic, route) != null) {
+          throw new ConfigurationException(
+              String.format("Topic '%s' is consumed by multiple multiplexed listeners.", topic));
+        }
+      }
+    }
+  }
+
+  /** @return the topics of all routes */
+  public Collection<String> getTopics() {
+    return new ArrayList<>(routesByTopic.keySet());
+  }
+
+  @Override
+  public void init(ConsumerTopicMessageHistogram consumerTopicMessageHistogram) {
+    super.init(consumerTopicMessageHistogram);
+    routes.forEach(route -> route.strategy.init(consumerTopicMessageHistogram));
+  }
+
+  @Override
+  public void init(
+      ConsumerTopicMessageHistogram consumerTopicMessageHistogram,
+      ConsumerCommitMetrics consumerCommitMetrics) {
+    super.init(consumerTopicMessageHistogram, consumerCommitMetrics);
+    routes.forEach(
+        route -> route.strategy.init(consumerTopicMessageHistogram, consumerCommitMetrics));
+  }
+
+  @Override
+  public void processRecords(
+      ConsumerRecords<byte[], byte[]> records, KafkaConsumer<byte[], byte[]> consumer) {
+    // all records are deserialized before any route handles them, so that a record that can't be
+    // deserialized is consumed again with all other records of the poll, like in poll()
+    List<ConsumerRecords<?, ?>> recordsOfRoutes = new ArrayList<>(routes.size());
+    try {
+      for (Route<?, ?> route : routes) {
+        recordsOfRoutes.add(route.deserialize(records));
+      }
+    } catch (SerializationException e) {
+      for (TopicPartition partition : records.partitions()) {
+        consumer.seek(partition, records.records(partition).get(0).offset());
+      }
+      throw e;
+    }
+
+    // a failing route must not keep the other routes from their records, which would be committed
+    // without being handled by their next commits
+    RuntimeException failure = null;
+    for (int i = 0; i < routes.size(); i++) {
+      Route<?, ?> route = routes.get(i);
+      try {
+        route.processRecords(recordsOfRoutes.get(i), consumer);
+      } catch (RuntimeException e) {
+        LOGGER.warn("Failed to process records of topics {}", route.topics, e);
+        route.seekToFirstRecords(records, consumer);
+        failure = merge(failure, e);
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /** Keeps the first failure, unless a later one stops the listener. */
+  private static RuntimeException merge(RuntimeException failure, RuntimeException e) {
+    if (failure == null) {
+      return e;
+    }
+    if (e instanceof StopListenerException && !(failure instanceof StopListenerException)) {
+      e.addSuppressed(failure);
+      return e;
+    }
+    failure.addSuppressed(e);
+    return failure;
+  }
+
+  @Override
+  public void onPartitionsRevoked(
+      Collection<TopicPartition> partitions, KafkaConsumer<byte[], byte[]> consumer) {
+    routes.forEach(route -> route.onPartitionsRevoked(partitions, consumer));
+  }
+
+  @Override
+  public void onPartitionsAssigned(
+      Collection<TopicPartition> partitions, KafkaConsumer<byte[], byte[]> consumer) {
+    routes.forEach(route -> route.onPartitionsAssigned(partitions, consumer));
+  }
+
+  @Override
+  public boolean isSaturated(KafkaConsumer<byte[], byte[]> consumer) {
+    return routes.stream().anyMatch(route -> route.isSaturated(consumer));
+  }
+
+  @Override
+  public void commitOnClose(KafkaConsumer<byte[], byte[]> consumer) {
+    for (Route<?, ?> route : routes) {
+      try {
+        route.commitOnClose(consumer);
+      } catch (RuntimeException e) {
+        LOGGER.error("Failed to commit topics {} on close", route.topics, e);
+      }
+    }
+  }
+
+  @Override
+  public void verifyConsumerConfig(Map<String, String> config) {
+    routes.forEach(route -> route.strategy.verifyConsumerConfig(config));
+  }
+
+  /**
+   * @return the forced config of the strategies of all routes
+   * @throws ConfigurationException if the strategies of the routes force different values for the
+   *     same property, e.g. if one strategy requires auto commit and another one doesn't
+   */
+  @Override
+  public Map<String, String> forcedConfigToApply() {
+    Map<String, String> forcedConfig = new HashMap<>();
+    for (Route<?, ?> route : routes) {
+      for (Entry<String, String> entry : route.strategy.forcedConfigToApply().entrySet()) {
+        String previous = forcedConfig.putIfAbsent(entry.getKey(), entry.getValue());
+        if (previous != null && !previous.equals(entry.getValue())) {
+          throw new ConfigurationException(
+              String.format(
+                  "The strategies of multiplexed listeners require different values for '%s' and can't share a consumer.",
+                  entry.getKey()));
+        }
+      }
+    }
+    return forcedConfig;
+  }
+
+  /**
+   * The topics that are handled by a strategy with their deserializers.
+   *
+   * @param <K> key object type
+   * @param <V> value object type
+   */
+  public static class Route<K, V> {
+
+    private final Set<String> topics;
+    private final Deserializer<K> keyDeserializer;
+    private final Deserializer<V> valueDeserializer;
+    private final MessageListenerStrategy<K, V> strategy;
+    private final ConsumerRebalanceListener rebalanceListener;
+
+    /**
+     * @param topics the topics the strategy handles
+     * @param keyDeserializer the deserializer for the keys of the records of the topics
+     * @param valueDeserializer the deserializer for the values of the records of the topics
+     * @param strategy the strategy that handles the records of the topics, its commits are limited
+     *     to the topics
+     * @param rebalanceListener notified after the strategy with the partitions of the topics, may
+     *     be {@code null}
+     */
+    public Route(
+        Collection<String> topics,
+        Deserializer<K> keyDeserializer,
+        Deserializer<V> valueDeserializer,
+        MessageListenerStrategy<K, V> strategy,
+        ConsumerRebalanceListener rebalanceListener) {
+      this.topics = new HashSet<>(topics);
+      this.keyDeserializer = keyDeserializer;
+      this.valueDeserializer = valueDeserializer;
+      this.strategy = strategy;
+      this.rebalanceListener = rebalanceListener;
+      strategy.limitCommitsToTopics(topics);
+    }
+
+    private void seekToFirstRecords(
+        ConsumerRecords<byte[], byte[]> records, KafkaConsumer<byte[], byte[]> consumer) {
+      for (TopicPartition partition : filter(records.partitions())) {
+        consumer.seek(partition, records.records(partition).get(0).offset());
+      }
+    }
+
+    private Collection<TopicPartition> filter(Collection<TopicPartition> partitions) {
+      return partitions.stream()
+          .filter(partition -> topics.contains(partition.topic()))
+          .collect(Collectors.toList());
+    }
+
+    private ConsumerRecords<K, V> deserialize(ConsumerRecords<byte[], byte[]> records) {
+      Map<TopicPartition, List<ConsumerRecord<K, V>>> deserialized = new HashMap<>();
+      for (TopicPartition partition : records.partitions()) {
+        if (!topics.contains(partition.topic())) {
+          continue;
+        }
+        List<ConsumerRecord<byte[], byte[]>> recordsOfPartition = records.records(partition);
+        List<ConsumerRecord<K, V>> deserializedOfPartition =
+            new ArrayList<>(recordsOfPartition.size());
+        for (ConsumerRecord<byte[], byte[]> record : recordsOfPartition) {
+          deserializedOfPartition.add(deserialize(partition, record));
+        }
+        deserialized.put(partition, deserializedOfPartition);
+      }
+      return deserialized.isEmpty() ? ConsumerRecords.empty() : new ConsumerRecords<>(deserialized);
+    }
+
+    @SuppressWarnings("deprecation")
+    private ConsumerRecord<K, V> deserialize(
+        TopicPartition partition, ConsumerRecord<byte[], byte[]> record) {
+      try {
+        return new ConsumerRecord<>(
+            record.topic(),
+            record.partition(),
+            record.offset(),
+            record.timestamp(),
+            record.timestampType(),
+            record.checksum(),
+            record.serializedKeySize(),
+            record.serializedValueSize(),
+            keyDeserializer.deserialize(record.topic(), record.headers(), record.key()),
+            valueDeserializer.deserialize(record.topic(), record.headers(), record.value()),
+            record.headers(),
+            record.leaderEpoch());
+      } catch (RuntimeException e) {
+        throw new SerializationException(
+            String.format(
+                "Error deserializing key/value for partition %s at offset %d",
+                partition, record.offset()),
+            e);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void processRecords(
+        ConsumerRecords<?, ?> records, KafkaConsumer<byte[], byte[]> consumer) {
+      strategy.processRecords((ConsumerRecords<K, V>) records, cast(consumer));
+    }
+
+    private void onPartitionsRevoked(
+        Collection<TopicPartition> partitions, KafkaConsumer<byte[], byte[]> consumer) {
+      Collection<TopicPartition> partitionsOfRoute = filter(partitions);
+      strategy.onPartitionsRevoked(partitionsOfRoute, cast(consumer));
+      if (rebalanceListener != null) {
+        rebalanceListener.onPartitionsRevoked(partitionsOfRoute);
+      }
+    }
+
+    private void onPartitionsAssigned(
+        Collection<TopicPartition> partitions, KafkaConsumer<byte[], byte[]> consumer) {
+      Collection<TopicPartition> partitionsOfRoute = filter(partitions);
+      strategy.onPartitionsAssigned(partitionsOfRoute, cast(consumer));
+      if (rebalanceListener != null) {
+        rebalanceListener.onPartitionsAssigned(partitionsOfRoute);
+      }
+    }
+
+    private boolean isSaturated(KafkaConsumer<byte[], byte[]> consumer) {
+      return strategy.isSaturated(cast(consumer));
+    }
+
+    private void commitOnClose(KafkaConsumer<byte[], byte[]> consumer) {
+      strategy.commitOnClose(cast(consumer));
+    }
+
+    /**
+     * The strategies only commit, seek, pause and resume with the consumer, which doesn't depend on
+     * the types of the deserializers, as the records are deserialized before.
+     */
+    @SuppressWarnings("unchecked")
+    private KafkaConsumer<K, V> cast(KafkaConsumer<byte[], byte[]> consumer) {
+      return (KafkaConsumer<K, V>) (KafkaConsumer<?, ?>) consumer;
+    }
+  }
+}
@@ -0,0 +1,202 @@
+package org.sdase.commons.server.kafka.consumer.strategies.parallelpartition;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.sdase.commons.server.kafka.consumer.ErrorHandler;
+import org.sdase.commons.server.kafka.consumer.MessageHandler;
+import org.sdase.commons.server.kafka.consumer.strategies.AsyncMessageListenerStrategy;
+import org.sdase.commons.server.kafka.consumer.strategies.MessageListenerStrategy;
+import org.sdase.commons.server.kafka.consumer.strategies.VirtualThreads;
+import org.sdase.commons.server.kafka.exception.ConfigurationException;
+
+/**
+ * {@link MessageListenerStrategy} that processes the records of different partitions in parallel
+ * using a bounded pool of worker threads for each consumer. Records of the same partition are
+ * processed one after another in the order of their offsets. For each partition, the highest offset
+ * up to which all records are processed is committed.
+ *
+ * <p>On Java 21 or newer, the records can be handled in virtual threads instead of a pool of
+ * platform threads, see {@link #withVirtualThreads(MessageHandler, ErrorHandler, int)}. The poll
+ * loop of the listener always runs in a platform thread.
+ */
+public class ParallelPartitionMLS<K, V> extends AsyncMessageListenerStrategy<K, V> {
+
+  private static final int DEFAULT_MAX_IN_FLIGHT_RECORDS = 1000;
+
+  /** The number of platform threads for each consumer or 0 if virtual threads are used. */
+  private final int threads;
+
+  /**
+   * Creates a strategy that uses as many worker threads as processors are available.
+   *
+   * @param handler the handler that processes the records
+   * @param errorHandler the handler that decides how to proceed with failed records
+   */
+  public ParallelPartitionMLS(MessageHandler<K, V> handler, ErrorHandler<K, V> errorHandler) {
+    this(
+        handler,
+        errorHandler,
+        Runtime.getRuntime().availableProcessors(),
+        DEFAULT_MAX_IN_FLIGHT_RECORDS);
+  }
+
+  /**
+   * @param handler the handler that processes the records
+   * @param errorHandler the handler that decides how to proceed with failed records
+   * @param threads the number of worker threads for each consumer
+   * @param maxInFlightRecords the number of consumed records that are not processed yet, before the
+   *     listener pauses the consumption
+   */
+  public ParallelPartitionMLS(
+      MessageHandler<K, V> handler,
+      ErrorHandler<K, V> errorHandler,
+      int threads,
+      int maxInFlightRecords) {
+    super(handler, errorHandler, maxInFlightRecords);
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be at least 1");
+    }
+    this.threads = threads;
+  }
+
+  private ParallelPartitionMLS(
+      MessageHandler<K, V> handler, ErrorHandler<K, V> errorHandler, int maxInFlightRecords) {
+    super(handler, errorHandler, maxInFlightRecords);
+    this.threads = 0;
+  }
+
+  /**
+   * Creates a strategy that handles each record in a new virtual thread. Records of the same
+   * partition are still processed one after another. Requires Java 21 or newer.
+   *
+   * @param handler the handler that processes the records
+   * @param errorHandler the handler that decides how to proceed with failed records
+   * @param maxInFlightRecords the number of consumed records that are not processed yet, before the
+   *     listener pauses the consumption
+   * @param <K> key object type
+   * @param <V> value object type
+   * @return the strategy
+   * @throws ConfigurationException if the Java runtime does not support virtual threads
+   */
+  public static <K, V> ParallelPartitionMLS<K, V> withVirtualThreads(
+      MessageHandler<K, V> handler, ErrorHandler<K, V> errorHandler, int maxInFlightRecords) {
+    if (!VirtualThreads.isAvailable()) {
+      throw new ConfigurationException(
+          "Virtual threads require Java 21 or newer but running on Java "
+              + System.getProperty("java.version"));
+    }
+    return new ParallelPartitionMLS<>(handler, errorHandler, maxInFlightRecords);
+  }
+
+  @Override
+  protected RecordExecutor<K, V> createRecordExecutor(String consumerName) {
+    String namePrefix = "kafka-worker-" + consumerName + "-";
+    if (threads == 0) {
+      return new PartitionRecordExecutor<>(VirtualThreads.newThreadPerTaskExecutor(namePrefix));
+    }
+    ExecutorService workers =
+        Executors.newFixedThreadPool(
+            threads,
+            new ThreadFactoryBuilder().setNameFormat(namePrefix + "%d").setDaemon(true).build());
+    return new PartitionRecordExecutor<>(workers);
+  }
+
+  /**
+   * Runs the records of each partition sequentially on the shared pool of workers. The executor of
+   * a revoked partition is removed as soon as its records are completed. If the partition is
+   * assigned again before, the executor is kept, so that the records stay in order.
+   */
+  private static class PartitionRecordExecutor<K, V> implements RecordExecutor<K, V> {
+
+    private final ExecutorService workers;
+    private final Map<TopicPartition, SerialExecutor> partitionExecutors =
+        new ConcurrentHashMap<>();
+
+    /** Revoked partitions whose executor was busy, only accessed in the poll loop. */
+    private final Set<TopicPartition> revokedPartitions = new HashSet<>();
+
+    private PartitionRecordExecutor(ExecutorService workers) {
+      this.workers = workers;
+    }
+
+    @Override
+    public void execute(ConsumerRecord<K, V> record, Runnable task) {
+      TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+      if (!revokedPartitions.isEmpty()) {
+        // assigned again
+        revokedPartitions.remove(partition);
+      }
+      partitionExecutors.computeIfAbsent(partition, p -> new SerialExecutor(workers)).execute(task);
+    }
+
+    @Override
+    public void revoked(Collection<TopicPartition> partitions) {
+      revokedPartitions.addAll(partitions);
+      // tasks are only submitted in the poll loop, so an idle executor stays idle when removed
+      Iterator<TopicPartition> iterator = revokedPartitions.iterator();
+      while (iterator.hasNext()) {
+        TopicPartition partition = iterator.next();
+        SerialExecutor executor = partitionExecutors.get(partition);
+        if (executor == null || executor.isIdle()) {
+          partitionExecutors.remove(partition);
+          iterator.remove();
+        }
+      }
+    }
+
+    @Override
+    public void close() {
+      workers.shutdownNow();
+    }
+  }
+
+  /** Hands the submitted tasks to the delegate one after another. */
+  private static class SerialExecutor implements Executor {
+
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private final Executor delegate;
+    private Runnable active;
+
+    private SerialExecutor(Executor delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public synchronized void execute(Runnable task) {
+      tasks.add(
+          () -> {
+            try {
+              task.run();
+            } finally {
+              scheduleNext();
+            }
+          });
+      if (active == null) {
+        scheduleNext();
+      }
+    }
+
+    private synchronized void scheduleNext() {
+      active = tasks.poll();
+      if (active != null) {
+        delegate.execute(active);
+      }
+    }
+
+    private synchronized boolean isIdle() {
+      return active == null;
+    }
+  }
+}
@@ -1,6 +1,7 @@
 package org.sdase.commons.server.kafka.consumer.strategies.retryprocessingerror;
 
 import io.prometheus.client.SimpleTimer;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -54,13 +55,13 @@ public class RetryProcessingErrorMLS<K, V> extends MessageListenerStrategy<K, V>
       LOGGER.debug("Handling message for {}", record.key());
 
       try {
-        SimpleTimer timer = new SimpleTimer();
+        long start = System.nanoTime();
         handler.handle(record);
         // mark last successful processed record for commit
         lastCommitOffset = new OffsetAndMetadata(record.offset() + 1);
 
         // Prometheus
-        double elapsedSeconds = timer.elapsedSeconds();
+        double elapsedSeconds = SimpleTimer.elapsedSecondsFromNanos(start, System.nanoTime());
         consumerProcessedMsgHistogram.observe(elapsedSeconds, consumerName, record.topic());
 
         if (LOGGER.isTraceEnabled()) {
@@ -98,10 +99,23 @@ public class RetryProcessingErrorMLS<K, V> extends MessageListenerStrategy<K, V>
     }
   }
 
+  @Override
+  public void onPartitionsRevoked(
+      Collection<TopicPartition> partitions, KafkaConsumer<K, V> consumer) {
+    // the position of a failed partition is the failed record, so it is consumed again
+    if (!partitions.isEmpty()) {
+      commit(consumer);
+    }
+  }
+
   @Override
   public void commitOnClose(KafkaConsumer<K, V> consumer) {
+    commit(consumer);
+  }
+
+  private void commit(KafkaConsumer<K, V> consumer) {
     try {
-      consumer.commitSync();
+      commitSync(consumer);
     } catch (CommitFailedException e) {
       LOGGER.error("Commit failed", e);
     }
@@ -0,0 +1,41 @@
+package org.sdase.commons.server.kafka.consumer.strategies.storedoffset;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+
+/**
+ * Stores the offsets of a consumer group in the database of the service, in the same transaction as
+ * the changes of the records that are processed. Used by the {@link StoredOffsetMLS}.
+ *
+ * @param <K> key object type
+ * @param <V> value object type
+ */
+public interface OffsetStore<K, V> {
+
+  /**
+   * Reads the stored offsets of the given partitions.
+   *
+   * @param consumerGroup the consumer group
+   * @param partitions the partitions assigned to the consumer
+   * @return the offset of the next record to consume for each partition, partitions without stored
+   *     offset are absent
+   */
+  Map<TopicPartition, Long> readOffsets(
+      String consumerGroup, Collection<TopicPartition> partitions);
+
+  /**
+   * Processes the records and stores the offsets in one transaction. If the transaction fails, an
+   * exception must be thrown and neither the changes of the records nor the offsets are stored.
+   *
+   * @param consumerGroup the consumer group
+   * @param records the records to process
+   * @param nextOffsets the offset of the next record to consume for each partition of the records
+   */
+  void processAndStore(
+      String consumerGroup,
+      List<ConsumerRecord<K, V>> records,
+      Map<TopicPartition, Long> nextOffsets);
+}
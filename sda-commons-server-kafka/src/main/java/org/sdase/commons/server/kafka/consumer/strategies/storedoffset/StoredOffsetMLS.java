@@ -0,0 +1,201 @@
+package org.sdase.commons.server.kafka.consumer.strategies.storedoffset;
+
+import io.prometheus.client.SimpleTimer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.sdase.commons.server.kafka.consumer.ErrorHandler;
+import org.sdase.commons.server.kafka.consumer.KafkaHelper;
+import org.sdase.commons.server.kafka.consumer.StopListenerException;
+import org.sdase.commons.server.kafka.consumer.strategies.MessageListenerStrategy;
+import org.sdase.commons.server.kafka.exception.ConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link MessageListenerStrategy} that stores the offsets of the consumer group in the database of
+ * the service instead of committing them to Kafka. The records of each partition within a poll are
+ * processed by the {@link OffsetStore} in one database transaction that also stores the offset of
+ * the next record. The changes of the records and the offsets are therefore stored atomically: if
+ * the service fails, the records are consumed again exactly from the first record whose changes
+ * have not been stored.
+ *
+ * <p>When partitions are assigned to the consumer, the consumer seeks to the stored offsets.
+ * Partitions without stored offset start according to {@code auto.offset.reset}. No offsets are
+ * committed to Kafka, so tools that monitor the lag of the consumer group don't see the progress.
+ *
+ * <p>If a transaction fails, the {@link ErrorHandler} is called with the first record of the
+ * partition. If it continues, the records are skipped but their offsets are not stored until a
+ * later transaction of the partition succeeds.
+ *
+ * <p>The strategy requires a consumer configuration to know the consumer group. Auto commit is
+ * disabled.
+ *
+ * @param <K> key object type
+ * @param <V> value object type
+ */
+public class StoredOffsetMLS<K, V> extends MessageListenerStrategy<K, V> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StoredOffsetMLS.class);
+
+  private final OffsetStore<K, V> offsetStore;
+  private final ErrorHandler<K, V> errorHandler;
+
+  /**
+   * The partitions of each consumer whose stored offsets could not be read when they have been
+   * assigned, as one strategy instance is shared by all listener instances.
+   */
+  private final Map<KafkaConsumer<K, V>, Set<TopicPartition>> unrestoredPartitions =
+      new ConcurrentHashMap<>();
+
+  private volatile String groupId;
+
+  /**
+   * @param offsetStore the store that processes the records and stores the offsets in one
+   *     transaction
+   * @param errorHandler the handler that decides how to proceed if a transaction fails
+   */
+  public StoredOffsetMLS(OffsetStore<K, V> offsetStore, ErrorHandler<K, V> errorHandler) {
+    this.offsetStore = offsetStore;
+    this.errorHandler = errorHandler;
+  }
+
+  @Override
+  public void processRecords(ConsumerRecords<K, V> records, KafkaConsumer<K, V> consumer) {
+    if (records.isEmpty()) {
+      return;
+    }
+    String consumerName = KafkaHelper.getClientId(consumer);
+    Set<TopicPartition> seeked = restoreUnrestoredPartitions(consumer);
+
+    for (TopicPartition partition : records.partitions()) {
+      if (seeked.contains(partition)) {
+        // the records have been fetched from a position that is not the stored offset
+        continue;
+      }
+      List<ConsumerRecord<K, V>> partitionRecords = records.records(partition);
+      long nextOffset = partitionRecords.get(partitionRecords.size() - 1).offset() + 1;
+      LOGGER.debug("Handling batch of {} messages", partitionRecords.size());
+      try {
+        long start = System.nanoTime();
+        offsetStore.processAndStore(
+            groupId,
+            Collections.unmodifiableList(partitionRecords),
+            Collections.singletonMap(partition, nextOffset));
+
+        // Prometheus
+        double elapsedSeconds = SimpleTimer.elapsedSecondsFromNanos(start, System.nanoTime());
+        consumerProcessedMsgHistogram.observeBatch(
+            partitionRecords.size(), elapsedSeconds, consumerName, partition.topic());
+
+      } catch (RuntimeException e) {
+        LOGGER.error(
+            "Error while processing batch of {} records of {} in offset store {}",
+            partitionRecords.size(),
+            partition,
+            offsetStore.getClass(),
+            e);
+        boolean shouldContinue = errorHandler.handleError(partitionRecords.get(0), e, consumer);
+        if (!shouldContinue) {
+          throw new StopListenerException(e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Seeks to the stored offsets of partitions that could not be restored when they have been
+   * assigned.
+   *
+   * @return the partitions the consumer seeked to a stored offset
+   */
+  private Set<TopicPartition> restoreUnrestoredPartitions(KafkaConsumer<K, V> consumer) {
+    Set<TopicPartition> partitions = unrestoredPartitions.get(consumer);
+    if (partitions == null || partitions.isEmpty()) {
+      return Collections.emptySet();
+    }
+    try {
+      Set<TopicPartition> seeked = seekToStoredOffsets(partitions, consumer);
+      partitions.clear();
+      return seeked;
+    } catch (RuntimeException e) {
+      // processing the records would continue from a wrong position
+      throw new StopListenerException(e);
+    }
+  }
+
+  @Override
+  public void onPartitionsAssigned(
+      Collection<TopicPartition> partitions, KafkaConsumer<K, V> consumer) {
+    if (partitions.isEmpty()) {
+      return;
+    }
+    try {
+      seekToStoredOffsets(partitions, consumer);
+    } catch (RuntimeException e) {
+      // exceptions of rebalance listeners are swallowed by the consumer, retry with the next poll
+      LOGGER.error("Failed to read stored offsets of {}, retrying with next poll", partitions, e);
+      unrestoredPartitions
+          .computeIfAbsent(consumer, c -> ConcurrentHashMap.newKeySet())
+          .addAll(partitions);
+    }
+  }
+
+  private Set<TopicPartition> seekToStoredOffsets(
+      Collection<TopicPartition> partitions, KafkaConsumer<K, V> consumer) {
+    if (groupId == null) {
+      throw new ConfigurationException(
+          "The stored offset strategy requires a consumer config that defines the group.");
+    }
+    Map<TopicPartition, Long> offsets = offsetStore.readOffsets(groupId, partitions);
+    Set<TopicPartition> seeked = new HashSet<>();
+    for (TopicPartition partition : partitions) {
+      Long offset = offsets.get(partition);
+      if (offset != null) {
+        LOGGER.info("Seeking {} to stored offset {}", partition, offset);
+        consumer.seek(partition, offset);
+        seeked.add(partition);
+      }
+    }
+    return seeked;
+  }
+
+  @Override
+  public void onPartitionsRevoked(
+      Collection<TopicPartition> partitions, KafkaConsumer<K, V> consumer) {
+    // the offsets are stored with each transaction
+    Set<TopicPartition> unrestored = unrestoredPartitions.get(consumer);
+    if (unrestored != null) {
+      unrestored.removeAll(partitions);
+    }
+  }
+
+  @Override
+  public void commitOnClose(KafkaConsumer<K, V> consumer) {
+    // the offsets are stored with each transaction
+    unrestoredPartitions.remove(consumer);
+  }
+
+  @Override
+  public void verifyConsumerConfig(Map<String, String> config) {
+    if (Boolean.valueOf(config.getOrDefault(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "true"))) {
+      throw new ConfigurationException(
+          "The strategy should NOT use autocommit but property 'enable.auto.commit' in consumer config is set to 'true' (which is the default and must be disabled).");
+    }
+    groupId = config.get(ConsumerConfig.GROUP_ID_CONFIG);
+  }
+
+  @Override
+  public Map<String, String> forcedConfigToApply() {
+    return Collections.singletonMap(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+  }
+}
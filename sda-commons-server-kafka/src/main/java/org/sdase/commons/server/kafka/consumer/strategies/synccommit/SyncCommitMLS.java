@@ -1,6 +1,9 @@
 package org.sdase.commons.server.kafka.consumer.strategies.synccommit;
 
+import static org.sdase.commons.server.kafka.prometheus.ConsumerCommitMetrics.COMMIT_TYPE_SYNC;
+
 import io.prometheus.client.SimpleTimer;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
 import org.apache.kafka.clients.consumer.CommitFailedException;
@@ -8,6 +11,7 @@ import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
 import org.sdase.commons.server.kafka.consumer.ErrorHandler;
 import org.sdase.commons.server.kafka.consumer.KafkaHelper;
 import org.sdase.commons.server.kafka.consumer.MessageHandler;
@@ -39,11 +43,11 @@ public class SyncCommitMLS<K, V> extends MessageListenerStrategy<K, V> {
     for (ConsumerRecord<K, V> record : records) {
       LOGGER.debug("Handling message for {}", record.key());
       try {
-        SimpleTimer timer = new SimpleTimer();
+        long start = System.nanoTime();
         handler.handle(record);
 
         // Prometheus
-        double elapsedSeconds = timer.elapsedSeconds();
+        double elapsedSeconds = SimpleTimer.elapsedSecondsFromNanos(start, System.nanoTime());
         consumerProcessedMsgHistogram.observe(elapsedSeconds, consumerName, record.topic());
 
         if (LOGGER.isTraceEnabled()) {
@@ -69,16 +73,39 @@ public class SyncCommitMLS<K, V> extends MessageListenerStrategy<K, V> {
     commit(consumer);
   }
 
+  @Override
+  public void onPartitionsRevoked(
+      Collection<TopicPartition> partitions, KafkaConsumer<K, V> consumer) {
+    // the offsets of the last poll are committed already, unless that commit failed
+    if (!partitions.isEmpty()) {
+      commit(consumer);
+    }
+  }
+
   @Override
   public void commitOnClose(KafkaConsumer<K, V> consumer) {
     commit(consumer);
   }
 
   private void commit(KafkaConsumer<K, V> consumer) {
+    if (consumerName == null) {
+      consumerName = KafkaHelper.getClientId(consumer);
+    }
     try {
-      consumer.commitSync();
+      long start = System.nanoTime();
+      commitSync(consumer);
+      if (consumerCommitMetrics != null) {
+        consumerCommitMetrics.observeCommit(
+            SimpleTimer.elapsedSecondsFromNanos(start, System.nanoTime()),
+            consumerName,
+            COMMIT_TYPE_SYNC);
+        consumerCommitMetrics.observeCommittedOffsets(consumerName, getPositionsToCommit(consumer));
+      }
     } catch (CommitFailedException e) {
       LOGGER.error("Commit failed", e);
+      if (consumerCommitMetrics != null) {
+        consumerCommitMetrics.increaseFailedCommits(consumerName, COMMIT_TYPE_SYNC);
+      }
     }
   }
 
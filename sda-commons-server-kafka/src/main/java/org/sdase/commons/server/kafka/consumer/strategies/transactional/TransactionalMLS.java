@@ -0,0 +1,280 @@
+package org.sdase.commons.server.kafka.consumer.strategies.transactional;
+
+import static org.sdase.commons.server.kafka.prometheus.ConsumerCommitMetrics.COMMIT_TYPE_TRANSACTION;
+
+import io.prometheus.client.SimpleTimer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.AuthorizationException;
+import org.apache.kafka.common.errors.OutOfOrderSequenceException;
+import org.apache.kafka.common.errors.ProducerFencedException;
+import org.sdase.commons.server.kafka.consumer.ErrorHandler;
+import org.sdase.commons.server.kafka.consumer.KafkaHelper;
+import org.sdase.commons.server.kafka.consumer.StopListenerException;
+import org.sdase.commons.server.kafka.consumer.TransformingMessageHandler;
+import org.sdase.commons.server.kafka.consumer.strategies.MessageListenerStrategy;
+import org.sdase.commons.server.kafka.exception.ConfigurationException;
+import org.sdase.commons.server.kafka.producer.TransactionalMessageProducer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link MessageListenerStrategy} that processes the records of each partition within a poll in one
+ * transaction of a transactional producer. The records sent by the {@link
+ * TransformingMessageHandler} and the offsets of the consumed records are committed together, so
+ * consumers of the output topic with isolation level {@code read_committed} receive the results of
+ * each consumed record exactly once.
+ *
+ * <p>Each assigned input partition gets its own producer from the factory, usually created by
+ * {@code KafkaBundle#createTransactionalProducers(ProducerRegistration)}. The factory is called
+ * with {@code <group>-<topic>-<partition>}, which the bundle appends to the configured {@code
+ * transactional.id}. Like Kafka Streams does without KIP-447, the transactional id therefore
+ * belongs to the input partition and not to the consumer: the producer created for a partition when
+ * it is assigned fences the producer of the previous owner, which can't commit results or offsets
+ * of the partition anymore. The producers are created when partitions are assigned and closed when
+ * they are revoked.
+ *
+ * <p>If a transaction fails, it is aborted and the consumer seeks back to the first record of the
+ * partition in the poll, so that the records are processed again. If the producer has been fenced
+ * by a newer producer with the same transactional id, the listener stops.
+ *
+ * <p>The strategy requires a consumer configuration to know the consumer group. Auto commit is
+ * disabled and the consumer only reads committed records.
+ *
+ * @param <K> key object type of the consumed records
+ * @param <V> value object type of the consumed records
+ * @param <KO> key object type of the produced records
+ * @param <VO> value object type of the produced records
+ */
+public class TransactionalMLS<K, V, KO, VO> extends MessageListenerStrategy<K, V> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TransactionalMLS.class);
+
+  private final Function<String, TransactionalMessageProducer<KO, VO>> producerFactory;
+  private final TransformingMessageHandler<K, V, KO, VO> handler;
+  private final ErrorHandler<K, V> errorHandler;
+
+  /**
+   * The producers of the assigned partitions of each consumer, as one strategy instance is shared
+   * by all listener instances.
+   */
+  private final Map<KafkaConsumer<K, V>, Map<TopicPartition, TransactionalMessageProducer<KO, VO>>>
+      producers = new ConcurrentHashMap<>();
+
+  private volatile String groupId;
+
+  /**
+   * @param producerFactory creates the transactional producer for the given suffix of the
+   *     transactional id, the suffix is {@code <group>-<topic>-<partition>} of an input partition
+   * @param handler the handler that processes the records and sends the results
+   * @param errorHandler the handler that decides how to proceed with failed records
+   */
+  public TransactionalMLS(
+      Function<String, TransactionalMessageProducer<KO, VO>> producerFactory,
+      TransformingMessageHandler<K, V, KO, VO> handler,
+      ErrorHandler<K, V> errorHandler) {
+    this.producerFactory = producerFactory;
+    this.handler = handler;
+    this.errorHandler = errorHandler;
+  }
+
+  @Override
+  public void processRecords(ConsumerRecords<K, V> records, KafkaConsumer<K, V> consumer) {
+    if (records.isEmpty()) {
+      return;
+    }
+    if (groupId == null) {
+      throw new StopListenerException(
+          new ConfigurationException(
+              "The transactional strategy requires a consumer config that defines the group."));
+    }
+    String consumerName = KafkaHelper.getClientId(consumer);
+    for (TopicPartition partition : records.partitions()) {
+      processPartition(partition, records.records(partition), consumerName, consumer);
+    }
+  }
+
+  private void processPartition(
+      TopicPartition partition,
+      List<ConsumerRecord<K, V>> records,
+      String consumerName,
+      KafkaConsumer<K, V> consumer) {
+    TransactionalMessageProducer<KO, VO> producer;
+    try {
+      producer = producerOf(partition, consumer);
+    } catch (KafkaException e) {
+      // e.g. fenced while initializing or a timeout, the partition is consumed again
+      LOGGER.warn("Failed to create the producer of {} for {}", partition, consumerName, e);
+      consumer.seek(partition, records.get(0).offset());
+      return;
+    }
+
+    try {
+      producer.beginTransaction();
+      for (ConsumerRecord<K, V> record : records) {
+        handle(record, producer, consumerName, consumer);
+      }
+      long lastOffset = records.get(records.size() - 1).offset();
+      Map<TopicPartition, OffsetAndMetadata> offsets =
+          Collections.singletonMap(partition, new OffsetAndMetadata(lastOffset + 1));
+      producer.sendOffsetsToTransaction(offsets, groupId);
+      long start = System.nanoTime();
+      producer.commitTransaction();
+      if (consumerCommitMetrics != null) {
+        consumerCommitMetrics.observeCommit(
+            SimpleTimer.elapsedSecondsFromNanos(start, System.nanoTime()),
+            consumerName,
+            COMMIT_TYPE_TRANSACTION);
+        consumerCommitMetrics.observeCommittedOffsets(consumerName, offsets);
+      }
+    } catch (ProducerFencedException | OutOfOrderSequenceException | AuthorizationException e) {
+      // the producer can't be used anymore, the transaction is aborted by the broker
+      LOGGER.error("Transactional producer of {} for {} failed", partition, consumerName, e);
+      throw new StopListenerException(e);
+    } catch (StopListenerException e) {
+      abort(partition, records, producer, consumerName, consumer);
+      throw e;
+    } catch (KafkaException e) {
+      LOGGER.warn(
+          "Transaction of {} for {} failed, processing the records again",
+          partition,
+          consumerName,
+          e);
+      abort(partition, records, producer, consumerName, consumer);
+    }
+  }
+
+  private TransactionalMessageProducer<KO, VO> producerOf(
+      TopicPartition partition, KafkaConsumer<K, V> consumer) {
+    return producers
+        .computeIfAbsent(consumer, c -> new ConcurrentHashMap<>())
+        .computeIfAbsent(
+            partition,
+            p ->
+                producerFactory.apply(
+                    String.join("-", groupId, p.topic(), String.valueOf(p.partition()))));
+  }
+
+  private void handle(
+      ConsumerRecord<K, V> record,
+      TransactionalMessageProducer<KO, VO> producer,
+      String consumerName,
+      KafkaConsumer<K, V> consumer) {
+    LOGGER.debug("Handling message for {}", record.key());
+    try {
+      long start = System.nanoTime();
+      handler.handle(record, producer);
+
+      // Prometheus
+      double elapsedSeconds = SimpleTimer.elapsedSecondsFromNanos(start, System.nanoTime());
+      consumerProcessedMsgHistogram.observe(elapsedSeconds, consumerName, record.topic());
+
+    } catch (RuntimeException e) {
+      LOGGER.error(
+          "Error while handling record {} in message handler {}",
+          record.key(),
+          handler.getClass(),
+          e);
+      boolean shouldContinue = errorHandler.handleError(record, e, consumer);
+      if (!shouldContinue) {
+        throw new StopListenerException(e);
+      }
+    }
+  }
+
+  /** Aborts the transaction and seeks to the first record of the partition to consume it again. */
+  private void abort(
+      TopicPartition partition,
+      List<ConsumerRecord<K, V>> records,
+      TransactionalMessageProducer<KO, VO> producer,
+      String consumerName,
+      KafkaConsumer<K, V> consumer) {
+    try {
+      producer.abortTransaction();
+    } catch (KafkaException | IllegalStateException e) {
+      // e.g. if the transaction could not be begun
+      LOGGER.error("Failed to abort transaction of {} for {}", partition, consumerName, e);
+    }
+    if (consumerCommitMetrics != null) {
+      consumerCommitMetrics.increaseAbortedTransactions(consumerName);
+    }
+    consumer.seek(partition, records.get(0).offset());
+  }
+
+  @Override
+  public void onPartitionsAssigned(
+      Collection<TopicPartition> partitions, KafkaConsumer<K, V> consumer) {
+    if (groupId == null) {
+      return;
+    }
+    // initializing the transactions fences the producers of the previous owners of the partitions
+    for (TopicPartition partition : partitions) {
+      try {
+        producerOf(partition, consumer);
+      } catch (KafkaException e) {
+        // created again when records of the partition are processed
+        LOGGER.warn("Failed to create the producer of {}", partition, e);
+      }
+    }
+  }
+
+  @Override
+  public void onPartitionsRevoked(
+      Collection<TopicPartition> partitions, KafkaConsumer<K, V> consumer) {
+    Map<TopicPartition, TransactionalMessageProducer<KO, VO>> producersOfConsumer =
+        producers.get(consumer);
+    if (producersOfConsumer != null) {
+      partitions.forEach(p -> close(p, producersOfConsumer.remove(p)));
+    }
+  }
+
+  @Override
+  public void commitOnClose(KafkaConsumer<K, V> consumer) {
+    // the offsets are committed with each transaction
+    Map<TopicPartition, TransactionalMessageProducer<KO, VO>> producersOfConsumer =
+        producers.remove(consumer);
+    if (producersOfConsumer != null) {
+      producersOfConsumer.forEach(this::close);
+    }
+  }
+
+  private void close(TopicPartition partition, TransactionalMessageProducer<KO, VO> producer) {
+    if (producer == null) {
+      return;
+    }
+    try {
+      producer.close();
+    } catch (KafkaException e) {
+      LOGGER.warn("Failed to close the producer of {}", partition, e);
+    }
+  }
+
+  @Override
+  public void verifyConsumerConfig(Map<String, String> config) {
+    if (Boolean.valueOf(config.getOrDefault(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "true"))) {
+      throw new ConfigurationException(
+          "The strategy should NOT use autocommit but property 'enable.auto.commit' in consumer config is set to 'true' (which is the default and must be disabled).");
+    }
+    groupId = config.get(ConsumerConfig.GROUP_ID_CONFIG);
+  }
+
+  @Override
+  public Map<String, String> forcedConfigToApply() {
+    Map<String, String> forcedConfig = new HashMap<>();
+    forcedConfig.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+    forcedConfig.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+    return forcedConfig;
+  }
+}
@@ -0,0 +1,12 @@
+package org.sdase.commons.server.kafka.exception;
+
+public class SchemaStoreException extends RuntimeException {
+
+  public SchemaStoreException(String message) {
+    super(message);
+  }
+
+  public SchemaStoreException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
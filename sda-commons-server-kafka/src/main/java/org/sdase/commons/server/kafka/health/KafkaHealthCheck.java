@@ -4,13 +4,20 @@ import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import com.codahale.metrics.health.HealthCheck;
 import com.codahale.metrics.health.annotation.Async;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 import org.apache.kafka.clients.admin.AdminClient;
 import org.apache.kafka.clients.admin.AdminClientConfig;
 import org.sdase.commons.server.kafka.KafkaConfiguration;
 import org.sdase.commons.server.kafka.KafkaProperties;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Checks the connection to the brokers by listing the topics. If a shared {@link AdminClient} is
+ * given, the check reuses its connections. Otherwise a new client is created for each check.
+ */
 @Async(period = 30, scheduleType = Async.ScheduleType.FIXED_DELAY)
 public class KafkaHealthCheck extends HealthCheck {
 
@@ -18,12 +25,34 @@ public class KafkaHealthCheck extends HealthCheck {
 
   private final KafkaConfiguration config;
 
+  private final Supplier<AdminClient> sharedAdminClient;
+
   public KafkaHealthCheck(KafkaConfiguration config) {
+    this(config, null);
+  }
+
+  /**
+   * @param config the configuration of the bundle
+   * @param sharedAdminClient supplies the admin client that is used for the checks and closed by
+   *     the owner
+   */
+  public KafkaHealthCheck(KafkaConfiguration config, Supplier<AdminClient> sharedAdminClient) {
     this.config = config;
+    this.sharedAdminClient = sharedAdminClient;
   }
 
   @Override
   protected Result check() {
+    if (sharedAdminClient != null) {
+      try {
+        listTopics(sharedAdminClient.get());
+      } catch (Exception e) {
+        LOGGER.warn("Kafka health check failed", e);
+        return unhealthy(e);
+      }
+      return Result.healthy();
+    }
+
     // Set logger for config to WARN, as it would otherwise print the full
     // config on every health check to the log.
     Logger logger = (Logger) LoggerFactory.getLogger(AdminClientConfig.class);
@@ -31,16 +60,28 @@ public class KafkaHealthCheck extends HealthCheck {
     logger.setLevel(Level.WARN);
 
     try (AdminClient adminClient = AdminClient.create(KafkaProperties.forAdminClient(config))) {
-      adminClient
-          .listTopics()
-          .names()
-          .get(config.getHealthCheck().getTimeoutInSeconds(), TimeUnit.SECONDS);
+      listTopics(adminClient);
     } catch (Exception e) {
       LOGGER.warn("Kafka health check failed", e);
-      return Result.unhealthy("Connection to broker failed within 2 seconds");
+      return unhealthy(e);
     } finally {
       logger.setLevel(oldLevel);
     }
     return Result.healthy();
   }
+
+  private void listTopics(AdminClient adminClient)
+      throws InterruptedException, ExecutionException, TimeoutException {
+    adminClient
+        .listTopics()
+        .names()
+        .get(config.getHealthCheck().getTimeoutInSeconds(), TimeUnit.SECONDS);
+  }
+
+  private Result unhealthy(Exception e) {
+    if (e instanceof InterruptedException) {
+      Thread.currentThread().interrupt();
+    }
+    return Result.unhealthy("Connection to broker failed within 2 seconds");
+  }
 }
@@ -0,0 +1,51 @@
+package org.sdase.commons.server.kafka.producer;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/** Adapts the futures of {@link MessageProducer#send(Object, Object)} for the default methods. */
+final class CompletableFutures {
+
+  private CompletableFutures() {
+    // utility class
+  }
+
+  /**
+   * @param future the future of a sent record, may be {@code null} if the producer provides no
+   *     result, e.g. when Kafka is disabled
+   * @param <T> the result type
+   * @return the future itself if it is a {@link CompletableFuture}, otherwise a future with the
+   *     result of the given future if it is done already. No thread waits for a future that is not
+   *     done, the returned future is completed exceptionally with an {@link
+   *     UnsupportedOperationException} instead.
+   */
+  static <T> CompletableFuture<T> of(Future<T> future) {
+    if (future == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    if (future instanceof CompletableFuture) {
+      return (CompletableFuture<T>) future;
+    }
+    CompletableFuture<T> result = new CompletableFuture<>();
+    if (!future.isDone()) {
+      result.completeExceptionally(
+          new UnsupportedOperationException(
+              "The producer does not complete its futures, it must override sendAsync."));
+      return result;
+    }
+    try {
+      result.complete(future.get());
+    } catch (InterruptedException e) {
+      // not blocking, the future is done
+      Thread.currentThread().interrupt();
+      result.completeExceptionally(e);
+    } catch (ExecutionException e) {
+      result.completeExceptionally(e.getCause());
+    } catch (CancellationException e) {
+      result.completeExceptionally(e);
+    }
+    return result;
+  }
+}
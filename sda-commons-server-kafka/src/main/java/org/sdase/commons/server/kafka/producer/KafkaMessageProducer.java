@@ -1,45 +1,140 @@
 package org.sdase.commons.server.kafka.producer;
 
+import io.prometheus.client.SimpleTimer;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.errors.InterruptException;
 import org.apache.kafka.common.header.Headers;
 import org.sdase.commons.server.kafka.prometheus.ProducerTopicMessageCounter;
+import org.sdase.commons.server.kafka.prometheus.ProducerTopicMessageHistogram;
 
+/**
+ * A {@link MessageProducer} that sends records with a {@link KafkaProducer}.
+ *
+ * <p>The futures returned by {@link #sendAsync(Object, Object)} are completed in the I/O thread of
+ * the {@link KafkaProducer}. Expensive actions that depend on the result should be added with the
+ * {@code *Async} methods of the {@link CompletableFuture} to not delay other records.
+ *
+ * <p>If a maximum number of in flight records is defined, sending blocks until previous records are
+ * acknowledged by the broker.
+ */
 public class KafkaMessageProducer<K, V> implements MessageProducer<K, V> {
 
   private String topic;
 
-  private KafkaProducer<K, V> producer;
+  private Producer<K, V> producer;
 
   private ProducerTopicMessageCounter msgCounter;
 
+  private ProducerTopicMessageHistogram sendDurationHistogram;
+
   private String producerName;
 
+  private Semaphore inFlightRecords;
+
   public KafkaMessageProducer(
       String topic,
-      KafkaProducer<K, V> producer,
+      Producer<K, V> producer,
       ProducerTopicMessageCounter msgCounter,
       String producerName) {
+    this(topic, producer, msgCounter, null, producerName, 0);
+  }
+
+  /**
+   * @param topic the topic to send records to
+   * @param producer the producer to send the records with
+   * @param msgCounter counts the sent records
+   * @param sendDurationHistogram tracks the duration until records are acknowledged, may be {@code
+   *     null}
+   * @param producerName the name of the producer used in metrics
+   * @param maxInFlightRecords the maximum number of records not acknowledged yet, 0 if not limited
+   */
+  public KafkaMessageProducer(
+      String topic,
+      Producer<K, V> producer,
+      ProducerTopicMessageCounter msgCounter,
+      ProducerTopicMessageHistogram sendDurationHistogram,
+      String producerName,
+      int maxInFlightRecords) {
     this.producer = producer;
     this.topic = topic;
     this.msgCounter = msgCounter;
+    this.sendDurationHistogram = sendDurationHistogram;
     this.producerName = producerName;
+    this.inFlightRecords = maxInFlightRecords > 0 ? new Semaphore(maxInFlightRecords) : null;
   }
 
   @Override
   public Future<RecordMetadata> send(K key, V value) {
-    ProducerRecord<K, V> record = new ProducerRecord<>(topic, key, value);
-    msgCounter.increase(producerName, record.topic());
-    return producer.send(record);
+    return sendAsync(key, value);
   }
 
   @Override
   public Future<RecordMetadata> send(K key, V value, Headers headers) {
-    ProducerRecord<K, V> record = new ProducerRecord<>(topic, null, key, value, headers);
+    return sendAsync(key, value, headers);
+  }
+
+  @Override
+  public CompletableFuture<RecordMetadata> sendAsync(K key, V value) {
+    return send(new ProducerRecord<>(topic, key, value));
+  }
+
+  @Override
+  public CompletableFuture<RecordMetadata> sendAsync(K key, V value, Headers headers) {
+    return send(new ProducerRecord<>(topic, null, key, value, headers));
+  }
+
+  private CompletableFuture<RecordMetadata> send(ProducerRecord<K, V> record) {
     msgCounter.increase(producerName, record.topic());
-    return producer.send(record);
+    acquireInFlightPermit();
+    CompletableFuture<RecordMetadata> result = new CompletableFuture<>();
+    long start = System.nanoTime();
+    try {
+      producer.send(
+          record,
+          (metadata, exception) -> {
+            releaseInFlightPermit();
+            if (exception != null) {
+              result.completeExceptionally(exception);
+              return;
+            }
+            if (sendDurationHistogram != null) {
+              sendDurationHistogram.observe(
+                  SimpleTimer.elapsedSecondsFromNanos(start, System.nanoTime()),
+                  producerName,
+                  record.topic());
+            }
+            result.complete(metadata);
+          });
+    } catch (RuntimeException e) {
+      // the callback is not called if send fails immediately
+      releaseInFlightPermit();
+      throw e;
+    }
+    return result;
+  }
+
+  private void acquireInFlightPermit() {
+    if (inFlightRecords == null) {
+      return;
+    }
+    try {
+      inFlightRecords.acquire();
+    } catch (InterruptedException e) {
+      // same behavior as the producer if interrupted while waiting for buffer memory
+      throw new InterruptException(e);
+    }
+  }
+
+  private void releaseInFlightPermit() {
+    if (inFlightRecords != null) {
+      inFlightRecords.release();
+    }
   }
 
   public void close() {
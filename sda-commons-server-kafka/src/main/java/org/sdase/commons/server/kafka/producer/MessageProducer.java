@@ -1,6 +1,11 @@
 package org.sdase.commons.server.kafka.producer;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import org.apache.kafka.clients.producer.RecordMetadata;
 import org.apache.kafka.common.header.Headers;
 
@@ -22,4 +27,58 @@ public interface MessageProducer<K, V> {
   Future<RecordMetadata> send(K key, V value);
 
   Future<RecordMetadata> send(K key, V value, Headers headers);
+
+  /**
+   * Asynchronously send a record to a specific topic. Other than {@link #send(Object, Object)}, the
+   * result can be composed with further actions.
+   *
+   * <p>The default implementation adapts the future of {@link #send(Object, Object)} without
+   * waiting for it. Producers that don't return a {@link CompletableFuture} must override this
+   * method and complete the future when they are notified about the result, e.g. by the {@link
+   * org.apache.kafka.clients.producer.Callback} of the Kafka producer. Otherwise the future is
+   * completed exceptionally if the record was not acknowledged at once.
+   *
+   * @param key key to send
+   * @param value value to send
+   * @return a future that is completed with the {@link RecordMetadata} when the broker acknowledged
+   *     the record or completed exceptionally if the record could not be sent
+   */
+  default CompletableFuture<RecordMetadata> sendAsync(K key, V value) {
+    return CompletableFutures.of(send(key, value));
+  }
+
+  /**
+   * Asynchronously send a record with headers to a specific topic.
+   *
+   * @param key key to send
+   * @param value value to send
+   * @param headers headers to send
+   * @return a future that is completed with the {@link RecordMetadata} when the broker acknowledged
+   *     the record or completed exceptionally if the record could not be sent
+   * @see #sendAsync(Object, Object)
+   */
+  default CompletableFuture<RecordMetadata> sendAsync(K key, V value, Headers headers) {
+    return CompletableFutures.of(send(key, value, headers));
+  }
+
+  /**
+   * Sends all values without waiting for the acknowledgement of each record, so that the producer
+   * can send them in batches. The values are sent in the order of the collection.
+   *
+   * @param values values to send
+   * @param keyFunction function that derives the key of each value
+   * @return a future that is completed with the {@link RecordMetadata} of all records in the order
+   *     of the values when all records are acknowledged or completed exceptionally if any record
+   *     could not be sent
+   */
+  default CompletableFuture<List<RecordMetadata>> sendAll(
+      Collection<? extends V> values, Function<? super V, ? extends K> keyFunction) {
+    List<CompletableFuture<RecordMetadata>> futures =
+        values.stream()
+            .map(value -> sendAsync(keyFunction.apply(value), value))
+            .collect(Collectors.toList());
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+        .thenApply(
+            ignored -> futures.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+  }
 }
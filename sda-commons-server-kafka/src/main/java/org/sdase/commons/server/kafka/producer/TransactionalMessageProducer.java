@@ -0,0 +1,70 @@
+package org.sdase.commons.server.kafka.producer;
+
+import java.util.Map;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.common.TopicPartition;
+import org.sdase.commons.server.kafka.prometheus.ProducerTopicMessageCounter;
+import org.sdase.commons.server.kafka.prometheus.ProducerTopicMessageHistogram;
+
+/**
+ * A {@link KafkaMessageProducer} with a transactional {@link KafkaProducer}. Records sent between
+ * {@link #beginTransaction()} and {@link #commitTransaction()} are visible to consumers with
+ * isolation level {@code read_committed} together with the consumer offsets sent to the
+ * transaction, or not at all.
+ *
+ * <p>The transactions of the producer must be initialized before it is wrapped.
+ */
+public class TransactionalMessageProducer<K, V> extends KafkaMessageProducer<K, V> {
+
+  private final Producer<K, V> producer;
+
+  /**
+   * @param topic the topic to send records to
+   * @param producer the transactional producer with initialized transactions
+   * @param msgCounter counts the sent records
+   * @param sendDurationHistogram tracks the duration until records are acknowledged, may be {@code
+   *     null}
+   * @param producerName the name of the producer used in metrics
+   * @param maxInFlightRecords the maximum number of records not acknowledged yet, 0 if not limited
+   */
+  public TransactionalMessageProducer(
+      String topic,
+      Producer<K, V> producer,
+      ProducerTopicMessageCounter msgCounter,
+      ProducerTopicMessageHistogram sendDurationHistogram,
+      String producerName,
+      int maxInFlightRecords) {
+    super(topic, producer, msgCounter, sendDurationHistogram, producerName, maxInFlightRecords);
+    this.producer = producer;
+  }
+
+  /** @see KafkaProducer#beginTransaction() */
+  public void beginTransaction() {
+    producer.beginTransaction();
+  }
+
+  /**
+   * Adds the offsets of consumed records to the current transaction, so that they are committed
+   * together with the records sent in the transaction.
+   *
+   * @param offsets the offsets of the next records to consume per partition
+   * @param consumerGroupId the group of the consumer that consumed the records
+   * @see KafkaProducer#sendOffsetsToTransaction(Map, String)
+   */
+  public void sendOffsetsToTransaction(
+      Map<TopicPartition, OffsetAndMetadata> offsets, String consumerGroupId) {
+    producer.sendOffsetsToTransaction(offsets, consumerGroupId);
+  }
+
+  /** @see KafkaProducer#commitTransaction() */
+  public void commitTransaction() {
+    producer.commitTransaction();
+  }
+
+  /** @see KafkaProducer#abortTransaction() */
+  public void abortTransaction() {
+    producer.abortTransaction();
+  }
+}
@@ -0,0 +1,199 @@
+package org.sdase.commons.server.kafka.prometheus;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Histogram;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+/**
+ * The central definition of the metrics about offset commits of Kafka consumers. Strategies that
+ * commit offsets explicitly should report the duration of each commit and each failed commit.
+ *
+ * <p>Strategies should also report the committed offsets. The {@link
+ * org.sdase.commons.server.kafka.consumer.MessageListener} uses them to count the records that are
+ * consumed again after their partitions have been revoked, without asking the broker for the
+ * committed offsets during the rebalance.
+ */
+public class ConsumerCommitMetrics {
+
+  /** Commit type label value for commits using {@code commitSync}. */
+  public static final String COMMIT_TYPE_SYNC = "sync";
+
+  /** Commit type label value for commits using {@code commitAsync}. */
+  public static final String COMMIT_TYPE_ASYNC = "async";
+
+  /** Commit type label value for offsets committed with a producer transaction. */
+  public static final String COMMIT_TYPE_TRANSACTION = "transaction";
+
+  /** The histogram name as it is published to Prometheus. */
+  private static final String DURATION_METRIC_NAME = "kafka_consumer_commit_duration";
+
+  /** The help message description that describes the histogram. */
+  private static final String DURATION_HELP =
+      "Duration of offset commits of Kafka consumers in seconds until the broker acknowledged.";
+
+  /** The counter name as it is published to Prometheus. */
+  private static final String FAILED_METRIC_NAME = "kafka_consumer_commit_failed_total";
+
+  /** The help message description that describes the counter. */
+  private static final String FAILED_HELP = "Amount of failed offset commits of Kafka consumers.";
+
+  /** The counter name of aborted transactions as it is published to Prometheus. */
+  private static final String ABORTED_METRIC_NAME = "kafka_consumer_transaction_aborted_total";
+
+  /** The help message description that describes the counter of aborted transactions. */
+  private static final String ABORTED_HELP =
+      "Amount of aborted transactions of Kafka consumers that commit offsets with a producer.";
+
+  /** The labels added by {@code ConsumerCommitMetrics}. */
+  private static final String[] LABELS = {
+    // the name of the client committing the offsets
+    "consumer_name",
+    // the way the offsets are committed, sync, async or transaction
+    "commit_type"
+  };
+
+  private Histogram commitDurationHistogram;
+  private Counter failedCommitCounter;
+  private Counter abortedTransactionCounter;
+  private Collector[] collectors;
+  private LabeledChildren<Histogram.Child> commitDurations;
+  private LabeledChildren<Counter.Child> failedCommits;
+
+  /**
+   * Time spent in synchronous and transactional commits per consumer, which block the poll loop.
+   */
+  private final Map<String, DoubleAdder> blockingCommitSeconds = new ConcurrentHashMap<>();
+
+  /** The last reported committed offset of each partition per consumer. */
+  private final Map<String, Map<TopicPartition, Long>> committedOffsets = new ConcurrentHashMap<>();
+
+  /**
+   * Creates and registers the metrics matching the specification of this {@code
+   * ConsumerCommitMetrics} instance. <strong>Note that there should be only one registered instance
+   * of this type in the application.</strong>
+   */
+  public ConsumerCommitMetrics() {
+    this.commitDurationHistogram =
+        Histogram.build()
+            .name(DURATION_METRIC_NAME)
+            .labelNames(LABELS)
+            .help(DURATION_HELP)
+            .buckets(0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5)
+            .create();
+    this.failedCommitCounter =
+        Counter.build().name(FAILED_METRIC_NAME).labelNames(LABELS).help(FAILED_HELP).create();
+    this.abortedTransactionCounter =
+        Counter.build().name(ABORTED_METRIC_NAME).labelNames(LABELS[0]).help(ABORTED_HELP).create();
+    // commits are only observed by strategies that commit explicitly
+    this.collectors =
+        new Collector[] {
+          new OmitEmptyCollector(commitDurationHistogram),
+          new OmitEmptyCollector(failedCommitCounter),
+          new OmitEmptyCollector(abortedTransactionCounter)
+        };
+    for (Collector collector : collectors) {
+      CollectorRegistry.defaultRegistry.register(collector);
+    }
+    this.commitDurations = new LabeledChildren<>(commitDurationHistogram);
+    this.failedCommits = new LabeledChildren<>(failedCommitCounter);
+  }
+
+  /** Unregisters the metrics. Should be called when the context is closed. */
+  public void unregister() {
+    for (Collector collector : collectors) {
+      CollectorRegistry.defaultRegistry.unregister(collector);
+    }
+  }
+
+  /**
+   * Observes the duration of a commit.
+   *
+   * @param durationSeconds the duration until the commit has been acknowledged
+   * @param consumerName the name of the consumer
+   * @param commitType {@link #COMMIT_TYPE_SYNC}, {@link #COMMIT_TYPE_ASYNC} or {@link
+   *     #COMMIT_TYPE_TRANSACTION}
+   */
+  public void observeCommit(double durationSeconds, String consumerName, String commitType) {
+    commitDurations.get(consumerName, commitType).observe(durationSeconds);
+    if (!COMMIT_TYPE_ASYNC.equals(commitType)) {
+      blockingCommitSeconds
+          .computeIfAbsent(consumerName, k -> new DoubleAdder())
+          .add(durationSeconds);
+    }
+  }
+
+  /**
+   * @param consumerName the name of the consumer
+   * @return the total time in seconds the consumer spent in observed synchronous and transactional
+   *     commits
+   */
+  public double getBlockingCommitSeconds(String consumerName) {
+    DoubleAdder seconds = blockingCommitSeconds.get(consumerName);
+    return seconds == null ? 0 : seconds.sum();
+  }
+
+  /**
+   * Keeps the offsets that have been committed successfully.
+   *
+   * @param consumerName the name of the consumer
+   * @param offsets the committed offsets
+   */
+  public void observeCommittedOffsets(
+      String consumerName, Map<TopicPartition, OffsetAndMetadata> offsets) {
+    Map<TopicPartition, Long> consumerOffsets =
+        committedOffsets.computeIfAbsent(consumerName, k -> new ConcurrentHashMap<>());
+    offsets.forEach((partition, offset) -> consumerOffsets.put(partition, offset.offset()));
+  }
+
+  /**
+   * @param consumerName the name of the consumer
+   * @param partition the partition of the consumer
+   * @return the last reported committed offset of the partition or {@code null} if no commit has
+   *     been reported
+   */
+  public Long getCommittedOffset(String consumerName, TopicPartition partition) {
+    Map<TopicPartition, Long> consumerOffsets = committedOffsets.get(consumerName);
+    return consumerOffsets == null ? null : consumerOffsets.get(partition);
+  }
+
+  /**
+   * Forgets the committed offsets of partitions that are revoked from the consumer, as other
+   * consumers commit them from now on.
+   *
+   * @param consumerName the name of the consumer
+   * @param partitions the revoked partitions
+   */
+  public void removeCommittedOffsets(String consumerName, Collection<TopicPartition> partitions) {
+    Map<TopicPartition, Long> consumerOffsets = committedOffsets.get(consumerName);
+    if (consumerOffsets != null) {
+      consumerOffsets.keySet().removeAll(partitions);
+    }
+  }
+
+  /**
+   * Increases the counter of failed commits by 1.
+   *
+   * @param consumerName the name of the consumer
+   * @param commitType {@link #COMMIT_TYPE_SYNC}, {@link #COMMIT_TYPE_ASYNC} or {@link
+   *     #COMMIT_TYPE_TRANSACTION}
+   */
+  public void increaseFailedCommits(String consumerName, String commitType) {
+    failedCommits.get(consumerName, commitType).inc();
+  }
+
+  /**
+   * Increases the counter of aborted transactions by 1.
+   *
+   * @param consumerName the name of the consumer
+   */
+  public void increaseAbortedTransactions(String consumerName) {
+    abortedTransactionCounter.labels(consumerName).inc();
+  }
+}
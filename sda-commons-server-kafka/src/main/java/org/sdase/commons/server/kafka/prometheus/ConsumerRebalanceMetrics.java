@@ -0,0 +1,78 @@
+package org.sdase.commons.server.kafka.prometheus;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.CounterMetricFamily;
+import io.prometheus.client.SummaryMetricFamily;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.sdase.commons.server.kafka.consumer.KafkaHelper;
+import org.sdase.commons.server.kafka.consumer.MessageListener;
+
+/**
+ * Custom Prometheus Collector that reports the rebalances of the consumers of all registered
+ * message listeners. The duration of a rebalance is the time from revoking until assigning
+ * partitions in the poll loop, including the commits of the strategy. Records that have been
+ * consumed but not committed when their partitions were revoked are counted, as they are consumed
+ * again.
+ */
+public class ConsumerRebalanceMetrics extends Collector {
+
+  private static final String DURATION_METRIC_NAME = "kafka_consumer_rebalance_duration_seconds";
+
+  private static final String DURATION_HELP =
+      "Time from revoking until assigning partitions in rebalances of a consumer.";
+
+  private static final String REPROCESSED_METRIC_NAME =
+      "kafka_consumer_rebalance_reprocessed_records_total";
+
+  private static final String REPROCESSED_HELP =
+      "Records consumed but not committed when their partitions were revoked, they are consumed again.";
+
+  /** The labels added by {@link ConsumerRebalanceMetrics}. */
+  private static final List<String> LABELS =
+      Collections.singletonList(
+          // id of the client of the listener
+          "consumer_name");
+
+  private final List<MessageListener<?, ?>> messageListeners;
+
+  /**
+   * Creates and registers a custom Prometheus Collector {@link Collector}. <strong>Note that there
+   * should be only one registered instance of this type in the application.</strong>
+   *
+   * @param messageListeners list of listeners for which to gather metrics
+   */
+  public ConsumerRebalanceMetrics(List<MessageListener<?, ?>> messageListeners) {
+    this.messageListeners = messageListeners;
+    this.register();
+  }
+
+  @Override
+  public List<MetricFamilySamples> collect() {
+    SummaryMetricFamily duration =
+        new SummaryMetricFamily(DURATION_METRIC_NAME, DURATION_HELP, LABELS);
+    CounterMetricFamily reprocessed =
+        new CounterMetricFamily(REPROCESSED_METRIC_NAME, REPROCESSED_HELP, LABELS);
+
+    for (MessageListener<?, ?> listener : messageListeners) {
+      if (listener.getListenerThread() == null) {
+        continue;
+      }
+      List<String> labelValues =
+          Collections.singletonList(KafkaHelper.getClientId(listener.getConsumer()));
+      duration.addMetric(
+          labelValues,
+          listener.getRebalanceCount(),
+          listener.getRebalanceNanos() / NANOSECONDS_PER_SECOND);
+      reprocessed.addMetric(labelValues, listener.getUncommittedRevokedRecords());
+    }
+
+    List<MetricFamilySamples> mfs = new ArrayList<>();
+    if (!duration.samples.isEmpty()) {
+      mfs.add(duration);
+      mfs.add(reprocessed);
+    }
+    return mfs;
+  }
+}
@@ -1,12 +1,14 @@
 package org.sdase.commons.server.kafka.prometheus;
 
+import io.prometheus.client.Collector;
 import io.prometheus.client.CollectorRegistry;
 import io.prometheus.client.Histogram;
 
 /**
  * The central definition of the message consumer duration histogram. This is the definition of the
  * message consumed duration histogram as it should be provided by all Kafka consumers to measure
- * message process durations with Prometheus.
+ * message process durations with Prometheus. Strategies that process messages in batches
+ * additionally report the size and the duration of each batch.
  */
 public class ConsumerTopicMessageHistogram {
 
@@ -16,11 +18,20 @@ public class ConsumerTopicMessageHistogram {
   /** The help message description that describes the Histogram. */
   private static final String HELP = "Duration of Kafka Messages consumed in seconds.";
 
-  /**
-   * The labels added by {@code ConsumerTopicMessageHistogram}. The labels and their order have to
-   * be aligned with the values created in {@link #createLabelValuesForCurrentMessage(String,
-   * String)}
-   */
+  /** The name of the histogram of the number of records in a batch. */
+  private static final String BATCH_SIZE_METRIC_NAME = "kafka_consumer_topic_batch_size";
+
+  /** The help message description that describes the batch size histogram. */
+  private static final String BATCH_SIZE_HELP = "Number of Kafka Messages consumed in a batch.";
+
+  /** The name of the histogram of the processing duration of a batch. */
+  private static final String BATCH_DURATION_METRIC_NAME = "kafka_consumer_topic_batch_duration";
+
+  /** The help message description that describes the batch duration histogram. */
+  private static final String BATCH_DURATION_HELP =
+      "Duration of batches of Kafka Messages consumed in seconds.";
+
+  /** The labels added by {@code ConsumerTopicMessageHistogram}. */
   private static final String[] LABELS = {
     // the name of the client handling the message
     "consumer_name",
@@ -29,45 +40,91 @@ public class ConsumerTopicMessageHistogram {
   };
 
   private Histogram messageDurationHistogram;
+  private Histogram batchSizeHistogram;
+  private Histogram batchDurationHistogram;
+  private Collector[] batchCollectors;
+  private LabeledChildren<Histogram.Child> messageDurations;
+  private LabeledChildren<Histogram.Child> batchSizes;
+  private LabeledChildren<Histogram.Child> batchDurations;
 
   /**
-   * Creates and registers a new {@link Histogram} matching the specification of this {@code
+   * Creates and registers the {@link Histogram}s matching the specification of this {@code
    * ConsumerTopicMessageHistogram} instance. <strong>Note that there should be only one registered
    * instance of this type in the application.</strong>
    */
   public ConsumerTopicMessageHistogram() {
     this.messageDurationHistogram = createAndRegister();
+    this.batchSizeHistogram =
+        Histogram.build()
+            .name(BATCH_SIZE_METRIC_NAME)
+            .labelNames(LABELS)
+            .help(BATCH_SIZE_HELP)
+            .buckets(1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000)
+            .create();
+    this.batchDurationHistogram =
+        Histogram.build()
+            .name(BATCH_DURATION_METRIC_NAME)
+            .labelNames(LABELS)
+            .help(BATCH_DURATION_HELP)
+            .create();
+    // batches are only observed by batch strategies
+    this.batchCollectors =
+        new Collector[] {
+          new OmitEmptyCollector(batchSizeHistogram), new OmitEmptyCollector(batchDurationHistogram)
+        };
+    for (Collector collector : batchCollectors) {
+      CollectorRegistry.defaultRegistry.register(collector);
+    }
+    this.messageDurations = new LabeledChildren<>(messageDurationHistogram);
+    this.batchSizes = new LabeledChildren<>(batchSizeHistogram);
+    this.batchDurations = new LabeledChildren<>(batchDurationHistogram);
   }
 
-  /** Unregisters the histogram. Should be called when the context is closed. */
+  /** Unregisters the histograms. Should be called when the context is closed. */
   public void unregister() {
     CollectorRegistry.defaultRegistry.unregister(messageDurationHistogram);
+    for (Collector collector : batchCollectors) {
+      CollectorRegistry.defaultRegistry.unregister(collector);
+    }
   }
 
   /**
-   * Observes the given message duration and adds the defined labels.
+   * Observes the given message duration and adds the defined labels. The histogram for the labels
+   * is cached, so observing does not allocate objects.
    *
    * @param durationSeconds the duration to add
-   * @param producerName the name of the producer
+   * @param consumerName the name of the consumer
    * @param topicName the name of the topic
    */
-  public void observe(double durationSeconds, String producerName, String topicName) {
-    String[] labelValues = createLabelValuesForCurrentMessage(producerName, topicName);
-    messageDurationHistogram.labels(labelValues).observe(durationSeconds);
+  public void observe(double durationSeconds, String consumerName, String topicName) {
+    child(consumerName, topicName).observe(durationSeconds);
   }
 
   /**
-   * Creates all values for the labels required by the histogram in appropriate order.
+   * Provides the histogram of the message durations of a consumer and topic. The child is created
+   * once and can be kept by the caller to observe durations without any lookup.
    *
-   * @param producerName the name of the producer
+   * @param consumerName the name of the consumer
    * @param topicName the name of the topic
-   * @return all values for the labels in the order they are registered in the histogram
+   * @return the histogram for the labels
    */
-  @SuppressWarnings("static-method")
-  private String[] createLabelValuesForCurrentMessage(String producerName, String topicName) {
-    // the number of values and their order has to be aligned with the
-    // defined #LABELS
-    return new String[] {producerName, topicName};
+  public Histogram.Child child(String consumerName, String topicName) {
+    return messageDurations.get(consumerName, topicName);
+  }
+
+  /**
+   * Observes the size and the processing duration of a batch of messages and adds the defined
+   * labels.
+   *
+   * @param batchSize the number of messages in the batch
+   * @param durationSeconds the duration to process the batch
+   * @param consumerName the name of the consumer
+   * @param topicName the name of the topic
+   */
+  public void observeBatch(
+      int batchSize, double durationSeconds, String consumerName, String topicName) {
+    batchSizes.get(consumerName, topicName).observe(batchSize);
+    batchDurations.get(consumerName, topicName).observe(durationSeconds);
   }
 
   /**
@@ -0,0 +1,77 @@
+package org.sdase.commons.server.kafka.prometheus;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.CounterMetricFamily;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.sdase.commons.server.kafka.consumer.DeduplicationCache;
+
+/**
+ * Custom Prometheus Collector that reports the lookups of the registered {@link
+ * DeduplicationCache}s. The hit rate of a cache is computed from the rates of the counters, e.g.
+ * {@code rate(hits_total) / (rate(hits_total) + rate(misses_total))}.
+ */
+public class DeduplicationCacheMetrics extends Collector {
+
+  private static final String HITS_METRIC_NAME = "kafka_consumer_deduplication_cache_hits_total";
+
+  private static final String HITS_HELP =
+      "Lookups that found the fingerprint of a message in a deduplication cache, the message is skipped.";
+
+  private static final String MISSES_METRIC_NAME =
+      "kafka_consumer_deduplication_cache_misses_total";
+
+  private static final String MISSES_HELP =
+      "Lookups that did not find the fingerprint of a message in a deduplication cache, the message is handled.";
+
+  /** The labels added by {@link DeduplicationCacheMetrics}. */
+  private static final List<String> LABELS =
+      Collections.singletonList(
+          // name of the cache given at registration
+          "cache_name");
+
+  private final Map<String, DeduplicationCache> caches = new ConcurrentHashMap<>();
+
+  /**
+   * Creates and registers a custom Prometheus Collector {@link Collector}. <strong>Note that there
+   * should be only one registered instance of this type in the application.</strong>
+   */
+  public DeduplicationCacheMetrics() {
+    this.register();
+  }
+
+  /**
+   * @param name the name of the cache in the metrics
+   * @param cache the cache whose lookups are reported
+   * @throws IllegalArgumentException if another cache has been added with the same name
+   */
+  public void add(String name, DeduplicationCache cache) {
+    DeduplicationCache previous = caches.putIfAbsent(name, cache);
+    if (previous != null && previous != cache) {
+      throw new IllegalArgumentException(
+          String.format("A deduplication cache named '%s' is registered already.", name));
+    }
+  }
+
+  @Override
+  public List<MetricFamilySamples> collect() {
+    if (caches.isEmpty()) {
+      return Collections.emptyList();
+    }
+    CounterMetricFamily hits = new CounterMetricFamily(HITS_METRIC_NAME, HITS_HELP, LABELS);
+    CounterMetricFamily misses = new CounterMetricFamily(MISSES_METRIC_NAME, MISSES_HELP, LABELS);
+    caches.forEach(
+        (name, cache) -> {
+          List<String> labelValues = Collections.singletonList(name);
+          hits.addMetric(labelValues, cache.getHitCount());
+          misses.addMetric(labelValues, cache.getMissCount());
+        });
+    List<MetricFamilySamples> mfs = new ArrayList<>();
+    mfs.add(hits);
+    mfs.add(misses);
+    return mfs;
+  }
+}
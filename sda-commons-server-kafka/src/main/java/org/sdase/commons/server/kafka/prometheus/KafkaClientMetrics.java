@@ -0,0 +1,204 @@
+package org.sdase.commons.server.kafka.prometheus;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.GaugeMetricFamily;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.kafka.clients.CommonClientConfigs;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.KafkaMetric;
+import org.sdase.commons.server.kafka.config.MetricsConfig;
+
+/**
+ * Custom Prometheus Collector that exports selected metrics of Kafka consumers and producers. The
+ * clients report their metrics to a {@link KafkaClientMetricsReporter} when they are added or
+ * removed, so that each metric is mapped to its gauge only once and a scrape only reads the values
+ * of the selected metrics.
+ *
+ * <p>The clients are connected to the collector with {@link #configure(Map)}. As the client
+ * configuration may only contain known properties, the reporters look up the collector by the
+ * client id of their client.
+ */
+public class KafkaClientMetrics extends Collector {
+
+  /** The collectors of the configured clients by client id, looked up by the reporters. */
+  private static final Map<String, KafkaClientMetrics> COLLECTORS = new ConcurrentHashMap<>();
+
+  /** The key of the collector of clients without client id, Kafka generates one for them. */
+  private static final String ANY_CLIENT = "";
+
+  private static final String CONSUMER_METRIC_NAME_PREFIX = "kafka_consumer_";
+
+  private static final String PRODUCER_METRIC_NAME_PREFIX = "kafka_producer_";
+
+  /** Metric groups of the consumer with client wide, per topic or per partition metrics. */
+  private static final Set<String> CONSUMER_GROUPS =
+      new HashSet<>(
+          Arrays.asList(
+              "consumer-metrics",
+              "consumer-coordinator-metrics",
+              "consumer-fetch-manager-metrics"));
+
+  /** Metric groups of the producer with client wide or per topic metrics. */
+  private static final Set<String> PRODUCER_GROUPS =
+      new HashSet<>(Arrays.asList("producer-metrics", "producer-topic-metrics"));
+
+  /**
+   * The labels of consumer metrics. Kafka metrics of the same name may be reported for the client,
+   * a topic or a partition, the labels that do not apply are empty.
+   */
+  private static final List<String> CONSUMER_LABELS =
+      Collections.unmodifiableList(Arrays.asList("consumer_name", "topic_name", "partition"));
+
+  /** The labels of producer metrics. */
+  private static final List<String> PRODUCER_LABELS =
+      Collections.unmodifiableList(Arrays.asList("producer_name", "topic_name"));
+
+  private static final String TAG_CLIENT_ID = "client-id";
+
+  private static final String TAG_TOPIC = "topic";
+
+  private static final String TAG_PARTITION = "partition";
+
+  private final Set<String> consumerMetrics;
+
+  private final Set<String> producerMetrics;
+
+  private final Map<MetricName, Binding> bindings = new ConcurrentHashMap<>();
+
+  /**
+   * Creates and registers a custom Prometheus Collector {@link Collector}. <strong>Note that there
+   * should be only one registered instance of this type in the application.</strong>
+   *
+   * @param metricsConfig the names of the Kafka metrics to export
+   */
+  public KafkaClientMetrics(MetricsConfig metricsConfig) {
+    this.consumerMetrics = new HashSet<>(metricsConfig.getConsumerMetrics());
+    this.producerMetrics = new HashSet<>(metricsConfig.getProducerMetrics());
+    this.register();
+  }
+
+  /**
+   * Adds the {@link KafkaClientMetricsReporter} to the configuration of a Kafka client, so that the
+   * metrics of the client are exported by this collector. Reporters that are already configured are
+   * kept.
+   *
+   * @param clientProperties the configuration used to create a consumer or a producer
+   */
+  public void configure(Map<Object, Object> clientProperties) {
+    String reporter = KafkaClientMetricsReporter.class.getName();
+    Object reporters = clientProperties.get(CommonClientConfigs.METRIC_REPORTER_CLASSES_CONFIG);
+    if (reporters != null && !reporters.toString().trim().isEmpty()) {
+      reporter = reporters + "," + reporter;
+    }
+    clientProperties.put(CommonClientConfigs.METRIC_REPORTER_CLASSES_CONFIG, reporter);
+    Object clientId = clientProperties.get(CommonClientConfigs.CLIENT_ID_CONFIG);
+    COLLECTORS.put(clientId != null ? clientId.toString() : ANY_CLIENT, this);
+  }
+
+  /**
+   * Unregisters the collector from Prometheus. Clients that are configured with this collector
+   * don't report their metrics anymore when they are created afterwards.
+   */
+  public void close() {
+    COLLECTORS.values().removeIf(this::equals);
+    CollectorRegistry.defaultRegistry.unregister(this);
+  }
+
+  /**
+   * @param clientId the client id from the configuration of the reporter
+   * @return the collector the client is configured with, {@code null} if the client is not
+   *     configured by {@link #configure(Map)}
+   */
+  static KafkaClientMetrics forClient(Object clientId) {
+    KafkaClientMetrics collector = clientId != null ? COLLECTORS.get(clientId.toString()) : null;
+    return collector != null ? collector : COLLECTORS.get(ANY_CLIENT);
+  }
+
+  @Override
+  public List<MetricFamilySamples> collect() {
+    Map<String, GaugeMetricFamily> families = new LinkedHashMap<>();
+    for (Binding binding : bindings.values()) {
+      Object value = binding.metric.metricValue();
+      if (value instanceof Number) {
+        families
+            .computeIfAbsent(
+                binding.familyName,
+                name -> new GaugeMetricFamily(name, binding.help, binding.labelNames))
+            .addMetric(binding.labelValues, ((Number) value).doubleValue());
+      }
+    }
+    return new ArrayList<>(families.values());
+  }
+
+  /**
+   * Maps the metric to its gauge if it is selected for export.
+   *
+   * @param metric a metric that has been added or changed
+   * @return if the metric is exported
+   */
+  boolean bind(KafkaMetric metric) {
+    MetricName metricName = metric.metricName();
+    Binding binding;
+    if (CONSUMER_GROUPS.contains(metricName.group())
+        && consumerMetrics.contains(metricName.name())) {
+      binding =
+          new Binding(
+              metric,
+              CONSUMER_METRIC_NAME_PREFIX,
+              CONSUMER_LABELS,
+              Arrays.asList(
+                  tag(metricName, TAG_CLIENT_ID),
+                  tag(metricName, TAG_TOPIC),
+                  tag(metricName, TAG_PARTITION)));
+    } else if (PRODUCER_GROUPS.contains(metricName.group())
+        && producerMetrics.contains(metricName.name())) {
+      binding =
+          new Binding(
+              metric,
+              PRODUCER_METRIC_NAME_PREFIX,
+              PRODUCER_LABELS,
+              Arrays.asList(tag(metricName, TAG_CLIENT_ID), tag(metricName, TAG_TOPIC)));
+    } else {
+      return false;
+    }
+    bindings.put(metricName, binding);
+    return true;
+  }
+
+  /** @param metricName the name of a metric that has been removed */
+  void unbind(MetricName metricName) {
+    bindings.remove(metricName);
+  }
+
+  private static String tag(MetricName metricName, String tag) {
+    return metricName.tags().getOrDefault(tag, "");
+  }
+
+  /** A Kafka metric with the precomputed name and labels of its Prometheus sample. */
+  private static class Binding {
+
+    private final KafkaMetric metric;
+    private final String familyName;
+    private final String help;
+    private final List<String> labelNames;
+    private final List<String> labelValues;
+
+    private Binding(
+        KafkaMetric metric, String prefix, List<String> labelNames, List<String> labelValues) {
+      this.metric = metric;
+      this.familyName = prefix + metric.metricName().name().replace('-', '_');
+      this.help = metric.metricName().description();
+      this.labelNames = labelNames;
+      this.labelValues = labelValues;
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package org.sdase.commons.server.kafka.prometheus;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.kafka.clients.CommonClientConfigs;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.KafkaMetric;
+import org.apache.kafka.common.metrics.MetricsReporter;
+
+/**
+ * Kafka {@link MetricsReporter} that forwards the metrics of a client to the {@link
+ * KafkaClientMetrics} the client is configured with. It is added to the clients by {@link
+ * KafkaClientMetrics#configure(Map)} and created by the Kafka client.
+ */
+public class KafkaClientMetricsReporter implements MetricsReporter {
+
+  private KafkaClientMetrics collector;
+
+  /** The metrics of the client that are exported, removed from the collector on close. */
+  private final Set<MetricName> boundMetrics = new HashSet<>();
+
+  @Override
+  public void configure(Map<String, ?> configs) {
+    // the client passes its client id, also if it is generated
+    collector = KafkaClientMetrics.forClient(configs.get(CommonClientConfigs.CLIENT_ID_CONFIG));
+  }
+
+  @Override
+  public void init(List<KafkaMetric> metrics) {
+    metrics.forEach(this::metricChange);
+  }
+
+  @Override
+  public synchronized void metricChange(KafkaMetric metric) {
+    if (collector != null && collector.bind(metric)) {
+      boundMetrics.add(metric.metricName());
+    }
+  }
+
+  @Override
+  public synchronized void metricRemoval(KafkaMetric metric) {
+    if (collector != null && boundMetrics.remove(metric.metricName())) {
+      collector.unbind(metric.metricName());
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    if (collector != null) {
+      boundMetrics.forEach(collector::unbind);
+    }
+    boundMetrics.clear();
+  }
+}
@@ -4,18 +4,18 @@ import io.prometheus.client.Collector;
 import io.prometheus.client.GaugeMetricFamily;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import org.apache.kafka.common.Metric;
-import org.apache.kafka.common.MetricName;
+import org.sdase.commons.server.kafka.consumer.KafkaHelper;
 import org.sdase.commons.server.kafka.consumer.MessageListener;
+import org.sdase.commons.server.kafka.consumer.strategies.AsyncMessageListenerStrategy;
+import org.sdase.commons.server.kafka.consumer.strategies.AsyncMessageListenerStrategy.LaneStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Custom Prometheus Collector scraping Kafka Metrics for all registered message listeners.<br>
- * Specify the metrics to be handled by Prometheus in {@link #KAFKA_METRICS}.
+ * Custom Prometheus Collector reporting the state of all registered message listeners. The metrics
+ * of the Kafka clients are exported by {@link KafkaClientMetrics}.
  */
 public class KafkaConsumerMetrics extends Collector {
 
@@ -24,22 +24,19 @@ public class KafkaConsumerMetrics extends Collector {
   /** The prefix for the metrics name as they are published to Prometheus */
   private static final String METRIC_NAME_PREFIX = "kafka_consumer_";
 
-  /**
-   * <a href= "https://kafka.apache.org/documentation/#consumer_monitoring">Kafka Metrics</a>
-   * scraped by this class.
-   */
-  private static final String[] KAFKA_METRICS = {"records-lag"};
-
-  /**
-   * The labels added by {@link KafkaConsumerMetrics}. The labels and their order have to be aligned
-   * with the values created in {@link #createLabelValuesForCurrentMessage(String, String, String)}
-   */
+  /** The labels added to the paused partitions. */
   private static final String[] LABELS = {
-    // id of the client retrieving the Kafka metric
+    // id of the client of the listener
     "consumer_name"
   };
 
-  private static final String KAFKA_METRIC_TAG_CLIENT_ID = "client-id";
+  /** The labels added to the utilization of the lanes of asynchronous strategies. */
+  private static final String[] LANE_LABELS = {
+    // id of the client whose records are processed in the lane
+    "consumer_name",
+    // index of the lane
+    "lane"
+  };
 
   private List<MessageListener<?, ?>> messageListeners;
 
@@ -58,66 +55,69 @@ public class KafkaConsumerMetrics extends Collector {
   @Override
   public List<MetricFamilySamples> collect() {
     List<MetricFamilySamples> mfs = new ArrayList<>();
-    messageListeners.forEach(
-        listener -> mfs.addAll(collectGaugesPerListener(listener.getConsumer().metrics())));
+    mfs.addAll(collectPausedPartitionGauges());
+    mfs.addAll(collectLaneGauges());
     return mfs;
   }
 
-  private List<GaugeMetricFamily> collectGaugesPerListener(
-      Map<MetricName, ? extends Metric> metrics) {
-    List<GaugeMetricFamily> list = new ArrayList<>();
-
-    Arrays.stream(KAFKA_METRICS)
-        .forEach(
-            metricName -> list.add(collectKafkaMetric(metricByNameOrNull(metrics, metricName))));
-    return list;
-  }
-
-  private GaugeMetricFamily collectKafkaMetric(Entry<MetricName, ? extends Metric> kafkaMetric) {
-    if (kafkaMetric == null) {
-      return null;
+  /** Collects the number of paused partitions of all listeners. */
+  private List<GaugeMetricFamily> collectPausedPartitionGauges() {
+    if (messageListeners.isEmpty()) {
+      return Collections.emptyList();
     }
-    String normalizedMetricName =
-        METRIC_NAME_PREFIX + kafkaMetric.getKey().name().replace('-', '_');
-    GaugeMetricFamily labeledGauge =
+    GaugeMetricFamily pausedPartitions =
         new GaugeMetricFamily(
-            normalizedMetricName, kafkaMetric.getKey().description(), Arrays.asList(LABELS));
-
-    String[] labelValues =
-        createLabelValuesForCurrentMessage(
-            kafkaMetric.getKey().tags().get(KAFKA_METRIC_TAG_CLIENT_ID));
-
-    labeledGauge.addMetric(
-        Arrays.asList(labelValues), (double) kafkaMetric.getValue().metricValue());
-    return labeledGauge;
+            METRIC_NAME_PREFIX + "paused_partitions",
+            "Number of assigned partitions the consumer does not fetch records for.",
+            Arrays.asList(LABELS));
+    messageListeners.forEach(
+        listener ->
+            pausedPartitions.addMetric(
+                Collections.singletonList(KafkaHelper.getClientId(listener.getConsumer())),
+                listener.getPausedPartitionCount()));
+    return Collections.singletonList(pausedPartitions);
   }
 
   /**
-   * Creates all values for the labels required by the gauges in appropriate order.
-   *
-   * @param consumerName
-   * @return all values for the labels in the order they are registered in the respective gauge
+   * Collects the utilization of the lanes of all listeners that use an {@link
+   * AsyncMessageListenerStrategy}.
    */
-  @SuppressWarnings("static-method")
-  private String[] createLabelValuesForCurrentMessage(String consumerName) {
-    // the number of values and their order has to be aligned with the
-    // defined #LABELS
-    return new String[] {consumerName};
+  private List<GaugeMetricFamily> collectLaneGauges() {
+    GaugeMetricFamily queueDepth =
+        new GaugeMetricFamily(
+            METRIC_NAME_PREFIX + "lane_queue_depth",
+            "Number of consumed records waiting in a lane of the listener strategy.",
+            Arrays.asList(LANE_LABELS));
+    GaugeMetricFamily inFlightRecords =
+        new GaugeMetricFamily(
+            METRIC_NAME_PREFIX + "lane_in_flight_records",
+            "Number of records in a lane of the listener strategy that are not completed yet.",
+            Arrays.asList(LANE_LABELS));
+    messageListeners.forEach(listener -> addLaneSamples(listener, queueDepth, inFlightRecords));
+    if (queueDepth.samples.isEmpty()) {
+      return Collections.emptyList();
+    }
+    return Arrays.asList(queueDepth, inFlightRecords);
   }
 
-  /**
-   * Extracts {@link Metric} from Kafka Metrics by its name
-   *
-   * @param metrics
-   * @param name
-   * @return
-   */
-  @SuppressWarnings("static-method")
-  private Entry<MetricName, ? extends Metric> metricByNameOrNull(
-      Map<MetricName, ? extends Metric> metrics, String name) {
-    return metrics.entrySet().stream()
-        .filter(mx -> mx.getKey().name().equals(name))
-        .findFirst()
-        .orElse(null);
+  private static <K, V> void addLaneSamples(
+      MessageListener<K, V> listener,
+      GaugeMetricFamily queueDepth,
+      GaugeMetricFamily inFlightRecords) {
+    if (!(listener.getStrategy() instanceof AsyncMessageListenerStrategy)) {
+      return;
+    }
+    AsyncMessageListenerStrategy<K, V> strategy =
+        (AsyncMessageListenerStrategy<K, V>) listener.getStrategy();
+    List<LaneStatistics> lanes = strategy.getLaneStatistics(listener.getConsumer());
+    if (lanes.isEmpty()) {
+      return;
+    }
+    String consumerName = KafkaHelper.getClientId(listener.getConsumer());
+    for (LaneStatistics lane : lanes) {
+      List<String> labelValues = Arrays.asList(consumerName, String.valueOf(lane.getLane()));
+      queueDepth.addMetric(labelValues, lane.getQueueDepth());
+      inFlightRecords.addMetric(labelValues, lane.getInFlightRecords());
+    }
   }
 }
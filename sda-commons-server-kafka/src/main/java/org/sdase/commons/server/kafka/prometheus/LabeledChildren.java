@@ -0,0 +1,43 @@
+package org.sdase.commons.server.kafka.prometheus;
+
+import io.prometheus.client.SimpleCollector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches the children of a collector with two labels, e.g. the client and the topic. Looking up a
+ * child that has been created before neither allocates a label array nor a key, unlike {@link
+ * SimpleCollector#labels(String...)}, so it can be used for each record.
+ *
+ * @param <C> the type of the children
+ */
+class LabeledChildren<C> {
+
+  private final SimpleCollector<C> collector;
+
+  private final ConcurrentMap<String, ConcurrentMap<String, C>> children =
+      new ConcurrentHashMap<>();
+
+  LabeledChildren(SimpleCollector<C> collector) {
+    this.collector = collector;
+  }
+
+  /**
+   * @param firstLabelValue the value of the first label
+   * @param secondLabelValue the value of the second label
+   * @return the child for the label values, created with the first access
+   */
+  C get(String firstLabelValue, String secondLabelValue) {
+    ConcurrentMap<String, C> byFirstLabel = children.get(firstLabelValue);
+    if (byFirstLabel == null) {
+      byFirstLabel = children.computeIfAbsent(firstLabelValue, k -> new ConcurrentHashMap<>());
+    }
+    C child = byFirstLabel.get(secondLabelValue);
+    if (child == null) {
+      child =
+          byFirstLabel.computeIfAbsent(
+              secondLabelValue, k -> collector.labels(firstLabelValue, secondLabelValue));
+    }
+    return child;
+  }
+}
@@ -0,0 +1,152 @@
+package org.sdase.commons.server.kafka.prometheus;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.CounterMetricFamily;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.sdase.commons.server.kafka.consumer.KafkaHelper;
+import org.sdase.commons.server.kafka.consumer.MessageListener;
+
+/**
+ * Custom Prometheus Collector that reports the utilization of the threads running the poll loops of
+ * all registered message listeners. The time the poll loop spent outside and inside of {@code
+ * poll()} is exported as counters, so the busy ratio is computed from their rates, independent of
+ * the number of scrapers, e.g. {@code rate(busy_seconds_total) / (rate(busy_seconds_total) +
+ * rate(poll_seconds_total))}.
+ *
+ * <p>The time of the poll loop is split into the phases {@code poll} (waiting for records that have
+ * been returned), {@code idle} (waiting in polls that returned no records), {@code commit}
+ * (synchronous and transactional commits reported to the {@link ConsumerCommitMetrics}) and {@code
+ * processing} (all other time outside of {@code poll()}).
+ */
+public class ListenerThreadMetrics extends Collector {
+
+  private static final String CPU_METRIC_NAME = "kafka_consumer_listener_thread_cpu_seconds_total";
+
+  private static final String CPU_HELP = "CPU time used by the thread of a message listener.";
+
+  private static final String BUSY_METRIC_NAME =
+      "kafka_consumer_listener_thread_busy_seconds_total";
+
+  private static final String BUSY_HELP =
+      "Time the thread of a message listener spent outside of poll, handling records and committing.";
+
+  private static final String POLL_METRIC_NAME =
+      "kafka_consumer_listener_thread_poll_seconds_total";
+
+  private static final String POLL_HELP =
+      "Time the thread of a message listener spent in poll, waiting for records.";
+
+  private static final String LOOP_METRIC_NAME = "kafka_consumer_poll_loop_seconds_total";
+
+  private static final String LOOP_HELP =
+      "Time the poll loop of a message listener spent in the phases poll, idle, processing and commit.";
+
+  /** The labels of the poll loop phases. */
+  private static final String[] LOOP_LABELS = {
+    // id of the client of the listener
+    "consumer_name",
+    // poll, idle, processing or commit
+    "phase"
+  };
+
+  /** The labels added by {@link ListenerThreadMetrics}. */
+  private static final String[] LABELS = {
+    // id of the client of the listener
+    "consumer_name",
+    // name of the thread running the poll loop
+    "thread_name"
+  };
+
+  private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+  private final List<MessageListener<?, ?>> messageListeners;
+  private final ConsumerCommitMetrics consumerCommitMetrics;
+  private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+  /**
+   * Creates and registers a custom Prometheus Collector {@link Collector}. <strong>Note that there
+   * should be only one registered instance of this type in the application.</strong>
+   *
+   * @param messageListeners list of listeners for which to gather metrics
+   */
+  public ListenerThreadMetrics(List<MessageListener<?, ?>> messageListeners) {
+    this(messageListeners, null);
+  }
+
+  /**
+   * Creates and registers a custom Prometheus Collector {@link Collector}. <strong>Note that there
+   * should be only one registered instance of this type in the application.</strong>
+   *
+   * @param messageListeners list of listeners for which to gather metrics
+   * @param consumerCommitMetrics the metrics the strategies report their commits to, may be {@code
+   *     null} if commits are not separated from the processing
+   */
+  public ListenerThreadMetrics(
+      List<MessageListener<?, ?>> messageListeners, ConsumerCommitMetrics consumerCommitMetrics) {
+    this.messageListeners = messageListeners;
+    this.consumerCommitMetrics = consumerCommitMetrics;
+    this.register();
+  }
+
+  @Override
+  public List<MetricFamilySamples> collect() {
+    CounterMetricFamily cpuSeconds =
+        new CounterMetricFamily(CPU_METRIC_NAME, CPU_HELP, Arrays.asList(LABELS));
+    CounterMetricFamily busySeconds =
+        new CounterMetricFamily(BUSY_METRIC_NAME, BUSY_HELP, Arrays.asList(LABELS));
+    CounterMetricFamily pollSeconds =
+        new CounterMetricFamily(POLL_METRIC_NAME, POLL_HELP, Arrays.asList(LABELS));
+    CounterMetricFamily loopSeconds =
+        new CounterMetricFamily(LOOP_METRIC_NAME, LOOP_HELP, Arrays.asList(LOOP_LABELS));
+
+    for (MessageListener<?, ?> listener : messageListeners) {
+      Thread thread = listener.getListenerThread();
+      if (thread == null) {
+        continue;
+      }
+      String consumerName = KafkaHelper.getClientId(listener.getConsumer());
+      List<String> labelValues = Arrays.asList(consumerName, thread.getName());
+
+      long cpuNanos =
+          threadMXBean.isThreadCpuTimeSupported()
+              ? threadMXBean.getThreadCpuTime(thread.getId())
+              : -1;
+      if (cpuNanos >= 0) {
+        cpuSeconds.addMetric(labelValues, cpuNanos / NANOS_PER_SECOND);
+      }
+
+      long busyNanos = listener.getBusyNanos();
+      long pollNanos = listener.getPollNanos();
+      long idleNanos = listener.getIdleNanos();
+      busySeconds.addMetric(labelValues, busyNanos / NANOS_PER_SECOND);
+      pollSeconds.addMetric(labelValues, (pollNanos + idleNanos) / NANOS_PER_SECOND);
+
+      double commitSeconds =
+          consumerCommitMetrics == null
+              ? 0
+              : consumerCommitMetrics.getBlockingCommitSeconds(consumerName);
+      double processingSeconds = Math.max(0, busyNanos / NANOS_PER_SECOND - commitSeconds);
+      loopSeconds.addMetric(Arrays.asList(consumerName, "poll"), pollNanos / NANOS_PER_SECOND);
+      loopSeconds.addMetric(Arrays.asList(consumerName, "idle"), idleNanos / NANOS_PER_SECOND);
+      loopSeconds.addMetric(Arrays.asList(consumerName, "processing"), processingSeconds);
+      loopSeconds.addMetric(Arrays.asList(consumerName, "commit"), commitSeconds);
+    }
+
+    List<MetricFamilySamples> mfs = new ArrayList<>();
+    if (!cpuSeconds.samples.isEmpty()) {
+      mfs.add(cpuSeconds);
+    }
+    if (!busySeconds.samples.isEmpty()) {
+      mfs.add(busySeconds);
+      mfs.add(pollSeconds);
+    }
+    if (!loopSeconds.samples.isEmpty()) {
+      mfs.add(loopSeconds);
+    }
+    return mfs;
+  }
+}
@@ -0,0 +1,26 @@
+package org.sdase.commons.server.kafka.prometheus;
+
+import io.prometheus.client.Collector;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Wraps a labeled {@link Collector} to publish its metric families only after the first labeled
+ * child has been created. Metrics of optional features, e.g. of specific strategies, are not
+ * published without samples if the feature is not used by the application.
+ */
+class OmitEmptyCollector extends Collector {
+
+  private final Collector delegate;
+
+  OmitEmptyCollector(Collector delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public List<MetricFamilySamples> collect() {
+    return delegate.collect().stream()
+        .filter(mfs -> !mfs.samples.isEmpty())
+        .collect(Collectors.toList());
+  }
+}
@@ -16,10 +16,7 @@ public class ProducerTopicMessageCounter {
   /** The help message description that describes the Histogram. */
   private static final String HELP = "Amount of messages published by Kafka producers.";
 
-  /**
-   * The labels added by {@code RequestDurationHistogram}. The labels and their order have to be
-   * aligned with the values created in {@link #createLabelValuesForCurrentRequest(String, String)}
-   */
+  /** The labels added by {@code ProducerTopicMessageCounter}. */
   private static final String[] LABELS = {
     // the name of the client handling the message
     "producer_name",
@@ -28,6 +25,7 @@ public class ProducerTopicMessageCounter {
   };
 
   private Counter topicMessagesCounter;
+  private LabeledChildren<Counter.Child> topicMessages;
 
   /**
    * Creates and registers a new {@link Counter} matching the specification of this {@code
@@ -36,6 +34,7 @@ public class ProducerTopicMessageCounter {
    */
   public ProducerTopicMessageCounter() {
     this.topicMessagesCounter = createAndRegister();
+    this.topicMessages = new LabeledChildren<>(topicMessagesCounter);
   }
 
   /** Unregisters the histogram. Should be called when the context is closed. */
@@ -51,22 +50,19 @@ public class ProducerTopicMessageCounter {
    * @see io.prometheus.client.Counter.Child#inc
    */
   public void increase(String producerName, String topicName) {
-    String[] labelValues = createLabelValuesForCurrentRequest(producerName, topicName);
-    topicMessagesCounter.labels(labelValues).inc();
+    child(producerName, topicName).inc();
   }
 
   /**
-   * Creates all values for the labels required by the counter in appropriate order.
+   * Provides the counter of a producer and topic. The child is created once and can be kept by the
+   * caller to count messages without any lookup.
    *
-   * @param producerName producer name
-   * @param topicName topic name
-   * @return array of labels
+   * @param producerName the producer name
+   * @param topicName the topic name
+   * @return the counter for the labels
    */
-  @SuppressWarnings("static-method")
-  private String[] createLabelValuesForCurrentRequest(String producerName, String topicName) {
-    // the number of values and their order has to be aligned with the
-    // defined #LABELS
-    return new String[] {producerName, topicName};
+  public Counter.Child child(String producerName, String topicName) {
+    return topicMessages.get(producerName, topicName);
   }
 
   /**
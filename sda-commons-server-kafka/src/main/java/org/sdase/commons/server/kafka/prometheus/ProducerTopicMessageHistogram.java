@@ -0,0 +1,74 @@
+package org.sdase.commons.server.kafka.prometheus;
+
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Histogram;
+
+/**
+ * The definition of the histogram that tracks the time from sending a message until the broker
+ * acknowledged it. Includes the time the message waits in the batch of the producer.
+ */
+public class ProducerTopicMessageHistogram {
+
+  /** The histogram name as it is published to Prometheus. */
+  private static final String METRIC_NAME = "kafka_producer_topic_message_duration";
+
+  /** The help message description that describes the Histogram. */
+  private static final String HELP =
+      "Duration from sending Kafka Messages until the broker acknowledged them in seconds.";
+
+  /** The labels added by {@code ProducerTopicMessageHistogram}. */
+  private static final String[] LABELS = {
+    // the name of the client sending the message
+    "producer_name",
+    // name of the topic records are sent to
+    "topic_name"
+  };
+
+  private Histogram sendDurationHistogram;
+  private LabeledChildren<Histogram.Child> sendDurations;
+
+  /**
+   * Creates and registers the {@link Histogram} matching the specification of this {@code
+   * ProducerTopicMessageHistogram} instance. <strong>Note that there should be only one registered
+   * instance of this type in the application.</strong>
+   */
+  public ProducerTopicMessageHistogram() {
+    this.sendDurationHistogram =
+        Histogram.build()
+            .name(METRIC_NAME)
+            .labelNames(LABELS)
+            .help(HELP)
+            .buckets(0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10)
+            .create();
+    CollectorRegistry.defaultRegistry.register(sendDurationHistogram);
+    this.sendDurations = new LabeledChildren<>(sendDurationHistogram);
+  }
+
+  /** Unregisters the histogram. Should be called when the context is closed. */
+  public void unregister() {
+    CollectorRegistry.defaultRegistry.unregister(sendDurationHistogram);
+  }
+
+  /**
+   * Observes the given duration until the acknowledgement and adds the defined labels.
+   *
+   * @param durationSeconds the duration to add
+   * @param producerName the name of the producer
+   * @param topicName the name of the topic
+   */
+  public void observe(double durationSeconds, String producerName, String topicName) {
+    child(producerName, topicName).observe(durationSeconds);
+  }
+
+  /**
+   * Provides the histogram of a producer and topic. The child is created once and can be kept by
+   * the caller to observe durations without any lookup.
+   *
+   * @param producerName the name of the producer
+   * @param topicName the name of the topic
+   * @return the histogram for the labels
+   */
+  public Histogram.Child child(String producerName, String topicName) {
+    return sendDurations.get(producerName, topicName);
+  }
+}
@@ -1,18 +1,34 @@
 package org.sdase.commons.server.kafka.serializers;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import java.util.Map;
 import org.apache.kafka.common.errors.SerializationException;
 import org.apache.kafka.common.serialization.Deserializer;
 
+/**
+ * Deserializes JSON values. The {@link ObjectReader} for the target type is created once when the
+ * deserializer is created, so changes of the configuration of the {@link ObjectMapper} afterwards
+ * are not applied.
+ *
+ * @param <T> class to deserialize
+ */
 public class KafkaJsonDeserializer<T> implements Deserializer<T> {
 
-  private ObjectMapper objectMapper;
-  private Class<T> clazz;
+  private final ObjectReader objectReader;
 
   public KafkaJsonDeserializer(ObjectMapper objectMapper, Class<T> clazz) {
-    this.objectMapper = objectMapper;
-    this.clazz = clazz;
+    this.objectReader = objectMapper.readerFor(clazz);
+  }
+
+  /**
+   * @param objectMapper the mapper to create the reader from
+   * @param typeReference the type of the values, e.g. for generic payloads like {@code new
+   *     TypeReference<Envelope<Event>>() {}}
+   */
+  public KafkaJsonDeserializer(ObjectMapper objectMapper, TypeReference<T> typeReference) {
+    this.objectReader = objectMapper.readerFor(typeReference);
   }
 
   @Override
@@ -27,7 +43,7 @@ public class KafkaJsonDeserializer<T> implements Deserializer<T> {
     }
 
     try {
-      return objectMapper.readValue(data, clazz);
+      return objectReader.readValue(data);
     } catch (Exception e) {
       throw new SerializationException(e);
     }
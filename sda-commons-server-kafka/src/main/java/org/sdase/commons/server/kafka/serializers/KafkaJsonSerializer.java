@@ -1,16 +1,33 @@
 package org.sdase.commons.server.kafka.serializers;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import java.util.Map;
 import org.apache.kafka.common.errors.SerializationException;
 import org.apache.kafka.common.serialization.Serializer;
 
+/**
+ * Serializes values as JSON. The {@link ObjectWriter} is created once when the serializer is
+ * created, so changes of the configuration of the {@link ObjectMapper} afterwards are not applied.
+ *
+ * @param <T> class to serialize
+ */
 public class KafkaJsonSerializer<T> implements Serializer<T> {
 
-  private ObjectMapper objectMapper;
+  private final ObjectWriter objectWriter;
 
   public KafkaJsonSerializer(ObjectMapper objectMapper) {
-    this.objectMapper = objectMapper;
+    this.objectWriter = objectMapper.writer();
+  }
+
+  /**
+   * @param objectMapper the mapper to create the writer from
+   * @param typeReference the type of the values, needed to keep type information of generic
+   *     payloads like {@code List<Event>} for polymorphic types
+   */
+  public KafkaJsonSerializer(ObjectMapper objectMapper, TypeReference<T> typeReference) {
+    this.objectWriter = objectMapper.writerFor(typeReference);
   }
 
   @Override
@@ -25,7 +42,7 @@ public class KafkaJsonSerializer<T> implements Serializer<T> {
     }
 
     try {
-      return objectMapper.writeValueAsBytes(data);
+      return objectWriter.writeValueAsBytes(data);
     } catch (Exception e) {
       throw new SerializationException("Error serializing JSON message", e);
     }
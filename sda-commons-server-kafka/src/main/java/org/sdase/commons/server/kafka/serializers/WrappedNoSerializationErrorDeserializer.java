@@ -2,6 +2,7 @@ package org.sdase.commons.server.kafka.serializers;
 
 import java.util.Map;
 import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,6 +41,16 @@ public class WrappedNoSerializationErrorDeserializer<T> implements Deserializer<
     return null;
   }
 
+  @Override
+  public T deserialize(String topic, Headers headers, byte[] data) {
+    try {
+      return wrappedDeserializer.deserialize(topic, headers, data);
+    } catch (SerializationException e) {
+      LOGGER.error("Unable to deserialize record for topic {} due to exception", topic, e);
+    }
+    return null;
+  }
+
   @Override
   public void close() {
     wrappedDeserializer.close();
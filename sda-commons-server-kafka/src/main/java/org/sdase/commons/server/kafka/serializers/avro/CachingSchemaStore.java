@@ -0,0 +1,46 @@
+package org.sdase.commons.server.kafka.serializers.avro;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches the schemas and ids of another {@link SchemaStore}. A schema is resolved with the first
+ * record that needs it and kept afterwards, as registered schemas never change.
+ */
+public class CachingSchemaStore implements SchemaStore {
+
+  private final SchemaStore delegate;
+
+  private final ConcurrentMap<Integer, String> schemas = new ConcurrentHashMap<>();
+
+  private final ConcurrentMap<String, ConcurrentMap<String, Integer>> ids =
+      new ConcurrentHashMap<>();
+
+  public CachingSchemaStore(SchemaStore delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public int register(String subject, String schema) {
+    ConcurrentMap<String, Integer> idsOfSubject =
+        ids.computeIfAbsent(subject, k -> new ConcurrentHashMap<>());
+    Integer id = idsOfSubject.get(schema);
+    if (id == null) {
+      // registering is idempotent, so concurrent registrations don't need to be synchronized
+      id = delegate.register(subject, schema);
+      idsOfSubject.put(schema, id);
+      schemas.putIfAbsent(id, schema);
+    }
+    return id;
+  }
+
+  @Override
+  public String getSchema(int id) {
+    String schema = schemas.get(id);
+    if (schema == null) {
+      schema = delegate.getSchema(id);
+      schemas.putIfAbsent(id, schema);
+    }
+    return schema;
+  }
+}
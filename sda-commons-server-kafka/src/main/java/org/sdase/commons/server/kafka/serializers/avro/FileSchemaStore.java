@@ -0,0 +1,103 @@
+package org.sdase.commons.server.kafka.serializers.avro;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+import org.sdase.commons.server.kafka.exception.SchemaStoreException;
+
+/**
+ * A {@link SchemaStore} that keeps each schema in a file {@code <id>.avsc} of a directory, so that
+ * tests and offline runs do not need a schema registry. Applications that share the directory can
+ * read the records of each other. The subjects are not stored, equal schemas of different subjects
+ * share the same id.
+ */
+public class FileSchemaStore implements SchemaStore {
+
+  private static final String SUFFIX = ".avsc";
+
+  private final Path directory;
+
+  /** @param directory the directory of the schema files, created if it does not exist */
+  public FileSchemaStore(Path directory) {
+    this.directory = directory;
+    try {
+      Files.createDirectories(directory);
+    } catch (IOException e) {
+      throw new SchemaStoreException(
+          String.format("Failed to create schema directory '%s'", directory), e);
+    }
+  }
+
+  @Override
+  public synchronized int register(String subject, String schema) {
+    try {
+      int maxId = 0;
+      try (Stream<Path> files = Files.list(directory)) {
+        for (Path file : (Iterable<Path>) files::iterator) {
+          Integer id = idOf(file);
+          if (id != null) {
+            if (schema.equals(read(file))) {
+              return id;
+            }
+            maxId = Math.max(maxId, id);
+          }
+        }
+      }
+
+      // another application may write a schema with the same id, so we try the next one
+      for (int id = maxId + 1; ; id++) {
+        try {
+          Files.write(
+              fileOf(id), schema.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE_NEW);
+          return id;
+        } catch (FileAlreadyExistsException e) {
+          if (schema.equals(read(fileOf(id)))) {
+            return id;
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new SchemaStoreException(
+          String.format("Failed to register schema for subject '%s' in '%s'", subject, directory),
+          e);
+    }
+  }
+
+  @Override
+  public String getSchema(int id) {
+    try {
+      return read(fileOf(id));
+    } catch (NoSuchFileException e) {
+      throw new SchemaStoreException(
+          String.format("No schema with id %d found in '%s'", id, directory), e);
+    } catch (IOException e) {
+      throw new SchemaStoreException(
+          String.format("Failed to read schema with id %d from '%s'", id, directory), e);
+    }
+  }
+
+  private Path fileOf(int id) {
+    return directory.resolve(id + SUFFIX);
+  }
+
+  private static Integer idOf(Path file) {
+    String name = file.getFileName().toString();
+    if (!name.endsWith(SUFFIX)) {
+      return null;
+    }
+    try {
+      return Integer.valueOf(name.substring(0, name.length() - SUFFIX.length()));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private static String read(Path file) throws IOException {
+    return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,104 @@
+package org.sdase.commons.server.kafka.serializers.avro;
+
+import static org.sdase.commons.server.kafka.serializers.avro.KafkaAvroSerializer.HEADER_SIZE;
+import static org.sdase.commons.server.kafka.serializers.avro.KafkaAvroSerializer.MAGIC_BYTE;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.reflect.ReflectData;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+/**
+ * Deserializes values written by the {@link KafkaAvroSerializer}. The schema the value has been
+ * written with is resolved by its id from the {@link SchemaStore} with the first value that uses
+ * it. The reader for each schema id is kept afterwards, so the schemas are neither requested nor
+ * parsed again.
+ *
+ * <p>Values written with an older or newer schema are converted to the schema of the target class
+ * as defined by the Avro schema resolution.
+ *
+ * @param <T> class to deserialize
+ */
+public class KafkaAvroDeserializer<T> implements Deserializer<T> {
+
+  private final SchemaStore schemaStore;
+
+  private final Schema readerSchema;
+
+  private final GenericData data;
+
+  private final ConcurrentMap<Integer, DatumReader<T>> readers = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a deserializer for values of the given class. The schema is derived from the class with
+   * {@link ReflectData.AllowNull}, like in the {@link KafkaAvroSerializer}.
+   *
+   * @param schemaStore the store to resolve the schemas of the values from
+   * @param clazz the class of the values
+   */
+  public KafkaAvroDeserializer(SchemaStore schemaStore, Class<T> clazz) {
+    this(schemaStore, ReflectData.AllowNull.get().getSchema(clazz), ReflectData.AllowNull.get());
+  }
+
+  private KafkaAvroDeserializer(SchemaStore schemaStore, Schema readerSchema, GenericData data) {
+    this.schemaStore = schemaStore;
+    this.readerSchema = readerSchema;
+    this.data = data;
+  }
+
+  /**
+   * @param schemaStore the store to resolve the schemas of the values from
+   * @return a deserializer that reads the values as {@link GenericRecord} with the schema they have
+   *     been written with
+   */
+  public static KafkaAvroDeserializer<GenericRecord> generic(SchemaStore schemaStore) {
+    return new KafkaAvroDeserializer<>(schemaStore, null, GenericData.get());
+  }
+
+  @Override
+  public void configure(Map<String, ?> configs, boolean isKey) {
+    // no further configuration
+  }
+
+  @Override
+  public T deserialize(String topic, byte[] bytes) {
+    if (bytes == null || bytes.length == 0) {
+      return null;
+    }
+
+    try {
+      ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      if (bytes.length < HEADER_SIZE || buffer.get() != MAGIC_BYTE) {
+        throw new SerializationException("Unknown format of Avro message");
+      }
+      DatumReader<T> reader = readers.computeIfAbsent(buffer.getInt(), this::createReader);
+      return reader.read(
+          null,
+          DecoderFactory.get().binaryDecoder(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE, null));
+    } catch (SerializationException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new SerializationException("Error deserializing Avro message", e);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private DatumReader<T> createReader(int schemaId) {
+    Schema writerSchema = new Schema.Parser().parse(schemaStore.getSchema(schemaId));
+    return (DatumReader<T>)
+        data.createDatumReader(writerSchema, readerSchema != null ? readerSchema : writerSchema);
+  }
+
+  @Override
+  public void close() {
+    // not necessary
+  }
+}
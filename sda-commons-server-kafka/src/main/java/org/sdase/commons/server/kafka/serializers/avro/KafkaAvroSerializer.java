@@ -0,0 +1,124 @@
+package org.sdase.commons.server.kafka.serializers.avro;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.reflect.ReflectData;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Serializes values as Avro binary data. Each value starts with a magic byte and the 4 byte id of
+ * the schema in the {@link SchemaStore}, followed by the binary data, which is compatible to the
+ * Confluent wire format.
+ *
+ * <p>The schema is registered for the subject {@code <topic>-value} or {@code <topic>-key} with the
+ * first value of each topic, the id is kept afterwards.
+ *
+ * @param <T> class to serialize
+ */
+public class KafkaAvroSerializer<T> implements Serializer<T> {
+
+  /** The first byte of each value, reserved for changes of the format. */
+  static final byte MAGIC_BYTE = 0;
+
+  /** The size of the magic byte and the schema id that precede the data. */
+  static final int HEADER_SIZE = 5;
+
+  private final SchemaStore schemaStore;
+
+  private final String schema;
+
+  private final DatumWriter<T> writer;
+
+  private final String subjectSuffix;
+
+  private final ConcurrentMap<String, Integer> schemaIds = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a serializer for values of the given class. The schema is derived from the class with
+   * {@link ReflectData.AllowNull}, so all fields may be {@code null}.
+   *
+   * @param schemaStore the store to register the schema in
+   * @param clazz the class of the values
+   */
+  public KafkaAvroSerializer(SchemaStore schemaStore, Class<T> clazz) {
+    this(schemaStore, clazz, false);
+  }
+
+  /**
+   * @param schemaStore the store to register the schema in
+   * @param clazz the class of the values
+   * @param isKey if the serializer is used for keys, defines the subject of the schema
+   */
+  public KafkaAvroSerializer(SchemaStore schemaStore, Class<T> clazz, boolean isKey) {
+    this(
+        schemaStore,
+        ReflectData.AllowNull.get().getSchema(clazz),
+        ReflectData.AllowNull.get(),
+        isKey);
+  }
+
+  /**
+   * Creates a serializer for {@link org.apache.avro.generic.GenericRecord}s of the given schema.
+   *
+   * @param schemaStore the store to register the schema in
+   * @param schema the schema of the records
+   * @param isKey if the serializer is used for keys, defines the subject of the schema
+   */
+  public KafkaAvroSerializer(SchemaStore schemaStore, Schema schema, boolean isKey) {
+    this(schemaStore, schema, GenericData.get(), isKey);
+  }
+
+  @SuppressWarnings("unchecked")
+  private KafkaAvroSerializer(
+      SchemaStore schemaStore, Schema schema, GenericData data, boolean isKey) {
+    this.schemaStore = schemaStore;
+    this.schema = schema.toString();
+    this.writer = (DatumWriter<T>) data.createDatumWriter(schema);
+    this.subjectSuffix = isKey ? "-key" : "-value";
+  }
+
+  @Override
+  public void configure(Map<String, ?> configs, boolean isKey) {
+    // no further configuration
+  }
+
+  @Override
+  public byte[] serialize(String topic, T data) {
+    if (data == null) {
+      return null; // NOSONAR null is a tombstone in Kafka
+    }
+
+    try {
+      int schemaId = schemaIds.computeIfAbsent(topic, this::register);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      out.write(MAGIC_BYTE);
+      out.write(schemaId >>> 24);
+      out.write(schemaId >>> 16);
+      out.write(schemaId >>> 8);
+      out.write(schemaId);
+      BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(out, null);
+      writer.write(data, encoder);
+      encoder.flush();
+      return out.toByteArray();
+    } catch (Exception e) {
+      throw new SerializationException("Error serializing Avro message", e);
+    }
+  }
+
+  private int register(String topic) {
+    return schemaStore.register(topic + subjectSuffix, schema);
+  }
+
+  @Override
+  public void close() {
+    // not necessary
+  }
+}
@@ -0,0 +1,95 @@
+package org.sdase.commons.server.kafka.serializers.avro;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import org.sdase.commons.server.kafka.exception.SchemaStoreException;
+
+/**
+ * A {@link SchemaStore} that uses the REST API of a Confluent compatible schema registry. Each call
+ * is a request to the registry, so it should be wrapped in a {@link CachingSchemaStore}.
+ */
+public class SchemaRegistryClient implements SchemaStore {
+
+  private static final String CONTENT_TYPE = "application/vnd.schemaregistry.v1+json";
+
+  private static final int TIMEOUT_MS = 10_000;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final String url;
+
+  /** @param url the base url of the registry, e.g. {@code http://schema-registry:8081} */
+  public SchemaRegistryClient(String url) {
+    this.url = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+  }
+
+  @Override
+  public int register(String subject, String schema) {
+    try {
+      byte[] body = objectMapper.writeValueAsBytes(Collections.singletonMap("schema", schema));
+      String path = "/subjects/" + URLEncoder.encode(subject, "UTF-8") + "/versions";
+      return request("POST", path, body).path("id").asInt();
+    } catch (IOException e) {
+      throw new SchemaStoreException(
+          String.format("Failed to register schema for subject '%s'", subject), e);
+    }
+  }
+
+  @Override
+  public String getSchema(int id) {
+    try {
+      return request("GET", "/schemas/ids/" + id, null).path("schema").asText();
+    } catch (IOException e) {
+      throw new SchemaStoreException(String.format("Failed to get schema with id %d", id), e);
+    }
+  }
+
+  private JsonNode request(String method, String path, byte[] body) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(url + path).openConnection();
+    try {
+      connection.setRequestMethod(method);
+      connection.setConnectTimeout(TIMEOUT_MS);
+      connection.setReadTimeout(TIMEOUT_MS);
+      connection.setRequestProperty("Accept", CONTENT_TYPE);
+      if (body != null) {
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", CONTENT_TYPE);
+        try (OutputStream out = connection.getOutputStream()) {
+          out.write(body);
+        }
+      }
+
+      int status = connection.getResponseCode();
+      if (status / 100 != 2) {
+        throw new SchemaStoreException(
+            String.format(
+                "Schema registry responded with status %d to %s %s: %s",
+                status, method, path, readError(connection)));
+      }
+      try (InputStream in = connection.getInputStream()) {
+        return objectMapper.readTree(in);
+      }
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  private static String readError(HttpURLConnection connection) throws IOException {
+    try (InputStream in = connection.getErrorStream()) {
+      if (in == null) {
+        return "";
+      }
+      byte[] buffer = new byte[1024];
+      int length = in.read(buffer);
+      return length > 0 ? new String(buffer, 0, length, StandardCharsets.UTF_8) : "";
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package org.sdase.commons.server.kafka.serializers.avro;
+
+import org.sdase.commons.server.kafka.exception.SchemaStoreException;
+
+/**
+ * Stores the schemas of binary records. Records reference the schema they have been written with by
+ * its id, so readers can resolve the schema of each record.
+ *
+ * <p>The schemas are handled as JSON strings, so the stores do not depend on the serialization
+ * library.
+ */
+public interface SchemaStore {
+
+  /**
+   * Registers a schema or returns the id of the schema if it has been registered before.
+   *
+   * @param subject the subject of the schema, e.g. {@code orders-value} for the values of the topic
+   *     {@code orders}
+   * @param schema the schema as JSON
+   * @return the id of the schema
+   * @throws SchemaStoreException if the schema can't be registered
+   */
+  int register(String subject, String schema);
+
+  /**
+   * @param id the id of a registered schema
+   * @return the schema as JSON
+   * @throws SchemaStoreException if there is no schema with the id or it can't be retrieved
+   */
+  String getSchema(int id);
+}
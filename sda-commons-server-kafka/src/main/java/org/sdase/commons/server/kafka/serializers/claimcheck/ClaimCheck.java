@@ -0,0 +1,53 @@
+package org.sdase.commons.server.kafka.serializers.claimcheck;
+
+import java.util.function.Supplier;
+
+/**
+ * The value of a record that has been sent with the {@link ClaimCheckSerializer}. The payload is
+ * fetched from S3, if needed, and deserialized when {@link #get()} is called for the first time.
+ * Handlers that skip a record therefore don't fetch its payload, and errors of the fetch or the
+ * deserialization are passed to the handler instead of failing the poll.
+ *
+ * @param <T> class of the payload
+ */
+public class ClaimCheck<T> {
+
+  private final String reference;
+
+  private Supplier<T> loader;
+
+  private T value;
+
+  /**
+   * @param reference the reference of the payload in S3, {@code null} if the payload was sent in
+   *     the record
+   * @param loader loads the payload, called once
+   */
+  public ClaimCheck(String reference, Supplier<T> loader) {
+    this.reference = reference;
+    this.loader = loader;
+  }
+
+  /** @return {@code true} if the payload is stored in S3 */
+  public boolean isStoredExternally() {
+    return reference != null;
+  }
+
+  /** @return the reference {@code s3://<bucket>/<key>} or {@code null} if sent in the record */
+  public String getReference() {
+    return reference;
+  }
+
+  /**
+   * @return the deserialized payload, fetched on the first call
+   * @throws org.apache.kafka.common.errors.SerializationException if the payload can't be fetched,
+   *     doesn't match its hash or can't be deserialized
+   */
+  public synchronized T get() {
+    if (loader != null) {
+      value = loader.get();
+      loader = null;
+    }
+    return value;
+  }
+}
@@ -0,0 +1,151 @@
+package org.sdase.commons.server.kafka.serializers.claimcheck;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.sdase.commons.server.kafka.serializers.claimcheck.ClaimCheckSerializer.HASH_HEADER;
+import static org.sdase.commons.server.kafka.serializers.claimcheck.ClaimCheckSerializer.REFERENCE_PREFIX;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.util.IOUtils;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+/**
+ * Deserializes values written by the {@link ClaimCheckSerializer} to a {@link ClaimCheck}. Payloads
+ * sent in the record are deserialized with the wrapped deserializer, payloads stored in S3 are
+ * fetched and verified against their hash before. Both happens lazily when the handler calls {@link
+ * ClaimCheck#get()}, not in the poll loop of the consumer.
+ *
+ * <p>Fetched payloads are kept in a cache of limited size, so records that refer to the same
+ * payload, e.g. when consumed again after a rebalance, are not fetched again.
+ *
+ * @param <T> class of the payload
+ */
+public class ClaimCheckDeserializer<T> implements Deserializer<ClaimCheck<T>> {
+
+  /** The default maximum size in bytes of the cached payloads. */
+  public static final long DEFAULT_CACHE_SIZE_BYTES = 16L * 1024 * 1024;
+
+  private final AmazonS3 s3;
+
+  private final Deserializer<T> deserializer;
+
+  private final PayloadCache cache;
+
+  /**
+   * @param s3 the client to fetch the payloads with
+   * @param deserializer the deserializer for the payloads
+   */
+  public ClaimCheckDeserializer(AmazonS3 s3, Deserializer<T> deserializer) {
+    this(s3, deserializer, DEFAULT_CACHE_SIZE_BYTES);
+  }
+
+  /**
+   * @param s3 the client to fetch the payloads with
+   * @param deserializer the deserializer for the payloads
+   * @param cacheSizeBytes the maximum size of the cached payloads, {@code 0} disables the cache
+   */
+  public ClaimCheckDeserializer(AmazonS3 s3, Deserializer<T> deserializer, long cacheSizeBytes) {
+    this.s3 = s3;
+    this.deserializer = deserializer;
+    this.cache = new PayloadCache(cacheSizeBytes);
+  }
+
+  @Override
+  public void configure(Map<String, ?> configs, boolean isKey) {
+    deserializer.configure(configs, isKey);
+  }
+
+  /** Without headers the data is always considered to be the payload. */
+  @Override
+  public ClaimCheck<T> deserialize(String topic, byte[] data) {
+    if (data == null) {
+      return null;
+    }
+    return new ClaimCheck<>(null, () -> deserializer.deserialize(topic, data));
+  }
+
+  @Override
+  public ClaimCheck<T> deserialize(String topic, Headers headers, byte[] data) {
+    if (data == null) {
+      return null;
+    }
+    Header hashHeader = headers == null ? null : headers.lastHeader(HASH_HEADER);
+    if (hashHeader == null) {
+      return new ClaimCheck<>(null, () -> deserializer.deserialize(topic, headers, data));
+    }
+
+    String reference = new String(data, UTF_8);
+    int bucketEnd = reference.indexOf('/', REFERENCE_PREFIX.length());
+    if (!reference.startsWith(REFERENCE_PREFIX) || bucketEnd < 0) {
+      throw new SerializationException("Invalid claim check reference '" + reference + "'");
+    }
+    String bucket = reference.substring(REFERENCE_PREFIX.length(), bucketEnd);
+    String key = reference.substring(bucketEnd + 1);
+    String hash = new String(hashHeader.value(), UTF_8);
+    return new ClaimCheck<>(
+        reference,
+        () -> deserializer.deserialize(topic, headers, fetch(reference, bucket, key, hash)));
+  }
+
+  @Override
+  public void close() {
+    deserializer.close();
+  }
+
+  private byte[] fetch(String reference, String bucket, String key, String hash) {
+    byte[] payload = cache.get(hash);
+    if (payload != null) {
+      return payload;
+    }
+
+    try (S3Object object = s3.getObject(bucket, key)) {
+      payload = IOUtils.toByteArray(object.getObjectContent());
+    } catch (IOException | SdkClientException e) {
+      throw new SerializationException("Failed to fetch payload " + reference, e);
+    }
+    if (!hash.equals(ClaimCheckSerializer.sha256Hex(payload))) {
+      throw new SerializationException("Payload " + reference + " does not match its hash");
+    }
+    cache.put(hash, payload);
+    return payload;
+  }
+
+  /** Least recently used payloads by their hash, limited by the sum of their sizes. */
+  private static class PayloadCache {
+
+    private final long maxSizeBytes;
+
+    private final LinkedHashMap<String, byte[]> payloads = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long sizeBytes;
+
+    PayloadCache(long maxSizeBytes) {
+      this.maxSizeBytes = maxSizeBytes;
+    }
+
+    synchronized byte[] get(String hash) {
+      return payloads.get(hash);
+    }
+
+    synchronized void put(String hash, byte[] payload) {
+      if (payload.length > maxSizeBytes) {
+        return;
+      }
+      byte[] previous = payloads.put(hash, payload);
+      sizeBytes += payload.length - (previous == null ? 0 : previous.length);
+      Iterator<byte[]> eldest = payloads.values().iterator();
+      while (sizeBytes > maxSizeBytes) {
+        sizeBytes -= eldest.next().length;
+        eldest.remove();
+      }
+    }
+  }
+}
@@ -0,0 +1,137 @@
+package org.sdase.commons.server.kafka.serializers.claimcheck;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import java.io.ByteArrayInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Serializes values with the wrapped serializer and stores payloads that exceed a threshold in an
+ * S3 bucket instead of sending them to Kafka (claim check pattern). The record contains only the
+ * reference {@code s3://<bucket>/<topic>/<hash>} of the payload, the SHA-256 hash is added as
+ * header {@value #HASH_HEADER}. Payloads up to the threshold are sent unchanged.
+ *
+ * <p>The objects are named by the hash of the payload, so the same payload is stored only once per
+ * topic. They are never deleted by the serializer; a lifecycle rule of the bucket should remove
+ * them after the retention time of the topic.
+ *
+ * <p>The {@link AmazonS3} client is provided by the {@code S3Bundle} of sda-commons-server-s3,
+ * which must be added as dependency of the service.
+ *
+ * @param <T> class to serialize
+ */
+public class ClaimCheckSerializer<T> implements Serializer<T> {
+
+  /** The header that contains the hex encoded SHA-256 hash of a payload stored in S3. */
+  public static final String HASH_HEADER = "claim-check-sha256";
+
+  /** The default size in bytes above which payloads are stored in S3. */
+  public static final int DEFAULT_THRESHOLD_BYTES = 512 * 1024;
+
+  static final String REFERENCE_PREFIX = "s3://";
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private final AmazonS3 s3;
+
+  private final String bucket;
+
+  private final Serializer<T> serializer;
+
+  private final int thresholdBytes;
+
+  /**
+   * @param s3 the client to store the payloads with
+   * @param bucket the bucket to store the payloads in
+   * @param serializer the serializer that creates the payload
+   */
+  public ClaimCheckSerializer(AmazonS3 s3, String bucket, Serializer<T> serializer) {
+    this(s3, bucket, serializer, DEFAULT_THRESHOLD_BYTES);
+  }
+
+  /**
+   * @param s3 the client to store the payloads with
+   * @param bucket the bucket to store the payloads in
+   * @param serializer the serializer that creates the payload
+   * @param thresholdBytes payloads larger than this size are stored in S3
+   */
+  public ClaimCheckSerializer(
+      AmazonS3 s3, String bucket, Serializer<T> serializer, int thresholdBytes) {
+    this.s3 = s3;
+    this.bucket = bucket;
+    this.serializer = serializer;
+    this.thresholdBytes = thresholdBytes;
+  }
+
+  @Override
+  public void configure(Map<String, ?> configs, boolean isKey) {
+    serializer.configure(configs, isKey);
+  }
+
+  /**
+   * Payloads above the threshold can't be sent without headers, the {@link
+   * org.apache.kafka.clients.producer.KafkaProducer} always calls {@link #serialize(String,
+   * Headers, Object)}.
+   */
+  @Override
+  public byte[] serialize(String topic, T data) {
+    return serialize(topic, null, data);
+  }
+
+  @Override
+  public byte[] serialize(String topic, Headers headers, T data) {
+    byte[] payload =
+        headers == null
+            ? serializer.serialize(topic, data)
+            : serializer.serialize(topic, headers, data);
+    if (payload == null || payload.length <= thresholdBytes) {
+      return payload;
+    }
+    if (headers == null) {
+      throw new SerializationException(
+          "Payload of " + payload.length + " bytes exceeds threshold but has no headers");
+    }
+
+    String hash = sha256Hex(payload);
+    String key = topic + "/" + hash;
+    ObjectMetadata metadata = new ObjectMetadata();
+    metadata.setContentLength(payload.length);
+    try {
+      s3.putObject(bucket, key, new ByteArrayInputStream(payload), metadata);
+    } catch (SdkClientException e) {
+      throw new SerializationException("Failed to store payload in bucket " + bucket, e);
+    }
+
+    headers.remove(HASH_HEADER);
+    headers.add(HASH_HEADER, hash.getBytes(UTF_8));
+    return (REFERENCE_PREFIX + bucket + "/" + key).getBytes(UTF_8);
+  }
+
+  @Override
+  public void close() {
+    serializer.close();
+  }
+
+  static String sha256Hex(byte[] payload) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(payload);
+      char[] hex = new char[digest.length * 2];
+      for (int i = 0; i < digest.length; i++) {
+        hex[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xf];
+        hex[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xf];
+      }
+      return new String(hex);
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform must support SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,169 @@
+package org.sdase.commons.server.kafka.topicana;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.Config;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.config.ConfigResource;
+import org.apache.kafka.common.errors.UnknownTopicOrPartitionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares expected topics with the cluster like the {@link TopicComparer}, but keeps the
+ * descriptions and configurations of existing topics. When a topic is not known yet, all unknown
+ * topics of the configuration are described in one batch, so that the registrations of an
+ * application share a single request to the cluster. The description and the configuration of the
+ * topics are requested in parallel.
+ *
+ * <p>Missing topics are not cached, as they may be created later on.
+ */
+public class CachingTopicComparer {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CachingTopicComparer.class);
+
+  private final TopicComparer topicComparer = new TopicComparer();
+
+  private final Supplier<AdminClient> adminClient;
+
+  private final Collection<String> knownTopicNames;
+
+  private final Map<String, TopicDescription> topicDescriptions = new HashMap<>();
+
+  private final Map<String, Config> topicConfigs = new HashMap<>();
+
+  private long validationNanos;
+
+  private int describeRequests;
+
+  /**
+   * @param adminClient supplies the client used to describe the topics
+   * @param knownTopicNames the topics that are described together with the first unknown topic,
+   *     usually all topics of the configuration
+   */
+  public CachingTopicComparer(
+      Supplier<AdminClient> adminClient, Collection<String> knownTopicNames) {
+    this.adminClient = adminClient;
+    this.knownTopicNames = new ArrayList<>(knownTopicNames);
+  }
+
+  /**
+   * @param expectedTopicConfiguration the expected topics
+   * @return the differences between the expected and the existing topics
+   */
+  public synchronized ComparisonResult compare(
+      Collection<ExpectedTopicConfiguration> expectedTopicConfiguration) {
+    long start = System.nanoTime();
+    try {
+      Set<String> unknownTopicNames =
+          expectedTopicConfiguration.stream()
+              .map(ExpectedTopicConfiguration::getTopicName)
+              .filter(topicName -> !topicDescriptions.containsKey(topicName))
+              .collect(toSet());
+      if (!unknownTopicNames.isEmpty()) {
+        knownTopicNames.stream()
+            .filter(topicName -> !topicDescriptions.containsKey(topicName))
+            .forEach(unknownTopicNames::add);
+        describe(unknownTopicNames);
+      }
+      return topicComparer.compare(expectedTopicConfiguration, topicDescriptions, topicConfigs);
+    } finally {
+      validationNanos += System.nanoTime() - start;
+    }
+  }
+
+  /**
+   * Removes the given topics from the cache, e.g. after they have been created.
+   *
+   * @param topicNames the names of the topics to remove
+   */
+  public synchronized void invalidate(Collection<String> topicNames) {
+    topicNames.forEach(
+        topicName -> {
+          topicDescriptions.remove(topicName);
+          topicConfigs.remove(topicName);
+        });
+  }
+
+  /** @return the time spent to compare topics in milliseconds */
+  public synchronized long getValidationMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(validationNanos);
+  }
+
+  /** @return the number of batches of topics that have been described */
+  public synchronized int getDescribeRequests() {
+    return describeRequests;
+  }
+
+  private void describe(Set<String> topicNames) {
+    describeRequests++;
+    LOGGER.debug("Describing topics {}", topicNames);
+    AdminClient client = adminClient.get();
+    List<ConfigResource> resources =
+        topicNames.stream()
+            .map(topicName -> new ConfigResource(ConfigResource.Type.TOPIC, topicName))
+            .collect(toList());
+    // both requests are sent before waiting for any result
+    Map<String, KafkaFuture<TopicDescription>> descriptionFutures =
+        client.describeTopics(topicNames).values();
+    Map<ConfigResource, KafkaFuture<Config>> configFutures =
+        client.describeConfigs(resources).values();
+
+    for (Entry<String, KafkaFuture<TopicDescription>> description : descriptionFutures.entrySet()) {
+      TopicDescription topicDescription = get(description.getValue(), "describeTopics");
+      if (topicDescription != null) {
+        topicDescriptions.put(description.getKey(), topicDescription);
+      }
+    }
+
+    List<String> withoutConfig = new ArrayList<>();
+    for (Entry<ConfigResource, KafkaFuture<Config>> config : configFutures.entrySet()) {
+      String topicName = config.getKey().name();
+      if (!topicDescriptions.containsKey(topicName)) {
+        continue;
+      }
+      Config topicConfig = get(config.getValue(), "describeConfigs");
+      if (topicConfig == null) {
+        // the broker that answered does not know the topic yet
+        withoutConfig.add(topicName);
+      } else {
+        topicConfigs.put(topicName, topicConfig);
+      }
+    }
+    if (!withoutConfig.isEmpty()) {
+      topicConfigs.putAll(topicComparer.getTopicConfigs(withoutConfig, topicDescriptions, client));
+    }
+  }
+
+  /** @return the result of the future or {@code null} if the topic does not exist */
+  private static <T> T get(KafkaFuture<T> future, String operation) {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof UnknownTopicOrPartitionException) {
+        return null;
+      }
+      if (e.getCause() instanceof KafkaException) {
+        throw (KafkaException) e.getCause();
+      }
+      throw new EvaluationException("Exception during adminClient." + operation, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new EvaluationException("InterruptedException during adminClient." + operation, e);
+    }
+  }
+}
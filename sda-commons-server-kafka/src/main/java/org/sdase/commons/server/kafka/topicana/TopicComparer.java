@@ -16,6 +16,7 @@ package org.sdase.commons.server.kafka.topicana;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -27,6 +28,7 @@ import org.apache.kafka.clients.admin.Config;
 import org.apache.kafka.clients.admin.ConfigEntry;
 import org.apache.kafka.clients.admin.TopicDescription;
 import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.KafkaFuture;
 import org.apache.kafka.common.config.ConfigResource;
 import org.apache.kafka.common.errors.UnknownTopicOrPartitionException;
 import org.sdase.commons.server.kafka.KafkaConfiguration;
@@ -41,10 +43,15 @@ import org.sdase.commons.server.kafka.KafkaProperties;
  *   <li>Include Kafka Configuration to support a configurable admin client, for example for Kafka
  *       broker that require auth credentials
  *   <li>Refactoring of code to reduce complexity
+ *   <li>Allow to reuse an existing admin client
  * </ul>
  */
 public class TopicComparer {
 
+  private static final int DESCRIBE_CONFIGS_ATTEMPTS = 5;
+
+  private static final long DESCRIBE_CONFIGS_RETRY_BACKOFF_MS = 200;
+
   public TopicComparer() {
     // simple constructor
   }
@@ -54,28 +61,64 @@ public class TopicComparer {
       KafkaConfiguration configuration) {
     try (final AdminClient adminClient =
         AdminClient.create(KafkaProperties.forAdminClient(configuration))) {
+      return compare(expectedTopicConfiguration, adminClient);
+    }
+  }
 
-      ComparisonResult.ComparisonResultBuilder resultBuilder =
-          new ComparisonResult.ComparisonResultBuilder();
+  /**
+   * Compares the expected topics with the topics of the cluster using the given client, that is not
+   * closed afterwards.
+   *
+   * @param expectedTopicConfiguration the expected topics
+   * @param adminClient the client used to describe the topics
+   * @return the differences between the expected and the existing topics
+   */
+  public ComparisonResult compare(
+      Collection<ExpectedTopicConfiguration> expectedTopicConfiguration, AdminClient adminClient) {
+    ComparisonResult.ComparisonResultBuilder resultBuilder =
+        new ComparisonResult.ComparisonResultBuilder();
 
-      List<String> topicNames =
-          expectedTopicConfiguration.stream()
-              .map(ExpectedTopicConfiguration::getTopicName)
-              .collect(toList());
+    List<String> topicNames =
+        expectedTopicConfiguration.stream()
+            .map(ExpectedTopicConfiguration::getTopicName)
+            .collect(toList());
 
-      Map<String, TopicDescription> topicDescriptions =
-          getTopicDescriptions(resultBuilder, topicNames, adminClient);
+    Map<String, TopicDescription> topicDescriptions =
+        getTopicDescriptions(resultBuilder, topicNames, adminClient);
 
-      compareTopicDescriptions(expectedTopicConfiguration, resultBuilder, topicDescriptions);
+    compareTopicDescriptions(expectedTopicConfiguration, resultBuilder, topicDescriptions);
 
-      Map<String, Config> topicConfigs =
-          getTopicConfigs(topicNames, topicDescriptions, adminClient);
+    Map<String, Config> topicConfigs = getTopicConfigs(topicNames, topicDescriptions, adminClient);
 
-      compareTopicConfigs(
-          expectedTopicConfiguration, resultBuilder, topicDescriptions, topicConfigs);
+    compareTopicConfigs(expectedTopicConfiguration, resultBuilder, topicDescriptions, topicConfigs);
 
-      return resultBuilder.build();
-    }
+    return resultBuilder.build();
+  }
+
+  /**
+   * Compares the expected topics with already described topics of the cluster.
+   *
+   * @param expectedTopicConfiguration the expected topics
+   * @param topicDescriptions the descriptions of the existing topics by name
+   * @param topicConfigs the configurations of all existing topics by name
+   * @return the differences between the expected and the existing topics
+   */
+  ComparisonResult compare(
+      Collection<ExpectedTopicConfiguration> expectedTopicConfiguration,
+      Map<String, TopicDescription> topicDescriptions,
+      Map<String, Config> topicConfigs) {
+    ComparisonResult.ComparisonResultBuilder resultBuilder =
+        new ComparisonResult.ComparisonResultBuilder();
+    expectedTopicConfiguration.stream()
+        .map(ExpectedTopicConfiguration::getTopicName)
+        .filter(topicName -> !topicDescriptions.containsKey(topicName))
+        .forEach(resultBuilder::addMissingTopic);
+
+    compareTopicDescriptions(expectedTopicConfiguration, resultBuilder, topicDescriptions);
+
+    compareTopicConfigs(expectedTopicConfiguration, resultBuilder, topicDescriptions, topicConfigs);
+
+    return resultBuilder.build();
   }
 
   private void compareTopicConfigs(
@@ -106,33 +149,50 @@ public class TopicComparer {
             });
   }
 
-  private Map<String, Config> getTopicConfigs(
+  Map<String, Config> getTopicConfigs(
       List<String> topicNames,
       Map<String, TopicDescription> topicDescriptions,
       AdminClient adminClient) {
-    return adminClient
-        .describeConfigs(
-            topicNames.stream()
-                .filter(topicDescriptions::containsKey)
-                .map(this::topicNameToResource)
-                .collect(toList()))
-        .values().entrySet().stream()
-        .flatMap(
-            tc -> {
-              Map<String, Config> res = new HashMap<>();
-              try {
+    List<ConfigResource> pending =
+        topicNames.stream()
+            .filter(topicDescriptions::containsKey)
+            .map(this::topicNameToResource)
+            .collect(toList());
+    Map<String, Config> topicConfigs = new HashMap<>();
+    for (int attempt = 1; !pending.isEmpty(); attempt++) {
+      List<ConfigResource> unknown = new ArrayList<>();
+      for (Map.Entry<ConfigResource, KafkaFuture<Config>> tc :
+          adminClient.describeConfigs(pending).values().entrySet()) {
+        try {
+          topicConfigs.put(tc.getKey().name(), tc.getValue().get());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new EvaluationException(
+              "Interrupted Exception during adminClient.describeConfigs", e);
+        } catch (ExecutionException e) {
+          if (!(e.getCause() instanceof UnknownTopicOrPartitionException)
+              || attempt >= DESCRIBE_CONFIGS_ATTEMPTS) {
+            throw new EvaluationException("Exception during adminClient.describeConfigs", e);
+          }
+          // the broker that answered may not know a topic that has just been created
+          unknown.add(tc.getKey());
+        }
+      }
+      pending = unknown;
+      if (!pending.isEmpty()) {
+        awaitMetadataPropagation();
+      }
+    }
+    return topicConfigs;
+  }
 
-                res.put(tc.getKey().name(), tc.getValue().get());
-              } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new EvaluationException(
-                    "Interrupted Exception during adminClient.describeConfigs", e);
-              } catch (ExecutionException e) {
-                throw new EvaluationException("Exception during adminClient.describeConfigs", e);
-              }
-              return res.entrySet().stream();
-            })
-        .collect(toMap(Map.Entry::getKey, Map.Entry::getValue));
+  private void awaitMetadataPropagation() {
+    try {
+      Thread.sleep(DESCRIBE_CONFIGS_RETRY_BACKOFF_MS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new EvaluationException("Interrupted Exception during adminClient.describeConfigs", e);
+    }
   }
 
   private void compareTopicDescriptions(
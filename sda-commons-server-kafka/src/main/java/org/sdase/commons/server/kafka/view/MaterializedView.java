@@ -0,0 +1,118 @@
+package org.sdase.commons.server.kafka.view;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Local view of the latest value of each key of a compacted topic. The values are kept in an {@link
+ * OffHeapStore} that is updated by a message listener with the {@link MaterializedViewMLS}. Lookups
+ * are local and don't block the listener.
+ *
+ * <p>The view is empty until the first records are consumed. Services that must not answer requests
+ * before the view is complete should wait for {@link #awaitReady(long, TimeUnit)} or report {@link
+ * #isReady()} in a health check.
+ *
+ * @param <K> key object type
+ * @param <V> value object type
+ */
+public class MaterializedView<K, V> {
+
+  private final String topic;
+  private final OffHeapStore store;
+  private final MaterializedViewMLS strategy;
+  private final Serializer<K> keySerializer;
+  private final Deserializer<K> keyDeserializer;
+  private final Deserializer<V> valueDeserializer;
+
+  /**
+   * @param topic the compacted topic
+   * @param store the store that is updated by the strategy
+   * @param strategy the strategy that updates the store
+   * @param keySerializer serializes keys for lookups like the producers of the topic do
+   * @param keyDeserializer deserializes the keys of the topic
+   * @param valueDeserializer deserializes the values of the topic
+   */
+  public MaterializedView(
+      String topic,
+      OffHeapStore store,
+      MaterializedViewMLS strategy,
+      Serializer<K> keySerializer,
+      Deserializer<K> keyDeserializer,
+      Deserializer<V> valueDeserializer) {
+    this.topic = topic;
+    this.store = store;
+    this.strategy = strategy;
+    this.keySerializer = keySerializer;
+    this.keyDeserializer = keyDeserializer;
+    this.valueDeserializer = valueDeserializer;
+  }
+
+  /**
+   * Creates a view that is always empty and ready, used if Kafka is disabled.
+   *
+   * @param topic the compacted topic
+   * @param keySerializer serializes keys for lookups
+   * @param keyDeserializer deserializes the keys
+   * @param valueDeserializer deserializes the values
+   * @param <K> key object type
+   * @param <V> value object type
+   * @return an empty view
+   */
+  public static <K, V> MaterializedView<K, V> empty(
+      String topic,
+      Serializer<K> keySerializer,
+      Deserializer<K> keyDeserializer,
+      Deserializer<V> valueDeserializer) {
+    OffHeapStore store = new OffHeapStore();
+    MaterializedViewMLS strategy = new MaterializedViewMLS(store, null, Long.MAX_VALUE);
+    strategy.markReady();
+    return new MaterializedView<>(
+        topic, store, strategy, keySerializer, keyDeserializer, valueDeserializer);
+  }
+
+  /**
+   * @param key the key
+   * @return the latest value of the key or {@code null} if the key is unknown or deleted
+   */
+  public V get(K key) {
+    byte[] value = store.get(keySerializer.serialize(topic, key));
+    return value == null ? null : valueDeserializer.deserialize(topic, value);
+  }
+
+  /**
+   * Passes all keys with their latest value to the given consumer. The values are deserialized one
+   * after another, the view is not updated until the scan is completed.
+   *
+   * @param consumer receives each key and value
+   */
+  public void scan(BiConsumer<K, V> consumer) {
+    store.forEach(
+        (key, value) ->
+            consumer.accept(
+                keyDeserializer.deserialize(topic, key),
+                valueDeserializer.deserialize(topic, value)));
+  }
+
+  /** @return the number of keys in the view */
+  public int size() {
+    return store.size();
+  }
+
+  /** @return {@code true} if the view has caught up with the end of the topic once */
+  public boolean isReady() {
+    return strategy.isReady();
+  }
+
+  /**
+   * @param timeout the maximum time to wait
+   * @param unit the unit of the timeout
+   * @return {@code true} if the view has caught up with the end of the topic, {@code false} if the
+   *     timeout elapsed before
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+    return strategy.awaitReady(timeout, unit);
+  }
+}
@@ -0,0 +1,256 @@
+package org.sdase.commons.server.kafka.view;
+
+import io.prometheus.client.SimpleTimer;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.sdase.commons.server.kafka.consumer.KafkaHelper;
+import org.sdase.commons.server.kafka.consumer.strategies.MessageListenerStrategy;
+import org.sdase.commons.server.kafka.exception.ConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link MessageListenerStrategy} that applies the records of a compacted topic to an {@link
+ * OffHeapStore}. Records with a {@code null} value delete their key. The consumer starts at the
+ * beginning of each partition or at the offsets of the snapshot the store has been restored from.
+ * Offsets are never committed to Kafka, the snapshot keeps them instead.
+ *
+ * <p>The view is ready as soon as the consumer has caught up with the end offsets of all partitions
+ * that were assigned first. If a snapshot file is given, a snapshot is written in the poll loop
+ * after the snapshot interval and when the listener is closed.
+ */
+public class MaterializedViewMLS extends MessageListenerStrategy<byte[], byte[]> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(MaterializedViewMLS.class);
+
+  /** Identifies the format of the snapshot files. */
+  private static final int SNAPSHOT_MAGIC = 0x4b56_0001;
+
+  private final OffHeapStore store;
+
+  private final Path snapshotFile;
+
+  private final long snapshotIntervalMs;
+
+  /** The offset of the next record of each partition, only modified by the listener thread. */
+  private final Map<TopicPartition, Long> offsets = new ConcurrentHashMap<>();
+
+  private final CountDownLatch ready = new CountDownLatch(1);
+
+  /** The end offsets to catch up with, {@code null} until partitions are assigned. */
+  private Map<TopicPartition, Long> endOffsets;
+
+  private long lastSnapshotMillis = System.currentTimeMillis();
+
+  private String consumerName;
+
+  /**
+   * Creates the strategy and restores the store from the snapshot file, if present.
+   *
+   * @param store the store to update
+   * @param snapshotFile the file to restore the store from and to write snapshots to, may be {@code
+   *     null} to replay the topic from the beginning at each start
+   * @param snapshotIntervalMs the minimum time between two snapshots
+   */
+  public MaterializedViewMLS(OffHeapStore store, Path snapshotFile, long snapshotIntervalMs) {
+    this.store = store;
+    this.snapshotFile = snapshotFile;
+    this.snapshotIntervalMs = snapshotIntervalMs;
+    if (snapshotFile != null && Files.exists(snapshotFile)) {
+      restore();
+    }
+  }
+
+  @Override
+  public void processRecords(
+      ConsumerRecords<byte[], byte[]> records, KafkaConsumer<byte[], byte[]> consumer) {
+    if (consumerName == null) {
+      consumerName = KafkaHelper.getClientId(consumer);
+    }
+
+    for (ConsumerRecord<byte[], byte[]> record : records) {
+      long start = System.nanoTime();
+      if (record.key() == null) {
+        LOGGER.debug("Ignoring record without key at offset {}", record.offset());
+      } else if (record.value() == null) {
+        store.delete(record.key());
+      } else {
+        store.put(record.key(), record.value());
+      }
+      offsets.put(new TopicPartition(record.topic(), record.partition()), record.offset() + 1);
+
+      // Prometheus
+      double elapsedSeconds = SimpleTimer.elapsedSecondsFromNanos(start, System.nanoTime());
+      consumerProcessedMsgHistogram.observe(elapsedSeconds, consumerName, record.topic());
+    }
+
+    checkReady(consumer);
+    if (isReady() && System.currentTimeMillis() - lastSnapshotMillis >= snapshotIntervalMs) {
+      snapshot();
+    }
+  }
+
+  @Override
+  public void onPartitionsAssigned(
+      Collection<TopicPartition> partitions, KafkaConsumer<byte[], byte[]> consumer) {
+    for (TopicPartition partition : partitions) {
+      Long offset = offsets.get(partition);
+      if (offset != null) {
+        consumer.seek(partition, offset);
+      } else {
+        consumer.seekToBeginning(Collections.singleton(partition));
+      }
+    }
+    if (!isReady()) {
+      endOffsets = consumer.endOffsets(partitions);
+      checkReady(consumer);
+    }
+  }
+
+  @Override
+  public void commitOnClose(KafkaConsumer<byte[], byte[]> consumer) {
+    snapshot();
+  }
+
+  @Override
+  public void verifyConsumerConfig(Map<String, String> config) {
+    if (Boolean.valueOf(config.getOrDefault(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "true"))) {
+      throw new ConfigurationException(
+          "The strategy keeps the offsets in the snapshot but property 'enable.auto.commit' in consumer config is set to 'true' (which is the default and must be disabled).");
+    }
+  }
+
+  @Override
+  public Map<String, String> forcedConfigToApply() {
+    Map<String, String> forcedConfig = new HashMap<>();
+    forcedConfig.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+    forcedConfig.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+    return forcedConfig;
+  }
+
+  /** @return {@code true} if the store has caught up with the topic once */
+  public boolean isReady() {
+    return ready.getCount() == 0;
+  }
+
+  /**
+   * @param timeout the maximum time to wait
+   * @param unit the unit of the timeout
+   * @return {@code true} if the store has caught up with the topic, {@code false} if the timeout
+   *     elapsed before
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+    return ready.await(timeout, unit);
+  }
+
+  /** Marks the store as ready without consuming, e.g. if Kafka is disabled. */
+  void markReady() {
+    ready.countDown();
+  }
+
+  private void checkReady(KafkaConsumer<byte[], byte[]> consumer) {
+    if (isReady() || endOffsets == null) {
+      return;
+    }
+    for (Entry<TopicPartition, Long> entry : endOffsets.entrySet()) {
+      if (consumer.position(entry.getKey()) < entry.getValue()) {
+        return;
+      }
+    }
+    LOGGER.info(
+        "Materialized view caught up with {} keys of {}", store.size(), endOffsets.keySet());
+    ready.countDown();
+  }
+
+  /** Writes the offsets and all entries to a temporary file that replaces the snapshot file. */
+  private void snapshot() {
+    lastSnapshotMillis = System.currentTimeMillis();
+    if (snapshotFile == null) {
+      return;
+    }
+    try {
+      Path tempFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+      try (DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeInt(offsets.size());
+        for (Entry<TopicPartition, Long> entry : offsets.entrySet()) {
+          out.writeUTF(entry.getKey().topic());
+          out.writeInt(entry.getKey().partition());
+          out.writeLong(entry.getValue());
+        }
+        out.writeInt(store.size());
+        store.forEach((key, value) -> writeEntry(out, key, value));
+      }
+      Files.move(
+          tempFile,
+          snapshotFile,
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      LOGGER.debug("Wrote snapshot of materialized view to {}", snapshotFile);
+    } catch (IOException | UncheckedIOException e) {
+      LOGGER.error("Failed to write snapshot of materialized view to {}", snapshotFile, e);
+    }
+  }
+
+  private static void writeEntry(DataOutputStream out, byte[] key, byte[] value) {
+    try {
+      out.writeInt(key.length);
+      out.write(key);
+      out.writeInt(value.length);
+      out.write(value);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Reads the snapshot, the topic is replayed from the beginning if it can't be read. */
+  private void restore() {
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+      if (in.readInt() != SNAPSHOT_MAGIC) {
+        throw new IOException("Unknown snapshot format");
+      }
+      int partitions = in.readInt();
+      for (int i = 0; i < partitions; i++) {
+        offsets.put(new TopicPartition(in.readUTF(), in.readInt()), in.readLong());
+      }
+      int entries = in.readInt();
+      for (int i = 0; i < entries; i++) {
+        store.put(readBytes(in), readBytes(in));
+      }
+      LOGGER.info("Restored {} keys of materialized view from {}", entries, snapshotFile);
+    } catch (IOException e) {
+      LOGGER.warn("Failed to restore materialized view from {}, replaying topic", snapshotFile, e);
+      offsets.clear();
+      store.clear();
+    }
+  }
+
+  private static byte[] readBytes(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return bytes;
+  }
+}
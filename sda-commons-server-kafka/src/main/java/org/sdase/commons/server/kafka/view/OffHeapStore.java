@@ -0,0 +1,216 @@
+package org.sdase.commons.server.kafka.view;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Key-value store that keeps the values outside of the Java heap. The values are appended to
+ * segments of direct memory, the heap only holds the keys and the address of their value. Replaced
+ * and deleted values leave garbage in the segments that is compacted as soon as it exceeds the size
+ * of the live values.
+ *
+ * <p>The store is designed for one writer and many concurrent readers.
+ */
+public class OffHeapStore {
+
+  /** The default size of a segment of direct memory. */
+  public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+  /** The size of the length that precedes each value in a segment. */
+  private static final int LENGTH_SIZE = Integer.BYTES;
+
+  private final int segmentSize;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private final Map<Key, Long> index = new HashMap<>();
+
+  private List<ByteBuffer> segments = new ArrayList<>();
+
+  private long liveBytes;
+
+  private long garbageBytes;
+
+  public OffHeapStore() {
+    this(DEFAULT_SEGMENT_SIZE);
+  }
+
+  /** @param segmentSize the size of each segment of direct memory that is allocated */
+  public OffHeapStore(int segmentSize) {
+    this.segmentSize = segmentSize;
+  }
+
+  /**
+   * @param key the key
+   * @return a copy of the value of the key or {@code null} if the key is not present
+   */
+  public byte[] get(byte[] key) {
+    lock.readLock().lock();
+    try {
+      Long address = index.get(new Key(key));
+      return address == null ? null : read(segments, address);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * @param key the key
+   * @param value the value that replaces the current value of the key
+   */
+  public void put(byte[] key, byte[] value) {
+    lock.writeLock().lock();
+    try {
+      Long previous = index.put(new Key(key), append(segments, value));
+      liveBytes += LENGTH_SIZE + value.length;
+      if (previous != null) {
+        release(previous);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** @param key the key to remove with its value */
+  public void delete(byte[] key) {
+    lock.writeLock().lock();
+    try {
+      Long previous = index.remove(new Key(key));
+      if (previous != null) {
+        release(previous);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Passes all entries to the given consumer. Writes are blocked until all entries are passed.
+   *
+   * @param consumer receives each key with a copy of its value
+   */
+  public void forEach(BiConsumer<byte[], byte[]> consumer) {
+    lock.readLock().lock();
+    try {
+      for (Entry<Key, Long> entry : index.entrySet()) {
+        consumer.accept(entry.getKey().bytes, read(segments, entry.getValue()));
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** @return the number of keys */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return index.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** @return the direct memory allocated by the store in bytes */
+  public long getAllocatedBytes() {
+    lock.readLock().lock();
+    try {
+      return segments.stream().mapToLong(ByteBuffer::capacity).sum();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Removes all entries and releases the segments. */
+  public void clear() {
+    lock.writeLock().lock();
+    try {
+      index.clear();
+      segments = new ArrayList<>();
+      liveBytes = 0;
+      garbageBytes = 0;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void release(long address) {
+    int size = LENGTH_SIZE + segments.get(segment(address)).getInt(position(address));
+    liveBytes -= size;
+    garbageBytes += size;
+    if (garbageBytes > liveBytes && garbageBytes > segmentSize) {
+      compact();
+    }
+  }
+
+  /**
+   * Copies the live values to new segments, the old segments are freed by the garbage collector.
+   */
+  private void compact() {
+    List<ByteBuffer> compacted = new ArrayList<>();
+    for (Entry<Key, Long> entry : index.entrySet()) {
+      entry.setValue(append(compacted, read(segments, entry.getValue())));
+    }
+    segments = compacted;
+    garbageBytes = 0;
+  }
+
+  private long append(List<ByteBuffer> target, byte[] value) {
+    int size = LENGTH_SIZE + value.length;
+    ByteBuffer segment = target.isEmpty() ? null : target.get(target.size() - 1);
+    if (segment == null || segment.remaining() < size) {
+      // values that exceed the segment size get a segment of their own
+      segment = ByteBuffer.allocateDirect(Math.max(segmentSize, size));
+      target.add(segment);
+    }
+    long address = ((long) (target.size() - 1) << 32) | segment.position();
+    segment.putInt(value.length);
+    segment.put(value);
+    return address;
+  }
+
+  private static byte[] read(List<ByteBuffer> source, long address) {
+    ByteBuffer segment = source.get(segment(address)).duplicate();
+    segment.position(position(address));
+    byte[] value = new byte[segment.getInt()];
+    segment.get(value);
+    return value;
+  }
+
+  private static int segment(long address) {
+    return (int) (address >>> 32);
+  }
+
+  private static int position(long address) {
+    return (int) address;
+  }
+
+  /** Wraps a key to compare by content. */
+  private static final class Key {
+
+    private final byte[] bytes;
+    private final int hash;
+
+    private Key(byte[] bytes) {
+      this.bytes = bytes;
+      this.hash = Arrays.hashCode(bytes);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Key && Arrays.equals(bytes, ((Key) o).bytes);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
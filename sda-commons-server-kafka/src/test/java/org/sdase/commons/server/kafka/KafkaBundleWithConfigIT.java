@@ -10,6 +10,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.salesforce.kafka.test.junit4.SharedKafkaTestResource;
 import io.dropwizard.testing.junit.DropwizardAppRule;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -17,9 +18,12 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import org.apache.kafka.clients.admin.AdminClient;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.TopicPartition;
@@ -34,6 +38,7 @@ import org.junit.ClassRule;
 import org.junit.Test;
 import org.junit.rules.RuleChain;
 import org.junit.rules.TestRule;
+import org.sdase.commons.server.kafka.builder.MaterializedViewRegistration;
 import org.sdase.commons.server.kafka.builder.MessageListenerRegistration;
 import org.sdase.commons.server.kafka.builder.ProducerRegistration;
 import org.sdase.commons.server.kafka.config.ConsumerConfig;
@@ -46,15 +51,19 @@ import org.sdase.commons.server.kafka.consumer.MessageHandler;
 import org.sdase.commons.server.kafka.consumer.MessageListener;
 import org.sdase.commons.server.kafka.consumer.strategies.MessageListenerStrategy;
 import org.sdase.commons.server.kafka.consumer.strategies.autocommit.AutocommitMLS;
+import org.sdase.commons.server.kafka.consumer.strategies.multiplexing.MultiplexingMLS;
 import org.sdase.commons.server.kafka.consumer.strategies.synccommit.SyncCommitMLS;
+import org.sdase.commons.server.kafka.consumer.strategies.transactional.TransactionalMLS;
 import org.sdase.commons.server.kafka.dropwizard.KafkaTestApplication;
 import org.sdase.commons.server.kafka.dropwizard.KafkaTestConfiguration;
 import org.sdase.commons.server.kafka.exception.ConfigurationException;
 import org.sdase.commons.server.kafka.producer.MessageProducer;
+import org.sdase.commons.server.kafka.producer.TransactionalMessageProducer;
 import org.sdase.commons.server.kafka.serializers.KafkaJsonDeserializer;
 import org.sdase.commons.server.kafka.serializers.KafkaJsonSerializer;
 import org.sdase.commons.server.kafka.serializers.SimpleEntity;
 import org.sdase.commons.server.kafka.serializers.WrappedNoSerializationErrorDeserializer;
+import org.sdase.commons.server.kafka.view.MaterializedView;
 
 public class KafkaBundleWithConfigIT {
 
@@ -64,7 +73,11 @@ public class KafkaBundleWithConfigIT {
           .withBrokerProperty("offsets.topic.num.partitions", "1")
           // we don't need to wait that a consumer group rebalances since we always start with a
           // fresh kafka instance
-          .withBrokerProperty("group.initial.rebalance.delay.ms", "0");
+          .withBrokerProperty("group.initial.rebalance.delay.ms", "0")
+          // transactions are coordinated by a single broker
+          .withBrokerProperty("transaction.state.log.replication.factor", "1")
+          .withBrokerProperty("transaction.state.log.min.isr", "1")
+          .withBrokerProperty("transaction.state.log.num.partitions", "1");
 
   private static final String CONSUMER_1 = "consumer1";
   private static final String PRODUCER_1 = "producer1";
@@ -186,6 +199,64 @@ public class KafkaBundleWithConfigIT {
         .untilAsserted(() -> assertThat(offset.get()).isGreaterThanOrEqualTo(5L));
   }
 
+  @Test
+  public void transactionalStrategyShouldCommitResultsWithOffsets() throws Exception {
+    String inputTopic = "transactionalStrategyInput";
+    String outputTopic = "transactionalStrategyOutput";
+    String group = UUID.randomUUID().toString();
+    KAFKA.getKafkaTestUtils().createTopic(inputTopic, 1, (short) 1);
+    KAFKA.getKafkaTestUtils().createTopic(outputTopic, 1, (short) 1);
+
+    Function<String, TransactionalMessageProducer<String, String>> producers =
+        kafkaBundle.createTransactionalProducers(
+            ProducerRegistration.builder()
+                .forTopic(outputTopic)
+                .withProducerConfig(
+                    ProducerConfig.builder()
+                        .addConfig("transactional.id", "transactionalStrategy")
+                        .build())
+                .withKeySerializer(new StringSerializer())
+                .withValueSerializer(new StringSerializer())
+                .build());
+
+    kafkaBundle.createMessageListener(
+        MessageListenerRegistration.builder()
+            .withDefaultListenerConfig()
+            .forTopic(inputTopic)
+            .withConsumerConfig(ConsumerConfig.builder().withGroup(group).build())
+            .withValueDeserializer(new StringDeserializer())
+            .withListenerStrategy(
+                new TransactionalMLS<String, String, String, String>(
+                    producers,
+                    (record, producer) -> producer.send(record.key(), record.value() + "-result"),
+                    new IgnoreAndProceedErrorHandler<>()))
+            .build());
+
+    for (int i = 0; i < KafkaBundleConsts.N_MESSAGES; i++) {
+      stringStringProducer.send(new ProducerRecord<>(inputTopic, "message-" + i));
+    }
+
+    await()
+        .atMost(KafkaBundleConsts.N_MAX_WAIT_MS, MILLISECONDS)
+        .untilAsserted(
+            () -> {
+              try (AdminClient admin = KAFKA.getKafkaTestUtils().getAdminClient()) {
+                OffsetAndMetadata offset =
+                    admin
+                        .listConsumerGroupOffsets(group)
+                        .partitionsToOffsetAndMetadata()
+                        .get()
+                        .get(new TopicPartition(inputTopic, 0));
+                assertThat(offset).isNotNull();
+                assertThat(offset.offset()).isEqualTo(KafkaBundleConsts.N_MESSAGES);
+              }
+            });
+    assertThat(KAFKA.getKafkaTestUtils().consumeAllRecordsFromTopic(outputTopic))
+        .extracting(r -> new String(r.value()))
+        .hasSize(KafkaBundleConsts.N_MESSAGES)
+        .contains("message-0-result");
+  }
+
   @Test(expected = ConfigurationException.class)
   public void shouldProduceConfigExceptionWhenConsumerConfigNotExists() {
     try (KafkaConsumer<String, String> consumer =
@@ -584,6 +655,83 @@ public class KafkaBundleWithConfigIT {
     assertThat(resultsString).containsExactlyInAnyOrder("test1", "test2");
   }
 
+  @Test
+  public void multiplexedListenersShouldShareOneConsumer() {
+    String topicLong = "multiplexedLong";
+    String topicString = "multiplexedString";
+    KAFKA.getKafkaTestUtils().createTopic(topicLong, 1, (short) 1);
+    KAFKA.getKafkaTestUtils().createTopic(topicString, 1, (short) 1);
+
+    List<MessageListener<byte[], byte[]>> listeners =
+        kafkaBundle.createMultiplexedMessageListener(
+            Arrays.asList(
+                MessageListenerRegistration.builder()
+                    .withDefaultListenerConfig()
+                    .forTopic(topicLong)
+                    .withDefaultConsumer()
+                    .withKeyDeserializer(new LongDeserializer())
+                    .withListenerStrategy(
+                        new SyncCommitMLS<Long, String>(
+                            record -> resultsString.add(record.key() + record.value()),
+                            new IgnoreAndProceedErrorHandler<>()))
+                    .build(),
+                MessageListenerRegistration.builder()
+                    .withDefaultListenerConfig()
+                    .forTopic(topicString)
+                    .withDefaultConsumer()
+                    .withListenerStrategy(
+                        new SyncCommitMLS<String, String>(
+                            record -> resultsString.add(record.key() + record.value()),
+                            new IgnoreAndProceedErrorHandler<>()))
+                    .build()));
+
+    assertThat(listeners).hasSize(1);
+
+    try (KafkaProducer<Long, String> longProducer =
+        KAFKA.getKafkaTestUtils().getKafkaProducer(LongSerializer.class, StringSerializer.class)) {
+      longProducer.send(new ProducerRecord<>(topicLong, 1L, "long"));
+    }
+    stringStringProducer.send(new ProducerRecord<>(topicString, "key", "string"));
+
+    await()
+        .atMost(KafkaBundleConsts.N_MAX_WAIT_MS, MILLISECONDS)
+        .until(() -> resultsString.size() == 2);
+
+    assertThat(resultsString).containsExactlyInAnyOrder("1long", "keystring");
+    assertThat(((MultiplexingMLS) listeners.get(0).getStrategy()).getTopics())
+        .containsExactlyInAnyOrder(topicLong, topicString);
+  }
+
+  @Test
+  public void materializedViewShouldReflectLatestValues() throws InterruptedException {
+    String topic = "materializedView";
+    KAFKA.getKafkaTestUtils().createTopic(topic, 2, (short) 1);
+
+    stringStringProducer.send(new ProducerRecord<>(topic, "a", "1"));
+    stringStringProducer.send(new ProducerRecord<>(topic, "b", "2"));
+    stringStringProducer.send(new ProducerRecord<>(topic, "a", "3"));
+    stringStringProducer.send(new ProducerRecord<>(topic, "b", null));
+    stringStringProducer.flush();
+
+    MaterializedView<String, String> view =
+        kafkaBundle.createMaterializedView(
+            MaterializedViewRegistration.builder()
+                .forTopic(topic)
+                .withDefaultConsumer()
+                .withKeySerde(new StringSerializer(), new StringDeserializer())
+                .withValueDeserializer(new StringDeserializer())
+                .build());
+
+    assertThat(view.awaitReady(KafkaBundleConsts.N_MAX_WAIT_MS, MILLISECONDS)).isTrue();
+    assertThat(view.get("a")).isEqualTo("3");
+    assertThat(view.get("b")).isNull();
+    assertThat(view.size()).isEqualTo(1);
+
+    stringStringProducer.send(new ProducerRecord<>(topic, "c", "4"));
+    await().atMost(KafkaBundleConsts.N_MAX_WAIT_MS, MILLISECONDS).until(() -> view.size() == 2);
+    assertThat(view.get("c")).isEqualTo("4");
+  }
+
   @Test
   public void testJsonSerializer() {
     String topic = "testJsonSerializer";
@@ -0,0 +1,144 @@
+package org.sdase.commons.server.kafka;
+
+import static io.dropwizard.testing.ConfigOverride.config;
+import static io.dropwizard.testing.ResourceHelpers.resourceFilePath;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import io.dropwizard.testing.junit.DropwizardAppRule;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.junit.rules.TestRule;
+import org.sdase.commons.server.kafka.builder.MessageListenerRegistration;
+import org.sdase.commons.server.kafka.builder.ProducerRegistration;
+import org.sdase.commons.server.kafka.config.ListenerConfig;
+import org.sdase.commons.server.kafka.confluent.testing.InMemoryKafkaRule;
+import org.sdase.commons.server.kafka.consumer.IgnoreAndProceedErrorHandler;
+import org.sdase.commons.server.kafka.consumer.MessageListener;
+import org.sdase.commons.server.kafka.consumer.strategies.synccommit.SyncCommitMLS;
+import org.sdase.commons.server.kafka.dropwizard.KafkaTestApplication;
+import org.sdase.commons.server.kafka.dropwizard.KafkaTestConfiguration;
+import org.sdase.commons.server.kafka.producer.MessageProducer;
+
+public class KafkaBundleWithInMemoryKafkaTest {
+
+  private static final InMemoryKafkaRule KAFKA = new InMemoryKafkaRule();
+
+  private static final DropwizardAppRule<KafkaTestConfiguration> DROPWIZARD_APP_RULE =
+      new DropwizardAppRule<>(
+          KafkaTestApplication.class,
+          resourceFilePath("test-config-default.yml"),
+          config("kafka.brokers", KAFKA::getConnectString));
+
+  @ClassRule
+  public static final TestRule CHAIN = RuleChain.outerRule(KAFKA).around(DROPWIZARD_APP_RULE);
+
+  private final List<String> results = Collections.synchronizedList(new ArrayList<>());
+
+  private KafkaBundle<KafkaTestConfiguration> kafkaBundle;
+
+  @Before
+  public void before() {
+    KafkaTestApplication app = DROPWIZARD_APP_RULE.getApplication();
+    kafkaBundle = app.kafkaBundle();
+    results.clear();
+  }
+
+  @Test
+  public void shouldNotRegisterHealthCheck() {
+    KafkaTestApplication app = DROPWIZARD_APP_RULE.getApplication();
+    assertThat(app.healthCheckRegistry().getHealthCheck("kafkaConnection")).isNull();
+  }
+
+  @Test
+  public void shouldConsumeProducedRecordsAndCommitOffsets() {
+    String topic = "shouldConsumeProducedRecordsAndCommitOffsets";
+    kafkaBundle.createMessageListener(
+        MessageListenerRegistration.builder()
+            .withDefaultListenerConfig()
+            .forTopic(topic)
+            .withConsumerConfig("consumer2")
+            .withListenerStrategy(
+                new SyncCommitMLS<String, String>(
+                    record -> results.add(record.value()), new IgnoreAndProceedErrorHandler<>()))
+            .build());
+
+    MessageProducer<String, String> producer =
+        kafkaBundle.registerProducer(
+            ProducerRegistration.<String, String>builder()
+                .forTopic(topic)
+                .checkTopicConfiguration()
+                .withProducerConfig("producer2")
+                .build());
+    producer.send("a", "1");
+    producer.send("b", "2");
+
+    await().atMost(KafkaBundleConsts.N_MAX_WAIT_MS, MILLISECONDS).until(() -> results.size() == 2);
+    assertThat(results).containsExactly("1", "2");
+    await()
+        .atMost(KafkaBundleConsts.N_MAX_WAIT_MS, MILLISECONDS)
+        .untilAsserted(
+            () ->
+                assertThat(
+                        KAFKA
+                            .getKafka()
+                            .getCommittedOffset("default", new TopicPartition(topic, 0)))
+                    .isNotNull()
+                    .satisfies(offset -> assertThat(offset.offset()).isEqualTo(2L)));
+  }
+
+  @Test
+  public void shouldShareCreatedPartitionsBetweenListeners() {
+    MessageProducer<String, String> producer =
+        kafkaBundle.registerProducer(
+            ProducerRegistration.<String, String>builder()
+                .forTopic(kafkaBundle.getTopicConfiguration("topicId1"))
+                .createTopicIfMissing()
+                .withProducerConfig("producer2")
+                .build());
+
+    List<MessageListener<String, String>> listeners =
+        kafkaBundle.createMessageListener(
+            MessageListenerRegistration.builder()
+                .withListenerConfig(ListenerConfig.builder().withPollInterval(10).build(2))
+                .forTopicConfigs(
+                    Collections.singletonList(kafkaBundle.getTopicConfiguration("topicId1")))
+                .withConsumerConfig("consumer2")
+                .withListenerStrategy(
+                    new SyncCommitMLS<String, String>(
+                        record -> results.add(record.value()),
+                        new IgnoreAndProceedErrorHandler<>()))
+                .build());
+    assertThat(listeners).hasSize(2);
+
+    for (int i = 0; i < 20; i++) {
+      producer.send("key-" + i, "value-" + i);
+    }
+
+    await().atMost(KafkaBundleConsts.N_MAX_WAIT_MS, MILLISECONDS).until(() -> results.size() == 20);
+    assertThat(KAFKA.getKafka().getRecords("topic1"))
+        .extracting(ConsumerRecord::partition)
+        .containsOnly(0, 1);
+    await()
+        .atMost(KafkaBundleConsts.N_MAX_WAIT_MS, MILLISECONDS)
+        .untilAsserted(
+            () ->
+                assertThat(committedOffset("topic1", 0) + committedOffset("topic1", 1))
+                    .isEqualTo(20L));
+  }
+
+  private static long committedOffset(String topic, int partition) {
+    OffsetAndMetadata committed =
+        KAFKA.getKafka().getCommittedOffset("default", new TopicPartition(topic, partition));
+    return committed == null ? 0 : committed.offset();
+  }
+}
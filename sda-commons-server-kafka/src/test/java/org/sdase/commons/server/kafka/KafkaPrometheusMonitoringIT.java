@@ -105,8 +105,15 @@ public class KafkaPrometheusMonitoringIT {
 
     String[] metrics = {
       "kafka_producer_topic_message_total",
+      "kafka_producer_topic_message_duration",
       "kafka_consumer_topic_message_duration",
-      "kafka_consumer_records_lag"
+      "kafka_consumer_records_lag",
+      "kafka_consumer_listener_thread_cpu_seconds_total",
+      "kafka_consumer_listener_thread_busy_seconds_total",
+      "kafka_consumer_listener_thread_poll_seconds_total",
+      "kafka_consumer_poll_loop_seconds_total",
+      "kafka_consumer_fetch_latency_avg",
+      "kafka_producer_request_latency_avg"
     };
 
     assertThat(list).extracting(m -> m.name).contains(metrics);
@@ -139,5 +146,29 @@ public class KafkaPrometheusMonitoringIT {
                 new String[] {CONSUMER_1 + "-0", topic}))
         .as("sample value for metric 'kafka_consumer_topic_message_duration_count'")
         .isEqualTo(2);
+
+    assertThat(
+            CollectorRegistry.defaultRegistry.getSampleValue(
+                "kafka_consumer_listener_thread_cpu_seconds_total",
+                new String[] {"consumer_name", "thread_name"},
+                new String[] {CONSUMER_1 + "-0", "kafka-listener-" + CONSUMER_1 + "-0"}))
+        .as("sample value for metric 'kafka_consumer_listener_thread_cpu_seconds_total'")
+        .isPositive();
+
+    assertThat(
+            CollectorRegistry.defaultRegistry.getSampleValue(
+                "kafka_consumer_records_lag",
+                new String[] {"consumer_name", "topic_name", "partition"},
+                new String[] {CONSUMER_1 + "-0", topic, "0"}))
+        .as("sample value for metric 'kafka_consumer_records_lag'")
+        .isNotNull();
+
+    assertThat(
+            CollectorRegistry.defaultRegistry.getSampleValue(
+                "kafka_consumer_poll_loop_seconds_total",
+                new String[] {"consumer_name", "phase"},
+                new String[] {CONSUMER_1 + "-0", "poll"}))
+        .as("sample value for metric 'kafka_consumer_poll_loop_seconds_total'")
+        .isPositive();
   }
 }
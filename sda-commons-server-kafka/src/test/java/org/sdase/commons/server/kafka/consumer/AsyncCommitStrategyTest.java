@@ -0,0 +1,160 @@
+package org.sdase.commons.server.kafka.consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import org.apache.kafka.clients.consumer.CommitFailedException;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetCommitCallback;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.sdase.commons.server.kafka.consumer.strategies.asynccommit.AsyncCommitMLS;
+import org.sdase.commons.server.kafka.prometheus.ConsumerCommitMetrics;
+import org.sdase.commons.server.kafka.prometheus.ConsumerTopicMessageHistogram;
+
+public class AsyncCommitStrategyTest {
+
+  private MessageHandler<String, String> handler;
+  private ErrorHandler<String, String> errorHandler;
+  private KafkaConsumer<String, String> consumer;
+  private ConsumerTopicMessageHistogram histogram;
+  private ConsumerCommitMetrics commitMetrics;
+
+  @SuppressWarnings("unchecked")
+  @Before
+  public void setup() {
+    consumer = Mockito.mock(KafkaConsumer.class);
+    handler = Mockito.mock(MessageHandler.class);
+    errorHandler = Mockito.mock(ErrorHandler.class);
+    histogram = Mockito.mock(ConsumerTopicMessageHistogram.class);
+    commitMetrics = Mockito.mock(ConsumerCommitMetrics.class);
+  }
+
+  @Test
+  public void shouldCommitAsyncAndSyncEveryNPolls() {
+    AsyncCommitMLS<String, String> strategy =
+        new AsyncCommitMLS<>(handler, errorHandler, 3, 60_000L);
+    strategy.init(histogram, commitMetrics);
+
+    for (int i = 0; i < 6; i++) {
+      strategy.processRecords(TestHelper.createConsumerRecords(5, "topic"), consumer);
+    }
+
+    verify(handler, times(30)).handle(any());
+    verify(consumer, times(4)).commitAsync(any(OffsetCommitCallback.class));
+    verify(consumer, times(2)).commitSync();
+    verify(commitMetrics, times(2)).observeCommit(anyDouble(), anyString(), eq("sync"));
+  }
+
+  @Test
+  public void shouldNotCommitAsyncWithoutRecords() {
+    AsyncCommitMLS<String, String> strategy =
+        new AsyncCommitMLS<>(handler, errorHandler, 100, 60_000L);
+    strategy.init(histogram, commitMetrics);
+
+    strategy.processRecords(ConsumerRecords.empty(), consumer);
+
+    verify(consumer, never()).commitAsync(any(OffsetCommitCallback.class));
+    verify(consumer, never()).commitSync();
+  }
+
+  @Test
+  public void shouldCountOnlyPollsWithRecords() {
+    AsyncCommitMLS<String, String> strategy = new AsyncCommitMLS<>(handler, errorHandler, 2, 0L);
+    strategy.init(histogram, commitMetrics);
+
+    for (int i = 0; i < 5; i++) {
+      strategy.processRecords(ConsumerRecords.empty(), consumer);
+    }
+    verify(consumer, never()).commitSync();
+
+    strategy.processRecords(TestHelper.createConsumerRecords(5, "topic"), consumer);
+    verify(consumer).commitSync();
+  }
+
+  @Test
+  public void shouldSkipSyncCommitWithoutProcessedRecords() {
+    AsyncCommitMLS<String, String> strategy =
+        new AsyncCommitMLS<>(handler, errorHandler, 100, 60_000L);
+    strategy.init(histogram, commitMetrics);
+
+    strategy.processRecords(TestHelper.createConsumerRecords(5, "topic"), consumer);
+    strategy.onPartitionsRevoked(Collections.singleton(new TopicPartition("topic", 0)), consumer);
+    strategy.onPartitionsRevoked(Collections.singleton(new TopicPartition("topic", 0)), consumer);
+    strategy.commitOnClose(consumer);
+
+    verify(consumer).commitSync();
+  }
+
+  @Test
+  public void shouldCommitSyncAfterInterval() {
+    AsyncCommitMLS<String, String> strategy = new AsyncCommitMLS<>(handler, errorHandler, 100, 0L);
+    strategy.init(histogram, commitMetrics);
+
+    strategy.processRecords(TestHelper.createConsumerRecords(5, "topic"), consumer);
+
+    verify(consumer).commitSync();
+    verify(consumer, never()).commitAsync(any(OffsetCommitCallback.class));
+  }
+
+  @Test
+  public void shouldCountFailedAsyncCommits() {
+    doAnswer(
+            invocation -> {
+              OffsetCommitCallback callback = invocation.getArgument(0);
+              callback.onComplete(Collections.emptyMap(), new TimeoutException("Test"));
+              return null;
+            })
+        .when(consumer)
+        .commitAsync(any(OffsetCommitCallback.class));
+    AsyncCommitMLS<String, String> strategy =
+        new AsyncCommitMLS<>(handler, errorHandler, 100, 60_000L);
+    strategy.init(histogram, commitMetrics);
+
+    strategy.processRecords(TestHelper.createConsumerRecords(5, "topic"), consumer);
+
+    verify(commitMetrics).increaseFailedCommits(anyString(), eq("async"));
+    verify(commitMetrics, never()).observeCommit(anyDouble(), anyString(), anyString());
+  }
+
+  @Test
+  public void shouldCommitSyncOnRevokeAndClose() {
+    doThrow(new CommitFailedException()).doNothing().when(consumer).commitSync();
+    AsyncCommitMLS<String, String> strategy =
+        new AsyncCommitMLS<>(handler, errorHandler, 100, 60_000L);
+    strategy.init(histogram, commitMetrics);
+
+    strategy.processRecords(TestHelper.createConsumerRecords(5, "topic"), consumer);
+    strategy.onPartitionsRevoked(Collections.singleton(new TopicPartition("topic", 0)), consumer);
+    strategy.commitOnClose(consumer);
+
+    verify(consumer, times(2)).commitSync();
+    verify(commitMetrics).increaseFailedCommits(anyString(), eq("sync"));
+  }
+
+  @Test
+  public void shouldInvokeErrorHandlerWhenException() {
+    doThrow(new RuntimeException("Test")).when(handler).handle(any());
+    when(errorHandler.handleError(any(), any(), any())).thenReturn(true);
+    AsyncCommitMLS<String, String> strategy = new AsyncCommitMLS<>(handler, errorHandler);
+    strategy.init(histogram);
+
+    strategy.processRecords(TestHelper.createConsumerRecords(5, "topic"), consumer);
+
+    verify(errorHandler, times(5)).handleError(any(), any(), any());
+    verify(consumer).commitAsync(any(OffsetCommitCallback.class));
+  }
+}
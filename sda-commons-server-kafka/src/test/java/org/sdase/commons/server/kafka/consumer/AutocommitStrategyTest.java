@@ -5,6 +5,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.awaitility.Awaitility.await;
 import static org.mockito.AdditionalMatchers.gt;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.when;
@@ -15,6 +16,7 @@ import java.util.Collections;
 import java.util.LinkedList;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.common.errors.WakeupException;
@@ -111,7 +113,8 @@ public class AutocommitStrategyTest {
 
     startListenerThread();
 
-    Mockito.verify(consumer).subscribe(Arrays.asList(TOPICS));
+    Mockito.verify(consumer)
+        .subscribe(eq(Arrays.asList(TOPICS)), any(ConsumerRebalanceListener.class));
   }
 
   @Test
@@ -275,7 +278,7 @@ public class AutocommitStrategyTest {
   }
 
   private void setupMocks() {
-    Mockito.doNothing().when(consumer).subscribe(Mockito.anyList());
+    Mockito.doNothing().when(consumer).subscribe(Mockito.anyList(), any());
     when(consumer.poll(0)).thenReturn(null);
   }
 
@@ -0,0 +1,115 @@
+package org.sdase.commons.server.kafka.consumer;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.sdase.commons.server.kafka.consumer.strategies.batch.BatchMLS;
+import org.sdase.commons.server.kafka.consumer.strategies.batch.BatchMLS.BatchErrorMode;
+import org.sdase.commons.server.kafka.consumer.strategies.batch.BatchMLS.BatchScope;
+import org.sdase.commons.server.kafka.prometheus.ConsumerTopicMessageHistogram;
+
+public class BatchStrategyTest {
+
+  private BatchMessageHandler<String, String> handler;
+  private ErrorHandler<String, String> errorHandler;
+  private KafkaConsumer<String, String> consumer;
+  private ConsumerTopicMessageHistogram histogram;
+
+  @SuppressWarnings("unchecked")
+  @Before
+  public void setup() {
+    consumer = Mockito.mock(KafkaConsumer.class);
+    handler = Mockito.mock(BatchMessageHandler.class);
+    errorHandler = Mockito.mock(ErrorHandler.class);
+    histogram = Mockito.mock(ConsumerTopicMessageHistogram.class);
+  }
+
+  @Test
+  public void shouldHandleEachPartitionAsBatchAndCommit() {
+    BatchMLS<String, String> strategy = new BatchMLS<>(handler, errorHandler);
+    strategy.init(histogram);
+
+    strategy.processRecords(TestHelper.createConsumerRecords(5, "topic1", "topic2"), consumer);
+
+    verify(handler, times(2)).handle(argThat(batch -> batch.size() == 5));
+    verify(histogram).observeBatch(eq(5), anyDouble(), any(), eq("topic1"));
+    verify(histogram).observeBatch(eq(5), anyDouble(), any(), eq("topic2"));
+    verify(consumer).commitSync();
+  }
+
+  @Test
+  public void shouldHandleWholePollAsBatch() {
+    BatchMLS<String, String> strategy =
+        new BatchMLS<>(handler, errorHandler, BatchScope.POLL, BatchErrorMode.PER_RECORD);
+    strategy.init(histogram);
+
+    strategy.processRecords(TestHelper.createConsumerRecords(5, "topic1", "topic2"), consumer);
+
+    verify(handler).handle(argThat(batch -> batch.size() == 10));
+    verify(histogram).observeBatch(eq(5), anyDouble(), any(), eq("topic1"));
+    verify(histogram).observeBatch(eq(5), anyDouble(), any(), eq("topic2"));
+    verify(consumer).commitSync();
+  }
+
+  @Test
+  public void shouldFallBackToSingleRecordsIfBatchFails() {
+    doThrow(new RuntimeException("Test"))
+        .when(handler)
+        .handle(argThat(batch -> batch.size() > 1 || "topic2".equals(batch.get(0).topic())));
+    when(errorHandler.handleError(any(), any(), any())).thenReturn(true);
+    BatchMLS<String, String> strategy =
+        new BatchMLS<>(handler, errorHandler, BatchScope.POLL, BatchErrorMode.PER_RECORD);
+    strategy.init(histogram);
+
+    strategy.processRecords(TestHelper.createConsumerRecords(3, "topic1", "topic2"), consumer);
+
+    verify(handler, times(7)).handle(anyList());
+    verify(errorHandler, times(3)).handleError(any(), any(), any());
+    verify(consumer).commitSync();
+  }
+
+  @Test
+  public void shouldCallErrorHandlerOncePerFailedBatch() {
+    doThrow(new RuntimeException("Test")).when(handler).handle(anyList());
+    when(errorHandler.handleError(any(), any(), any())).thenReturn(true);
+    BatchMLS<String, String> strategy =
+        new BatchMLS<>(handler, errorHandler, BatchScope.PARTITION, BatchErrorMode.PER_BATCH);
+    strategy.init(histogram);
+
+    strategy.processRecords(TestHelper.createConsumerRecords(3, "topic1", "topic2"), consumer);
+
+    verify(handler, times(2)).handle(anyList());
+    verify(errorHandler, times(2)).handleError(any(), any(), any());
+    verify(histogram, never()).observeBatch(Mockito.anyInt(), anyDouble(), any(), any());
+    verify(consumer).commitSync();
+  }
+
+  @Test
+  public void shouldStopWithoutCommitIfErrorHandlerReturnsFalse() {
+    doThrow(new RuntimeException("Test")).when(handler).handle(anyList());
+    when(errorHandler.handleError(any(), any(), any())).thenReturn(false);
+    BatchMLS<String, String> strategy =
+        new BatchMLS<>(handler, errorHandler, BatchScope.POLL, BatchErrorMode.PER_BATCH);
+    strategy.init(histogram);
+
+    assertThatThrownBy(
+            () ->
+                strategy.processRecords(
+                    TestHelper.createConsumerRecords(3, "topic1", "topic2"), consumer))
+        .isInstanceOf(StopListenerException.class);
+    verify(consumer, never()).commitSync();
+  }
+}
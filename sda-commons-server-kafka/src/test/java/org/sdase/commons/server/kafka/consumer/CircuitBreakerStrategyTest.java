@@ -0,0 +1,141 @@
+package org.sdase.commons.server.kafka.consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.sdase.commons.server.kafka.consumer.strategies.MessageListenerStrategy;
+import org.sdase.commons.server.kafka.consumer.strategies.circuitbreaker.CircuitBreakerMLS;
+
+public class CircuitBreakerStrategyTest {
+
+  private static final TopicPartition PARTITION_0 = new TopicPartition("topic", 0);
+  private static final TopicPartition PARTITION_1 = new TopicPartition("topic", 1);
+
+  private KafkaConsumer<String, String> consumer;
+  private MessageListenerStrategy<String, String> delegate;
+  private CircuitBreaker circuitBreaker;
+  private CircuitBreakerMLS<String, String> strategy;
+
+  @SuppressWarnings("unchecked")
+  @Before
+  public void setup() {
+    consumer = Mockito.mock(KafkaConsumer.class);
+    delegate = Mockito.mock(MessageListenerStrategy.class);
+    circuitBreaker = CircuitBreaker.ofDefaults("downstream");
+    strategy = new CircuitBreakerMLS<>(circuitBreaker, delegate, 2);
+  }
+
+  @Test
+  public void shouldPassAllRecordsWhileClosed() {
+    ConsumerRecords<String, String> records = records(3, 3);
+
+    strategy.processRecords(records, consumer);
+
+    verify(delegate).processRecords(records, consumer);
+    verify(consumer, never()).seek(any(), anyLong());
+    assertThat(strategy.isSaturated(consumer)).isFalse();
+  }
+
+  @Test
+  public void shouldPassNoRecordsAndSeekBackWhileOpen() {
+    circuitBreaker.transitionToOpenState();
+
+    strategy.processRecords(records(3, 2), consumer);
+
+    assertThat(passedRecords()).isEmpty();
+    verify(consumer).seek(PARTITION_0, 10);
+    verify(consumer).seek(PARTITION_1, 20);
+    assertThat(strategy.isSaturated(consumer)).isTrue();
+  }
+
+  @Test
+  public void shouldPassFirstRecordsWhileHalfOpen() {
+    circuitBreaker.transitionToOpenState();
+    circuitBreaker.transitionToHalfOpenState();
+
+    strategy.processRecords(records(1, 3), consumer);
+
+    List<ConsumerRecord<String, String>> passed = passedRecords();
+    assertThat(passed).hasSize(2);
+    assertThat(strategy.isSaturated(consumer)).isFalse();
+    if (passed.get(0).partition() == 0) {
+      // the only record of partition 0 and the first of partition 1
+      assertThat(passed).extracting(ConsumerRecord::offset).containsExactly(10L, 20L);
+      verify(consumer, never()).seek(eq(PARTITION_0), anyLong());
+      verify(consumer).seek(PARTITION_1, 21);
+    } else {
+      // the first two records of partition 1, partition 0 is not passed
+      assertThat(passed).extracting(ConsumerRecord::offset).containsExactly(20L, 21L);
+      verify(consumer).seek(PARTITION_0, 10);
+      verify(consumer).seek(PARTITION_1, 22);
+    }
+  }
+
+  @Test
+  public void shouldReportSaturationOfDelegate() {
+    when(delegate.isSaturated(consumer)).thenReturn(true);
+
+    assertThat(strategy.isSaturated(consumer)).isTrue();
+  }
+
+  @Test
+  public void shouldResumeWhenClosedAgain() {
+    circuitBreaker.transitionToOpenState();
+    assertThat(strategy.isSaturated(consumer)).isTrue();
+
+    circuitBreaker.transitionToHalfOpenState();
+    circuitBreaker.transitionToClosedState();
+    ConsumerRecords<String, String> records = records(3, 3);
+    strategy.processRecords(records, consumer);
+
+    assertThat(strategy.isSaturated(consumer)).isFalse();
+    verify(delegate).processRecords(records, consumer);
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<ConsumerRecord<String, String>> passedRecords() {
+    ArgumentCaptor<ConsumerRecords<String, String>> captor =
+        ArgumentCaptor.forClass(ConsumerRecords.class);
+    verify(delegate).processRecords(captor.capture(), eq(consumer));
+    List<ConsumerRecord<String, String>> passed = new ArrayList<>();
+    captor.getValue().forEach(passed::add);
+    return passed;
+  }
+
+  /** Creates records of partition 0 starting at offset 10 and partition 1 starting at 20. */
+  private static ConsumerRecords<String, String> records(int countOf0, int countOf1) {
+    Map<TopicPartition, List<ConsumerRecord<String, String>>> records = new HashMap<>();
+    records.put(PARTITION_0, recordsOfPartition(PARTITION_0, 10, countOf0));
+    records.put(PARTITION_1, recordsOfPartition(PARTITION_1, 20, countOf1));
+    return new ConsumerRecords<>(records);
+  }
+
+  private static List<ConsumerRecord<String, String>> recordsOfPartition(
+      TopicPartition partition, long firstOffset, int count) {
+    List<ConsumerRecord<String, String>> records = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      records.add(
+          new ConsumerRecord<>(
+              partition.topic(), partition.partition(), firstOffset + i, "key", "value"));
+    }
+    return records;
+  }
+}
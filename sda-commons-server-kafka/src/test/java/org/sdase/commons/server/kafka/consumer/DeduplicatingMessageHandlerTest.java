@@ -0,0 +1,122 @@
+package org.sdase.commons.server.kafka.consumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DeduplicatingMessageHandlerTest {
+
+  private final AtomicLong nanoTime = new AtomicLong();
+
+  private final List<String> handled = new ArrayList<>();
+
+  private DeduplicationCache cache;
+
+  private DeduplicatingMessageHandler<String, String> handler;
+
+  @Before
+  public void setup() {
+    cache = new DeduplicationCache(100, Duration.ofMinutes(1), nanoTime::get);
+    handler =
+        new DeduplicatingMessageHandler<>(
+            DeduplicatingMessageHandler.byHeader("messageId"),
+            cache,
+            record -> handled.add(record.value()));
+  }
+
+  @Test
+  public void shouldSkipRecordsWithHandledIdentity() {
+    handler.handle(record("topic", "id-1", "first"));
+    handler.handle(record("topic", "id-2", "second"));
+    handler.handle(record("topic", "id-1", "again"));
+
+    assertThat(handled).containsExactly("first", "second");
+    assertThat(cache.getHitCount()).isEqualTo(1);
+    assertThat(cache.getMissCount()).isEqualTo(2);
+    assertThat(cache.getHitRate()).isEqualTo(1.0 / 3);
+  }
+
+  @Test
+  public void shouldHandleRecordAgainIfHandlingFailed() {
+    DeduplicatingMessageHandler<String, String> failingOnce =
+        new DeduplicatingMessageHandler<>(
+            DeduplicatingMessageHandler.byHeader("messageId"),
+            cache,
+            record -> {
+              handled.add(record.value());
+              if (handled.size() == 1) {
+                throw new IllegalStateException("downstream not available");
+              }
+            });
+
+    assertThatThrownBy(() -> failingOnce.handle(record("topic", "id-1", "first")))
+        .isInstanceOf(IllegalStateException.class);
+    failingOnce.handle(record("topic", "id-1", "retry"));
+    failingOnce.handle(record("topic", "id-1", "duplicate"));
+
+    assertThat(handled).containsExactly("first", "retry");
+  }
+
+  @Test
+  public void shouldAlwaysHandleRecordsWithoutIdentity() {
+    handler.handle(record("topic", null, "first"));
+    handler.handle(record("topic", null, "second"));
+
+    assertThat(handled).containsExactly("first", "second");
+    assertThat(cache.size()).isZero();
+  }
+
+  @Test
+  public void shouldDistinguishIdentitiesOfTopics() {
+    handler.handle(record("orders", "id-1", "order"));
+    handler.handle(record("payments", "id-1", "payment"));
+
+    assertThat(handled).containsExactly("order", "payment");
+    assertThat(DeduplicatingMessageHandler.fingerprint("topic", "id-1"))
+        .isEqualTo(DeduplicatingMessageHandler.fingerprint("topic", "id-1".getBytes(UTF_8)));
+  }
+
+  @Test
+  public void shouldExpireFingerprints() {
+    handler.handle(record("topic", "id-1", "first"));
+    nanoTime.addAndGet(Duration.ofSeconds(30).toNanos());
+    handler.handle(record("topic", "id-2", "second"));
+    nanoTime.addAndGet(Duration.ofSeconds(31).toNanos());
+
+    handler.handle(record("topic", "id-1", "expired"));
+    handler.handle(record("topic", "id-2", "duplicate"));
+
+    assertThat(handled).containsExactly("first", "second", "expired");
+  }
+
+  @Test
+  public void shouldKeepMostRecentFingerprintsWhenFull() {
+    long[] fingerprints = new long[1000];
+    for (int i = 0; i < fingerprints.length; i++) {
+      // distinct fingerprints with only four different slots in the table
+      fingerprints[i] = ((long) i << 40) | (i & 3);
+      cache.add(fingerprints[i]);
+    }
+
+    assertThat(cache.size()).isEqualTo(100);
+    for (int i = 0; i < fingerprints.length; i++) {
+      assertThat(cache.contains(fingerprints[i])).as("fingerprint %d", i).isEqualTo(i >= 900);
+    }
+  }
+
+  private static ConsumerRecord<String, String> record(String topic, String id, String value) {
+    ConsumerRecord<String, String> record = new ConsumerRecord<>(topic, 0, 0, "key", value);
+    if (id != null) {
+      record.headers().add("messageId", id.getBytes(UTF_8));
+    }
+    return record;
+  }
+}
@@ -0,0 +1,194 @@
+package org.sdase.commons.server.kafka.consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Headers;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.sdase.commons.server.kafka.consumer.strategies.delayedretry.DelayedRetryMLS;
+import org.sdase.commons.server.kafka.producer.MessageProducer;
+import org.sdase.commons.server.kafka.prometheus.ConsumerTopicMessageHistogram;
+
+public class DelayedRetryStrategyTest {
+
+  private static final TopicPartition PARTITION_0 = new TopicPartition("topic", 0);
+  private static final TopicPartition PARTITION_1 = new TopicPartition("topic", 1);
+
+  private ErrorHandler<String, String> errorHandler;
+  private KafkaConsumer<String, String> consumer;
+  private ConsumerTopicMessageHistogram histogram;
+  private List<Long> handledOfPartition1 = new ArrayList<>();
+
+  /** Fails all records of partition 0 with offset 1. */
+  private MessageHandler<String, String> handler =
+      record -> {
+        if (record.partition() == 0 && record.offset() == 1) {
+          throw new IllegalStateException("Test");
+        }
+        if (record.partition() == 1) {
+          handledOfPartition1.add(record.offset());
+        }
+      };
+
+  @SuppressWarnings("unchecked")
+  @Before
+  public void setup() {
+    consumer = Mockito.mock(KafkaConsumer.class);
+    errorHandler = Mockito.mock(ErrorHandler.class);
+    histogram = Mockito.mock(ConsumerTopicMessageHistogram.class);
+    when(consumer.assignment()).thenReturn(new HashSet<>(Arrays.asList(PARTITION_0, PARTITION_1)));
+  }
+
+  @Test
+  public void shouldPauseOnlyFailedPartitionUntilBackoffExpired() {
+    DelayedRetryMLS<String, String> strategy =
+        DelayedRetryMLS.builder(handler, errorHandler)
+            .withBackoff(Duration.ofMillis(200), Duration.ofSeconds(1), 2)
+            .build();
+    strategy.init(histogram);
+
+    strategy.processRecords(createRecords(0, 3), consumer);
+
+    verify(consumer).seek(PARTITION_0, 1);
+    verify(consumer).pause(Collections.singleton(PARTITION_0));
+    assertThat(handledOfPartition1).containsExactly(0L, 1L, 2L);
+    assertThat(committedOffsets())
+        .containsEntry(PARTITION_0, new OffsetAndMetadata(1))
+        .containsEntry(PARTITION_1, new OffsetAndMetadata(3));
+
+    strategy.processRecords(ConsumerRecords.empty(), consumer);
+    verify(consumer, never()).resume(any());
+
+    await()
+        .untilAsserted(
+            () -> {
+              strategy.processRecords(ConsumerRecords.empty(), consumer);
+              verify(consumer).resume(Collections.singleton(PARTITION_0));
+            });
+    verify(errorHandler, never()).handleError(any(), any(), any());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void shouldForwardRecordAfterMaxRetries() {
+    MessageProducer<String, String> producer = Mockito.mock(MessageProducer.class);
+    when(producer.send(any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+    DelayedRetryMLS<String, String> strategy =
+        DelayedRetryMLS.builder(handler, errorHandler)
+            .withBackoff(Duration.ZERO, Duration.ZERO, 1)
+            .withMaxRetries(2)
+            .forwardFailedRecordsTo(producer)
+            .build();
+    strategy.init(histogram);
+
+    // the initial attempt and two retries
+    strategy.processRecords(createRecords(1, 3), consumer);
+    strategy.processRecords(createRecords(1, 3), consumer);
+    verify(producer, never()).send(any(), any(), any());
+    strategy.processRecords(createRecords(1, 3), consumer);
+
+    ArgumentCaptor<Headers> headers = ArgumentCaptor.forClass(Headers.class);
+    verify(producer).send(eq("key"), eq("value"), headers.capture());
+    assertThat(new String(headers.getValue().lastHeader("retry-source-offset").value()))
+        .isEqualTo("1");
+    assertThat(new String(headers.getValue().lastHeader("retry-exception").value()))
+        .isEqualTo(IllegalStateException.class.getName());
+    assertThat(committedOffsets()).containsEntry(PARTITION_0, new OffsetAndMetadata(3));
+    verify(errorHandler, never()).handleError(any(), any(), any());
+  }
+
+  @Test
+  public void shouldStopIfErrorHandlerReturnsFalseAfterMaxRetries() {
+    when(errorHandler.handleError(any(), any(), any())).thenReturn(false);
+    DelayedRetryMLS<String, String> strategy =
+        DelayedRetryMLS.builder(handler, errorHandler).withMaxRetries(0).build();
+    strategy.init(histogram);
+
+    assertThatThrownBy(() -> strategy.processRecords(createRecords(1, 3), consumer))
+        .isInstanceOf(StopListenerException.class);
+    verify(errorHandler).handleError(any(), any(IllegalStateException.class), eq(consumer));
+    verify(consumer, never()).pause(any());
+  }
+
+  @Test
+  public void shouldCommitOnlyHandledRecordsOnCloseAfterStop() {
+    when(errorHandler.handleError(any(), any(), any())).thenReturn(false);
+    DelayedRetryMLS<String, String> strategy =
+        DelayedRetryMLS.builder(handler, errorHandler).withMaxRetries(0).build();
+    strategy.init(histogram);
+
+    assertThatThrownBy(() -> strategy.processRecords(createRecords(0, 3), consumer))
+        .isInstanceOf(StopListenerException.class);
+    strategy.commitOnClose(consumer);
+
+    // the position of the consumer is behind the records that have not been handled
+    assertThat(committedOffsets()).containsEntry(PARTITION_0, new OffsetAndMetadata(1));
+    verify(consumer, never()).commitSync();
+  }
+
+  @Test
+  public void shouldCommitHandledRecordsOfRevokedPartitions() {
+    DelayedRetryMLS<String, String> strategy =
+        DelayedRetryMLS.builder(handler, errorHandler).build();
+    strategy.init(histogram);
+
+    strategy.processRecords(createRecords(0, 3), consumer);
+    strategy.onPartitionsRevoked(Collections.singleton(PARTITION_1), consumer);
+
+    verify(consumer, Mockito.times(2))
+        .commitSync(Collections.singletonMap(PARTITION_1, new OffsetAndMetadata(3)));
+    verify(consumer).commitSync(Collections.singletonMap(PARTITION_0, new OffsetAndMetadata(1)));
+    verify(consumer, never()).commitSync();
+
+    strategy.commitOnClose(consumer);
+    verify(consumer, Mockito.times(2))
+        .commitSync(Collections.singletonMap(PARTITION_0, new OffsetAndMetadata(1)));
+  }
+
+  @SuppressWarnings("unchecked")
+  private Map<TopicPartition, OffsetAndMetadata> committedOffsets() {
+    ArgumentCaptor<Map<TopicPartition, OffsetAndMetadata>> captor =
+        ArgumentCaptor.forClass(Map.class);
+    verify(consumer, Mockito.atLeast(0)).commitSync(captor.capture());
+    Map<TopicPartition, OffsetAndMetadata> committed = new HashMap<>();
+    captor.getAllValues().forEach(committed::putAll);
+    return committed;
+  }
+
+  /** Creates records of both partitions from the given offset to the given offset (exclusive). */
+  private static ConsumerRecords<String, String> createRecords(long from, long to) {
+    Map<TopicPartition, List<ConsumerRecord<String, String>>> records = new HashMap<>();
+    for (TopicPartition partition : Arrays.asList(PARTITION_0, PARTITION_1)) {
+      List<ConsumerRecord<String, String>> partitionRecords = new ArrayList<>();
+      for (long offset = from; offset < to; offset++) {
+        partitionRecords.add(
+            new ConsumerRecord<>(partition.topic(), partition.partition(), offset, "key", "value"));
+      }
+      records.put(partition, partitionRecords);
+    }
+    return new ConsumerRecords<>(records);
+  }
+}
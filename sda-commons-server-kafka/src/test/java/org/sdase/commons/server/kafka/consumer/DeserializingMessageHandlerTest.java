@@ -0,0 +1,95 @@
+package org.sdase.commons.server.kafka.consumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.junit.Test;
+import org.sdase.commons.server.kafka.serializers.KafkaJsonDeserializer;
+import org.sdase.commons.server.kafka.serializers.SimpleEntity;
+
+public class DeserializingMessageHandlerTest {
+
+  private final List<ConsumerRecord<String, SimpleEntity>> handled = new ArrayList<>();
+
+  @Test
+  public void shouldDeserializeValueWhenHandled() {
+    DeserializingMessageHandler<String, SimpleEntity> handler =
+        new DeserializingMessageHandler<>(
+            new KafkaJsonDeserializer<>(new ObjectMapper(), SimpleEntity.class), handled::add);
+
+    ConsumerRecord<String, byte[]> record = createRecord("{\"name\":\"John\"}");
+    record.headers().add("type", b("created"));
+    handler.handle(record);
+
+    assertThat(handled).hasSize(1);
+    ConsumerRecord<String, SimpleEntity> deserialized = handled.get(0);
+    assertThat(deserialized.value().getName()).isEqualTo("John");
+    assertThat(deserialized.key()).isEqualTo("key");
+    assertThat(deserialized.offset()).isEqualTo(7);
+    assertThat(deserialized.headers().lastHeader("type").value()).isEqualTo(b("created"));
+  }
+
+  @Test
+  public void shouldSkipRecordsBeforeDeserialization() {
+    List<String> deserializedTopics = new ArrayList<>();
+    Deserializer<SimpleEntity> deserializer =
+        new KafkaJsonDeserializer<SimpleEntity>(new ObjectMapper(), SimpleEntity.class) {
+          @Override
+          public SimpleEntity deserialize(String topic, byte[] data) {
+            deserializedTopics.add(topic);
+            return super.deserialize(topic, data);
+          }
+        };
+    DeserializingMessageHandler<String, SimpleEntity> handler =
+        new DeserializingMessageHandler<>(
+            deserializer, RecordFilters.headerEquals("type", "created", "updated"), handled::add);
+
+    ConsumerRecord<String, byte[]> created = createRecord("{\"name\":\"John\"}");
+    created.headers().add("type", b("created"));
+    ConsumerRecord<String, byte[]> deleted = createRecord("not even json");
+    deleted.headers().add("type", b("deleted"));
+    ConsumerRecord<String, byte[]> withoutType = createRecord("not even json");
+
+    handler.handle(created);
+    handler.handle(deleted);
+    handler.handle(withoutType);
+
+    assertThat(handled).extracting(r -> r.value().getName()).containsExactly("John");
+    assertThat(deserializedTopics).hasSize(1);
+  }
+
+  @Test
+  public void shouldThrowSerializationExceptionForInvalidValue() {
+    DeserializingMessageHandler<String, SimpleEntity> handler =
+        new DeserializingMessageHandler<>(
+            new KafkaJsonDeserializer<>(new ObjectMapper(), SimpleEntity.class), handled::add);
+
+    assertThatThrownBy(() -> handler.handle(createRecord("{")))
+        .isInstanceOf(SerializationException.class);
+    assertThat(handled).isEmpty();
+  }
+
+  @Test
+  public void shouldFilterByHeaderPresence() {
+    ConsumerRecord<String, byte[]> record = createRecord("{}");
+
+    assertThat(RecordFilters.<String, byte[]>hasHeader("type").test(record)).isFalse();
+    record.headers().add("type", b("any"));
+    assertThat(RecordFilters.<String, byte[]>hasHeader("type").test(record)).isTrue();
+  }
+
+  private static ConsumerRecord<String, byte[]> createRecord(String value) {
+    return new ConsumerRecord<>("topic", 0, 7, "key", b(value));
+  }
+
+  private static byte[] b(String value) {
+    return value.getBytes(UTF_8);
+  }
+}
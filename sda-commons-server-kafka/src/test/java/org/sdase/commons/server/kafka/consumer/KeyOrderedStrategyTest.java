@@ -0,0 +1,138 @@
+package org.sdase.commons.server.kafka.consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.sdase.commons.server.kafka.consumer.strategies.AsyncMessageListenerStrategy.LaneStatistics;
+import org.sdase.commons.server.kafka.consumer.strategies.keyordered.KeyOrderedMLS;
+import org.sdase.commons.server.kafka.prometheus.ConsumerTopicMessageHistogram;
+
+public class KeyOrderedStrategyTest {
+
+  private static final TopicPartition PARTITION_0 = new TopicPartition("topic", 0);
+
+  private ErrorHandler<String, String> errorHandler;
+  private KafkaConsumer<String, String> consumer;
+  private ConsumerTopicMessageHistogram histogram;
+
+  @SuppressWarnings("unchecked")
+  @Before
+  public void setup() {
+    consumer = Mockito.mock(KafkaConsumer.class);
+    errorHandler = Mockito.mock(ErrorHandler.class);
+    histogram = Mockito.mock(ConsumerTopicMessageHistogram.class);
+    when(consumer.assignment()).thenReturn(Collections.singleton(PARTITION_0));
+  }
+
+  @Test
+  public void shouldKeepOrderPerKeyAndCommitOnClose() {
+    Map<String, List<Long>> handled = new HashMap<>();
+    MessageHandler<String, String> handler =
+        record -> {
+          synchronized (handled) {
+            handled.computeIfAbsent(record.key(), k -> new ArrayList<>()).add(record.offset());
+          }
+        };
+    KeyOrderedMLS<String, String> strategy = new KeyOrderedMLS<>(handler, errorHandler, 4, 100);
+    strategy.init(histogram);
+
+    strategy.processRecords(createRecords("a", "b", "c", "a", "b", "c", "a", "b", "c"), consumer);
+    strategy.commitOnClose(consumer);
+
+    assertThat(handled.get("a")).containsExactly(0L, 3L, 6L);
+    assertThat(handled.get("b")).containsExactly(1L, 4L, 7L);
+    assertThat(handled.get("c")).containsExactly(2L, 5L, 8L);
+    verify(consumer).commitSync(Collections.singletonMap(PARTITION_0, new OffsetAndMetadata(9)));
+  }
+
+  @Test
+  public void shouldNotCommitBeyondRecordInProgress() throws InterruptedException {
+    CountDownLatch blocked = new CountDownLatch(1);
+    CountDownLatch othersHandled = new CountDownLatch(2);
+    MessageHandler<String, String> handler =
+        record -> {
+          if ("slow".equals(record.key())) {
+            awaitLatch(blocked);
+          } else {
+            othersHandled.countDown();
+          }
+        };
+    KeyOrderedMLS<String, String> strategy = new KeyOrderedMLS<>(handler, errorHandler, 2, 100);
+    strategy.init(histogram);
+
+    // "slow" and "fast" are assigned to different lanes
+    strategy.processRecords(createRecords("slow", "fast", "fast"), consumer);
+    assertThat(othersHandled.await(5, TimeUnit.SECONDS)).isTrue();
+    strategy.processRecords(ConsumerRecords.empty(), consumer);
+
+    assertThat(committedOffsets()).doesNotContainKey(PARTITION_0);
+    await()
+        .untilAsserted(
+            () ->
+                assertThat(strategy.getLaneStatistics(consumer))
+                    .extracting(LaneStatistics::getInFlightRecords)
+                    .containsExactlyInAnyOrder(1, 0));
+
+    blocked.countDown();
+    await()
+        .untilAsserted(
+            () -> {
+              strategy.processRecords(ConsumerRecords.empty(), consumer);
+              assertThat(committedOffsets()).containsEntry(PARTITION_0, new OffsetAndMetadata(3));
+            });
+    strategy.commitOnClose(consumer);
+  }
+
+  @Test
+  public void shouldProvideNoLaneStatisticsForUnknownConsumer() {
+    KeyOrderedMLS<String, String> strategy =
+        new KeyOrderedMLS<>(record -> {}, errorHandler, 2, 100);
+
+    assertThat(strategy.getLaneStatistics(consumer)).isEmpty();
+  }
+
+  private static void awaitLatch(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private Map<TopicPartition, OffsetAndMetadata> committedOffsets() {
+    ArgumentCaptor<Map<TopicPartition, OffsetAndMetadata>> captor =
+        ArgumentCaptor.forClass(Map.class);
+    verify(consumer, Mockito.atLeast(0)).commitSync(captor.capture());
+    Map<TopicPartition, OffsetAndMetadata> committed = new HashMap<>();
+    captor.getAllValues().forEach(committed::putAll);
+    return committed;
+  }
+
+  private static ConsumerRecords<String, String> createRecords(String... keys) {
+    List<ConsumerRecord<String, String>> records = new ArrayList<>();
+    for (int i = 0; i < keys.length; i++) {
+      records.add(
+          new ConsumerRecord<>(PARTITION_0.topic(), PARTITION_0.partition(), i, keys[i], "value"));
+    }
+    return new ConsumerRecords<>(Collections.singletonMap(PARTITION_0, records));
+  }
+}
@@ -0,0 +1,107 @@
+package org.sdase.commons.server.kafka.consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.sdase.commons.server.kafka.config.ListenerConfig;
+import org.sdase.commons.server.kafka.consumer.strategies.MessageListenerStrategy;
+
+public class MessageListenerBackpressureTest {
+
+  private static final TopicPartition PARTITION_0 = new TopicPartition("topic", 0);
+  private static final TopicPartition PARTITION_1 = new TopicPartition("topic", 1);
+
+  private KafkaConsumer<String, String> consumer;
+  private MessageListenerStrategy<String, String> strategy;
+  private MessageListener<String, String> listener;
+  private Set<TopicPartition> paused = new HashSet<>();
+  private List<Integer> pausedPerPoll = new ArrayList<>();
+
+  @SuppressWarnings("unchecked")
+  @Before
+  public void setup() {
+    consumer = Mockito.mock(KafkaConsumer.class);
+    strategy = Mockito.mock(MessageListenerStrategy.class);
+    when(consumer.assignment()).thenReturn(new HashSet<>(Arrays.asList(PARTITION_0, PARTITION_1)));
+    when(consumer.paused()).thenAnswer(invocation -> new HashSet<>(paused));
+    doAnswer(invocation -> paused.addAll(invocation.getArgument(0)))
+        .when(consumer)
+        .pause(anyCollection());
+    doAnswer(invocation -> paused.removeAll(invocation.<Collection<?>>getArgument(0)))
+        .when(consumer)
+        .resume(anyCollection());
+
+    ListenerConfig listenerConfig = ListenerConfig.builder().withTopicMissingRetryMs(0).build(1);
+    listener =
+        new MessageListener<>(
+            Collections.singletonList("topic"), consumer, listenerConfig, strategy);
+  }
+
+  @Test
+  public void shouldPauseWhileStrategyIsSaturatedAndKeepPolling() {
+    when(strategy.isSaturated(consumer)).thenReturn(true, true, false, false);
+    stopAfterPolls(4);
+
+    listener.run();
+
+    // the state after the previous poll is visible in the next poll
+    assertThat(pausedPerPoll).containsExactly(0, 2, 2, 0);
+    assertThat(listener.getPausedPartitionCount()).isZero();
+    verify(consumer).pause(new HashSet<>(Arrays.asList(PARTITION_0, PARTITION_1)));
+    verify(consumer).resume(new HashSet<>(Arrays.asList(PARTITION_0, PARTITION_1)));
+  }
+
+  @Test
+  public void shouldNotResumePartitionsPausedByOthers() {
+    paused.add(PARTITION_1);
+    when(strategy.isSaturated(consumer)).thenReturn(true, false);
+    stopAfterPolls(2);
+
+    listener.run();
+
+    verify(consumer).pause(Collections.singleton(PARTITION_0));
+    verify(consumer).resume(Collections.singleton(PARTITION_0));
+    assertThat(listener.getPausedPartitionCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldNotPauseIfStrategyIsNotSaturated() {
+    stopAfterPolls(3);
+
+    listener.run();
+
+    verify(consumer, never()).pause(any());
+    verify(consumer, never()).resume(any());
+  }
+
+  private void stopAfterPolls(int polls) {
+    when(consumer.poll(anyLong()))
+        .thenAnswer(
+            invocation -> {
+              pausedPerPoll.add(listener.getPausedPartitionCount());
+              if (pausedPerPoll.size() >= polls) {
+                listener.stopConsumer();
+              }
+              return ConsumerRecords.empty();
+            });
+  }
+}
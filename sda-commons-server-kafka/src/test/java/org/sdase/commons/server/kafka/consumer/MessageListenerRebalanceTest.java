@@ -0,0 +1,129 @@
+package org.sdase.commons.server.kafka.consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.sdase.commons.server.kafka.config.ListenerConfig;
+import org.sdase.commons.server.kafka.consumer.strategies.MessageListenerStrategy;
+import org.sdase.commons.server.kafka.prometheus.ConsumerCommitMetrics;
+
+public class MessageListenerRebalanceTest {
+
+  private static final TopicPartition PARTITION_0 = new TopicPartition("topic", 0);
+  private static final TopicPartition PARTITION_1 = new TopicPartition("topic", 1);
+  private static final List<TopicPartition> PARTITIONS = Arrays.asList(PARTITION_0, PARTITION_1);
+
+  private KafkaConsumer<String, String> consumer;
+  private MessageListenerStrategy<String, String> strategy;
+  private ConsumerRebalanceListener userListener;
+  private MessageListener<String, String> listener;
+  private ConsumerRebalanceListener subscribedListener;
+
+  @SuppressWarnings("unchecked")
+  @Before
+  public void setup() {
+    consumer = Mockito.mock(KafkaConsumer.class);
+    strategy = Mockito.mock(MessageListenerStrategy.class);
+    userListener = Mockito.mock(ConsumerRebalanceListener.class);
+
+    ListenerConfig listenerConfig = ListenerConfig.builder().withTopicMissingRetryMs(0).build(1);
+    listener =
+        new MessageListener<>(
+            Collections.singletonList("topic"), consumer, listenerConfig, strategy, userListener);
+
+    ArgumentCaptor<ConsumerRebalanceListener> captor =
+        ArgumentCaptor.forClass(ConsumerRebalanceListener.class);
+    verify(consumer).subscribe(anyCollection(), captor.capture());
+    subscribedListener = captor.getValue();
+  }
+
+  @Test
+  public void shouldNotifyStrategyBeforeRebalanceListener() {
+    subscribedListener.onPartitionsRevoked(PARTITIONS);
+    subscribedListener.onPartitionsAssigned(PARTITIONS);
+
+    InOrder inOrder = inOrder(strategy, userListener);
+    inOrder.verify(strategy).onPartitionsRevoked(PARTITIONS, consumer);
+    inOrder.verify(userListener).onPartitionsRevoked(PARTITIONS);
+    inOrder.verify(strategy).onPartitionsAssigned(PARTITIONS, consumer);
+    inOrder.verify(userListener).onPartitionsAssigned(PARTITIONS);
+  }
+
+  @Test
+  public void shouldTrackDurationOfRebalances() {
+    subscribedListener.onPartitionsRevoked(Collections.emptyList());
+    subscribedListener.onPartitionsAssigned(PARTITIONS);
+    subscribedListener.onPartitionsRevoked(PARTITIONS);
+    subscribedListener.onPartitionsAssigned(Collections.singletonList(PARTITION_0));
+
+    assertThat(listener.getRebalanceCount()).isEqualTo(2);
+    assertThat(listener.getRebalanceNanos()).isPositive();
+  }
+
+  @Test
+  public void shouldCountRecordsNotCommittedWhenRevoked() {
+    ConsumerCommitMetrics commitMetrics = Mockito.mock(ConsumerCommitMetrics.class);
+    when(strategy.getConsumerCommitMetrics()).thenReturn(commitMetrics);
+    when(commitMetrics.getCommittedOffset(any(), eq(PARTITION_0))).thenReturn(10L);
+    when(commitMetrics.getCommittedOffset(any(), eq(PARTITION_1))).thenReturn(null);
+    when(consumer.position(PARTITION_0)).thenReturn(13L);
+
+    subscribedListener.onPartitionsRevoked(PARTITIONS);
+
+    assertThat(listener.getUncommittedRevokedRecords()).isEqualTo(3);
+    verify(consumer, never()).position(PARTITION_1);
+    verify(commitMetrics).removeCommittedOffsets(any(), eq(PARTITIONS));
+    verify(consumer, never()).committed(any(TopicPartition.class));
+  }
+
+  @Test
+  public void shouldNotCountRecordsIfStrategyDoesNotReportCommits() {
+    subscribedListener.onPartitionsRevoked(PARTITIONS);
+
+    assertThat(listener.getUncommittedRevokedRecords()).isZero();
+    verify(consumer, never()).committed(any(TopicPartition.class));
+    verify(consumer, never()).position(any(TopicPartition.class));
+  }
+
+  @Test
+  public void shouldNotCountRecordsOnInitialJoin() {
+    subscribedListener.onPartitionsRevoked(Collections.emptyList());
+
+    assertThat(listener.getUncommittedRevokedRecords()).isZero();
+    verify(consumer, never()).committed(any(TopicPartition.class));
+  }
+
+  @Test
+  public void shouldWorkWithoutRebalanceListener() {
+    ListenerConfig listenerConfig = ListenerConfig.builder().withTopicMissingRetryMs(0).build(1);
+    MessageListener<String, String> withoutListener =
+        new MessageListener<>(
+            Collections.singletonList("topic"), consumer, listenerConfig, strategy);
+    ArgumentCaptor<ConsumerRebalanceListener> captor =
+        ArgumentCaptor.forClass(ConsumerRebalanceListener.class);
+    verify(consumer, Mockito.times(2)).subscribe(anyCollection(), captor.capture());
+
+    captor.getValue().onPartitionsRevoked(PARTITIONS);
+    captor.getValue().onPartitionsAssigned(PARTITIONS);
+
+    assertThat(withoutListener.getRebalanceCount()).isEqualTo(1);
+    verify(strategy).onPartitionsAssigned(PARTITIONS, consumer);
+  }
+}
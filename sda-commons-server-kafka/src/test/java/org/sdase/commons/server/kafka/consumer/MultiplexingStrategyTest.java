@@ -0,0 +1,312 @@
+package org.sdase.commons.server.kafka.consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetCommitCallback;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.LongDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.sdase.commons.server.kafka.consumer.strategies.MessageListenerStrategy;
+import org.sdase.commons.server.kafka.consumer.strategies.asynccommit.AsyncCommitMLS;
+import org.sdase.commons.server.kafka.consumer.strategies.multiplexing.MultiplexingMLS;
+import org.sdase.commons.server.kafka.consumer.strategies.multiplexing.MultiplexingMLS.Route;
+import org.sdase.commons.server.kafka.consumer.strategies.synccommit.SyncCommitMLS;
+import org.sdase.commons.server.kafka.exception.ConfigurationException;
+import org.sdase.commons.server.kafka.prometheus.ConsumerTopicMessageHistogram;
+
+public class MultiplexingStrategyTest {
+
+  private static final TopicPartition LONG_PARTITION = new TopicPartition("long", 0);
+  private static final TopicPartition STRING_PARTITION = new TopicPartition("string", 0);
+
+  private KafkaConsumer<byte[], byte[]> consumer;
+  private MessageListenerStrategy<Long, String> longStrategy;
+  private MessageListenerStrategy<String, String> stringStrategy;
+  private ConsumerRebalanceListener stringRebalanceListener;
+  private MultiplexingMLS strategy;
+
+  @SuppressWarnings("unchecked")
+  @Before
+  public void setup() {
+    consumer = Mockito.mock(KafkaConsumer.class);
+    longStrategy = Mockito.mock(MessageListenerStrategy.class);
+    stringStrategy = Mockito.mock(MessageListenerStrategy.class);
+    stringRebalanceListener = Mockito.mock(ConsumerRebalanceListener.class);
+    strategy =
+        new MultiplexingMLS(
+            Arrays.asList(
+                new Route<>(
+                    Collections.singletonList("long"),
+                    new LongDeserializer(),
+                    new StringDeserializer(),
+                    longStrategy,
+                    null),
+                new Route<>(
+                    Collections.singletonList("string"),
+                    new StringDeserializer(),
+                    new StringDeserializer(),
+                    stringStrategy,
+                    stringRebalanceListener)));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void shouldDispatchDeserializedRecordsByTopic() {
+    Map<TopicPartition, List<ConsumerRecord<byte[], byte[]>>> records = new HashMap<>();
+    records.put(
+        LONG_PARTITION,
+        Collections.singletonList(record(LONG_PARTITION, 3, longBytes(42L), bytes("value"))));
+    records.put(
+        STRING_PARTITION,
+        Collections.singletonList(record(STRING_PARTITION, 7, bytes("key"), bytes("other"))));
+
+    strategy.processRecords(new ConsumerRecords<>(records), consumer);
+
+    ArgumentCaptor<ConsumerRecords<Long, String>> longRecords =
+        ArgumentCaptor.forClass(ConsumerRecords.class);
+    verify(longStrategy).processRecords(longRecords.capture(), any());
+    assertThat(longRecords.getValue())
+        .extracting(ConsumerRecord::topic, ConsumerRecord::offset, ConsumerRecord::key)
+        .containsExactly(tuple("long", 3L, 42L));
+
+    ArgumentCaptor<ConsumerRecords<String, String>> stringRecords =
+        ArgumentCaptor.forClass(ConsumerRecords.class);
+    verify(stringStrategy).processRecords(stringRecords.capture(), any());
+    assertThat(stringRecords.getValue())
+        .extracting(ConsumerRecord::key, ConsumerRecord::value)
+        .containsExactly(tuple("key", "other"));
+  }
+
+  @Test
+  public void shouldInvokeAllStrategiesInEachPoll() {
+    strategy.processRecords(
+        new ConsumerRecords<>(
+            Collections.singletonMap(
+                STRING_PARTITION,
+                Collections.singletonList(
+                    record(STRING_PARTITION, 0, bytes("key"), bytes("value"))))),
+        consumer);
+
+    // strategies may commit or resume partitions in polls without records
+    verify(longStrategy).processRecords(eq(ConsumerRecords.empty()), any());
+  }
+
+  @Test
+  public void shouldSeekBackAllPartitionsIfRecordCannotBeDeserialized() {
+    Map<TopicPartition, List<ConsumerRecord<byte[], byte[]>>> records = new HashMap<>();
+    records.put(
+        LONG_PARTITION,
+        Collections.singletonList(record(LONG_PARTITION, 3, bytes("no long"), bytes("value"))));
+    records.put(
+        STRING_PARTITION,
+        Collections.singletonList(record(STRING_PARTITION, 7, bytes("key"), bytes("other"))));
+    ConsumerRecords<byte[], byte[]> consumerRecords = new ConsumerRecords<>(records);
+
+    assertThatThrownBy(() -> strategy.processRecords(consumerRecords, consumer))
+        .isInstanceOf(SerializationException.class)
+        .hasMessageContaining("long-0")
+        .hasMessageContaining("offset 3");
+
+    verify(consumer).seek(LONG_PARTITION, 3);
+    verify(consumer).seek(STRING_PARTITION, 7);
+    verify(longStrategy, never()).processRecords(any(), any());
+    verify(stringStrategy, never()).processRecords(any(), any());
+  }
+
+  @Test
+  public void shouldProcessOtherRoutesIfRouteFails() {
+    Map<TopicPartition, List<ConsumerRecord<byte[], byte[]>>> records = new HashMap<>();
+    records.put(
+        LONG_PARTITION,
+        Arrays.asList(
+            record(LONG_PARTITION, 3, longBytes(42L), bytes("value")),
+            record(LONG_PARTITION, 4, longBytes(43L), bytes("value"))));
+    records.put(
+        STRING_PARTITION,
+        Collections.singletonList(record(STRING_PARTITION, 7, bytes("key"), bytes("other"))));
+    ConsumerRecords<byte[], byte[]> consumerRecords = new ConsumerRecords<>(records);
+    IllegalStateException failure = new IllegalStateException();
+    Mockito.doThrow(failure).when(longStrategy).processRecords(any(), any());
+
+    assertThatThrownBy(() -> strategy.processRecords(consumerRecords, consumer)).isSameAs(failure);
+
+    verify(stringStrategy)
+        .processRecords(Mockito.argThat(stringRecords -> stringRecords.count() == 1), any());
+    verify(consumer).seek(LONG_PARTITION, 3);
+    verify(consumer, never()).seek(eq(STRING_PARTITION), Mockito.anyLong());
+  }
+
+  @Test
+  public void shouldRethrowStopListenerExceptionOfAnyRoute() {
+    Mockito.doThrow(new IllegalStateException()).when(longStrategy).processRecords(any(), any());
+    Mockito.doThrow(new StopListenerException(new IllegalStateException()))
+        .when(stringStrategy)
+        .processRecords(any(), any());
+
+    assertThatThrownBy(() -> strategy.processRecords(ConsumerRecords.empty(), consumer))
+        .isInstanceOf(StopListenerException.class);
+  }
+
+  @Test
+  public void shouldDispatchRebalancesWithPartitionsOfRoute() {
+    List<TopicPartition> partitions = Arrays.asList(LONG_PARTITION, STRING_PARTITION);
+
+    strategy.onPartitionsRevoked(partitions, consumer);
+    strategy.onPartitionsAssigned(partitions, consumer);
+
+    verify(longStrategy).onPartitionsRevoked(eq(Collections.singletonList(LONG_PARTITION)), any());
+    verify(stringStrategy)
+        .onPartitionsRevoked(eq(Collections.singletonList(STRING_PARTITION)), any());
+    verify(stringRebalanceListener)
+        .onPartitionsRevoked(Collections.singletonList(STRING_PARTITION));
+    verify(longStrategy).onPartitionsAssigned(eq(Collections.singletonList(LONG_PARTITION)), any());
+    verify(stringRebalanceListener)
+        .onPartitionsAssigned(Collections.singletonList(STRING_PARTITION));
+  }
+
+  @Test
+  public void shouldBeSaturatedIfAnyStrategyIsSaturated() {
+    assertThat(strategy.isSaturated(consumer)).isFalse();
+
+    when(stringStrategy.isSaturated(any())).thenReturn(true);
+
+    assertThat(strategy.isSaturated(consumer)).isTrue();
+  }
+
+  @Test
+  public void shouldLimitCommitsWithoutOffsetsToPartitionsOfRoute() {
+    MultiplexingMLS committingStrategy =
+        new MultiplexingMLS(
+            Arrays.asList(
+                new Route<>(
+                    Collections.singletonList("long"),
+                    new LongDeserializer(),
+                    new StringDeserializer(),
+                    new SyncCommitMLS<>(record -> {}, (record, e, c) -> true),
+                    null),
+                new Route<>(
+                    Collections.singletonList("string"),
+                    new StringDeserializer(),
+                    new StringDeserializer(),
+                    new AsyncCommitMLS<>(
+                        record -> {}, (record, e, c) -> true, Integer.MAX_VALUE, Long.MAX_VALUE),
+                    null)));
+    committingStrategy.init(Mockito.mock(ConsumerTopicMessageHistogram.class));
+    when(consumer.assignment())
+        .thenReturn(new HashSet<>(Arrays.asList(LONG_PARTITION, STRING_PARTITION)));
+    when(consumer.position(LONG_PARTITION)).thenReturn(4L);
+    when(consumer.position(STRING_PARTITION)).thenReturn(8L);
+    Map<TopicPartition, List<ConsumerRecord<byte[], byte[]>>> records = new HashMap<>();
+    records.put(
+        LONG_PARTITION,
+        Collections.singletonList(record(LONG_PARTITION, 3, longBytes(42L), bytes("value"))));
+    records.put(
+        STRING_PARTITION,
+        Collections.singletonList(record(STRING_PARTITION, 7, bytes("key"), bytes("other"))));
+
+    committingStrategy.processRecords(new ConsumerRecords<>(records), consumer);
+
+    verify(consumer)
+        .commitSync(Collections.singletonMap(LONG_PARTITION, new OffsetAndMetadata(4L)));
+    verify(consumer)
+        .commitAsync(
+            eq(Collections.singletonMap(STRING_PARTITION, new OffsetAndMetadata(8L))), any());
+    verify(consumer, never()).commitSync();
+    verify(consumer, never()).commitAsync(any(OffsetCommitCallback.class));
+  }
+
+  @Test
+  public void shouldCommitAllStrategiesOnCloseEvenIfOneFails() {
+    Mockito.doThrow(new IllegalStateException()).when(longStrategy).commitOnClose(any());
+
+    strategy.commitOnClose(consumer);
+
+    verify(stringStrategy).commitOnClose(any());
+  }
+
+  @Test
+  public void shouldMergeForcedConfig() {
+    when(longStrategy.forcedConfigToApply())
+        .thenReturn(Collections.singletonMap(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false"));
+    when(stringStrategy.forcedConfigToApply())
+        .thenReturn(
+            Collections.singletonMap(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed"));
+
+    assertThat(strategy.forcedConfigToApply())
+        .containsEntry(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false")
+        .containsEntry(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+  }
+
+  @Test
+  public void shouldRejectConflictingForcedConfig() {
+    when(longStrategy.forcedConfigToApply())
+        .thenReturn(Collections.singletonMap(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false"));
+    when(stringStrategy.forcedConfigToApply())
+        .thenReturn(Collections.singletonMap(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "true"));
+
+    assertThatThrownBy(() -> strategy.forcedConfigToApply())
+        .isInstanceOf(ConfigurationException.class);
+  }
+
+  @Test
+  public void shouldRejectTopicInMultipleRoutes() {
+    List<Route<?, ?>> routes = new ArrayList<>();
+    routes.add(
+        new Route<>(
+            Collections.singletonList("string"),
+            new StringDeserializer(),
+            new StringDeserializer(),
+            stringStrategy,
+            null));
+    routes.add(
+        new Route<>(
+            Collections.singletonList("string"),
+            new LongDeserializer(),
+            new StringDeserializer(),
+            longStrategy,
+            null));
+
+    assertThatThrownBy(() -> new MultiplexingMLS(routes))
+        .isInstanceOf(ConfigurationException.class);
+  }
+
+  private static ConsumerRecord<byte[], byte[]> record(
+      TopicPartition partition, long offset, byte[] key, byte[] value) {
+    return new ConsumerRecord<>(partition.topic(), partition.partition(), offset, key, value);
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] longBytes(long value) {
+    return ByteBuffer.allocate(Long.BYTES).putLong(value).array();
+  }
+}
@@ -0,0 +1,287 @@
+package org.sdase.commons.server.kafka.consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.sdase.commons.server.kafka.consumer.strategies.VirtualThreads;
+import org.sdase.commons.server.kafka.consumer.strategies.parallelpartition.ParallelPartitionMLS;
+import org.sdase.commons.server.kafka.exception.ConfigurationException;
+import org.sdase.commons.server.kafka.prometheus.ConsumerTopicMessageHistogram;
+
+public class ParallelPartitionStrategyTest {
+
+  private static final TopicPartition PARTITION_0 = new TopicPartition("topic", 0);
+  private static final TopicPartition PARTITION_1 = new TopicPartition("topic", 1);
+
+  private ErrorHandler<String, String> errorHandler;
+  private KafkaConsumer<String, String> consumer;
+  private ConsumerTopicMessageHistogram histogram;
+
+  @SuppressWarnings("unchecked")
+  @Before
+  public void setup() {
+    consumer = Mockito.mock(KafkaConsumer.class);
+    errorHandler = Mockito.mock(ErrorHandler.class);
+    histogram = Mockito.mock(ConsumerTopicMessageHistogram.class);
+    when(consumer.assignment()).thenReturn(new HashSet<>(Arrays.asList(PARTITION_0, PARTITION_1)));
+  }
+
+  @Test
+  public void shouldKeepOrderWithinPartitionAndCommitOnClose() {
+    Map<Integer, List<Long>> handled = new HashMap<>();
+    MessageHandler<String, String> handler =
+        record -> {
+          synchronized (handled) {
+            handled
+                .computeIfAbsent(record.partition(), p -> new ArrayList<>())
+                .add(record.offset());
+          }
+        };
+    ParallelPartitionMLS<String, String> strategy =
+        new ParallelPartitionMLS<>(handler, errorHandler, 2, 100);
+    strategy.init(histogram);
+
+    strategy.processRecords(createRecords(10), consumer);
+    strategy.commitOnClose(consumer);
+
+    assertThat(handled.get(0)).containsExactly(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L);
+    assertThat(handled.get(1)).containsExactly(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L);
+    assertThat(committedOffsets())
+        .containsEntry(PARTITION_0, new OffsetAndMetadata(10))
+        .containsEntry(PARTITION_1, new OffsetAndMetadata(10));
+  }
+
+  @Test
+  public void shouldCommitCompletedOffsetsInNextPoll() {
+    ParallelPartitionMLS<String, String> strategy =
+        new ParallelPartitionMLS<>(record -> {}, errorHandler, 2, 100);
+    strategy.init(histogram);
+
+    strategy.processRecords(createRecords(5), consumer);
+
+    await()
+        .untilAsserted(
+            () -> {
+              strategy.processRecords(ConsumerRecords.empty(), consumer);
+              assertThat(committedOffsets())
+                  .containsEntry(PARTITION_0, new OffsetAndMetadata(5))
+                  .containsEntry(PARTITION_1, new OffsetAndMetadata(5));
+            });
+    strategy.commitOnClose(consumer);
+  }
+
+  @Test
+  public void shouldCommitCompletedOffsetsWhenPartitionsAreRevoked() {
+    ParallelPartitionMLS<String, String> strategy =
+        new ParallelPartitionMLS<>(record -> {}, errorHandler, 2, 100);
+    strategy.init(histogram);
+
+    strategy.processRecords(createRecords(5), consumer);
+
+    await()
+        .untilAsserted(
+            // the handling time is observed after a record is completed
+            () -> verify(histogram, Mockito.times(10)).observe(anyDouble(), any(), any()));
+    strategy.onPartitionsRevoked(Collections.singletonList(PARTITION_0), consumer);
+
+    // all completed offsets are committed, the partitions that are kept as well
+    assertThat(committedOffsets())
+        .containsEntry(PARTITION_0, new OffsetAndMetadata(5))
+        .containsEntry(PARTITION_1, new OffsetAndMetadata(5));
+    strategy.commitOnClose(consumer);
+  }
+
+  @Test
+  public void shouldKeepOrderIfPartitionIsAssignedAgainWhileRecordsAreInProgress() {
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicBoolean blocked = new AtomicBoolean();
+    Map<Integer, List<Long>> handled = new HashMap<>();
+    MessageHandler<String, String> handler =
+        record -> {
+          if (record.partition() == 0 && blocked.compareAndSet(false, true)) {
+            try {
+              release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          }
+          synchronized (handled) {
+            handled
+                .computeIfAbsent(record.partition(), p -> new ArrayList<>())
+                .add(record.offset());
+          }
+        };
+    ParallelPartitionMLS<String, String> strategy =
+        new ParallelPartitionMLS<>(handler, errorHandler, 3, 100);
+    strategy.init(histogram);
+
+    strategy.processRecords(createRecords(1), consumer);
+    await().until(blocked::get);
+    // the executor of the idle partition 1 is removed, the one of the busy partition 0 is kept
+    strategy.onPartitionsRevoked(Arrays.asList(PARTITION_0, PARTITION_1), consumer);
+    strategy.processRecords(createRecords(3), consumer);
+    await()
+        .untilAsserted(
+            () -> {
+              synchronized (handled) {
+                assertThat(handled.get(1)).containsExactly(0L, 0L, 1L, 2L);
+              }
+            });
+    release.countDown();
+
+    await()
+        .untilAsserted(
+            () -> {
+              synchronized (handled) {
+                assertThat(handled.get(0)).containsExactly(0L, 0L, 1L, 2L);
+              }
+            });
+    strategy.commitOnClose(consumer);
+  }
+
+  @Test
+  public void shouldSeekBehindFailedRecordIfErrorHandlerContinues() {
+    MessageHandler<String, String> handler =
+        record -> {
+          if (record.partition() == 0 && record.offset() == 2) {
+            throw new IllegalStateException("Test");
+          }
+        };
+    when(errorHandler.handleError(any(), any(), any())).thenReturn(true);
+    ParallelPartitionMLS<String, String> strategy =
+        new ParallelPartitionMLS<>(handler, errorHandler, 2, 100);
+    strategy.init(histogram);
+
+    strategy.processRecords(createRecords(5), consumer);
+
+    await()
+        .untilAsserted(
+            () -> {
+              strategy.processRecords(ConsumerRecords.empty(), consumer);
+              verify(consumer).seek(PARTITION_0, 3);
+            });
+    verify(errorHandler).handleError(any(), any(IllegalStateException.class), eq(consumer));
+    verify(consumer, never()).seek(eq(PARTITION_1), Mockito.anyLong());
+    strategy.commitOnClose(consumer);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void shouldStopIfErrorHandlerReturnsFalse() {
+    MessageHandler<String, String> handler = Mockito.mock(MessageHandler.class);
+    doThrow(new IllegalStateException("Test")).when(handler).handle(any());
+    when(errorHandler.handleError(any(), any(), any())).thenReturn(false);
+    ParallelPartitionMLS<String, String> strategy =
+        new ParallelPartitionMLS<>(handler, errorHandler, 2, 100);
+    strategy.init(histogram);
+
+    strategy.processRecords(createRecords(1), consumer);
+
+    await()
+        .untilAsserted(
+            () ->
+                assertThatThrownBy(() -> strategy.processRecords(ConsumerRecords.empty(), consumer))
+                    .isInstanceOf(StopListenerException.class));
+    strategy.commitOnClose(consumer);
+    verify(consumer, never()).commitSync(Mockito.anyMap());
+  }
+
+  @Test
+  public void shouldBeSaturatedUntilHalfOfTheRecordsAreProcessed() {
+    CountDownLatch release = new CountDownLatch(1);
+    MessageHandler<String, String> handler =
+        record -> {
+          try {
+            release.await(5, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        };
+    ParallelPartitionMLS<String, String> strategy =
+        new ParallelPartitionMLS<>(handler, errorHandler, 2, 4);
+    strategy.init(histogram);
+    assertThat(strategy.isSaturated(consumer)).isFalse();
+
+    strategy.processRecords(createRecords(2), consumer);
+    assertThat(strategy.isSaturated(consumer)).isTrue();
+
+    release.countDown();
+    await().untilAsserted(() -> assertThat(strategy.isSaturated(consumer)).isFalse());
+    strategy.commitOnClose(consumer);
+  }
+
+  @Test
+  public void shouldHandleRecordsInVirtualThreads() {
+    Assume.assumeTrue(VirtualThreads.isAvailable());
+    List<String> threadNames = Collections.synchronizedList(new ArrayList<>());
+    ParallelPartitionMLS<String, String> strategy =
+        ParallelPartitionMLS.withVirtualThreads(
+            record -> threadNames.add(Thread.currentThread().getName()), errorHandler, 100);
+    strategy.init(histogram);
+
+    strategy.processRecords(createRecords(5), consumer);
+    strategy.commitOnClose(consumer);
+
+    assertThat(threadNames).hasSize(10).allMatch(name -> name.startsWith("kafka-worker-"));
+  }
+
+  @Test
+  public void shouldRejectVirtualThreadsBeforeJava21() {
+    Assume.assumeFalse(VirtualThreads.isAvailable());
+
+    assertThatThrownBy(
+            () -> ParallelPartitionMLS.withVirtualThreads(record -> {}, errorHandler, 100))
+        .isInstanceOf(ConfigurationException.class);
+  }
+
+  @SuppressWarnings("unchecked")
+  private Map<TopicPartition, OffsetAndMetadata> committedOffsets() {
+    ArgumentCaptor<Map<TopicPartition, OffsetAndMetadata>> captor =
+        ArgumentCaptor.forClass(Map.class);
+    verify(consumer, Mockito.atLeast(0)).commitSync(captor.capture());
+    Map<TopicPartition, OffsetAndMetadata> committed = new HashMap<>();
+    captor.getAllValues().forEach(committed::putAll);
+    return committed;
+  }
+
+  private static ConsumerRecords<String, String> createRecords(int recordsPerPartition) {
+    Map<TopicPartition, List<ConsumerRecord<String, String>>> records = new HashMap<>();
+    for (TopicPartition partition : Arrays.asList(PARTITION_0, PARTITION_1)) {
+      List<ConsumerRecord<String, String>> partitionRecords = new ArrayList<>();
+      for (int i = 0; i < recordsPerPartition; i++) {
+        partitionRecords.add(
+            new ConsumerRecord<>(partition.topic(), partition.partition(), i, "key", "value"));
+      }
+      records.put(partition, partitionRecords);
+    }
+    return new ConsumerRecords<>(records);
+  }
+}
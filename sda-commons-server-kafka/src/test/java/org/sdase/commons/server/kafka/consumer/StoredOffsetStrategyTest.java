@@ -0,0 +1,169 @@
+package org.sdase.commons.server.kafka.consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.sdase.commons.server.kafka.consumer.strategies.storedoffset.OffsetStore;
+import org.sdase.commons.server.kafka.consumer.strategies.storedoffset.StoredOffsetMLS;
+import org.sdase.commons.server.kafka.exception.ConfigurationException;
+import org.sdase.commons.server.kafka.prometheus.ConsumerTopicMessageHistogram;
+
+public class StoredOffsetStrategyTest {
+
+  private static final TopicPartition PARTITION_0 = new TopicPartition("topic", 0);
+  private static final TopicPartition PARTITION_1 = new TopicPartition("topic", 1);
+
+  private KafkaConsumer<String, String> consumer;
+  private ErrorHandler<String, String> errorHandler;
+  private InMemoryOffsetStore offsetStore;
+  private StoredOffsetMLS<String, String> strategy;
+
+  @SuppressWarnings("unchecked")
+  @Before
+  public void setup() {
+    consumer = Mockito.mock(KafkaConsumer.class);
+    errorHandler = Mockito.mock(ErrorHandler.class);
+    offsetStore = new InMemoryOffsetStore();
+    strategy = new StoredOffsetMLS<>(offsetStore, errorHandler);
+    strategy.init(Mockito.mock(ConsumerTopicMessageHistogram.class));
+    Map<String, String> config = new HashMap<>(strategy.forcedConfigToApply());
+    config.put(ConsumerConfig.GROUP_ID_CONFIG, "group");
+    strategy.verifyConsumerConfig(config);
+  }
+
+  @Test
+  public void shouldSeekToStoredOffsetsWhenAssigned() {
+    offsetStore.offsets.put(PARTITION_0, 42L);
+
+    strategy.onPartitionsAssigned(Arrays.asList(PARTITION_0, PARTITION_1), consumer);
+
+    verify(consumer).seek(PARTITION_0, 42L);
+    verify(consumer, never()).seek(Mockito.eq(PARTITION_1), anyLong());
+  }
+
+  @Test
+  public void shouldStoreNextOffsetOfEachPartitionWithRecords() {
+    strategy.processRecords(records(2, 3), consumer);
+
+    assertThat(offsetStore.offsets).containsEntry(PARTITION_0, 12L).containsEntry(PARTITION_1, 23L);
+    assertThat(offsetStore.processed).hasSize(5);
+    verify(consumer, never()).commitSync();
+  }
+
+  @Test
+  public void shouldNotStoreOffsetsOfFailedTransaction() {
+    offsetStore.failing = true;
+    when(errorHandler.handleError(any(), any(), any())).thenReturn(true);
+
+    strategy.processRecords(records(2, 0), consumer);
+
+    assertThat(offsetStore.offsets).isEmpty();
+    verify(errorHandler).handleError(Mockito.argThat(r -> r.offset() == 10L), any(), any());
+  }
+
+  @Test
+  public void shouldStopListenerIfErrorHandlerDoesNotContinue() {
+    offsetStore.failing = true;
+
+    assertThatThrownBy(() -> strategy.processRecords(records(2, 0), consumer))
+        .isInstanceOf(StopListenerException.class);
+  }
+
+  @Test
+  public void shouldRestoreOffsetsWithNextPollIfReadingFailed() {
+    offsetStore.offsets.put(PARTITION_0, 5L);
+    offsetStore.failing = true;
+    strategy.onPartitionsAssigned(Arrays.asList(PARTITION_0, PARTITION_1), consumer);
+    verify(consumer, never()).seek(any(), anyLong());
+
+    offsetStore.failing = false;
+    strategy.processRecords(records(2, 1), consumer);
+
+    verify(consumer).seek(PARTITION_0, 5L);
+    // the records of partition 0 have been fetched from a wrong position
+    assertThat(offsetStore.processed).extracting(ConsumerRecord::partition).containsExactly(1);
+    assertThat(offsetStore.offsets).containsEntry(PARTITION_0, 5L).containsEntry(PARTITION_1, 21L);
+  }
+
+  @Test
+  public void shouldRejectAutoCommit() {
+    Map<String, String> config = Collections.singletonMap(ConsumerConfig.GROUP_ID_CONFIG, "group");
+
+    assertThatThrownBy(() -> strategy.verifyConsumerConfig(config))
+        .isInstanceOf(ConfigurationException.class);
+  }
+
+  /** Creates records of partition 0 starting at offset 10 and partition 1 starting at 20. */
+  private static ConsumerRecords<String, String> records(int countOf0, int countOf1) {
+    Map<TopicPartition, List<ConsumerRecord<String, String>>> records = new HashMap<>();
+    if (countOf0 > 0) {
+      records.put(PARTITION_0, recordsOfPartition(PARTITION_0, 10, countOf0));
+    }
+    if (countOf1 > 0) {
+      records.put(PARTITION_1, recordsOfPartition(PARTITION_1, 20, countOf1));
+    }
+    return new ConsumerRecords<>(records);
+  }
+
+  private static List<ConsumerRecord<String, String>> recordsOfPartition(
+      TopicPartition partition, long firstOffset, int count) {
+    List<ConsumerRecord<String, String>> records = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      records.add(
+          new ConsumerRecord<>(
+              partition.topic(), partition.partition(), firstOffset + i, "key", "value"));
+    }
+    return records;
+  }
+
+  private static class InMemoryOffsetStore implements OffsetStore<String, String> {
+
+    private final Map<TopicPartition, Long> offsets = new HashMap<>();
+    private final List<ConsumerRecord<String, String>> processed = new ArrayList<>();
+    private boolean failing;
+
+    @Override
+    public Map<TopicPartition, Long> readOffsets(
+        String consumerGroup, Collection<TopicPartition> partitions) {
+      if (failing) {
+        throw new IllegalStateException("database not available");
+      }
+      assertThat(consumerGroup).isEqualTo("group");
+      Map<TopicPartition, Long> result = new HashMap<>(offsets);
+      result.keySet().retainAll(partitions);
+      return result;
+    }
+
+    @Override
+    public void processAndStore(
+        String consumerGroup,
+        List<ConsumerRecord<String, String>> records,
+        Map<TopicPartition, Long> nextOffsets) {
+      if (failing) {
+        throw new IllegalStateException("transaction failed");
+      }
+      processed.addAll(records);
+      offsets.putAll(nextOffsets);
+    }
+  }
+}
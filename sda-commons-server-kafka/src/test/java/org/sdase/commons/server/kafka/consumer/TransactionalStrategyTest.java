@@ -0,0 +1,236 @@
+package org.sdase.commons.server.kafka.consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.ProducerFencedException;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.sdase.commons.server.kafka.consumer.strategies.transactional.TransactionalMLS;
+import org.sdase.commons.server.kafka.exception.ConfigurationException;
+import org.sdase.commons.server.kafka.producer.TransactionalMessageProducer;
+import org.sdase.commons.server.kafka.prometheus.ConsumerCommitMetrics;
+import org.sdase.commons.server.kafka.prometheus.ConsumerTopicMessageHistogram;
+
+public class TransactionalStrategyTest {
+
+  private TransformingMessageHandler<String, String, String, String> handler;
+  private ErrorHandler<String, String> errorHandler;
+  private KafkaConsumer<String, String> consumer;
+  private TransactionalMessageProducer<String, String> producer;
+  private ConsumerTopicMessageHistogram histogram;
+  private ConsumerCommitMetrics commitMetrics;
+  private TransactionalMLS<String, String, String, String> strategy;
+  private final List<String> transactionalIdSuffixes = new ArrayList<>();
+
+  @SuppressWarnings("unchecked")
+  @Before
+  public void setup() {
+    consumer = Mockito.mock(KafkaConsumer.class);
+    handler = Mockito.mock(TransformingMessageHandler.class);
+    errorHandler = Mockito.mock(ErrorHandler.class);
+    producer = Mockito.mock(TransactionalMessageProducer.class);
+    histogram = Mockito.mock(ConsumerTopicMessageHistogram.class);
+    commitMetrics = Mockito.mock(ConsumerCommitMetrics.class);
+
+    strategy =
+        new TransactionalMLS<>(
+            suffix -> {
+              transactionalIdSuffixes.add(suffix);
+              return producer;
+            },
+            handler,
+            errorHandler);
+    strategy.init(histogram, commitMetrics);
+    strategy.verifyConsumerConfig(consumerConfig());
+  }
+
+  @Test
+  public void shouldCommitRecordsAndOffsetsInOneTransaction() {
+    strategy.processRecords(TestHelper.createConsumerRecords(5, "topic"), consumer);
+
+    InOrder inOrder = inOrder(producer, handler);
+    inOrder.verify(producer).beginTransaction();
+    inOrder.verify(handler, times(5)).handle(any(), eq(producer));
+    inOrder
+        .verify(producer)
+        .sendOffsetsToTransaction(
+            Collections.singletonMap(new TopicPartition("topic", 0), new OffsetAndMetadata(1)),
+            "group");
+    inOrder.verify(producer).commitTransaction();
+    verify(histogram, times(5)).observe(anyDouble(), anyString(), anyString());
+    verify(commitMetrics)
+        .observeCommit(anyDouble(), anyString(), eq(ConsumerCommitMetrics.COMMIT_TYPE_TRANSACTION));
+    verify(commitMetrics)
+        .observeCommittedOffsets(
+            anyString(),
+            eq(Collections.singletonMap(new TopicPartition("topic", 0), new OffsetAndMetadata(1))));
+    verify(consumer, never()).commitSync();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void shouldUseOneProducerAndTransactionPerPartition() {
+    Map<String, TransactionalMessageProducer<String, String>> producers = new HashMap<>();
+    strategy =
+        new TransactionalMLS<>(
+            suffix ->
+                producers.computeIfAbsent(
+                    suffix, s -> Mockito.mock(TransactionalMessageProducer.class)),
+            handler,
+            errorHandler);
+    strategy.init(histogram, commitMetrics);
+    strategy.verifyConsumerConfig(consumerConfig());
+
+    strategy.processRecords(TestHelper.createConsumerRecords(2, "a", "b"), consumer);
+    strategy.processRecords(TestHelper.createConsumerRecords(3, "a"), consumer);
+
+    assertThat(producers).containsOnlyKeys("group-a-0", "group-b-0");
+    verify(producers.get("group-a-0"), times(2)).commitTransaction();
+    verify(producers.get("group-b-0")).commitTransaction();
+    verify(producers.get("group-b-0"))
+        .sendOffsetsToTransaction(
+            Collections.singletonMap(new TopicPartition("b", 0), new OffsetAndMetadata(1)),
+            "group");
+  }
+
+  @Test
+  public void shouldCreateProducersOnAssignmentAndCloseThemOnRevocation() {
+    TopicPartition partition = new TopicPartition("topic", 3);
+
+    strategy.onPartitionsAssigned(Collections.singletonList(partition), consumer);
+    assertThat(transactionalIdSuffixes).containsExactly("group-topic-3");
+    verify(producer, never()).close();
+
+    strategy.onPartitionsRevoked(Collections.singletonList(partition), consumer);
+    verify(producer).close();
+
+    strategy.onPartitionsAssigned(Collections.singletonList(partition), consumer);
+    assertThat(transactionalIdSuffixes).containsExactly("group-topic-3", "group-topic-3");
+    strategy.commitOnClose(consumer);
+    verify(producer, times(2)).close();
+  }
+
+  @Test
+  public void shouldNotBeginTransactionWithoutRecords() {
+    strategy.processRecords(TestHelper.createConsumerRecords(0), consumer);
+
+    verify(producer, never()).beginTransaction();
+  }
+
+  @Test
+  public void shouldAbortAndSeekBackWhenTransactionFails() {
+    doThrow(new KafkaException("Test")).when(producer).commitTransaction();
+
+    strategy.processRecords(TestHelper.createConsumerRecords(5, "topic"), consumer);
+
+    verify(producer).abortTransaction();
+    verify(commitMetrics).increaseAbortedTransactions(anyString());
+    verify(consumer).seek(new TopicPartition("topic", 0), 0);
+  }
+
+  @Test
+  public void shouldContinueWhenErrorHandlerAccepts() {
+    doThrow(new RuntimeException("Test")).when(handler).handle(any(), any());
+    when(errorHandler.handleError(any(), any(), any())).thenReturn(true);
+
+    strategy.processRecords(TestHelper.createConsumerRecords(5, "topic"), consumer);
+
+    verify(errorHandler, times(5)).handleError(any(), any(), any());
+    verify(producer).commitTransaction();
+  }
+
+  @Test
+  public void shouldAbortAndStopWhenErrorHandlerRejects() {
+    doThrow(new RuntimeException("Test")).when(handler).handle(any(), any());
+    when(errorHandler.handleError(any(), any(), any())).thenReturn(false);
+
+    assertThatThrownBy(
+            () -> strategy.processRecords(TestHelper.createConsumerRecords(5, "topic"), consumer))
+        .isInstanceOf(StopListenerException.class);
+
+    verify(producer).abortTransaction();
+    verify(producer, never()).commitTransaction();
+  }
+
+  @Test
+  public void shouldStopWhenProducerIsFenced() {
+    doThrow(new ProducerFencedException("Test")).when(producer).commitTransaction();
+
+    assertThatThrownBy(
+            () -> strategy.processRecords(TestHelper.createConsumerRecords(5, "topic"), consumer))
+        .isInstanceOf(StopListenerException.class)
+        .hasCauseInstanceOf(ProducerFencedException.class);
+
+    verify(producer, never()).abortTransaction();
+    verify(consumer, never()).seek(any(), anyLong());
+  }
+
+  @Test
+  public void shouldSeekBackWhenTransactionCannotBegin() {
+    doThrow(new KafkaException("Test")).when(producer).beginTransaction();
+
+    strategy.processRecords(TestHelper.createConsumerRecords(5, "topic"), consumer);
+
+    verify(handler, never()).handle(any(), any());
+    verify(consumer).seek(new TopicPartition("topic", 0), 0);
+  }
+
+  @Test
+  public void shouldStopWhenProducerIsFencedAtBeginOfTransaction() {
+    doThrow(new ProducerFencedException("Test")).when(producer).beginTransaction();
+
+    assertThatThrownBy(
+            () -> strategy.processRecords(TestHelper.createConsumerRecords(5, "topic"), consumer))
+        .isInstanceOf(StopListenerException.class)
+        .hasCauseInstanceOf(ProducerFencedException.class);
+
+    verify(handler, never()).handle(any(), any());
+  }
+
+  @Test
+  public void shouldStopWithoutConsumerGroup() {
+    strategy.verifyConsumerConfig(Collections.singletonMap("enable.auto.commit", "false"));
+
+    assertThatThrownBy(
+            () -> strategy.processRecords(TestHelper.createConsumerRecords(5, "topic"), consumer))
+        .isInstanceOf(StopListenerException.class)
+        .hasCauseInstanceOf(ConfigurationException.class);
+  }
+
+  @Test
+  public void shouldForceReadCommittedWithoutAutoCommit() {
+    assertThat(strategy.forcedConfigToApply())
+        .containsEntry("enable.auto.commit", "false")
+        .containsEntry("isolation.level", "read_committed");
+  }
+
+  private static Map<String, String> consumerConfig() {
+    Map<String, String> config = new HashMap<>();
+    config.put("enable.auto.commit", "false");
+    config.put("group.id", "group");
+    return config;
+  }
+}
@@ -0,0 +1,141 @@
+package org.sdase.commons.server.kafka.consumer.hibernate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HibernateOffsetStoreTest {
+
+  private static final TopicPartition PARTITION_0 = new TopicPartition("topic", 0);
+  private static final TopicPartition PARTITION_1 = new TopicPartition("topic", 1);
+
+  private SessionFactory sessionFactory;
+
+  private HibernateOffsetStore<String, String> offsetStore;
+
+  @Before
+  public void setup() {
+    sessionFactory =
+        new Configuration()
+            .setProperty("hibernate.connection.url", "jdbc:h2:mem:offsets;DB_CLOSE_DELAY=-1")
+            .setProperty("hibernate.connection.username", "sa")
+            .setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+            .buildSessionFactory();
+    try (Session session = sessionFactory.openSession()) {
+      session.doWork(
+          connection -> {
+            try (Statement statement = connection.createStatement()) {
+              statement.execute(
+                  "CREATE TABLE kafka_consumer_offsets (consumer_group VARCHAR(255) NOT NULL, "
+                      + "topic VARCHAR(255) NOT NULL, topic_partition INTEGER NOT NULL, "
+                      + "next_offset BIGINT NOT NULL, "
+                      + "PRIMARY KEY (consumer_group, topic, topic_partition))");
+              statement.execute("CREATE TABLE processed (record_value VARCHAR(255))");
+            }
+          });
+    }
+    offsetStore =
+        new HibernateOffsetStore<>(
+            sessionFactory,
+            (session, records) ->
+                records.forEach(
+                    record -> {
+                      if ("poison".equals(record.value())) {
+                        throw new IllegalStateException("can't process " + record.value());
+                      }
+                      session
+                          .createNativeQuery("INSERT INTO processed VALUES (?1)")
+                          .setParameter(1, record.value())
+                          .executeUpdate();
+                    }));
+  }
+
+  @After
+  public void tearDown() {
+    try (Session session = sessionFactory.openSession()) {
+      session.doWork(
+          connection -> {
+            try (Statement statement = connection.createStatement()) {
+              statement.execute("DROP ALL OBJECTS");
+            }
+          });
+    }
+    sessionFactory.close();
+  }
+
+  @Test
+  public void shouldStoreOffsetsWithChangesOfHandler() {
+    offsetStore.processAndStore(
+        "group", records(PARTITION_0, "a", "b"), Collections.singletonMap(PARTITION_0, 2L));
+
+    assertThat(offsetStore.readOffsets("group", Arrays.asList(PARTITION_0, PARTITION_1)))
+        .containsOnlyKeys(PARTITION_0)
+        .containsEntry(PARTITION_0, 2L);
+    assertThat(countProcessed()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldUpdateStoredOffsets() {
+    offsetStore.processAndStore(
+        "group", records(PARTITION_0, "a"), Collections.singletonMap(PARTITION_0, 1L));
+    offsetStore.processAndStore(
+        "group", records(PARTITION_0, "b", "c"), Collections.singletonMap(PARTITION_0, 3L));
+
+    assertThat(offsetStore.readOffsets("group", Collections.singletonList(PARTITION_0)))
+        .containsEntry(PARTITION_0, 3L);
+  }
+
+  @Test
+  public void shouldRollbackChangesAndOffsetsIfHandlerFails() {
+    offsetStore.processAndStore(
+        "group", records(PARTITION_0, "a"), Collections.singletonMap(PARTITION_0, 1L));
+
+    List<ConsumerRecord<String, String>> records = records(PARTITION_0, "b", "poison");
+    Map<TopicPartition, Long> nextOffsets = Collections.singletonMap(PARTITION_0, 3L);
+    assertThatThrownBy(() -> offsetStore.processAndStore("group", records, nextOffsets))
+        .isInstanceOf(IllegalStateException.class);
+
+    assertThat(offsetStore.readOffsets("group", Collections.singletonList(PARTITION_0)))
+        .containsEntry(PARTITION_0, 1L);
+    assertThat(countProcessed()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldSeparateConsumerGroups() {
+    offsetStore.processAndStore(
+        "group", records(PARTITION_0, "a"), Collections.singletonMap(PARTITION_0, 1L));
+
+    assertThat(offsetStore.readOffsets("other", Collections.singletonList(PARTITION_0))).isEmpty();
+  }
+
+  private long countProcessed() {
+    try (Session session = sessionFactory.openSession()) {
+      Object count = session.createNativeQuery("SELECT COUNT(*) FROM processed").getSingleResult();
+      return ((Number) count).longValue();
+    }
+  }
+
+  private static List<ConsumerRecord<String, String>> records(
+      TopicPartition partition, String... values) {
+    List<ConsumerRecord<String, String>> records = new ArrayList<>();
+    for (int i = 0; i < values.length; i++) {
+      records.add(
+          new ConsumerRecord<>(partition.topic(), partition.partition(), i, "key", values[i]));
+    }
+    return records;
+  }
+}
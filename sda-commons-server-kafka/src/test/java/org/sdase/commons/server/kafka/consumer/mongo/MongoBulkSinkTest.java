@@ -0,0 +1,118 @@
+package org.sdase.commons.server.kafka.consumer.mongo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.mongodb.WriteConcern;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.WriteModel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.bson.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.sdase.commons.server.kafka.exception.ConfigurationException;
+
+public class MongoBulkSinkTest {
+
+  private MongoCollection<Document> collection;
+
+  private MongoBulkSink<String, String, Document> sink;
+
+  @SuppressWarnings("unchecked")
+  @Before
+  public void setup() {
+    collection = Mockito.mock(MongoCollection.class);
+    when(collection.getWriteConcern()).thenReturn(WriteConcern.ACKNOWLEDGED);
+    when(collection.bulkWrite(anyList(), any(BulkWriteOptions.class)))
+        .thenReturn(BulkWriteResult.acknowledged(0, 0, 0, 0, Collections.emptyList()));
+    sink =
+        MongoBulkSink.upserting(
+            collection, ConsumerRecord::key, value -> new Document("name", value));
+  }
+
+  @Test
+  public void shouldWriteBatchWithOneUnorderedBulkWrite() {
+    sink.handle(Arrays.asList(record(0, "a", "A"), record(1, "b", "B")));
+
+    List<WriteModel<Document>> writes = captureBulkWrite();
+    assertThat(writes).hasSize(2).allMatch(write -> write instanceof ReplaceOneModel);
+    ReplaceOneModel<Document> first = (ReplaceOneModel<Document>) writes.get(0);
+    assertThat(first.getReplacement()).containsEntry("_id", "a").containsEntry("name", "A");
+    assertThat(first.getReplaceOptions().isUpsert()).isTrue();
+    assertThat(sink.getBulkWriteCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldCoalesceRecordsWithSameId() {
+    sink.handle(
+        Arrays.asList(
+            record(0, "a", "A1"), record(1, "b", "B"), record(2, "a", "A2"), record(3, "a", "A3")));
+
+    List<WriteModel<Document>> writes = captureBulkWrite();
+    assertThat(writes).hasSize(2);
+    assertThat(((ReplaceOneModel<Document>) writes.get(0)).getReplacement())
+        .containsEntry("_id", "a")
+        .containsEntry("name", "A3");
+    assertThat(sink.getRecordCount()).isEqualTo(4);
+    assertThat(sink.getCoalescedCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldDeleteDocumentOfTombstone() {
+    sink.handle(Arrays.asList(record(0, "a", "A"), record(1, "a", null)));
+
+    List<WriteModel<Document>> writes = captureBulkWrite();
+    assertThat(writes).hasSize(1);
+    assertThat(writes.get(0)).isInstanceOf(DeleteOneModel.class);
+  }
+
+  @Test
+  public void shouldNotCoalesceRecordsWithoutId() {
+    sink =
+        new MongoBulkSink<>(
+            collection,
+            record -> null,
+            record -> new ReplaceOneModel<>(new Document(), new Document()));
+
+    sink.handle(Arrays.asList(record(0, "a", "A"), record(1, "a", "A")));
+
+    assertThat(captureBulkWrite()).hasSize(2);
+  }
+
+  @Test
+  public void shouldRejectUnacknowledgedWriteConcern() {
+    when(collection.getWriteConcern()).thenReturn(WriteConcern.UNACKNOWLEDGED);
+
+    assertThatThrownBy(
+            () ->
+                MongoBulkSink.<String, String>upserting(
+                    collection, ConsumerRecord::key, value -> new Document("name", value)))
+        .isInstanceOf(ConfigurationException.class);
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<WriteModel<Document>> captureBulkWrite() {
+    ArgumentCaptor<List<WriteModel<Document>>> writes = ArgumentCaptor.forClass(List.class);
+    ArgumentCaptor<BulkWriteOptions> options = ArgumentCaptor.forClass(BulkWriteOptions.class);
+    verify(collection).bulkWrite(writes.capture(), options.capture());
+    assertThat(options.getValue().isOrdered()).isFalse();
+    return writes.getValue();
+  }
+
+  private static ConsumerRecord<String, String> record(long offset, String key, String value) {
+    return new ConsumerRecord<>("topic", 0, offset, key, value);
+  }
+}
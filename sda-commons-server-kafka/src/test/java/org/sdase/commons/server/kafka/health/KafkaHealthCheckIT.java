@@ -6,9 +6,11 @@ import com.codahale.metrics.health.HealthCheck;
 import com.salesforce.kafka.test.KafkaBroker;
 import com.salesforce.kafka.test.junit4.SharedKafkaTestResource;
 import java.util.stream.Collectors;
+import org.apache.kafka.clients.admin.AdminClient;
 import org.junit.ClassRule;
 import org.junit.Test;
 import org.sdase.commons.server.kafka.KafkaConfiguration;
+import org.sdase.commons.server.kafka.KafkaProperties;
 
 public class KafkaHealthCheckIT {
 
@@ -32,15 +34,20 @@ public class KafkaHealthCheckIT {
             .collect(Collectors.toList()));
     config.getHealthCheck().setTimeoutInSeconds(5);
 
-    KafkaHealthCheck check = new KafkaHealthCheck(config);
-    HealthCheck.Result result = check.execute();
-    assertThat(result.isHealthy()).isTrue();
+    try (AdminClient adminClient = AdminClient.create(KafkaProperties.forAdminClient(config))) {
+      KafkaHealthCheck check = new KafkaHealthCheck(config);
+      KafkaHealthCheck sharedClientCheck = new KafkaHealthCheck(config, () -> adminClient);
+      HealthCheck.Result result = check.execute();
+      assertThat(result.isHealthy()).isTrue();
+      assertThat(sharedClientCheck.execute().isHealthy()).isTrue();
 
-    for (int i = 1; i <= KAFKA.getKafkaBrokers().size(); i++) {
-      KAFKA.getKafkaBrokers().getBrokerById(i).stop();
-    }
+      for (int i = 1; i <= KAFKA.getKafkaBrokers().size(); i++) {
+        KAFKA.getKafkaBrokers().getBrokerById(i).stop();
+      }
 
-    HealthCheck.Result resultFalse = check.execute();
-    assertThat(resultFalse.isHealthy()).isFalse();
+      HealthCheck.Result resultFalse = check.execute();
+      assertThat(resultFalse.isHealthy()).isFalse();
+      assertThat(sharedClientCheck.execute().isHealthy()).isFalse();
+    }
   }
 }
@@ -0,0 +1,127 @@
+package org.sdase.commons.server.kafka.producer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.Before;
+import org.junit.Test;
+import org.sdase.commons.server.kafka.prometheus.ProducerTopicMessageCounter;
+import org.sdase.commons.server.kafka.prometheus.ProducerTopicMessageHistogram;
+
+public class KafkaMessageProducerTest {
+
+  private static final String TOPIC = "topic";
+
+  private KafkaProducer<String, String> producer;
+
+  private ProducerTopicMessageCounter counter;
+
+  private ProducerTopicMessageHistogram histogram;
+
+  private final List<Callback> callbacks = new CopyOnWriteArrayList<>();
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setUp() {
+    producer = mock(KafkaProducer.class);
+    counter = mock(ProducerTopicMessageCounter.class);
+    histogram = mock(ProducerTopicMessageHistogram.class);
+    when(producer.send(any(), any()))
+        .thenAnswer(
+            invocation -> {
+              callbacks.add(invocation.getArgument(1));
+              return null;
+            });
+  }
+
+  @Test
+  public void shouldCompleteWhenAcknowledged() {
+    KafkaMessageProducer<String, String> messageProducer = createProducer(0);
+
+    CompletableFuture<RecordMetadata> future = messageProducer.sendAsync("key", "value");
+
+    assertThat(future).isNotDone();
+    RecordMetadata metadata = metadata(42);
+    callbacks.get(0).onCompletion(metadata, null);
+    assertThat(future).isCompletedWithValue(metadata);
+    verify(counter).increase("producer", TOPIC);
+    verify(histogram).observe(anyDouble(), eq("producer"), eq(TOPIC));
+  }
+
+  @Test
+  public void shouldCompleteExceptionallyWhenSendFails() {
+    KafkaMessageProducer<String, String> messageProducer = createProducer(0);
+
+    CompletableFuture<RecordMetadata> future = messageProducer.sendAsync("key", "value");
+    callbacks.get(0).onCompletion(null, new TimeoutException("no ack"));
+
+    assertThat(future).isCompletedExceptionally();
+    verify(histogram, never()).observe(anyDouble(), any(), any());
+  }
+
+  @Test
+  public void shouldSendAllAndCompleteWhenAllAcknowledged() {
+    KafkaMessageProducer<String, String> messageProducer = createProducer(0);
+
+    CompletableFuture<List<RecordMetadata>> future =
+        messageProducer.sendAll(Arrays.asList("a", "b", "c"), value -> "key-" + value);
+
+    assertThat(callbacks).hasSize(3);
+    RecordMetadata[] metadata = {metadata(0), metadata(1), metadata(2)};
+    callbacks.get(2).onCompletion(metadata[2], null);
+    callbacks.get(0).onCompletion(metadata[0], null);
+    assertThat(future).isNotDone();
+    callbacks.get(1).onCompletion(metadata[1], null);
+    assertThat(future).isCompletedWithValue(Arrays.asList(metadata));
+    verify(producer).send(eq(new ProducerRecord<>(TOPIC, "key-b", "b")), any(Callback.class));
+  }
+
+  @Test
+  public void shouldBlockWhileMaxInFlightRecordsAreNotAcknowledged() {
+    KafkaMessageProducer<String, String> messageProducer = createProducer(2);
+    messageProducer.sendAsync("key", "1");
+    messageProducer.sendAsync("key", "2");
+
+    AtomicBoolean thirdSent = new AtomicBoolean();
+    Thread sender =
+        new Thread(
+            () -> {
+              messageProducer.sendAsync("key", "3");
+              thirdSent.set(true);
+            });
+    sender.start();
+
+    await().until(() -> sender.getState() == Thread.State.WAITING);
+    assertThat(thirdSent).isFalse();
+    callbacks.get(0).onCompletion(metadata(0), null);
+    await().untilTrue(thirdSent);
+    assertThat(callbacks).hasSize(3);
+  }
+
+  private KafkaMessageProducer<String, String> createProducer(int maxInFlightRecords) {
+    return new KafkaMessageProducer<>(
+        TOPIC, producer, counter, histogram, "producer", maxInFlightRecords);
+  }
+
+  private static RecordMetadata metadata(long offset) {
+    return new RecordMetadata(new TopicPartition(TOPIC, 0), offset, 0, 0, 0L, 0, 0);
+  }
+}
@@ -0,0 +1,87 @@
+package org.sdase.commons.server.kafka.producer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.header.Headers;
+import org.junit.Test;
+
+public class MessageProducerTest {
+
+  private static final RecordMetadata METADATA =
+      new RecordMetadata(new TopicPartition("topic", 0), 0, 7, 0, 0L, 0, 0);
+
+  @Test
+  public void shouldCompleteAsyncSendFromDoneFuture() throws Exception {
+    FutureTask<RecordMetadata> sent = new FutureTask<>(() -> METADATA);
+    sent.run();
+
+    CompletableFuture<RecordMetadata> future = producerOf(sent).sendAsync("key", "value");
+
+    assertThat(future.get()).isSameAs(METADATA);
+  }
+
+  @Test
+  public void shouldNotWaitForPendingFuture() {
+    FutureTask<RecordMetadata> sent = new FutureTask<>(() -> METADATA);
+
+    CompletableFuture<RecordMetadata> future = producerOf(sent).sendAsync("key", "value");
+
+    assertThatThrownBy(future::join)
+        .isInstanceOf(CompletionException.class)
+        .hasCauseInstanceOf(UnsupportedOperationException.class);
+  }
+
+  @Test
+  public void shouldCompleteAsyncSendExceptionallyIfSendFailed() {
+    FutureTask<RecordMetadata> sent =
+        new FutureTask<>(
+            () -> {
+              throw new TimeoutException("not acknowledged");
+            });
+    sent.run();
+
+    CompletableFuture<RecordMetadata> future = producerOf(sent).sendAsync("key", "value", null);
+
+    assertThatThrownBy(future::get)
+        .isInstanceOf(ExecutionException.class)
+        .hasCauseInstanceOf(TimeoutException.class);
+    assertThatThrownBy(future::join)
+        .isInstanceOf(CompletionException.class)
+        .hasCauseInstanceOf(TimeoutException.class);
+  }
+
+  @Test
+  public void shouldReturnCompletableFutureOfSend() {
+    CompletableFuture<RecordMetadata> sent = new CompletableFuture<>();
+
+    assertThat(producerOf(sent).sendAsync("key", "value")).isSameAs(sent);
+  }
+
+  @Test
+  public void shouldCompleteAsyncSendWithoutResult() {
+    assertThat(producerOf(null).sendAsync("key", "value")).isCompletedWithValue(null);
+  }
+
+  private static MessageProducer<String, String> producerOf(Future<RecordMetadata> sent) {
+    return new MessageProducer<String, String>() {
+      @Override
+      public Future<RecordMetadata> send(String key, String value) {
+        return sent;
+      }
+
+      @Override
+      public Future<RecordMetadata> send(String key, String value, Headers headers) {
+        return sent;
+      }
+    };
+  }
+}
@@ -0,0 +1,58 @@
+package org.sdase.commons.server.kafka.prometheus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.prometheus.client.CollectorRegistry;
+import java.time.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sdase.commons.server.kafka.consumer.DeduplicationCache;
+
+public class DeduplicationCacheMetricsTest {
+
+  private DeduplicationCacheMetrics metrics;
+
+  @Before
+  public void setUp() {
+    metrics = new DeduplicationCacheMetrics();
+  }
+
+  @After
+  public void tearDown() {
+    CollectorRegistry.defaultRegistry.unregister(metrics);
+  }
+
+  @Test
+  public void shouldExportHitsAndMissesOfCaches() {
+    DeduplicationCache cache = new DeduplicationCache(10, Duration.ofMinutes(1));
+    metrics.add("orders", cache);
+    cache.add(1L);
+    cache.contains(1L);
+    cache.contains(1L);
+    cache.contains(2L);
+
+    assertThat(sample("kafka_consumer_deduplication_cache_hits_total")).isEqualTo(2);
+    assertThat(sample("kafka_consumer_deduplication_cache_misses_total")).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldNotExportWithoutCaches() {
+    assertThat(metrics.collect()).isEmpty();
+  }
+
+  @Test
+  public void shouldRejectCachesWithSameName() {
+    metrics.add("orders", new DeduplicationCache(10, Duration.ofMinutes(1)));
+    DeduplicationCache other = new DeduplicationCache(10, Duration.ofMinutes(1));
+
+    assertThatThrownBy(() -> metrics.add("orders", other))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static Double sample(String name) {
+    return CollectorRegistry.defaultRegistry.getSampleValue(
+        name, new String[] {"cache_name"}, new String[] {"orders"});
+  }
+}
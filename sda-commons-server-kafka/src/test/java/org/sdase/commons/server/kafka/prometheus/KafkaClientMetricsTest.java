@@ -0,0 +1,145 @@
+package org.sdase.commons.server.kafka.prometheus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.prometheus.client.CollectorRegistry;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import org.apache.kafka.clients.CommonClientConfigs;
+import org.apache.kafka.common.metrics.MetricConfig;
+import org.apache.kafka.common.metrics.Metrics;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.metrics.stats.Value;
+import org.apache.kafka.common.utils.Time;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sdase.commons.server.kafka.config.MetricsConfig;
+
+public class KafkaClientMetricsTest {
+
+  private KafkaClientMetrics kafkaClientMetrics;
+
+  private Metrics metrics;
+
+  @Before
+  public void setUp() {
+    kafkaClientMetrics =
+        new KafkaClientMetrics(
+            new MetricsConfig()
+                .setConsumerMetrics(Arrays.asList("records-lag", "fetch-latency-avg"))
+                .setProducerMetrics(Collections.singletonList("request-latency-avg")));
+    Properties properties = new Properties();
+    kafkaClientMetrics.configure(properties);
+    Map<String, Object> configs = new HashMap<>();
+    properties.forEach((k, v) -> configs.put((String) k, v));
+    KafkaClientMetricsReporter reporter = new KafkaClientMetricsReporter();
+    reporter.configure(configs);
+    metrics =
+        new Metrics(new MetricConfig(), Collections.singletonList(reporter), Time.SYSTEM, false);
+  }
+
+  @After
+  public void tearDown() {
+    metrics.close();
+    kafkaClientMetrics.close();
+  }
+
+  @Test
+  public void shouldAppendReporterToConfiguredReporters() {
+    Properties properties = new Properties();
+    properties.put(CommonClientConfigs.METRIC_REPORTER_CLASSES_CONFIG, "com.example.Reporter");
+
+    kafkaClientMetrics.configure(properties);
+
+    assertThat(properties)
+        .containsEntry(
+            CommonClientConfigs.METRIC_REPORTER_CLASSES_CONFIG,
+            "com.example.Reporter," + KafkaClientMetricsReporter.class.getName())
+        // Kafka logs a warning for unknown properties
+        .containsOnlyKeys(CommonClientConfigs.METRIC_REPORTER_CLASSES_CONFIG);
+  }
+
+  @Test
+  public void shouldLookUpCollectorByClientId() {
+    KafkaClientMetrics other =
+        new KafkaClientMetrics(
+            new MetricsConfig().setConsumerMetrics(Collections.singletonList("records-lag")));
+    try {
+      Properties properties = new Properties();
+      properties.put(CommonClientConfigs.CLIENT_ID_CONFIG, "other-client");
+      other.configure(properties);
+
+      assertThat(KafkaClientMetrics.forClient("other-client")).isSameAs(other);
+      assertThat(KafkaClientMetrics.forClient("generated-client")).isSameAs(kafkaClientMetrics);
+      assertThat(KafkaClientMetrics.forClient(null)).isSameAs(kafkaClientMetrics);
+    } finally {
+      other.close();
+    }
+
+    assertThat(KafkaClientMetrics.forClient("other-client")).isSameAs(kafkaClientMetrics);
+  }
+
+  @Test
+  public void shouldExportSelectedMetricsWithTags() {
+    record("records-lag", "consumer-fetch-manager-metrics", 42, "topic", "t1", "partition", "0");
+    record("fetch-latency-avg", "consumer-fetch-manager-metrics", 7);
+    record("request-latency-avg", "producer-metrics", 3);
+    record("records-consumed-rate", "consumer-fetch-manager-metrics", 1);
+
+    assertThat(
+            CollectorRegistry.defaultRegistry.getSampleValue(
+                "kafka_consumer_records_lag",
+                new String[] {"consumer_name", "topic_name", "partition"},
+                new String[] {"client-1", "t1", "0"}))
+        .isEqualTo(42);
+    assertThat(
+            CollectorRegistry.defaultRegistry.getSampleValue(
+                "kafka_consumer_fetch_latency_avg",
+                new String[] {"consumer_name", "topic_name", "partition"},
+                new String[] {"client-1", "", ""}))
+        .isEqualTo(7);
+    assertThat(
+            CollectorRegistry.defaultRegistry.getSampleValue(
+                "kafka_producer_request_latency_avg",
+                new String[] {"producer_name", "topic_name"},
+                new String[] {"client-1", ""}))
+        .isEqualTo(3);
+    assertThat(kafkaClientMetrics.collect())
+        .extracting(mfs -> mfs.name)
+        .doesNotContain("kafka_consumer_records_consumed_rate");
+  }
+
+  @Test
+  public void shouldRemoveMetricsOfClosedClients() {
+    record("records-lag", "consumer-fetch-manager-metrics", 42, "topic", "t1", "partition", "0");
+    assertThat(kafkaClientMetrics.collect()).isNotEmpty();
+
+    metrics.close();
+
+    assertThat(kafkaClientMetrics.collect()).isEmpty();
+  }
+
+  @Test
+  public void shouldRemoveMetricsOfRemovedSensors() {
+    record("records-lag", "consumer-fetch-manager-metrics", 42, "topic", "t1", "partition", "0");
+
+    metrics.removeSensor("records-lag");
+
+    assertThat(kafkaClientMetrics.collect()).isEmpty();
+  }
+
+  private void record(String name, String group, double value, String... tags) {
+    Map<String, String> metricTags = new HashMap<>();
+    metricTags.put("client-id", "client-1");
+    for (int i = 0; i < tags.length; i += 2) {
+      metricTags.put(tags[i], tags[i + 1]);
+    }
+    Sensor sensor = metrics.sensor(name);
+    sensor.add(metrics.metricName(name, group, "", metricTags), new Value());
+    sensor.record(value);
+  }
+}
@@ -2,7 +2,10 @@ package org.sdase.commons.server.kafka.serializers;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Collections;
+import java.util.List;
 import org.junit.Test;
 
 public class JsonSerializerTest {
@@ -24,4 +27,21 @@ public class JsonSerializerTest {
     assertThat(deserialize.getLastname()).isEqualTo(simpleEntity.getLastname());
     assertThat(deserialize.getName()).isEqualTo(simpleEntity.getName());
   }
+
+  @Test
+  public void testSerializerWithTypeReference() {
+    SimpleEntity simpleEntity = new SimpleEntity();
+    simpleEntity.setName("MyTestName");
+    TypeReference<List<SimpleEntity>> type = new TypeReference<List<SimpleEntity>>() {};
+
+    KafkaJsonSerializer<List<SimpleEntity>> jsonSerializer =
+        new KafkaJsonSerializer<>(new ObjectMapper(), type);
+    byte[] serialize = jsonSerializer.serialize("123", Collections.singletonList(simpleEntity));
+
+    KafkaJsonDeserializer<List<SimpleEntity>> jsonDeserializer =
+        new KafkaJsonDeserializer<>(new ObjectMapper(), type);
+    List<SimpleEntity> deserialize = jsonDeserializer.deserialize("123", serialize);
+
+    assertThat(deserialize).extracting(SimpleEntity::getName).containsExactly("MyTestName");
+  }
 }
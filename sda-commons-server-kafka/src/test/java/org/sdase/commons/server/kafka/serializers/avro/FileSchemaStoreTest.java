@@ -0,0 +1,53 @@
+package org.sdase.commons.server.kafka.serializers.avro;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Path;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sdase.commons.server.kafka.exception.SchemaStoreException;
+
+public class FileSchemaStoreTest {
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private Path directory;
+
+  @Before
+  public void setUp() {
+    directory = folder.getRoot().toPath().resolve("schemas");
+  }
+
+  @Test
+  public void shouldRegisterEachSchemaOnce() {
+    FileSchemaStore store = new FileSchemaStore(directory);
+
+    int first = store.register("topic-value", "{\"type\":\"string\"}");
+    int second = store.register("topic-value", "{\"type\":\"long\"}");
+
+    assertThat(first).isEqualTo(1);
+    assertThat(second).isEqualTo(2);
+    assertThat(store.register("other-value", "{\"type\":\"string\"}")).isEqualTo(first);
+    assertThat(directory.resolve("1.avsc")).hasContent("{\"type\":\"string\"}");
+  }
+
+  @Test
+  public void shouldReadSchemasOfOtherStores() {
+    int id = new FileSchemaStore(directory).register("topic-value", "{\"type\":\"string\"}");
+
+    FileSchemaStore store = new FileSchemaStore(directory);
+
+    assertThat(store.getSchema(id)).isEqualTo("{\"type\":\"string\"}");
+    assertThat(store.register("topic-value", "{\"type\":\"string\"}")).isEqualTo(id);
+  }
+
+  @Test
+  public void shouldFailForUnknownId() {
+    FileSchemaStore store = new FileSchemaStore(directory);
+
+    assertThatThrownBy(() -> store.getSchema(42)).isInstanceOf(SchemaStoreException.class);
+  }
+}
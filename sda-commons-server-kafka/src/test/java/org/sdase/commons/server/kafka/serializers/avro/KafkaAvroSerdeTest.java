@@ -0,0 +1,99 @@
+package org.sdase.commons.server.kafka.serializers.avro;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.apache.avro.generic.GenericRecord;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sdase.commons.server.kafka.serializers.SimpleEntity;
+
+public class KafkaAvroSerdeTest {
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private SchemaStore schemaStore;
+
+  @Before
+  public void setUp() {
+    schemaStore = spy(new FileSchemaStore(folder.getRoot().toPath()));
+  }
+
+  @Test
+  public void shouldSerializeAndDeserialize() {
+    SimpleEntity simpleEntity = new SimpleEntity();
+    simpleEntity.setName("MyTestName");
+
+    byte[] serialized =
+        new KafkaAvroSerializer<>(schemaStore, SimpleEntity.class).serialize("topic", simpleEntity);
+    SimpleEntity deserialized =
+        new KafkaAvroDeserializer<>(schemaStore, SimpleEntity.class)
+            .deserialize("topic", serialized);
+
+    assertThat(serialized[0]).isEqualTo(KafkaAvroSerializer.MAGIC_BYTE);
+    assertThat(deserialized.getName()).isEqualTo("MyTestName");
+    assertThat(deserialized.getLastname()).isNull();
+  }
+
+  @Test
+  public void shouldResolveSchemasOnce() {
+    KafkaAvroSerializer<SimpleEntity> serializer =
+        new KafkaAvroSerializer<>(schemaStore, SimpleEntity.class);
+    KafkaAvroDeserializer<SimpleEntity> deserializer =
+        new KafkaAvroDeserializer<>(schemaStore, SimpleEntity.class);
+
+    for (int i = 0; i < 3; i++) {
+      deserializer.deserialize("topic", serializer.serialize("topic", new SimpleEntity()));
+    }
+
+    verify(schemaStore, times(1)).register("topic-value", serializerSchema());
+    verify(schemaStore, times(1)).getSchema(anyInt());
+  }
+
+  @Test
+  public void shouldDeserializeGenericRecords() {
+    SimpleEntity simpleEntity = new SimpleEntity();
+    simpleEntity.setLastname("MyTestLastname");
+    byte[] serialized =
+        new KafkaAvroSerializer<>(schemaStore, SimpleEntity.class, true)
+            .serialize("topic", simpleEntity);
+
+    GenericRecord record =
+        KafkaAvroDeserializer.generic(schemaStore).deserialize("topic", serialized);
+
+    assertThat(record.get("lastname")).hasToString("MyTestLastname");
+    verify(schemaStore).register("topic-key", serializerSchema());
+  }
+
+  @Test
+  public void shouldHandleNullValues() {
+    assertThat(new KafkaAvroSerializer<>(schemaStore, SimpleEntity.class).serialize("topic", null))
+        .isNull();
+    assertThat(
+            new KafkaAvroDeserializer<>(schemaStore, SimpleEntity.class).deserialize("topic", null))
+        .isNull();
+  }
+
+  @Test
+  public void shouldRejectUnknownFormat() {
+    KafkaAvroDeserializer<SimpleEntity> deserializer =
+        new KafkaAvroDeserializer<>(schemaStore, SimpleEntity.class);
+    byte[] json = "{\"name\":\"MyTestName\"}".getBytes();
+
+    assertThatThrownBy(() -> deserializer.deserialize("topic", json))
+        .isInstanceOf(SerializationException.class);
+  }
+
+  private static String serializerSchema() {
+    return org.apache.avro.reflect.ReflectData.AllowNull.get()
+        .getSchema(SimpleEntity.class)
+        .toString();
+  }
+}
@@ -0,0 +1,90 @@
+package org.sdase.commons.server.kafka.serializers.avro;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sdase.commons.server.kafka.exception.SchemaStoreException;
+
+public class SchemaRegistryClientTest {
+
+  private final List<String> requests = new CopyOnWriteArrayList<>();
+
+  private HttpServer server;
+
+  private SchemaStore store;
+
+  @Before
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext(
+        "/subjects/orders-value/versions", exchange -> respond(exchange, 200, "{\"id\":7}"));
+    server.createContext(
+        "/schemas/ids/7", exchange -> respond(exchange, 200, "{\"schema\":\"\\\"string\\\"\"}"));
+    server.createContext(
+        "/schemas/ids/8", exchange -> respond(exchange, 404, "{\"error_code\":40403}"));
+    server.start();
+
+    store =
+        new CachingSchemaStore(
+            new SchemaRegistryClient("http://localhost:" + server.getAddress().getPort() + "/"));
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void shouldRegisterSchemaOnce() {
+    assertThat(store.register("orders-value", "\"string\"")).isEqualTo(7);
+    assertThat(store.register("orders-value", "\"string\"")).isEqualTo(7);
+
+    assertThat(requests)
+        .containsExactly("POST /subjects/orders-value/versions {\"schema\":\"\\\"string\\\"\"}");
+  }
+
+  @Test
+  public void shouldGetSchemaOnce() {
+    assertThat(store.getSchema(7)).isEqualTo("\"string\"");
+    assertThat(store.getSchema(7)).isEqualTo("\"string\"");
+
+    assertThat(requests).containsExactly("GET /schemas/ids/7 ");
+  }
+
+  @Test
+  public void shouldFailForUnknownSchema() {
+    assertThatThrownBy(() -> store.getSchema(8))
+        .isInstanceOf(SchemaStoreException.class)
+        .hasMessageContaining("404");
+  }
+
+  private void respond(HttpExchange exchange, int status, String body) throws IOException {
+    try (InputStream in = exchange.getRequestBody()) {
+      byte[] request = new byte[1024];
+      int length = Math.max(in.read(request), 0);
+      requests.add(
+          exchange.getRequestMethod()
+              + " "
+              + exchange.getRequestURI().getPath()
+              + " "
+              + new String(request, 0, length, StandardCharsets.UTF_8));
+    }
+    byte[] response = body.getBytes(StandardCharsets.UTF_8);
+    exchange.sendResponseHeaders(status, response.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(response);
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package org.sdase.commons.server.kafka.serializers.claimcheck;
+
+import static io.dropwizard.testing.ConfigOverride.config;
+import static io.dropwizard.testing.ResourceHelpers.resourceFilePath;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.salesforce.kafka.test.junit4.SharedKafkaTestResource;
+import io.dropwizard.testing.junit.DropwizardAppRule;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.junit.rules.TestRule;
+import org.sdase.commons.server.kafka.KafkaBundle;
+import org.sdase.commons.server.kafka.KafkaBundleConsts;
+import org.sdase.commons.server.kafka.builder.MessageListenerRegistration;
+import org.sdase.commons.server.kafka.builder.ProducerRegistration;
+import org.sdase.commons.server.kafka.consumer.IgnoreAndProceedErrorHandler;
+import org.sdase.commons.server.kafka.consumer.strategies.synccommit.SyncCommitMLS;
+import org.sdase.commons.server.kafka.dropwizard.KafkaTestApplication;
+import org.sdase.commons.server.kafka.dropwizard.KafkaTestConfiguration;
+import org.sdase.commons.server.kafka.producer.MessageProducer;
+import org.sdase.commons.server.kafka.serializers.KafkaJsonDeserializer;
+import org.sdase.commons.server.kafka.serializers.KafkaJsonSerializer;
+import org.sdase.commons.server.kafka.serializers.SimpleEntity;
+import org.sdase.commons.server.s3.testing.S3MockRule;
+
+public class ClaimCheckIT {
+
+  private static final String BUCKET = "claim-checks";
+
+  private static final SharedKafkaTestResource KAFKA =
+      new SharedKafkaTestResource()
+          // we only need one consumer offsets partition
+          .withBrokerProperty("offsets.topic.num.partitions", "1")
+          // we don't need to wait that a consumer group rebalances since we always start with a
+          // fresh kafka instance
+          .withBrokerProperty("group.initial.rebalance.delay.ms", "0");
+
+  private static final S3MockRule S3_MOCK = S3MockRule.builder().createBucket(BUCKET).build();
+
+  private static final DropwizardAppRule<KafkaTestConfiguration> DROPWIZARD_APP_RULE =
+      new DropwizardAppRule<>(
+          KafkaTestApplication.class,
+          resourceFilePath("test-config-default.yml"),
+          config("kafka.brokers", KAFKA::getKafkaConnectString),
+
+          // performance improvements in the tests
+          config("kafka.config.heartbeat\\.interval\\.ms", "250"));
+
+  @ClassRule
+  public static final TestRule CHAIN =
+      RuleChain.outerRule(KAFKA).around(S3_MOCK).around(DROPWIZARD_APP_RULE);
+
+  private final List<ClaimCheck<SimpleEntity>> results =
+      Collections.synchronizedList(new ArrayList<>());
+
+  private KafkaBundle<KafkaTestConfiguration> kafkaBundle;
+
+  private AmazonS3 s3;
+
+  @Before
+  public void before() {
+    kafkaBundle = DROPWIZARD_APP_RULE.<KafkaTestApplication>getApplication().kafkaBundle();
+    s3 = S3_MOCK.getClient();
+    results.clear();
+  }
+
+  @Test
+  public void shouldSendLargePayloadsThroughS3() {
+    String topic = "claimCheck";
+    KAFKA.getKafkaTestUtils().createTopic(topic, 1, (short) 1);
+
+    kafkaBundle.createMessageListener(
+        MessageListenerRegistration.builder()
+            .withDefaultListenerConfig()
+            .forTopic(topic)
+            .withDefaultConsumer()
+            .withValueDeserializer(
+                new ClaimCheckDeserializer<>(
+                    s3, new KafkaJsonDeserializer<>(new ObjectMapper(), SimpleEntity.class)))
+            .withListenerStrategy(
+                new SyncCommitMLS<>(
+                    record -> results.add(record.value()), new IgnoreAndProceedErrorHandler<>()))
+            .build());
+
+    MessageProducer<Object, SimpleEntity> producer =
+        kafkaBundle.registerProducer(
+            ProducerRegistration.builder()
+                .forTopic(topic)
+                .withDefaultProducer()
+                .withValueSerializer(
+                    new ClaimCheckSerializer<>(
+                        s3, BUCKET, new KafkaJsonSerializer<SimpleEntity>(new ObjectMapper()), 100))
+                .build());
+
+    producer.send("small", entity(10));
+    producer.send("large", entity(1000));
+
+    await().atMost(KafkaBundleConsts.N_MAX_WAIT_MS, MILLISECONDS).until(() -> results.size() == 2);
+
+    assertThat(results).extracting(ClaimCheck::isStoredExternally).containsExactly(false, true);
+    assertThat(results)
+        .extracting(claimCheck -> claimCheck.get().getName().length())
+        .containsExactly(10, 1000);
+    assertThat(s3.listObjects(BUCKET, topic + "/").getObjectSummaries()).hasSize(1);
+  }
+
+  private static SimpleEntity entity(int nameLength) {
+    char[] name = new char[nameLength];
+    Arrays.fill(name, 'n');
+    SimpleEntity entity = new SimpleEntity();
+    entity.setName(new String(name));
+    return entity;
+  }
+}
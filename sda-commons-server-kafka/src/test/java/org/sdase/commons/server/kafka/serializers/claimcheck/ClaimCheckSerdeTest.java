@@ -0,0 +1,127 @@
+package org.sdase.commons.server.kafka.serializers.claimcheck;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.sdase.commons.server.kafka.serializers.claimcheck.ClaimCheckSerializer.HASH_HEADER;
+
+import com.amazonaws.services.s3.AmazonS3;
+import java.util.Arrays;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.sdase.commons.server.s3.testing.S3MockRule;
+
+public class ClaimCheckSerdeTest {
+
+  private static final String BUCKET = "claim-checks";
+
+  @ClassRule
+  public static final S3MockRule S3_MOCK = S3MockRule.builder().createBucket(BUCKET).build();
+
+  private AmazonS3 s3;
+  private ClaimCheckSerializer<String> serializer;
+  private ClaimCheckDeserializer<String> deserializer;
+
+  @Before
+  public void setup() {
+    S3_MOCK.resetAll();
+    s3 = S3_MOCK.getClient();
+    serializer = new ClaimCheckSerializer<>(s3, BUCKET, new StringSerializer(), 10);
+    deserializer = new ClaimCheckDeserializer<>(s3, new StringDeserializer());
+  }
+
+  @Test
+  public void shouldSendSmallPayloadsInRecord() {
+    Headers headers = new RecordHeaders();
+
+    byte[] data = serializer.serialize("topic", headers, "small");
+
+    assertThat(data).isEqualTo("small".getBytes(UTF_8));
+    assertThat(headers.lastHeader(HASH_HEADER)).isNull();
+    ClaimCheck<String> claimCheck = deserializer.deserialize("topic", headers, data);
+    assertThat(claimCheck.isStoredExternally()).isFalse();
+    assertThat(claimCheck.get()).isEqualTo("small");
+  }
+
+  @Test
+  public void shouldStoreLargePayloadsInS3() {
+    Headers headers = new RecordHeaders();
+    String payload = largePayload('x');
+
+    byte[] data = serializer.serialize("topic", headers, payload);
+
+    String hash = ClaimCheckSerializer.sha256Hex(payload.getBytes(UTF_8));
+    assertThat(new String(data, UTF_8)).isEqualTo("s3://" + BUCKET + "/topic/" + hash);
+    assertThat(headers.lastHeader(HASH_HEADER).value()).isEqualTo(hash.getBytes(UTF_8));
+    assertThat(s3.getObjectAsString(BUCKET, "topic/" + hash)).isEqualTo(payload);
+
+    ClaimCheck<String> claimCheck = deserializer.deserialize("topic", headers, data);
+    assertThat(claimCheck.isStoredExternally()).isTrue();
+    assertThat(claimCheck.getReference()).isEqualTo("s3://" + BUCKET + "/topic/" + hash);
+    assertThat(claimCheck.get()).isEqualTo(payload);
+  }
+
+  @Test
+  public void shouldFetchPayloadLazilyAndFromCache() {
+    Headers headers = new RecordHeaders();
+    String payload = largePayload('y');
+    byte[] data = serializer.serialize("topic", headers, payload);
+
+    ClaimCheck<String> first = deserializer.deserialize("topic", headers, data);
+    ClaimCheck<String> second = deserializer.deserialize("topic", headers, data);
+    assertThat(first.get()).isEqualTo(payload);
+    s3.deleteObject(BUCKET, "topic/" + ClaimCheckSerializer.sha256Hex(payload.getBytes(UTF_8)));
+
+    assertThat(second.get()).isEqualTo(payload);
+  }
+
+  @Test
+  public void shouldRejectPayloadNotMatchingHash() {
+    Headers headers = new RecordHeaders();
+    String payload = largePayload('z');
+    byte[] data = serializer.serialize("topic", headers, payload);
+    String hash = ClaimCheckSerializer.sha256Hex(payload.getBytes(UTF_8));
+    s3.putObject(BUCKET, "topic/" + hash, "manipulated payload");
+
+    ClaimCheck<String> claimCheck = deserializer.deserialize("topic", headers, data);
+
+    assertThatThrownBy(claimCheck::get)
+        .isInstanceOf(SerializationException.class)
+        .hasMessageContaining("does not match");
+  }
+
+  @Test
+  public void shouldFailForMissingPayload() {
+    Headers headers = new RecordHeaders();
+    byte[] data = serializer.serialize("topic", headers, largePayload('m'));
+    s3.deleteObject(BUCKET, new String(data, UTF_8).substring(("s3://" + BUCKET + "/").length()));
+
+    ClaimCheck<String> claimCheck = deserializer.deserialize("topic", headers, data);
+
+    assertThatThrownBy(claimCheck::get).isInstanceOf(SerializationException.class);
+  }
+
+  @Test
+  public void shouldRejectLargePayloadsWithoutHeaders() {
+    assertThatThrownBy(() -> serializer.serialize("topic", largePayload('h')))
+        .isInstanceOf(SerializationException.class);
+  }
+
+  @Test
+  public void shouldPassNull() {
+    assertThat(serializer.serialize("topic", new RecordHeaders(), null)).isNull();
+    assertThat(deserializer.deserialize("topic", new RecordHeaders(), null)).isNull();
+  }
+
+  private static String largePayload(char c) {
+    char[] chars = new char[1000];
+    Arrays.fill(chars, c);
+    return new String(chars);
+  }
+}
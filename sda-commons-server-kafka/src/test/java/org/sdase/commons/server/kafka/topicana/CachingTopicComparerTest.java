@@ -0,0 +1,145 @@
+package org.sdase.commons.server.kafka.topicana;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.Config;
+import org.apache.kafka.clients.admin.ConfigEntry;
+import org.apache.kafka.clients.admin.DescribeConfigsResult;
+import org.apache.kafka.clients.admin.DescribeTopicsResult;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.TopicPartitionInfo;
+import org.apache.kafka.common.config.ConfigResource;
+import org.apache.kafka.common.errors.UnknownTopicOrPartitionException;
+import org.apache.kafka.common.internals.KafkaFutureImpl;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+public class CachingTopicComparerTest {
+
+  @Rule public final MockitoRule mockitoRule = MockitoJUnit.rule();
+
+  @Captor private ArgumentCaptor<Collection<String>> topicNames;
+
+  private final Set<String> existingTopics = new HashSet<>(Arrays.asList("a", "b"));
+
+  private AdminClient adminClient;
+
+  private CachingTopicComparer comparer;
+
+  @Before
+  public void setUp() {
+    adminClient = mock(AdminClient.class);
+    when(adminClient.describeTopics(anyCollection()))
+        .thenAnswer(invocation -> describeTopics(invocation.getArgument(0)));
+    when(adminClient.describeConfigs(anyCollection()))
+        .thenAnswer(invocation -> describeConfigs(invocation.getArgument(0)));
+    comparer = new CachingTopicComparer(() -> adminClient, Arrays.asList("a", "b", "missing"));
+  }
+
+  @Test
+  public void shouldDescribeAllKnownTopicsInOneBatch() {
+    ComparisonResult result = comparer.compare(Collections.singletonList(topic("a")));
+
+    assertThat(result.ok()).isTrue();
+    verify(adminClient).describeTopics(topicNames.capture());
+    assertThat(topicNames.getValue()).containsExactlyInAnyOrder("a", "b", "missing");
+
+    assertThat(comparer.compare(Collections.singletonList(topic("b"))).ok()).isTrue();
+    verify(adminClient, times(1)).describeTopics(anyCollection());
+    verify(adminClient, times(1)).describeConfigs(anyCollection());
+    assertThat(comparer.getDescribeRequests()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldCompareCachedTopics() {
+    comparer.compare(Collections.singletonList(topic("a")));
+
+    ComparisonResult result =
+        comparer.compare(
+            Collections.singletonList(
+                TopicConfigurationBuilder.builder("b")
+                    .withPartitionCount(2)
+                    .withConfig("cleanup.policy", "compact")
+                    .build()));
+
+    assertThat(result.getMismatchingPartitionCount()).containsKey("b");
+    assertThat(result.getMismatchingConfiguration()).containsKey("b");
+    verify(adminClient, times(1)).describeTopics(anyCollection());
+  }
+
+  @Test
+  public void shouldNotCacheMissingTopics() {
+    assertThat(comparer.compare(Collections.singletonList(topic("missing"))).getMissingTopics())
+        .containsExactly("missing");
+
+    existingTopics.add("missing");
+    assertThat(comparer.compare(Collections.singletonList(topic("missing"))).ok()).isTrue();
+    verify(adminClient, times(2)).describeTopics(anyCollection());
+  }
+
+  private static ExpectedTopicConfiguration topic(String name) {
+    return TopicConfigurationBuilder.builder(name).build();
+  }
+
+  private DescribeTopicsResult describeTopics(Collection<String> topicNames) {
+    Map<String, KafkaFuture<TopicDescription>> futures = new HashMap<>();
+    Node node = new Node(1, "localhost", 9092);
+    for (String topicName : topicNames) {
+      List<TopicPartitionInfo> partitions =
+          Collections.singletonList(
+              new TopicPartitionInfo(
+                  0, node, Collections.singletonList(node), Collections.singletonList(node)));
+      futures.put(
+          topicName,
+          existingTopics.contains(topicName)
+              ? KafkaFuture.completedFuture(new TopicDescription(topicName, false, partitions))
+              : unknownTopic());
+    }
+    DescribeTopicsResult result = mock(DescribeTopicsResult.class);
+    when(result.values()).thenReturn(futures);
+    return result;
+  }
+
+  private DescribeConfigsResult describeConfigs(Collection<ConfigResource> resources) {
+    Map<ConfigResource, KafkaFuture<Config>> futures = new HashMap<>();
+    for (ConfigResource resource : resources) {
+      futures.put(
+          resource,
+          existingTopics.contains(resource.name())
+              ? KafkaFuture.completedFuture(
+                  new Config(
+                      Collections.singletonList(new ConfigEntry("cleanup.policy", "delete"))))
+              : unknownTopic());
+    }
+    DescribeConfigsResult result = mock(DescribeConfigsResult.class);
+    when(result.values()).thenReturn(futures);
+    return result;
+  }
+
+  private static <T> KafkaFuture<T> unknownTopic() {
+    KafkaFutureImpl<T> future = new KafkaFutureImpl<>();
+    future.completeExceptionally(new UnknownTopicOrPartitionException("unknown topic"));
+    return future;
+  }
+}
@@ -0,0 +1,184 @@
+package org.sdase.commons.server.kafka.view;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.sdase.commons.server.kafka.exception.ConfigurationException;
+import org.sdase.commons.server.kafka.prometheus.ConsumerTopicMessageHistogram;
+
+public class MaterializedViewStrategyTest {
+
+  private static final TopicPartition PARTITION_0 = new TopicPartition("topic", 0);
+  private static final TopicPartition PARTITION_1 = new TopicPartition("topic", 1);
+  private static final List<TopicPartition> PARTITIONS = Arrays.asList(PARTITION_0, PARTITION_1);
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private KafkaConsumer<byte[], byte[]> consumer;
+  private ConsumerTopicMessageHistogram histogram;
+  private OffHeapStore store;
+
+  @SuppressWarnings("unchecked")
+  @Before
+  public void setup() {
+    consumer = Mockito.mock(KafkaConsumer.class);
+    histogram = Mockito.mock(ConsumerTopicMessageHistogram.class);
+    store = new OffHeapStore(1024);
+  }
+
+  @Test
+  public void shouldApplyRecordsAndTombstones() {
+    MaterializedViewMLS strategy = createStrategy(null);
+
+    strategy.processRecords(
+        records(
+            record(PARTITION_0, 0, "a", "1"),
+            record(PARTITION_0, 1, "b", "2"),
+            record(PARTITION_1, 0, null, "ignored"),
+            record(PARTITION_0, 2, "a", null),
+            record(PARTITION_1, 1, "b", "3")),
+        consumer);
+
+    assertThat(store.get(bytes("a"))).isNull();
+    assertThat(store.get(bytes("b"))).isEqualTo(bytes("3"));
+    assertThat(store.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldSeekToBeginningWithoutSnapshot() {
+    MaterializedViewMLS strategy = createStrategy(null);
+
+    strategy.onPartitionsAssigned(PARTITIONS, consumer);
+
+    verify(consumer).seekToBeginning(Collections.singleton(PARTITION_0));
+    verify(consumer).seekToBeginning(Collections.singleton(PARTITION_1));
+    verify(consumer, never()).seek(any(), anyLong());
+  }
+
+  @Test
+  public void shouldBeReadyWhenEndOffsetsAreReached() {
+    MaterializedViewMLS strategy = createStrategy(null);
+    Map<TopicPartition, Long> endOffsets = new HashMap<>();
+    endOffsets.put(PARTITION_0, 2L);
+    endOffsets.put(PARTITION_1, 0L);
+    when(consumer.endOffsets(PARTITIONS)).thenReturn(endOffsets);
+    when(consumer.position(PARTITION_0)).thenReturn(0L);
+    when(consumer.position(PARTITION_1)).thenReturn(0L);
+
+    strategy.onPartitionsAssigned(PARTITIONS, consumer);
+    assertThat(strategy.isReady()).isFalse();
+
+    when(consumer.position(PARTITION_0)).thenReturn(2L);
+    strategy.processRecords(
+        records(record(PARTITION_0, 0, "a", "1"), record(PARTITION_0, 1, "b", "2")), consumer);
+
+    assertThat(strategy.isReady()).isTrue();
+  }
+
+  @Test
+  public void shouldBeReadyForEmptyTopic() {
+    MaterializedViewMLS strategy = createStrategy(null);
+    when(consumer.endOffsets(PARTITIONS)).thenReturn(Collections.emptyMap());
+
+    strategy.onPartitionsAssigned(PARTITIONS, consumer);
+
+    assertThat(strategy.isReady()).isTrue();
+  }
+
+  @Test
+  public void shouldRestoreStoreAndOffsetsFromSnapshot() throws Exception {
+    Path snapshotFile = folder.getRoot().toPath().resolve("topic.snapshot");
+    MaterializedViewMLS strategy = createStrategy(snapshotFile);
+    strategy.processRecords(
+        records(
+            record(PARTITION_0, 0, "a", "1"),
+            record(PARTITION_0, 1, "b", "2"),
+            record(PARTITION_1, 4, "c", "3")),
+        consumer);
+    strategy.commitOnClose(consumer);
+    assertThat(snapshotFile).exists();
+
+    OffHeapStore restoredStore = new OffHeapStore(1024);
+    MaterializedViewMLS restored = new MaterializedViewMLS(restoredStore, snapshotFile, 60_000);
+    restored.onPartitionsAssigned(PARTITIONS, consumer);
+
+    assertThat(restoredStore.size()).isEqualTo(3);
+    assertThat(restoredStore.get(bytes("b"))).isEqualTo(bytes("2"));
+    verify(consumer).seek(PARTITION_0, 2L);
+    verify(consumer).seek(PARTITION_1, 5L);
+    verify(consumer, never()).seekToBeginning(any());
+  }
+
+  @Test
+  public void shouldReplayTopicIfSnapshotIsCorrupt() throws Exception {
+    Path snapshotFile = folder.getRoot().toPath().resolve("topic.snapshot");
+    Files.write(snapshotFile, bytes("no snapshot"));
+
+    MaterializedViewMLS strategy = new MaterializedViewMLS(store, snapshotFile, 60_000);
+    strategy.onPartitionsAssigned(PARTITIONS, consumer);
+
+    assertThat(store.size()).isZero();
+    verify(consumer).seekToBeginning(Collections.singleton(PARTITION_0));
+    verify(consumer).seekToBeginning(Collections.singleton(PARTITION_1));
+  }
+
+  @Test
+  public void shouldRejectAutoCommit() {
+    MaterializedViewMLS strategy = createStrategy(null);
+
+    assertThatThrownBy(() -> strategy.verifyConsumerConfig(Collections.emptyMap()))
+        .isInstanceOf(ConfigurationException.class);
+  }
+
+  private MaterializedViewMLS createStrategy(Path snapshotFile) {
+    MaterializedViewMLS strategy = new MaterializedViewMLS(store, snapshotFile, 60_000);
+    strategy.init(histogram);
+    return strategy;
+  }
+
+  @SafeVarargs
+  private static ConsumerRecords<byte[], byte[]> records(
+      ConsumerRecord<byte[], byte[]>... records) {
+    Map<TopicPartition, List<ConsumerRecord<byte[], byte[]>>> byPartition = new HashMap<>();
+    for (ConsumerRecord<byte[], byte[]> record : records) {
+      byPartition
+          .computeIfAbsent(
+              new TopicPartition(record.topic(), record.partition()), p -> new ArrayList<>())
+          .add(record);
+    }
+    return new ConsumerRecords<>(byPartition);
+  }
+
+  private static ConsumerRecord<byte[], byte[]> record(
+      TopicPartition partition, long offset, String key, String value) {
+    return new ConsumerRecord<>(
+        partition.topic(), partition.partition(), offset, bytes(key), bytes(value));
+  }
+
+  private static byte[] bytes(String value) {
+    return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+  }
+}
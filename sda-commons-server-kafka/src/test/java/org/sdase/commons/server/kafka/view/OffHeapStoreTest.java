@@ -0,0 +1,96 @@
+package org.sdase.commons.server.kafka.view;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class OffHeapStoreTest {
+
+  private final OffHeapStore store = new OffHeapStore(64);
+
+  @Test
+  public void shouldReturnLatestValueOfKey() {
+    store.put(bytes("a"), bytes("1"));
+    store.put(bytes("b"), bytes("2"));
+    store.put(bytes("a"), bytes("3"));
+
+    assertThat(store.get(bytes("a"))).isEqualTo(bytes("3"));
+    assertThat(store.get(bytes("b"))).isEqualTo(bytes("2"));
+    assertThat(store.get(bytes("c"))).isNull();
+    assertThat(store.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldDeleteKey() {
+    store.put(bytes("a"), bytes("1"));
+
+    store.delete(bytes("a"));
+    store.delete(bytes("unknown"));
+
+    assertThat(store.get(bytes("a"))).isNull();
+    assertThat(store.size()).isZero();
+  }
+
+  @Test
+  public void shouldStoreValuesLargerThanSegment() {
+    byte[] large = new byte[200];
+    large[199] = 42;
+
+    store.put(bytes("small"), bytes("1"));
+    store.put(bytes("large"), large);
+    store.put(bytes("next"), bytes("2"));
+
+    assertThat(store.get(bytes("large"))).isEqualTo(large);
+    assertThat(store.get(bytes("small"))).isEqualTo(bytes("1"));
+    assertThat(store.get(bytes("next"))).isEqualTo(bytes("2"));
+  }
+
+  @Test
+  public void shouldCompactReplacedValues() {
+    store.put(bytes("kept"), bytes("kept"));
+    for (int i = 0; i < 1000; i++) {
+      store.put(bytes("replaced"), bytes("value " + i));
+    }
+
+    assertThat(store.get(bytes("kept"))).isEqualTo(bytes("kept"));
+    assertThat(store.get(bytes("replaced"))).isEqualTo(bytes("value 999"));
+    // without compaction the replaced values would need about 200 segments
+    assertThat(store.getAllocatedBytes()).isLessThanOrEqualTo(64 * 3);
+  }
+
+  @Test
+  public void shouldPassAllEntries() {
+    store.put(bytes("a"), bytes("1"));
+    store.put(bytes("b"), bytes("2"));
+    store.delete(bytes("a"));
+    store.put(bytes("c"), bytes("3"));
+
+    Map<String, String> entries = new HashMap<>();
+    store.forEach((key, value) -> entries.put(string(key), string(value)));
+
+    assertThat(entries).containsOnly(entry("b", "2"), entry("c", "3"));
+  }
+
+  @Test
+  public void shouldClear() {
+    store.put(bytes("a"), bytes("1"));
+
+    store.clear();
+
+    assertThat(store.size()).isZero();
+    assertThat(store.getAllocatedBytes()).isZero();
+    assertThat(store.get(bytes("a"))).isNull();
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String string(byte[] value) {
+    return new String(value, StandardCharsets.UTF_8);
+  }
+}